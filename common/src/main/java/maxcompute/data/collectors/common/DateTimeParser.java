@@ -0,0 +1,155 @@
+package maxcompute.data.collectors.common;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Thread-safe date/time parsing and formatting for the record utilities.
+ *
+ * SimpleDateFormat is neither thread-safe nor cheap, so callers keep passing
+ * their configured format but never use it directly: every thread works on
+ * its own clone of it. Values in the common "yyyy-MM-dd HH:mm:ss[.fffffffff]"
+ * layout are parsed without SimpleDateFormat at all, and each thread keeps
+ * the last few parsed strings so repeated timestamps are parsed only once.
+ */
+public class DateTimeParser {
+
+    public static final String DEFAULT_PATTERN = "yyyy-MM-dd HH:mm:ss";
+
+    private static final int MAX_FORMATS_PER_THREAD = 16;
+    private static final int MAX_CACHED_VALUES = 256;
+
+    private static final ThreadLocal<ThreadState> STATE = new ThreadLocal<ThreadState>() {
+        @Override
+        protected ThreadState initialValue() {
+            return new ThreadState();
+        }
+    };
+
+    /**
+     * Parses {@code value} as {@code format} would, keeping fractional seconds of the
+     * default layout. The returned timestamp is owned by the caller.
+     */
+    public static Timestamp parse(String value, SimpleDateFormat format) throws ParseException {
+        ThreadState state = STATE.get();
+        FormatState fs = state.get(format);
+        Timestamp cached = fs.recent.get(value);
+        if (cached == null) {
+            cached = fs.fastPath ? parseDefaultLayout(value, state.calendar) : null;
+            if (cached == null) {
+                cached = new Timestamp(fs.formatter.parse(value).getTime());
+            }
+            fs.recent.put(value, cached);
+        }
+        Timestamp result = new Timestamp(cached.getTime());
+        result.setNanos(cached.getNanos());
+        return result;
+    }
+
+    /**
+     * Formats {@code date} with the default pattern.
+     */
+    public static String format(Date date) {
+        return STATE.get().defaultFormatter.format(date);
+    }
+
+    /**
+     * Parses "yyyy-MM-dd HH:mm:ss" with an optional fraction of up to nine digits,
+     * in the default time zone. Returns null for anything else so that the caller
+     * falls back to SimpleDateFormat.
+     */
+    static Timestamp parseDefaultLayout(String s, Calendar calendar) {
+        int len = s.length();
+        if (len < 19 || len == 20 || len > 29
+            || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != ' '
+            || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        int hour = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = digits(s, 17, 19);
+        if ((year | month | day | hour | minute | second) < 0) {
+            return null;
+        }
+        int nanos = 0;
+        if (len > 19) {
+            if (s.charAt(19) != '.') {
+                return null;
+            }
+            nanos = digits(s, 20, len);
+            if (nanos < 0) {
+                return null;
+            }
+            for (int i = len; i < 29; i++) {
+                nanos *= 10;
+            }
+        }
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        Timestamp ts = new Timestamp(calendar.getTimeInMillis());
+        ts.setNanos(nanos);
+        return ts;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static class ThreadState {
+        final Calendar calendar = Calendar.getInstance();
+        final SimpleDateFormat defaultFormatter = new SimpleDateFormat(DEFAULT_PATTERN);
+        final Map<SimpleDateFormat, FormatState> formats =
+            new IdentityHashMap<SimpleDateFormat, FormatState>();
+
+        FormatState get(SimpleDateFormat format) {
+            FormatState fs = formats.get(format);
+            if (fs == null) {
+                if (formats.size() >= MAX_FORMATS_PER_THREAD) {
+                    // Formats are normally created once per job; this only guards
+                    // against callers that create a new one per value.
+                    formats.clear();
+                }
+                fs = new FormatState(format);
+                formats.put(format, fs);
+            }
+            return fs;
+        }
+    }
+
+    private static class FormatState {
+        final SimpleDateFormat formatter;
+        final boolean fastPath;
+        final Map<String, Timestamp> recent =
+            new LinkedHashMap<String, Timestamp>(MAX_CACHED_VALUES * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Timestamp> eldest) {
+                    return size() > MAX_CACHED_VALUES;
+                }
+            };
+
+        FormatState(SimpleDateFormat format) {
+            this.formatter = (SimpleDateFormat) format.clone();
+            this.fastPath = DEFAULT_PATTERN.equals(formatter.toPattern())
+                && formatter.isLenient()
+                && formatter.getTimeZone().equals(TimeZone.getDefault());
+        }
+    }
+}
@@ -3,10 +3,11 @@ package maxcompute.data.collectors.common.datahub;
 import com.aliyun.datahub.common.data.Field;
 import com.aliyun.datahub.model.RecordEntry;
 import com.aliyun.odps.utils.StringUtils;
+import maxcompute.data.collectors.common.DateTimeParser;
 
+import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -55,8 +56,9 @@ public class RecordUtil {
                 case TIMESTAMP:
                     // datahub中存储的时间是微秒
                     if (isDateFormat) {
-                        Date date = simpleDateFormat.parse(fieldValue);
-                        recordEntry.setTimeStamp(field.getName(), date.getTime() * 1000);
+                        Timestamp ts = DateTimeParser.parse(fieldValue, simpleDateFormat);
+                        recordEntry.setTimeStamp(field.getName(),
+                            ts.getTime() * 1000 + ts.getNanos() / 1000 % 1000);
                     } else {
                         recordEntry.setTimeStamp(field.getName(), Long.parseLong(fieldValue));
                     }
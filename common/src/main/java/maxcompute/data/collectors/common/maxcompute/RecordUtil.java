@@ -7,6 +7,7 @@ import com.aliyun.odps.data.Binary;
 import com.aliyun.odps.data.Char;
 import com.aliyun.odps.data.Varchar;
 import com.aliyun.odps.utils.StringUtils;
+import maxcompute.data.collectors.common.DateTimeParser;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.text.ParseException;
@@ -39,7 +40,8 @@ public class RecordUtil {
                     record.setBigint(field, Long.parseLong(fieldValue));
                     break;
                 case DATETIME:
-                    record.setDatetime(field, dateFormat.parse(fieldValue));
+                    record.setDatetime(field,
+                        new java.util.Date(DateTimeParser.parse(fieldValue, dateFormat).getTime()));
                     break;
                 case DOUBLE:
                     record.setDouble(field, Double.parseDouble(fieldValue));
@@ -73,12 +75,11 @@ public class RecordUtil {
                     record.setFloat(field, Float.parseFloat(fieldValue));
                     break;
                 case DATE:
-                    record
-                        .setDate(field, new java.sql.Date(dateFormat.parse(fieldValue).getTime()));
+                    record.setDate(field,
+                        new java.sql.Date(DateTimeParser.parse(fieldValue, dateFormat).getTime()));
                     break;
                 case TIMESTAMP:
-                    record
-                        .setTimestamp(field, new Timestamp(dateFormat.parse(fieldValue).getTime()));
+                    record.setTimestamp(field, DateTimeParser.parse(fieldValue, dateFormat));
                     break;
                 case BINARY:
                     record.setBinary(field, new Binary(fieldValue.getBytes()));
@@ -104,8 +105,7 @@ public class RecordUtil {
             }
             case DATETIME: {
                 java.util.Date v = record.getDatetime(pos);
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                colValue = v == null ? null : sdf.format(v);
+                colValue = v == null ? null : DateTimeParser.format(v);
                 break;
             }
             case DOUBLE: {
@@ -155,14 +155,12 @@ public class RecordUtil {
             }
             case DATE: {
                 java.sql.Date v = record.getDate(pos);
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                colValue = v == null ? null : sdf.format(v);
+                colValue = v == null ? null : DateTimeParser.format(v);
                 break;
             }
             case TIMESTAMP: {
                 Timestamp v = record.getTimestamp(pos);
-                SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                colValue = v == null ? null : sdf.format(v);
+                colValue = v == null ? null : DateTimeParser.format(v);
                 break;
             }
             case BINARY: {
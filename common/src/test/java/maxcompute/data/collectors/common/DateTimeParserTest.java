@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package maxcompute.data.collectors.common;
+
+import org.junit.Test;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class DateTimeParserTest {
+
+    private static final SimpleDateFormat SHARED = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+
+    private final SimpleDateFormat format = new SimpleDateFormat(DateTimeParser.DEFAULT_PATTERN);
+
+    @Test
+    public void testFastPathMatchesSimpleDateFormat() throws ParseException {
+        String[] values = {
+            "2020-01-01 00:00:00", "1970-01-01 08:00:00", "1900-12-31 23:59:59",
+            "2038-01-19 03:14:08", "9999-12-31 23:59:59",
+            // lenient overflow, rolled over the same way
+            "2020-13-01 00:00:00", "2020-04-31 24:00:60"
+        };
+        for (String value : values) {
+            assertNotNull(value, DateTimeParser.parseDefaultLayout(value, Calendar.getInstance()));
+            assertEquals(value, reference(value), DateTimeParser.parse(value, format).getTime());
+        }
+    }
+
+    @Test
+    public void testLeapDays() throws ParseException {
+        Timestamp leap = DateTimeParser.parse("2020-02-29 12:00:00", format);
+        assertEquals(reference("2020-02-29 12:00:00"), leap.getTime());
+        assertEquals("2020-02-29 12:00:00", DateTimeParser.format(leap));
+
+        // not a leap year, lenient parsing moves on to the first of March
+        Timestamp rolled = DateTimeParser.parse("2019-02-29 12:00:00", format);
+        assertEquals(reference("2019-03-01 12:00:00"), rolled.getTime());
+        assertEquals(reference("1900-03-01 00:00:00"),
+            DateTimeParser.parse("1900-02-29 00:00:00", format).getTime());
+        assertEquals(reference("2000-02-29 00:00:00"),
+            DateTimeParser.parse("2000-02-29 00:00:00", format).getTime());
+    }
+
+    @Test
+    public void testFractionalSeconds() throws ParseException {
+        long second = reference("2020-05-06 07:08:09");
+        assertFraction(second, 500000000, DateTimeParser.parse("2020-05-06 07:08:09.5", format));
+        assertFraction(second, 123000000, DateTimeParser.parse("2020-05-06 07:08:09.123", format));
+        assertFraction(second, 123456000, DateTimeParser.parse("2020-05-06 07:08:09.123456", format));
+        assertFraction(second, 123456789, DateTimeParser.parse("2020-05-06 07:08:09.123456789", format));
+        assertFraction(second, 0, DateTimeParser.parse("2020-05-06 07:08:09", format));
+    }
+
+    @Test
+    public void testInvalidInput() {
+        String[] values = {"", "abc", "2020-01-01", "20x0-01-01 00:00:00", "2020/01/01 00:00:00"};
+        for (String value : values) {
+            try {
+                DateTimeParser.parse(value, format);
+                fail("expected " + value + " to be rejected");
+            } catch (ParseException e) {
+                // expected, same as SimpleDateFormat
+            }
+        }
+    }
+
+    @Test
+    public void testFallbackPath() throws ParseException {
+        Calendar calendar = Calendar.getInstance();
+        // outside the fixed layout, parsed by SimpleDateFormat
+        String[] values = {"2020-1-2 3:4:5", "2020-01-01 00:00:00x", "2020-01-01 00:00:00.x"};
+        for (String value : values) {
+            assertNull(value, DateTimeParser.parseDefaultLayout(value, calendar));
+            assertEquals(value, reference(value), DateTimeParser.parse(value, format).getTime());
+        }
+
+        SimpleDateFormat other = new SimpleDateFormat("yyyy/MM/dd HH:mm");
+        assertEquals(other.parse("2020/02/29 10:30").getTime(),
+            DateTimeParser.parse("2020/02/29 10:30", other).getTime());
+        SimpleDateFormat strict = new SimpleDateFormat(DateTimeParser.DEFAULT_PATTERN);
+        strict.setLenient(false);
+        try {
+            DateTimeParser.parse("2019-02-29 00:00:00", strict);
+            fail("expected a strict format to reject 2019-02-29");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testCachedValuesAreCopied() throws ParseException {
+        Timestamp first = DateTimeParser.parse("2020-01-01 00:00:00.1", format);
+        first.setTime(0);
+        Timestamp second = DateTimeParser.parse("2020-01-01 00:00:00.1", format);
+        assertFraction(reference("2020-01-01 00:00:00"), 100000000, second);
+    }
+
+    @Test
+    public void testSharedFormatAcrossThreads() throws Exception {
+        final AtomicReference<String> error = new AtomicReference<String>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            // yyyy/MM/dd goes through the shared SimpleDateFormat instance
+                            String value = String.format("20%02d/%02d/%02d 10:00", i % 100, i % 12 + 1,
+                                (i + offset) % 28 + 1);
+                            long expected = new SimpleDateFormat("yyyy/MM/dd HH:mm").parse(value).getTime();
+                            if (DateTimeParser.parse(value, SHARED).getTime() != expected) {
+                                error.set(value);
+                            }
+                        }
+                    } catch (ParseException e) {
+                        error.set(e.toString());
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(error.get());
+    }
+
+    private static long reference(String value) throws ParseException {
+        return new SimpleDateFormat(DateTimeParser.DEFAULT_PATTERN).parse(value).getTime();
+    }
+
+    private static void assertFraction(long second, int nanos, Timestamp ts) {
+        assertEquals(second + nanos / 1000000, ts.getTime());
+        assertEquals(nanos, ts.getNanos());
+    }
+}
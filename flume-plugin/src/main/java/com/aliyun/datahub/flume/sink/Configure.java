@@ -20,6 +20,7 @@
 package com.aliyun.datahub.flume.sink;
 
 
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,6 +48,32 @@ public class Configure {
 
     public static final boolean DEFAULT_DIRTY_DATA_CONTINUE = true;
     public static final String DEFAULT_DIRTY_DATA_FILE = "DataHub-Flume-dirty-file";
+    /**
+     * Dirty records waiting to be written, 0 writes them synchronously. If the queue is full the
+     * batch is rolled back and taken from the channel again.
+     */
+    public static final int DEFAULT_DIRTY_DATA_QUEUE_SIZE = 0;
+    public static final int DEFAULT_DIRTY_DATA_BATCH_SIZE = 500;
+    /**
+     * Default max dirty file size, unit is MB, 0 never rolls on size.
+     */
+    public static final int DEFAULT_DIRTY_DATA_FILE_MAX_SIZE = 0;
+    /**
+     * Default dirty file roll interval, unit is second, 0 never rolls on time.
+     */
+    public static final int DEFAULT_DIRTY_DATA_FILE_ROLL_INTERVAL = 0;
+    public static final int DEFAULT_DIRTY_DATA_FILE_RETAIN = 1;
+    public static final boolean DEFAULT_DIRTY_DATA_FILE_COMPRESS = false;
+
+    /**
+     * single: one random shard per batch, roundRobin: records spread over all active shards,
+     * partitionKey: records hashed to an active shard by shardKeyColumns.
+     */
+    public static final String DEFAULT_SHARD_MODE = "single";
+    /**
+     * Threads putting the per shard sub-batches of one batch, 1 puts them one after another.
+     */
+    public static final int DEFAULT_WRITER_THREADS = 1;
 
     public static final boolean DEFAULT_AUTO_COMMIT = true;
     public static final int DEFAULT_OFFSET_COMMIT_INTERVAL = 30;
@@ -69,11 +96,20 @@ public class Configure {
     private int maxBufferSize;
     private int batchTimeout;
     private List<String> shardIds;
+    private String shardMode;
+    private String[] shardKeyColumns;
+    private int writerThreads;
 
     private String compressType;
 
     private boolean dirtyDataContinue;
     private String dirtyDataFile;
+    private int dirtyDataQueueSize;
+    private int dirtyDataBatchSize;
+    private int dirtyDataFileMaxSize;
+    private int dirtyDataFileRollInterval;
+    private int dirtyDataFileRetain;
+    private boolean dirtyDataFileCompress;
 
     private String subId;
     private long startTimestamp;
@@ -97,6 +133,9 @@ public class Configure {
         builder.append("project\t" + project + "\n");
         builder.append("topic\t" + topic + "\n");
         builder.append("shardIds\t" + getShardIdsString() + "\n");
+        builder.append("shardMode\t" + shardMode + "\n");
+        builder.append("shardKeyColumns\t" + (shardKeyColumns == null ? "" : StringUtils.join(shardKeyColumns, ",")) + "\n");
+        builder.append("writerThreads\t" + writerThreads + "\n");
         builder.append("enablePb\t" + enablePb + "\n");
         builder.append("compressType\t" + compressType + "\n");
         builder.append("batchSize\t" + batchSize + "\n");
@@ -106,6 +145,12 @@ public class Configure {
         builder.append("retryInterval\t" + retryInterval + "\n");
         builder.append("dirtyDataContinue\t" + dirtyDataContinue + "\n");
         builder.append("dirtyDataFile\t" + dirtyDataFile + "\n");
+        builder.append("dirtyDataQueueSize\t" + dirtyDataQueueSize + "\n");
+        builder.append("dirtyDataBatchSize\t" + dirtyDataBatchSize + "\n");
+        builder.append("dirtyDataFileMaxSize\t" + dirtyDataFileMaxSize + "\n");
+        builder.append("dirtyDataFileRollInterval\t" + dirtyDataFileRollInterval + "\n");
+        builder.append("dirtyDataFileRetain\t" + dirtyDataFileRetain + "\n");
+        builder.append("dirtyDataFileCompress\t" + dirtyDataFileCompress + "\n");
         builder.append("serializer\t" + serializerType + "\n");
         return builder.toString();
     }
@@ -269,6 +314,30 @@ public class Configure {
         this.shardIds = shardIds;
     }
 
+    public String getShardMode() {
+        return shardMode;
+    }
+
+    public void setShardMode(String shardMode) {
+        this.shardMode = shardMode;
+    }
+
+    public String[] getShardKeyColumns() {
+        return shardKeyColumns;
+    }
+
+    public void setShardKeyColumns(String[] shardKeyColumns) {
+        this.shardKeyColumns = shardKeyColumns;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
     public String getShardIdsString() {
         if (shardIds == null || shardIds.isEmpty()) {
             return null;
@@ -331,6 +400,54 @@ public class Configure {
         this.dirtyDataFile = dirtyDataFile;
     }
 
+    public int getDirtyDataQueueSize() {
+        return dirtyDataQueueSize;
+    }
+
+    public void setDirtyDataQueueSize(int dirtyDataQueueSize) {
+        this.dirtyDataQueueSize = dirtyDataQueueSize;
+    }
+
+    public int getDirtyDataBatchSize() {
+        return dirtyDataBatchSize;
+    }
+
+    public void setDirtyDataBatchSize(int dirtyDataBatchSize) {
+        this.dirtyDataBatchSize = dirtyDataBatchSize;
+    }
+
+    public int getDirtyDataFileMaxSize() {
+        return dirtyDataFileMaxSize;
+    }
+
+    public void setDirtyDataFileMaxSize(int dirtyDataFileMaxSize) {
+        this.dirtyDataFileMaxSize = dirtyDataFileMaxSize;
+    }
+
+    public int getDirtyDataFileRollInterval() {
+        return dirtyDataFileRollInterval;
+    }
+
+    public void setDirtyDataFileRollInterval(int dirtyDataFileRollInterval) {
+        this.dirtyDataFileRollInterval = dirtyDataFileRollInterval;
+    }
+
+    public int getDirtyDataFileRetain() {
+        return dirtyDataFileRetain;
+    }
+
+    public void setDirtyDataFileRetain(int dirtyDataFileRetain) {
+        this.dirtyDataFileRetain = dirtyDataFileRetain;
+    }
+
+    public boolean isDirtyDataFileCompress() {
+        return dirtyDataFileCompress;
+    }
+
+    public void setDirtyDataFileCompress(boolean dirtyDataFileCompress) {
+        this.dirtyDataFileCompress = dirtyDataFileCompress;
+    }
+
     public boolean isAutoCommit() {
         return autoCommit;
     }
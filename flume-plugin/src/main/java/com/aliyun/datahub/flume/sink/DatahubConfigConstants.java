@@ -49,6 +49,18 @@ public class DatahubConfigConstants {
      * Datahub shard ids, optional
      */
     public static final String DATAHUB_SHARD_IDS = "datahub.shard.ids";
+    /**
+     * How records of one batch are spread over shards: single, roundRobin or partitionKey
+     */
+    public static final String DATAHUB_SHARD_MODE = "datahub.shardMode";
+    /**
+     * Comma separated input columns hashed to pick the shard in partitionKey mode
+     */
+    public static final String DATAHUB_SHARD_KEY_COLUMNS = "datahub.shardKeyColumns";
+    /**
+     * Threads putting the per shard sub-batches concurrently
+     */
+    public static final String DATAHUB_WRITER_THREADS = "datahub.writerThreads";
 
     public static final String DATAHUB_SUB_ID = "datahub.subId";
     public static final String DATAHUB_START_TIME = "datahub.startTime";
@@ -67,6 +79,12 @@ public class DatahubConfigConstants {
 
     public static final String Dirty_DATA_CONTINUE = "datahub.dirtyDataContinue";
     public static final String Dirty_DATA_FILE = "datahub.dirtyDataFile";
+    public static final String Dirty_DATA_QUEUE_SIZE = "datahub.dirtyDataQueueSize";
+    public static final String Dirty_DATA_BATCH_SIZE = "datahub.dirtyDataBatchSize";
+    public static final String Dirty_DATA_FILE_MAX_SIZE = "datahub.dirtyDataFileMaxSize";
+    public static final String Dirty_DATA_FILE_ROLL_INTERVAL = "datahub.dirtyDataFileRollInterval";
+    public static final String Dirty_DATA_FILE_RETAIN = "datahub.dirtyDataFileRetain";
+    public static final String Dirty_DATA_FILE_COMPRESS = "datahub.dirtyDataFileCompress";
 
     public static final String AUTO_COMMIT = "datahub.autoCommit";
     public static final String OFFSET_COMMIT_INTERVAL = "datahub.offsetCommitInterval";
@@ -90,6 +90,17 @@ public class DatahubSink extends AbstractSink implements Configurable {
             configure.setShardIds(ids);
         }
 
+        String shardMode = context.getString(DatahubConfigConstants.DATAHUB_SHARD_MODE, Configure.DEFAULT_SHARD_MODE);
+        configure.setShardMode(shardMode);
+
+        String shardKeyColumns = context.getString(DatahubConfigConstants.DATAHUB_SHARD_KEY_COLUMNS);
+        if (shardKeyColumns != null) {
+            configure.setShardKeyColumns(shardKeyColumns.split(","));
+        }
+
+        int writerThreads = context.getInteger(DatahubConfigConstants.DATAHUB_WRITER_THREADS, Configure.DEFAULT_WRITER_THREADS);
+        configure.setWriterThreads(writerThreads);
+
         String compressType = context.getString(DatahubConfigConstants.DATAHUB_COMPRESS_TYPE);
         configure.setCompressType(compressType);
 
@@ -117,6 +128,24 @@ public class DatahubSink extends AbstractSink implements Configurable {
         String dirtyDataFile = context.getString(DatahubConfigConstants.Dirty_DATA_FILE, Configure.DEFAULT_DIRTY_DATA_FILE);
         configure.setDirtyDataFile(dirtyDataFile);
 
+        int dirtyDataQueueSize = context.getInteger(DatahubConfigConstants.Dirty_DATA_QUEUE_SIZE, Configure.DEFAULT_DIRTY_DATA_QUEUE_SIZE);
+        configure.setDirtyDataQueueSize(dirtyDataQueueSize);
+
+        int dirtyDataBatchSize = context.getInteger(DatahubConfigConstants.Dirty_DATA_BATCH_SIZE, Configure.DEFAULT_DIRTY_DATA_BATCH_SIZE);
+        configure.setDirtyDataBatchSize(dirtyDataBatchSize);
+
+        int dirtyDataFileMaxSize = context.getInteger(DatahubConfigConstants.Dirty_DATA_FILE_MAX_SIZE, Configure.DEFAULT_DIRTY_DATA_FILE_MAX_SIZE);
+        configure.setDirtyDataFileMaxSize(dirtyDataFileMaxSize);
+
+        int dirtyDataFileRollInterval = context.getInteger(DatahubConfigConstants.Dirty_DATA_FILE_ROLL_INTERVAL, Configure.DEFAULT_DIRTY_DATA_FILE_ROLL_INTERVAL);
+        configure.setDirtyDataFileRollInterval(dirtyDataFileRollInterval);
+
+        int dirtyDataFileRetain = context.getInteger(DatahubConfigConstants.Dirty_DATA_FILE_RETAIN, Configure.DEFAULT_DIRTY_DATA_FILE_RETAIN);
+        configure.setDirtyDataFileRetain(dirtyDataFileRetain);
+
+        boolean dirtyDataFileCompress = context.getBoolean(DatahubConfigConstants.Dirty_DATA_FILE_COMPRESS, Configure.DEFAULT_DIRTY_DATA_FILE_COMPRESS);
+        configure.setDirtyDataFileCompress(dirtyDataFileCompress);
+
         String nullValue = context.getString(DatahubConfigConstants.NULL_VALUE, Configure.DEFAULT_NULL_VALUE);
         configure.setNullValue(nullValue);
 
@@ -233,7 +262,7 @@ public class DatahubSink extends AbstractSink implements Configurable {
                             buffSize += event.getBody().length;
                             RecordEntry entry = new RecordEntry();
                             entry.setRecordData(data);
-                            entry.setShardId(shardId);
+                            entry.setShardId(datahubWriter.getShardId(data, shardId));
                             recordEntries.add(entry);
                             currentSize++;
                         }
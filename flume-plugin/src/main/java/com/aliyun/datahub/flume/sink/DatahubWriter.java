@@ -25,6 +25,7 @@ import com.aliyun.datahub.client.common.DatahubConfig;
 import com.aliyun.datahub.client.exception.DatahubClientException;
 import com.aliyun.datahub.client.http.HttpConfig;
 import com.aliyun.datahub.client.model.*;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,37 +34,110 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DatahubWriter {
     private static final Logger logger = LoggerFactory.getLogger(DatahubWriter.class);
+    private static final long DIRTY_DATA_CLOSE_TIMEOUT_MS = 10000;
     private DatahubClient datahubClient;
     private GetTopicResult topic;
     private Configure configure;
     private FileWriter writer;
-    private List<String> activeShardIds;
+    // null if dirty data is written synchronously
+    private DirtyDataSink dirtyDataSink;
+    private volatile List<String> activeShardIds;
+    private ShardMode shardMode;
+    // sub-batch threads route failed records again too
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    // null if the sub-batches are put one after another
+    private ExecutorService writerPool;
     private long threadId;
 
 
     public DatahubWriter(Configure configure) throws IOException {
+        this(configure, null);
+    }
+
+    /**
+     * @param datahubClient the client to use, null to build one from the configuration
+     */
+    DatahubWriter(Configure configure, DatahubClient datahubClient) throws IOException {
         this.configure = configure;
+        this.datahubClient = datahubClient;
         init();
     }
 
+    enum ShardMode {
+        SINGLE, ROUND_ROBIN, PARTITION_KEY;
+
+        static ShardMode parse(String name) {
+            if (name == null || "single".equalsIgnoreCase(name)) {
+                return SINGLE;
+            } else if ("roundRobin".equalsIgnoreCase(name)) {
+                return ROUND_ROBIN;
+            } else if ("partitionKey".equalsIgnoreCase(name)) {
+                return PARTITION_KEY;
+            }
+            throw new IllegalArgumentException("Unsupported shardMode " + name);
+        }
+    }
+
     public void close() throws IOException {
-        if (configure.isDirtyDataContinue()) {
+        if (writerPool != null) {
+            writerPool.shutdown();
+        }
+        if (dirtyDataSink != null) {
+            dirtyDataSink.close(DIRTY_DATA_CLOSE_TIMEOUT_MS);
+        } else if (configure.isDirtyDataContinue()) {
             writer.close();
         }
     }
 
     private void init() throws IOException {
+        if (datahubClient == null) {
+            datahubClient = buildClient();
+        }
+
+        topic = datahubClient.getTopic(configure.getProject(), configure.getTopic());
+        checkSchema();
+
+        freshActiveShardList();
+
+        shardMode = ShardMode.parse(configure.getShardMode());
+        if (shardMode == ShardMode.PARTITION_KEY
+                && (configure.getShardKeyColumns() == null || configure.getShardKeyColumns().length == 0)) {
+            throw new IllegalArgumentException("shardKeyColumns is required in partitionKey shardMode.");
+        }
+        if (configure.getWriterThreads() > 1) {
+            writerPool = Executors.newFixedThreadPool(configure.getWriterThreads(), new ThreadFactoryBuilder()
+                    .setNameFormat("DatahubWriter-" + configure.getTopic() + "-%d").setDaemon(true).build());
+        }
+
+        if (configure.isDirtyDataContinue()) {
+            if (configure.getDirtyDataQueueSize() > 0) {
+                dirtyDataSink = new DirtyDataSink(configure);
+            } else {
+                writer = new FileWriter(configure.getDirtyDataFile(), true);
+            }
+        }
+    }
+
+    private DatahubClient buildClient() {
         HttpConfig config = new HttpConfig();
         if (configure.getCompressType() != null) {
             config.setCompressType(HttpConfig.CompressType.valueOf(configure.getCompressType()));
         }
-        datahubClient = DatahubClientBuilder.newBuilder()
+        return DatahubClientBuilder.newBuilder()
                 .setHttpConfig(config)
                 .setUserAgent("datahub-flume-plugin-2.0.0")
                 .setDatahubConfig(
@@ -73,15 +147,6 @@ public class DatahubWriter {
                                         configure.getAccessKey()),
                                 configure.isEnablePb()))
                 .build();
-
-        topic = datahubClient.getTopic(configure.getProject(), configure.getTopic());
-        checkSchema();
-
-        freshActiveShardList();
-
-        if (configure.isDirtyDataContinue()) {
-            writer = new FileWriter(configure.getDirtyDataFile(), true);
-        }
     }
 
     public void checkSchema() {
@@ -92,11 +157,92 @@ public class DatahubWriter {
                 throw new IllegalArgumentException("The field " + columnName + " is not exist in datahub schema.");
             }
         }
+        String[] keyColumns = configure.getShardKeyColumns();
+        if (keyColumns != null) {
+            List<String> inputColumns = Arrays.asList(columns);
+            for (String columnName : keyColumns) {
+                if (!inputColumns.contains(columnName)) {
+                    throw new IllegalArgumentException("The shard key column " + columnName + " is not an input column.");
+                }
+            }
+        }
     }
 
+    /**
+     * Puts one batch, the records of each shard as one sub-batch. With writerThreads > 1 the
+     * sub-batches are put concurrently and the call returns once all of them are acknowledged.
+     *
+     * @throws RuntimeException if any sub-batch failed, after all of them finished
+     */
     public int writeRecords(List<RecordEntry> recordEntries) throws IOException {
         threadId = Thread.currentThread().getId();
-        return putRecordWithRetry(recordEntries);
+        if (writerPool == null) {
+            return putRecordWithRetry(recordEntries);
+        }
+
+        Map<String, List<RecordEntry>> shardBatches = new LinkedHashMap<String, List<RecordEntry>>();
+        for (RecordEntry entry : recordEntries) {
+            List<RecordEntry> shardBatch = shardBatches.get(entry.getShardId());
+            if (shardBatch == null) {
+                shardBatch = new ArrayList<RecordEntry>();
+                shardBatches.put(entry.getShardId(), shardBatch);
+            }
+            shardBatch.add(entry);
+        }
+        if (shardBatches.size() == 1) {
+            return putRecordWithRetry(recordEntries);
+        }
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(shardBatches.size());
+        for (final List<RecordEntry> shardBatch : shardBatches.values()) {
+            futures.add(writerPool.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return putRecordWithRetry(shardBatch);
+                }
+            }));
+        }
+
+        int putSucNum = 0;
+        Throwable failure = null;
+        for (Future<Integer> future : futures) {
+            try {
+                putSucNum += future.get();
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            logger.error("[Thread {}] Put {} records to {} shards failed.", threadId, recordEntries.size(),
+                    shardBatches.size());
+            throw new RuntimeException("put record failed. " + failure.getMessage(), failure);
+        }
+        return putSucNum;
+    }
+
+    /**
+     * Picks the shard of a record by shardMode. Records with the same values in the shard key
+     * columns go to the same shard as long as the active shards don't change.
+     *
+     * @param batchShardId the shard picked for the whole batch, used in single shardMode
+     */
+    public String getShardId(TupleRecordData data, String batchShardId) {
+        List<String> shardIds = activeShardIds;
+        switch (shardMode) {
+            case ROUND_ROBIN:
+                return shardIds.get((roundRobin.incrementAndGet() & Integer.MAX_VALUE) % shardIds.size());
+            case PARTITION_KEY:
+                StringBuilder key = new StringBuilder();
+                for (String column : configure.getShardKeyColumns()) {
+                    key.append(data.getField(column)).append('\u0001');
+                }
+                return shardIds.get((key.toString().hashCode() & Integer.MAX_VALUE) % shardIds.size());
+            default:
+                return batchShardId;
+        }
     }
 
     public TupleRecordData buildRecord(Map<String, String> rowMap) throws IOException {
@@ -146,27 +292,26 @@ public class DatahubWriter {
             return;
         }
 
-        if (activeShardIds == null) {
-            activeShardIds = new ArrayList<String>();
-        }
-
-        activeShardIds.clear();
+        // swapped as a whole, sub-batch threads may refresh it concurrently
+        List<String> activeIds = new ArrayList<String>();
         ListShardResult result = datahubClient
                 .listShard(configure.getProject(), configure.getTopic());
         for (ShardEntry shardEntry : result.getShards()) {
             if (shardEntry.getState() == ShardState.ACTIVE) {
-                activeShardIds.add(shardEntry.getShardId());
+                activeIds.add(shardEntry.getShardId());
             }
         }
 
-        if (activeShardIds.isEmpty()) {
+        if (activeIds.isEmpty()) {
             throw new IllegalArgumentException("The specific topic " + configure.getTopic() + " has no active shard.");
         }
+        activeShardIds = activeIds;
     }
 
     public String getActiveShardId() {
-        int index = new Random().nextInt(activeShardIds.size());
-        return activeShardIds.get(index);
+        List<String> shardIds = activeShardIds;
+        int index = new Random().nextInt(shardIds.size());
+        return shardIds.get(index);
     }
 
     private int putRecordWithRetry(List<RecordEntry> recordEntries) throws IOException {
@@ -209,7 +354,7 @@ public class DatahubWriter {
                     List<RecordEntry> failedRecords = result.getFailedRecords();
 
                     boolean needFresh = true;
-                    String shardId = "";
+                    String batchShardId = "";
                     for (int i = 0; i < failedRecords.size(); ++i) {
                         RecordEntry entry = failedRecords.get(i);
                         PutErrorEntry errorEntry = result.getPutErrorEntries().get(i);
@@ -219,14 +364,14 @@ public class DatahubWriter {
                             continue;
                         }
 
-                        // reset shardId if need
+                        // the shard was split or merged, route the record again by shardMode
                         if (errorEntry.getErrorcode().equals("InvalidShardOperation")) {
                             if (needFresh) {
                                 freshActiveShardList();
-                                shardId = getActiveShardId();
+                                batchShardId = getActiveShardId();
                                 needFresh = false;
                             }
-                            entry.setShardId(shardId);
+                            entry.setShardId(getShardId((TupleRecordData) entry.getRecordData(), batchShardId));
                         }
                         recordEntries.add(entry);
                     }
@@ -256,8 +401,7 @@ public class DatahubWriter {
         logger.warn("[Thread {} ] Dirty data found, will write to dirtyDataFile {}",
                 threadId, configure.getDirtyDataFile());
 
-        writer.write(rawBody + "\n");
-        writer.flush();
+        writeDirtyData(rawBody);
     }
 
     private void handleDirtyData(Map<String, String> rowMap) throws IOException {
@@ -277,9 +421,7 @@ public class DatahubWriter {
                 builder.append(",");
             }
         }
-        builder.append("\n");
-        writer.write(builder.toString());
-        writer.flush();
+        writeDirtyData(builder.toString());
     }
 
     private void handleDirtyData(RecordEntry entry) throws IOException {
@@ -301,8 +443,18 @@ public class DatahubWriter {
                 builder.append(",");
             }
         }
-        builder.append("\n");
-        writer.write(builder.toString());
+        writeDirtyData(builder.toString());
+    }
+
+    // a line dropped from the full queue fails the batch, so its transaction is rolled back
+    private void writeDirtyData(String line) throws IOException {
+        if (dirtyDataSink != null) {
+            if (!dirtyDataSink.append(line)) {
+                throw new IOException("Dirty data queue full, dirty data file " + configure.getDirtyDataFile());
+            }
+            return;
+        }
+        writer.write(line + "\n");
         writer.flush();
     }
 }
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.datahub.flume.sink;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends dirty data to a local file without blocking the sink. Lines go into a bounded queue
+ * and one writer thread appends them in batches, flushing once per batch. A line that does not
+ * fit into the queue is dropped and counted. The file is rolled to dirtyDataFile.yyyyMMddHHmmssSSS
+ * on size or age, rolled files are optionally gzipped and only the newest ones are kept.
+ */
+public class DirtyDataSink {
+    private static final Logger logger = LoggerFactory.getLogger(DirtyDataSink.class);
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final File file;
+    private final long maxFileSize;
+    private final long rollIntervalMs;
+    private final int retainFiles;
+    private final boolean compress;
+    private final int batchSize;
+
+    private final BlockingQueue<String> queue;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writeThread;
+    private volatile boolean stop = false;
+
+    // writer thread only
+    private BufferedWriter writer;
+    private long fileSize;
+    private long openTime;
+    private long lastRollTime;
+
+    public DirtyDataSink(Configure configure) {
+        if (configure.getDirtyDataQueueSize() <= 0 || configure.getDirtyDataBatchSize() <= 0) {
+            throw new IllegalArgumentException("dirtyDataQueueSize and dirtyDataBatchSize must be positive");
+        }
+        this.file = new File(configure.getDirtyDataFile()).getAbsoluteFile();
+        this.queue = new ArrayBlockingQueue<String>(configure.getDirtyDataQueueSize());
+        this.batchSize = configure.getDirtyDataBatchSize();
+        this.maxFileSize = configure.getDirtyDataFileMaxSize() * 1024L * 1024L;
+        this.rollIntervalMs = configure.getDirtyDataFileRollInterval() * 1000L;
+        this.retainFiles = configure.getDirtyDataFileRetain();
+        this.compress = configure.isDirtyDataFileCompress();
+        this.writeThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWrite();
+            }
+        }, "DirtyDataSink-" + file.getName());
+        this.writeThread.setDaemon(true);
+        this.writeThread.start();
+    }
+
+    /**
+     * @return false if the line was dropped because the queue is full
+     */
+    public boolean append(String line) {
+        if (!stop && queue.offer(line)) {
+            return true;
+        }
+        long droppedNum = dropped.incrementAndGet();
+        if (droppedNum % 1000 == 1) {
+            logger.warn("Dirty data queue full, {} records dropped so far", droppedNum);
+        }
+        return false;
+    }
+
+    /**
+     * Writes the queued lines and closes the file, waits at most timeoutMs.
+     */
+    public void close(long timeoutMs) {
+        stop = true;
+        try {
+            writeThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeThread.isAlive()) {
+            logger.warn("Dirty data sink not stopped in {} ms, {} records left", timeoutMs, queue.size());
+        }
+        logger.info("Dirty data sink closed, written: {}, dropped: {}", written.get(), dropped.get());
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return records dropped because the queue was full or the write failed
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void runWrite() {
+        List<String> batch = new ArrayList<String>(batchSize);
+        while (!stop || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                } else if (writer != null && isExpired(System.currentTimeMillis())) {
+                    // an idle file still rolls on time
+                    roll();
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Dirty data sink interrupted", e);
+                break;
+            }
+        }
+        closeWriter();
+    }
+
+    private void writeBatch(List<String> batch) {
+        try {
+            if (writer != null && shouldRoll(System.currentTimeMillis())) {
+                roll();
+            }
+            if (writer == null) {
+                openWriter();
+            }
+            for (String line : batch) {
+                writer.write(line);
+                writer.write('\n');
+                fileSize += line.length() + 1;
+            }
+            writer.flush();
+            written.addAndGet(batch.size());
+        } catch (IOException e) {
+            logger.error("Write {} dirty records to {} failed", batch.size(), file, e);
+            dropped.addAndGet(batch.size());
+            closeWriter();
+        }
+    }
+
+    private boolean shouldRoll(long now) {
+        return (maxFileSize > 0 && fileSize > maxFileSize) || isExpired(now);
+    }
+
+    private boolean isExpired(long now) {
+        return rollIntervalMs > 0 && now - openTime >= rollIntervalMs;
+    }
+
+    private void openWriter() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+        fileSize = file.length();
+        // an existing file keeps its age across restarts
+        openTime = fileSize > 0 ? Math.min(file.lastModified(), System.currentTimeMillis()) : System.currentTimeMillis();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Close dirty data file {} failed", file, e);
+            }
+            writer = null;
+        }
+    }
+
+    private void roll() {
+        closeWriter();
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        // names must keep growing, even for rolls within one millisecond
+        long rollTime = Math.max(System.currentTimeMillis(), lastRollTime + 1);
+        File rolled = rolledFile(rollTime);
+        while (rolled.exists() || new File(rolled.getPath() + GZIP_SUFFIX).exists()) {
+            rolled = rolledFile(++rollTime);
+        }
+        lastRollTime = rollTime;
+        if (!file.renameTo(rolled)) {
+            logger.error("Roll dirty data file {} to {} failed", file, rolled);
+            return;
+        }
+        logger.info("Dirty data file rolled to {}", rolled);
+        if (compress) {
+            gzip(rolled);
+        }
+        purge();
+    }
+
+    private File rolledFile(long rollTime) {
+        return new File(file.getPath() + "." + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(rollTime)));
+    }
+
+    private void gzip(File rolled) {
+        File gz = new File(rolled.getPath() + GZIP_SUFFIX);
+        InputStream in = null;
+        OutputStream out = null;
+        try {
+            in = new FileInputStream(rolled);
+            out = new GZIPOutputStream(new FileOutputStream(gz));
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            out.close();
+            out = null;
+        } catch (IOException e) {
+            logger.error("Compress dirty data file {} failed, keep it uncompressed", rolled, e);
+            closeQuietly(out);
+            gz.delete();
+            return;
+        } finally {
+            closeQuietly(in);
+        }
+        rolled.delete();
+    }
+
+    // rolled names end with a timestamp, so the name order is the roll order
+    private void purge() {
+        final String prefix = file.getName() + ".";
+        File[] rolled = file.getParentFile().listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix) && name.length() > prefix.length()
+                        && Character.isDigit(name.charAt(prefix.length()));
+            }
+        });
+        if (rolled == null) {
+            return;
+        }
+        Arrays.sort(rolled);
+        for (int i = 0; i < rolled.length - retainFiles; i++) {
+            if (rolled[i].delete()) {
+                logger.info("Dirty data file {} deleted", rolled[i]);
+            }
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
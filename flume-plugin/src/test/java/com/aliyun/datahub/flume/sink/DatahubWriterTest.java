@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.datahub.flume.sink;
+
+import com.aliyun.datahub.client.DatahubClient;
+import com.aliyun.datahub.client.model.Field;
+import com.aliyun.datahub.client.model.FieldType;
+import com.aliyun.datahub.client.model.GetTopicResult;
+import com.aliyun.datahub.client.model.ListShardResult;
+import com.aliyun.datahub.client.model.PutErrorEntry;
+import com.aliyun.datahub.client.model.PutRecordsResult;
+import com.aliyun.datahub.client.model.RecordEntry;
+import com.aliyun.datahub.client.model.RecordSchema;
+import com.aliyun.datahub.client.model.ShardEntry;
+import com.aliyun.datahub.client.model.ShardState;
+import com.aliyun.datahub.client.model.TupleRecordData;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class DatahubWriterTest {
+
+    private RecordSchema schema;
+    private Configure configure;
+    // the fake client's state, guarded by the test instance
+    private List<String> shards;
+    private List<List<RecordEntry>> puts;
+    private String failingShard;
+    private String failingError;
+    private long slowPutMs;
+    private volatile boolean slowPutDone;
+
+    @Before
+    public void setUp() {
+        schema = new RecordSchema();
+        schema.addField(new Field("id", FieldType.BIGINT));
+        schema.addField(new Field("name", FieldType.STRING));
+
+        configure = new Configure();
+        configure.setProject("project");
+        configure.setTopic("topic");
+        configure.setInputColumnNames(new String[]{"id", "name"});
+        configure.setShardKeyColumns(new String[]{"id"});
+        configure.setWriterThreads(1);
+        configure.setRetryTimes(0);
+        configure.setRetryInterval(0);
+
+        shards = new ArrayList<String>(Arrays.asList("0", "1", "2"));
+        puts = new ArrayList<List<RecordEntry>>();
+    }
+
+    @Test
+    public void testParseShardMode() {
+        assertEquals(DatahubWriter.ShardMode.SINGLE, DatahubWriter.ShardMode.parse(null));
+        assertEquals(DatahubWriter.ShardMode.SINGLE, DatahubWriter.ShardMode.parse("single"));
+        assertEquals(DatahubWriter.ShardMode.ROUND_ROBIN, DatahubWriter.ShardMode.parse("ROUNDROBIN"));
+        assertEquals(DatahubWriter.ShardMode.PARTITION_KEY, DatahubWriter.ShardMode.parse("partitionKey"));
+        try {
+            DatahubWriter.ShardMode.parse("hash");
+            fail("unknown shardMode was accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testSingleShard() throws Exception {
+        DatahubWriter writer = newWriter("single");
+        assertEquals("7", writer.getShardId(record(1), "7"));
+        assertEquals("7", writer.getShardId(record(2), "7"));
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        DatahubWriter writer = newWriter("roundRobin");
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < 30; i++) {
+            String shardId = writer.getShardId(record(i), "0");
+            Integer count = counts.get(shardId);
+            counts.put(shardId, count == null ? 1 : count + 1);
+        }
+        assertEquals(3, counts.size());
+        for (Integer count : counts.values()) {
+            assertEquals(10, count.intValue());
+        }
+    }
+
+    @Test
+    public void testPartitionKey() throws Exception {
+        DatahubWriter writer = newWriter("partitionKey");
+        Set<String> used = new HashSet<String>();
+        for (int i = 0; i < 30; i++) {
+            String shardId = writer.getShardId(record(i), "0");
+            assertEquals(shardId, writer.getShardId(record(i), "1"));
+            used.add(shardId);
+        }
+        assertTrue(used.size() > 1);
+    }
+
+    @Test
+    public void testSubBatchPerShard() throws Exception {
+        configure.setWriterThreads(3);
+        DatahubWriter writer = newWriter("roundRobin");
+        List<RecordEntry> records = new ArrayList<RecordEntry>();
+        for (int i = 0; i < 9; i++) {
+            records.add(entry(i, writer.getShardId(record(i), "0")));
+        }
+
+        assertEquals(9, writer.writeRecords(records));
+        assertEquals(3, puts.size());
+        Set<String> putShards = new HashSet<String>();
+        for (List<RecordEntry> put : puts) {
+            assertEquals(3, put.size());
+            for (RecordEntry entry : put) {
+                assertEquals(put.get(0).getShardId(), entry.getShardId());
+            }
+            putShards.add(put.get(0).getShardId());
+        }
+        assertEquals(3, putShards.size());
+        writer.close();
+    }
+
+    @Test
+    public void testFailAfterAllSubBatches() throws Exception {
+        configure.setWriterThreads(2);
+        DatahubWriter writer = newWriter("roundRobin");
+        failingShard = "0";
+        failingError = "LimitExceeded";
+        slowPutMs = 300;
+        List<RecordEntry> records = Arrays.asList(entry(1, "0"), entry(2, "1"));
+
+        try {
+            writer.writeRecords(new ArrayList<RecordEntry>(records));
+            fail("a failed sub-batch was not reported");
+        } catch (RuntimeException e) {
+            // the slow sub-batch of shard 1 finished before the failure was thrown
+            assertTrue(slowPutDone);
+        }
+        writer.close();
+    }
+
+    @Test
+    public void testRouteAgainAfterSplit() throws Exception {
+        configure.setRetryTimes(1);
+        DatahubWriter writer = newWriter("partitionKey");
+        List<RecordEntry> records = new ArrayList<RecordEntry>();
+        for (int i = 0; i < 20; i++) {
+            records.add(entry(i, writer.getShardId(record(i), "0")));
+        }
+        // shard 0 is split into 3 and 4
+        failingShard = "0";
+        failingError = "InvalidShardOperation";
+        shards = new ArrayList<String>(Arrays.asList("1", "2", "3", "4"));
+
+        assertEquals(20, writer.writeRecords(records));
+        List<RecordEntry> retried = puts.get(puts.size() - 1);
+        assertFalse(retried.isEmpty());
+        Set<String> retriedShards = new HashSet<String>();
+        for (RecordEntry entry : retried) {
+            TupleRecordData data = (TupleRecordData) entry.getRecordData();
+            // routed by key over the new shards, not pinned to one random shard
+            assertEquals(writer.getShardId(data, "x"), entry.getShardId());
+            assertFalse("0".equals(entry.getShardId()));
+            retriedShards.add(entry.getShardId());
+        }
+        assertTrue(retriedShards.size() > 1);
+    }
+
+    private DatahubWriter newWriter(String shardMode) throws Exception {
+        configure.setShardMode(shardMode);
+        return new DatahubWriter(configure, fakeClient());
+    }
+
+    private TupleRecordData record(long id) {
+        TupleRecordData data = new TupleRecordData(schema);
+        data.setField("id", id);
+        data.setField("name", "name" + id);
+        return data;
+    }
+
+    private RecordEntry entry(long id, String shardId) {
+        RecordEntry entry = new RecordEntry();
+        entry.setRecordData(record(id));
+        entry.setShardId(shardId);
+        return entry;
+    }
+
+    private DatahubClient fakeClient() {
+        return (DatahubClient) Proxy.newProxyInstance(DatahubClient.class.getClassLoader(),
+                new Class<?>[]{DatahubClient.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getTopic".equals(method.getName())) {
+                            GetTopicResult topic = new GetTopicResult();
+                            topic.setRecordSchema(schema);
+                            return topic;
+                        } else if ("listShard".equals(method.getName())) {
+                            return listShard();
+                        } else if ("putRecords".equals(method.getName())) {
+                            @SuppressWarnings("unchecked")
+                            List<RecordEntry> records = (List<RecordEntry>) args[2];
+                            return putRecords(records);
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private synchronized ListShardResult listShard() {
+        List<ShardEntry> entries = new ArrayList<ShardEntry>();
+        for (String shardId : shards) {
+            ShardEntry entry = new ShardEntry();
+            entry.setShardId(shardId);
+            entry.setState(ShardState.ACTIVE);
+            entries.add(entry);
+        }
+        ListShardResult result = new ListShardResult();
+        result.setShards(entries);
+        return result;
+    }
+
+    private PutRecordsResult putRecords(List<RecordEntry> records) throws InterruptedException {
+        synchronized (this) {
+            puts.add(new ArrayList<RecordEntry>(records));
+        }
+        List<RecordEntry> failed = new ArrayList<RecordEntry>();
+        List<PutErrorEntry> errors = new ArrayList<PutErrorEntry>();
+        for (RecordEntry entry : records) {
+            if (entry.getShardId().equals(failingShard)) {
+                PutErrorEntry error = new PutErrorEntry();
+                error.setErrorcode(failingError);
+                error.setMessage(failingError);
+                failed.add(entry);
+                errors.add(error);
+            }
+        }
+        if (failed.isEmpty() && slowPutMs > 0) {
+            Thread.sleep(slowPutMs);
+            slowPutDone = true;
+        }
+        PutRecordsResult result = new PutRecordsResult();
+        result.setFailedRecordCount(failed.size());
+        result.setFailedRecords(failed);
+        result.setPutErrorEntries(errors);
+        return result;
+    }
+}
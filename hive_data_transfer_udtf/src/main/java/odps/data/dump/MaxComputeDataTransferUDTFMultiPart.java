@@ -3,18 +3,13 @@ package odps.data.dump;
 import com.aliyun.odps.Odps;
 import com.aliyun.odps.OdpsException;
 import com.aliyun.odps.OdpsType;
-import com.aliyun.odps.PartitionSpec;
 import com.aliyun.odps.Table;
 import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.account.Account;
 import com.aliyun.odps.account.AliyunAccount;
 import com.aliyun.odps.data.ArrayRecord;
-import com.aliyun.odps.data.RecordWriter;
 import com.aliyun.odps.tunnel.TableTunnel;
-import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
 import com.aliyun.odps.tunnel.TunnelException;
-import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
-import com.aliyun.odps.utils.StringUtils;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -48,9 +43,9 @@ public class MaxComputeDataTransferUDTFMultiPart extends GenericUDTF{
     private transient ObjectInspector[] argumentOIs;
     private Odps odps;
     TableTunnel tunnel;
-    UploadSession uploadSession;
     TableSchema tableSchema;
-    RecordWriter writer = null;
+    PartitionUploadPool uploadPool;
+    PartitionUploadPool.PartitionUpload upload;
 
     OdpsConfig odpsConfig = new OdpsConfig();
 
@@ -92,7 +87,7 @@ public class MaxComputeDataTransferUDTFMultiPart extends GenericUDTF{
         StringObjectInspector soi0 = (StringObjectInspector)argumentOIs[0];
         StringObjectInspector soi1 = (StringObjectInspector)argumentOIs[1];
         StringObjectInspector soi2 = (StringObjectInspector)argumentOIs[2];
-        String tmpTableName = soi0.getPrimitiveJavaObject(table);
+        String tmpTableName = soi0.getPrimitiveJavaObject(table).trim();
         String columnStr = soi2.getPrimitiveJavaObject(column);
         String tmpPartitionName = soi1.getPrimitiveJavaObject(partition);
 
@@ -132,45 +127,30 @@ public class MaxComputeDataTransferUDTFMultiPart extends GenericUDTF{
 
         if ((!tableName.equals(tmpTableName)) || (!partitionSpec.equals(tmpPartitionSpec))) {
             System.out.println("switch partition: " + partitionSpec + " to : " + tmpPartitionSpec);
-            tableName = tmpTableName.trim();
             partitionSpec = tmpPartitionSpec;
-            if (uploadSession != null) {
-                try {
-                    writer.close();
-                    writer = null;
-                    uploadSession.commit();
-                    uploadSession = null;
-                } catch (TunnelException e) {
-                    throw new HiveException("commit failed", e);
-                } catch (IOException e) {
-                    throw new HiveException("commit failed", e);
-                }
-            }
-
             try {
-                Table t = odps.tables().get(tableName);
-                tableSchema = t.getSchema();
-                if (StringUtils.isEmpty(partitionSpec)) {
-                    uploadSession = tunnel.createUploadSession(odpsConfig.getProjectName(), tableName);
-                } else {
-                    uploadSession = tunnel.createUploadSession(odpsConfig.getProjectName(), tableName, new PartitionSpec(
-                        partitionSpec));
-                }
-
-                try {
-                    if (writer == null) {
-                        writer = uploadSession.openBufferedWriter(true); // compress transfer
-                        ((TunnelBufferedWriter)writer).setBufferSize(256 * 1024 * 1024);
+                if (!tableName.equals(tmpTableName)) {
+                    tableName = tmpTableName;
+                    if (uploadPool != null) {
+                        uploadPool.close();
                     }
-                } catch (TunnelException e) {
-                    throw new HiveException("create buffered writer failed", e);
+                    Table t = odps.tables().get(tableName);
+                    tableSchema = t.getSchema();
+                    uploadPool = new PartitionUploadPool(tunnel, odpsConfig.getProjectName(),
+                        tableName, odpsConfig.getMaxOpenPartitions(),
+                        odpsConfig.getPartitionBufferBytes());
                 }
+                upload = uploadPool.get(partitionSpec);
+            } catch (TunnelException e) {
+                throw new HiveException("create upload session failed!", e);
+            } catch (IOException e) {
+                throw new HiveException("commit failed", e);
             } catch (OdpsException e) {
                 throw new HiveException("create upload session failed!", e);
             }
         }
 
-        ArrayRecord product = (ArrayRecord) uploadSession.newRecord();
+        ArrayRecord product = (ArrayRecord) upload.newRecord();
         for (int i = 3; i < args.length-partitionNames.length; ++i) {
             Object colValue = args[i];
             if (colValue == null) {
@@ -200,17 +180,16 @@ public class MaxComputeDataTransferUDTFMultiPart extends GenericUDTF{
             }
         }
         try {
-            writer.write(product);
+            upload.write(product);
         } catch (IOException e) {
             throw new HiveException("write record failed", e);
         }
     }
 
     @Override public void close() {
-        if (uploadSession != null) {
+        if (uploadPool != null) {
             try {
-                writer.close();
-                uploadSession.commit();
+                uploadPool.close();
             } catch (Exception e) {
                 throw new RuntimeException("close failed", e);
             }
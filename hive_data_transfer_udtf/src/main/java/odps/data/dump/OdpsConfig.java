@@ -13,6 +13,8 @@ public class OdpsConfig {
     private String odpsEndPoint;
     private String tunnelEndPoint;
     private String projectName;
+    private int maxOpenPartitions = DEFAULT_MAX_OPEN_PARTITIONS;
+    private long partitionBufferBytes = DEFAULT_PARTITION_BUFFER_BYTES;
 
     public static final String SEP = "#";
     public static final String ACCESS_ID = "access_id";
@@ -20,6 +22,11 @@ public class OdpsConfig {
     public static final String ODPS_ENDPOINT = "odps_endpoint";
     public static final String TUNNEL_ENDPOINT = "tunnel_endpoint";
     public static final String PROJECT_NAME = "project_name";
+    public static final String MAX_OPEN_PARTITIONS = "max_open_partitions";
+    public static final String PARTITION_BUFFER_BYTES = "partition_buffer_bytes";
+
+    public static final int DEFAULT_MAX_OPEN_PARTITIONS = 8;
+    public static final long DEFAULT_PARTITION_BUFFER_BYTES = 256 * 1024 * 1024L;
 
     private String getTunnelEndpoint(HashMap<String,String> configMap) {
         String tunnelEndPointList = configMap.get(TUNNEL_ENDPOINT);
@@ -39,6 +46,12 @@ public class OdpsConfig {
         odpsEndPoint = configMap.get(ODPS_ENDPOINT);
         tunnelEndPoint = getTunnelEndpoint(configMap);
         projectName = configMap.get(PROJECT_NAME);
+        if (configMap.containsKey(MAX_OPEN_PARTITIONS)) {
+            maxOpenPartitions = Integer.parseInt(configMap.get(MAX_OPEN_PARTITIONS).trim());
+        }
+        if (configMap.containsKey(PARTITION_BUFFER_BYTES)) {
+            partitionBufferBytes = Long.parseLong(configMap.get(PARTITION_BUFFER_BYTES).trim());
+        }
     }
 
     /**
@@ -49,6 +62,8 @@ public class OdpsConfig {
      * odps_endpoint#xxxxxx
      * project_name#xxxxxxx
      * tunnel_endpoint#xxxxxx
+     * max_open_partitions#8              (optional)
+     * partition_buffer_bytes#268435456   (optional)
      *
      * @param tbl
      * @param fname
@@ -106,4 +121,20 @@ public class OdpsConfig {
     public void setProjectName(String projectName) {
         this.projectName = projectName;
     }
+
+    public int getMaxOpenPartitions() {
+        return maxOpenPartitions;
+    }
+
+    public void setMaxOpenPartitions(int maxOpenPartitions) {
+        this.maxOpenPartitions = maxOpenPartitions;
+    }
+
+    public long getPartitionBufferBytes() {
+        return partitionBufferBytes;
+    }
+
+    public void setPartitionBufferBytes(long partitionBufferBytes) {
+        this.partitionBufferBytes = partitionBufferBytes;
+    }
 }
@@ -0,0 +1,116 @@
+package odps.data.dump;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
+import com.aliyun.odps.utils.StringUtils;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps an upload session and a buffered writer open for each partition of one table, so
+ * unsorted input does not commit a session on every partition switch. When more than
+ * maxOpenPartitions partitions are open the least recently written one is committed, and every
+ * writer buffers at most memoryBudget / maxOpenPartitions bytes.
+ */
+public class PartitionUploadPool {
+    private static final long MAX_WRITER_BUFFER_SIZE = 256 * 1024 * 1024L;
+    private static final long MIN_WRITER_BUFFER_SIZE = 1024 * 1024L;
+
+    private final TableTunnel tunnel;
+    private final String projectName;
+    private final String tableName;
+    private final int maxOpenPartitions;
+    private final long writerBufferSize;
+
+    // access order, the eldest entry is the least recently written partition
+    private final LinkedHashMap<String, PartitionUpload> uploads =
+        new LinkedHashMap<String, PartitionUpload>(16, 0.75f, true);
+
+    public PartitionUploadPool(TableTunnel tunnel, String projectName, String tableName,
+        int maxOpenPartitions, long memoryBudget) {
+        if (maxOpenPartitions <= 0) {
+            throw new IllegalArgumentException("maxOpenPartitions must be positive");
+        }
+        this.tunnel = tunnel;
+        this.projectName = projectName;
+        this.tableName = tableName;
+        this.maxOpenPartitions = maxOpenPartitions;
+        this.writerBufferSize = Math.max(MIN_WRITER_BUFFER_SIZE,
+            Math.min(MAX_WRITER_BUFFER_SIZE, memoryBudget / maxOpenPartitions));
+    }
+
+    /**
+     * Returns the upload of the partition, opening it if necessary. An empty spec stands for
+     * a non-partitioned table.
+     */
+    public PartitionUpload get(String partitionSpec) throws TunnelException, IOException {
+        PartitionUpload upload = uploads.get(partitionSpec);
+        if (upload == null) {
+            if (uploads.size() >= maxOpenPartitions) {
+                Iterator<Map.Entry<String, PartitionUpload>> eldest = uploads.entrySet().iterator();
+                Map.Entry<String, PartitionUpload> entry = eldest.next();
+                eldest.remove();
+                System.out.println("commit least recently used partition: " + entry.getKey());
+                entry.getValue().commit();
+            }
+            upload = open(partitionSpec);
+            uploads.put(partitionSpec, upload);
+        }
+        return upload;
+    }
+
+    /**
+     * Commits every open partition.
+     */
+    public void close() throws TunnelException, IOException {
+        Iterator<PartitionUpload> it = uploads.values().iterator();
+        while (it.hasNext()) {
+            PartitionUpload upload = it.next();
+            it.remove();
+            upload.commit();
+        }
+    }
+
+    private PartitionUpload open(String partitionSpec) throws TunnelException {
+        UploadSession uploadSession;
+        if (StringUtils.isEmpty(partitionSpec)) {
+            uploadSession = tunnel.createUploadSession(projectName, tableName);
+        } else {
+            uploadSession = tunnel.createUploadSession(projectName, tableName,
+                new PartitionSpec(partitionSpec));
+        }
+        TunnelBufferedWriter writer =
+            (TunnelBufferedWriter) uploadSession.openBufferedWriter(true); // compress transfer
+        writer.setBufferSize(writerBufferSize);
+        return new PartitionUpload(uploadSession, writer);
+    }
+
+    public static class PartitionUpload {
+        private final UploadSession uploadSession;
+        private final TunnelBufferedWriter writer;
+
+        PartitionUpload(UploadSession uploadSession, TunnelBufferedWriter writer) {
+            this.uploadSession = uploadSession;
+            this.writer = writer;
+        }
+
+        public Record newRecord() {
+            return uploadSession.newRecord();
+        }
+
+        public void write(Record record) throws IOException {
+            writer.write(record);
+        }
+
+        void commit() throws TunnelException, IOException {
+            writer.close();
+            uploadSession.commit();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package odps.data.dump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
+import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class PartitionUploadPoolTest {
+
+    private static final long MB = 1024 * 1024L;
+
+    private TableTunnel tunnel;
+    // "open", "close" and "commit" of each partition, in call order
+    private List<String> events;
+    private Map<String, TunnelBufferedWriter> writers;
+
+    @Before
+    public void setUp() throws Exception {
+        events = new ArrayList<String>();
+        writers = new HashMap<String, TunnelBufferedWriter>();
+        tunnel = mock(TableTunnel.class);
+        when(tunnel.createUploadSession(eq("project"), eq("table"), any(PartitionSpec.class)))
+                .thenAnswer(new Answer<UploadSession>() {
+                    @Override
+                    public UploadSession answer(InvocationOnMock invocation) throws Throwable {
+                        return newSession(invocation.getArguments()[2].toString());
+                    }
+                });
+        when(tunnel.createUploadSession("project", "table"))
+                .thenAnswer(new Answer<UploadSession>() {
+                    @Override
+                    public UploadSession answer(InvocationOnMock invocation) throws Throwable {
+                        return newSession("");
+                    }
+                });
+    }
+
+    @Test
+    public void testEvictLeastRecentlyWritten() throws Exception {
+        PartitionUploadPool pool = new PartitionUploadPool(tunnel, "project", "table", 2, 64 * MB);
+        PartitionUploadPool.PartitionUpload a = pool.get("p='a'");
+        pool.get("p='b'");
+        // a is written again, so b is the least recently written
+        assertSame(a, pool.get("p='a'"));
+        pool.get("p='c'");
+
+        assertEquals(Arrays.asList("open p='a'", "open p='b'", "close p='b'", "commit p='b'",
+                "open p='c'"), events);
+    }
+
+    @Test
+    public void testCommitOnClose() throws Exception {
+        PartitionUploadPool pool = new PartitionUploadPool(tunnel, "project", "table", 4, 64 * MB);
+        pool.get("p='a'");
+        pool.get("p='b'");
+        pool.get("p='a'");
+        pool.close();
+
+        assertEquals(Arrays.asList("open p='a'", "open p='b'", "close p='b'", "commit p='b'",
+                "close p='a'", "commit p='a'"), events);
+        // nothing is left open to commit twice
+        pool.close();
+        assertEquals(6, events.size());
+    }
+
+    @Test
+    public void testNonPartitionedTable() throws Exception {
+        PartitionUploadPool pool = new PartitionUploadPool(tunnel, "project", "table", 1, 64 * MB);
+        pool.get("");
+        pool.close();
+
+        verify(tunnel).createUploadSession("project", "table");
+        assertEquals(Arrays.asList("open ", "close ", "commit "), events);
+    }
+
+    @Test
+    public void testWriterBufferSize() throws Exception {
+        assertEquals(8 * MB, bufferSize(64 * MB, 8));
+        // clamped to 1 MB .. 256 MB
+        assertEquals(MB, bufferSize(64 * MB, 1000));
+        assertEquals(256 * MB, bufferSize(1024 * MB, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxOpenPartitions() {
+        new PartitionUploadPool(tunnel, "project", "table", 0, 64 * MB);
+    }
+
+    private long bufferSize(long memoryBudget, int maxOpenPartitions) throws Exception {
+        writers.clear();
+        new PartitionUploadPool(tunnel, "project", "table", maxOpenPartitions, memoryBudget)
+                .get("p='size'");
+        ArgumentCaptor<Long> size = ArgumentCaptor.forClass(Long.class);
+        verify(writers.get("p='size'")).setBufferSize(size.capture());
+        return size.getValue();
+    }
+
+    private UploadSession newSession(final String partitionSpec) throws Exception {
+        events.add("open " + partitionSpec);
+        UploadSession session = mock(UploadSession.class);
+        TunnelBufferedWriter writer = mock(TunnelBufferedWriter.class);
+        writers.put(partitionSpec, writer);
+        when(session.openBufferedWriter(true)).thenReturn(writer);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                events.add("close " + partitionSpec);
+                return null;
+            }
+        }).when(writer).close();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                events.add("commit " + partitionSpec);
+                return null;
+            }
+        }).when(session).commit();
+        return session;
+    }
+}
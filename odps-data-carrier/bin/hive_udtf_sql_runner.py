@@ -63,6 +63,10 @@ def main(root: str, udtf_resource_path: str, odps_config_path: str) -> None:
   databases = os.listdir(root)
   temp_func_name = "odps_data_dump_multi"
   class_name = "com.aliyun.odps.datacarrier.transfer.OdpsDataTransferUDTF"
+  # used by the SQL meta processor generates with --vectorized
+  vectorized_temp_func_name = "odps_data_dump_vectorized"
+  vectorized_class_name = (
+      "com.aliyun.odps.datacarrier.transfer.VectorizedOdpsDataTransferUDTF")
 
   for database in databases:
     if database == "report.html":
@@ -87,6 +91,8 @@ def main(root: str, udtf_resource_path: str, odps_config_path: str) -> None:
             "add file %s;" % odps_config_path +
             "create temporary function %s as '%s';" % (
             temp_func_name, class_name) +
+            "create temporary function %s as '%s';" % (
+            vectorized_temp_func_name, vectorized_class_name) +
             hive_multi_partition_sql)
 
         retry = 5
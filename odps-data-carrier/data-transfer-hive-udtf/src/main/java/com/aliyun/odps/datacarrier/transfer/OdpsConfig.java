@@ -32,6 +32,11 @@ public class OdpsConfig {
   private static final String ODPS_ENDPOINT = "end_point";
   private static final String TUNNEL_ENDPOINT = "tunnel_endpoint";
   private static final String PROJECT_NAME = "project_name";
+  private static final String MAX_OPEN_PARTITIONS = "max_open_partitions";
+  private static final String PARTITION_BUFFER_BYTES = "partition_buffer_bytes";
+
+  public static final int DEFAULT_MAX_OPEN_PARTITIONS = 16;
+  public static final long DEFAULT_PARTITION_BUFFER_BYTES = 64 * 1024 * 1024L;
 
   private Properties properties;
 
@@ -59,4 +64,26 @@ public class OdpsConfig {
   public String getProjectName() {
     return this.properties.getProperty(PROJECT_NAME);
   }
+
+  /**
+   * Number of partitions a UDTF instance keeps open at the same time.
+   */
+  public int getMaxOpenPartitions() {
+    String value = this.properties.getProperty(MAX_OPEN_PARTITIONS);
+    if (value == null || value.trim().isEmpty()) {
+      return DEFAULT_MAX_OPEN_PARTITIONS;
+    }
+    return Integer.parseInt(value.trim());
+  }
+
+  /**
+   * Memory shared by the write buffers of all open partitions.
+   */
+  public long getPartitionBufferBytes() {
+    String value = this.properties.getProperty(PARTITION_BUFFER_BYTES);
+    if (value == null || value.trim().isEmpty()) {
+      return DEFAULT_PARTITION_BUFFER_BYTES;
+    }
+    return Long.parseLong(value.trim());
+  }
 }
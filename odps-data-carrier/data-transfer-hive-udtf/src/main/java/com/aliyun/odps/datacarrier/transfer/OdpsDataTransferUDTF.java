@@ -20,13 +20,12 @@
 package com.aliyun.odps.datacarrier.transfer;
 
 import com.aliyun.odps.Odps;
-import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.TableSchema;
 import com.aliyun.odps.account.AliyunAccount;
 import com.aliyun.odps.data.Record;
-import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.datacarrier.transfer.converter.CompiledObjectConverter;
 import com.aliyun.odps.datacarrier.transfer.converter.HiveObjectConverter;
 import com.aliyun.odps.tunnel.TableTunnel;
-import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
 import com.aliyun.odps.tunnel.TunnelException;
 import com.aliyun.odps.type.TypeInfo;
 import java.io.IOException;
@@ -50,13 +49,20 @@ public class OdpsDataTransferUDTF extends GenericUDTF {
   ObjectInspector[] objectInspectors;
   Odps odps;
   TableTunnel tunnel;
-  UploadSession uploadSession;
-  RecordWriter recordWriter;
+  int maxOpenPartitions = OdpsConfig.DEFAULT_MAX_OPEN_PARTITIONS;
+  long partitionBufferBytes = OdpsConfig.DEFAULT_PARTITION_BUFFER_BYTES;
+  PartitionUploadPool uploadPool;
+  PartitionUploadPool.PartitionUpload currentUpload;
   String currentOdpsTableName;
   List<String> odpsColumnNames;
   List<String> odpsPartitionColumnNames;
   String currentOdpsPartitionSpec;
 
+  // Resolved once per table, indexed like odpsColumnNames and odpsPartitionColumnNames
+  int[] odpsColumnIndexes;
+  CompiledObjectConverter[] columnConverters;
+  CompiledObjectConverter[] partitionColumnConverters;
+
   @Override
   public StructObjectInspector initialize(ObjectInspector[] args) throws UDFArgumentException {
     this.objectInspectors = args;
@@ -69,15 +75,7 @@ public class OdpsDataTransferUDTF extends GenericUDTF {
   public void process(Object[] args) throws HiveException {
     try {
       if(this.odps == null) {
-        OdpsConfig odpsConfig = new OdpsConfig("res/console/conf/odps_config.ini");
-        AliyunAccount account = new AliyunAccount(odpsConfig.getAccessId(), odpsConfig.getAccessKey());
-        this.odps = new Odps(account);
-        this.odps.setDefaultProject(odpsConfig.getProjectName());
-        this.odps.setEndpoint(odpsConfig.getOdpsEndpoint());
-        this.tunnel = new TableTunnel(odps);
-        if (odpsConfig.getTunnelEndpoint() != null) {
-          this.tunnel.setEndpoint(odpsConfig.getTunnelEndpoint());
-        }
+        initOdps();
       }
 
       if (currentOdpsTableName == null) {
@@ -99,67 +97,85 @@ public class OdpsDataTransferUDTF extends GenericUDTF {
           odpsPartitionColumnNames.addAll(
               Arrays.asList(trimAll(odpsPartitionColumnNameString.split(","))));
         }
-      }
 
-      List<Object> hiveColumnValues = new ArrayList<>();
-      List<Object> hivePartitionColumnValues = new ArrayList<>();
-      for (int i = 0; i < odpsColumnNames.size(); i++) {
-        hiveColumnValues.add(args[i + 3]);
-      }
-      for (int i = 0; i < odpsPartitionColumnNames.size(); i++) {
-        hivePartitionColumnValues.add(args[i + 3 + odpsColumnNames.size()]);
+        resolveSchema();
+        uploadPool = new PartitionUploadPool(tunnel, odps.getDefaultProject(),
+            currentOdpsTableName, maxOpenPartitions, partitionBufferBytes);
       }
 
       // Get partition spec
-      String partitionSpec = getPartitionSpec(hivePartitionColumnValues);
+      String partitionSpec = getPartitionSpec(args);
 
-      // Create new tunnel upload session & record writer or reuse the current ones
+      // Switch to the upload of this partition, the pool keeps the others open
       if (currentOdpsPartitionSpec == null || !currentOdpsPartitionSpec.equals(partitionSpec)) {
-        resetUploadSession(partitionSpec);
+        currentUpload = uploadPool.get(partitionSpec);
+        currentOdpsPartitionSpec = partitionSpec;
       }
 
-      Record record = uploadSession.newRecord();
+      Record record = currentUpload.newRecord();
       for (int i = 0; i < odpsColumnNames.size(); i++) {
-        String odpsColumnName = odpsColumnNames.get(i);
-        Object value = hiveColumnValues.get(i);
+        Object value = args[i + 3];
         if (value == null) {
           continue;
         }
 
-        // Handle data types
-        ObjectInspector objectInspector = objectInspectors[i + 3];
-        TypeInfo typeInfo = odps.tables()
-            .get(currentOdpsTableName)
-            .getSchema()
-            .getColumn(odpsColumnName)
-            .getTypeInfo();
-
-        record.set(odpsColumnName, HiveObjectConverter.convert(objectInspector, value, typeInfo));
+        record.set(odpsColumnIndexes[i], columnConverters[i].convert(value));
       }
 
-      recordWriter.write(record);
+      currentUpload.write(record);
     } catch (Exception e) {
       e.printStackTrace();
       throw new HiveException(e);
     }
   }
 
-  private String getPartitionSpec(List<Object> hivePartitionColumnValues) {
+  void initOdps() throws IOException {
+    OdpsConfig odpsConfig = new OdpsConfig("res/console/conf/odps_config.ini");
+    AliyunAccount account = new AliyunAccount(odpsConfig.getAccessId(), odpsConfig.getAccessKey());
+    this.odps = new Odps(account);
+    this.odps.setDefaultProject(odpsConfig.getProjectName());
+    this.odps.setEndpoint(odpsConfig.getOdpsEndpoint());
+    this.tunnel = new TableTunnel(odps);
+    if (odpsConfig.getTunnelEndpoint() != null) {
+      this.tunnel.setEndpoint(odpsConfig.getTunnelEndpoint());
+    }
+    this.maxOpenPartitions = odpsConfig.getMaxOpenPartitions();
+    this.partitionBufferBytes = odpsConfig.getPartitionBufferBytes();
+  }
+
+  /**
+   * Looks up the odps column indexes and compiles the hive object converters once, instead of
+   * fetching the table schema for every value.
+   */
+  private void resolveSchema() {
+    TableSchema schema = odps.tables().get(currentOdpsTableName).getSchema();
+
+    odpsColumnIndexes = new int[odpsColumnNames.size()];
+    columnConverters = new CompiledObjectConverter[odpsColumnNames.size()];
+    for (int i = 0; i < odpsColumnNames.size(); i++) {
+      int index = schema.getColumnIndex(odpsColumnNames.get(i));
+      odpsColumnIndexes[i] = index;
+      columnConverters[i] = HiveObjectConverter.compile(
+          objectInspectors[i + 3], schema.getColumn(index).getTypeInfo());
+    }
+
+    partitionColumnConverters = new CompiledObjectConverter[odpsPartitionColumnNames.size()];
+    for (int i = 0; i < odpsPartitionColumnNames.size(); i++) {
+      TypeInfo typeInfo = schema.getPartitionColumn(odpsPartitionColumnNames.get(i)).getTypeInfo();
+      partitionColumnConverters[i] = HiveObjectConverter.compile(
+          objectInspectors[i + 3 + odpsColumnNames.size()], typeInfo);
+    }
+  }
+
+  private String getPartitionSpec(Object[] args) {
     StringBuilder partitionSpecBuilder = new StringBuilder();
     for (int i = 0; i < odpsPartitionColumnNames.size(); ++i) {
-      Object colValue = hivePartitionColumnValues.get(i);
+      Object colValue = args[i + 3 + odpsColumnNames.size()];
       if (colValue == null) {
         continue;
       }
 
-      ObjectInspector objectInspector = objectInspectors[i + 3 + odpsColumnNames.size()];
-      TypeInfo typeInfo = odps.tables()
-          .get(currentOdpsTableName)
-          .getSchema()
-          .getPartitionColumn(odpsPartitionColumnNames.get(i))
-          .getTypeInfo();
-
-      Object odpsValue = HiveObjectConverter.convert(objectInspector, colValue, typeInfo);
+      Object odpsValue = partitionColumnConverters[i].convert(colValue);
       partitionSpecBuilder.append(odpsPartitionColumnNames.get(i));
       partitionSpecBuilder.append("=\'");
       partitionSpecBuilder.append(odpsValue.toString()).append("\'");
@@ -170,27 +186,7 @@ public class OdpsDataTransferUDTF extends GenericUDTF {
     return partitionSpecBuilder.toString();
   }
 
-  private void resetUploadSession(String partitionSpec) throws TunnelException, IOException {
-    currentOdpsPartitionSpec = partitionSpec;
-
-    // End the previous session
-    if (uploadSession != null) {
-      recordWriter.close();
-      uploadSession.commit();
-    }
-
-    if (partitionSpec.isEmpty()) {
-      uploadSession = tunnel.createUploadSession(odps.getDefaultProject(),
-          currentOdpsTableName);
-    } else {
-      uploadSession = tunnel.createUploadSession(odps.getDefaultProject(),
-          currentOdpsTableName, new PartitionSpec(partitionSpec));
-    }
-
-    recordWriter = uploadSession.openBufferedWriter(true);
-  }
-
-  private String[] trimAll(String[] array) {
+  String[] trimAll(String[] array) {
     for (int i = 0; i < array.length; i++) {
       array[i] = array[i].trim();
     }
@@ -199,10 +195,9 @@ public class OdpsDataTransferUDTF extends GenericUDTF {
 
   @Override
   public void close() throws HiveException {
-    if (uploadSession != null) {
+    if (uploadPool != null) {
       try {
-        recordWriter.close();
-        uploadSession.commit();
+        uploadPool.close();
       } catch (IOException | TunnelException e) {
         e.printStackTrace();
         throw new HiveException(e);
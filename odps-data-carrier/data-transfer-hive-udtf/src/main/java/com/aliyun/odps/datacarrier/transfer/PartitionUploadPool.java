@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
+import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps an upload session and a buffered writer open for each partition of one table, so that
+ * rows arriving in any partition order do not force a commit per partition switch. When more
+ * than maxOpenPartitions partitions are open, the least recently written one is committed.
+ * Every writer buffers at most memoryBudget / maxOpenPartitions bytes.
+ */
+public class PartitionUploadPool {
+
+  private static final long MAX_WRITER_BUFFER_SIZE = 64 * 1024 * 1024L;
+  private static final long MIN_WRITER_BUFFER_SIZE = 1024 * 1024L;
+
+  private final TableTunnel tunnel;
+  private final String project;
+  private final String table;
+  private final int maxOpenPartitions;
+  private final long writerBufferSize;
+
+  // In access order, the eldest entry is the least recently written partition
+  private final LinkedHashMap<String, PartitionUpload> uploads =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  public PartitionUploadPool(TableTunnel tunnel, String project, String table,
+      int maxOpenPartitions, long memoryBudget) {
+    if (maxOpenPartitions <= 0) {
+      throw new IllegalArgumentException("maxOpenPartitions must be positive");
+    }
+    this.tunnel = tunnel;
+    this.project = project;
+    this.table = table;
+    this.maxOpenPartitions = maxOpenPartitions;
+    this.writerBufferSize = Math.max(MIN_WRITER_BUFFER_SIZE,
+        Math.min(MAX_WRITER_BUFFER_SIZE, memoryBudget / maxOpenPartitions));
+  }
+
+  /**
+   * Returns the upload of the given partition, opening it first if necessary. An empty spec
+   * stands for a non-partitioned table.
+   */
+  public PartitionUpload get(String partitionSpec) throws TunnelException, IOException {
+    PartitionUpload upload = uploads.get(partitionSpec);
+    if (upload == null) {
+      if (uploads.size() >= maxOpenPartitions) {
+        Iterator<Map.Entry<String, PartitionUpload>> eldest = uploads.entrySet().iterator();
+        PartitionUpload evicted = eldest.next().getValue();
+        eldest.remove();
+        evicted.commit();
+      }
+      upload = open(partitionSpec);
+      uploads.put(partitionSpec, upload);
+    }
+    return upload;
+  }
+
+  /**
+   * Commits every open partition.
+   */
+  public void close() throws TunnelException, IOException {
+    Iterator<PartitionUpload> it = uploads.values().iterator();
+    while (it.hasNext()) {
+      PartitionUpload upload = it.next();
+      it.remove();
+      upload.commit();
+    }
+  }
+
+  private PartitionUpload open(String partitionSpec) throws TunnelException {
+    UploadSession uploadSession;
+    if (partitionSpec.isEmpty()) {
+      uploadSession = tunnel.createUploadSession(project, table);
+    } else {
+      uploadSession = tunnel.createUploadSession(project, table, new PartitionSpec(partitionSpec));
+    }
+    TunnelBufferedWriter writer = (TunnelBufferedWriter) uploadSession.openBufferedWriter(true);
+    writer.setBufferSize(writerBufferSize);
+    return new PartitionUpload(uploadSession, writer);
+  }
+
+  public static class PartitionUpload {
+    private final UploadSession uploadSession;
+    private final TunnelBufferedWriter writer;
+
+    PartitionUpload(UploadSession uploadSession, TunnelBufferedWriter writer) {
+      this.uploadSession = uploadSession;
+      this.writer = writer;
+    }
+
+    public Record newRecord() {
+      return uploadSession.newRecord();
+    }
+
+    public void write(Record record) throws IOException {
+      writer.write(record);
+    }
+
+    void commit() throws TunnelException, IOException {
+      writer.close();
+      uploadSession.commit();
+    }
+  }
+}
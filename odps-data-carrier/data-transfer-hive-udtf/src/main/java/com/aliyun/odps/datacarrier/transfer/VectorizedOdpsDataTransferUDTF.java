@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer;
+
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.datacarrier.transfer.converter.CompiledObjectConverter;
+import com.aliyun.odps.datacarrier.transfer.converter.HiveObjectConverter;
+import com.aliyun.odps.datacarrier.transfer.converter.HiveVectorColumnConverter;
+import com.aliyun.odps.type.TypeInfo;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.MapredContext;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.io.orc.OrcFile;
+import org.apache.hadoop.hive.ql.io.orc.Reader;
+import org.apache.hadoop.hive.ql.io.orc.RecordReader;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+
+/**
+ * Transfers whole ORC files instead of single rows. Hive does not hand vectorized row batches to
+ * UDTFs, so this UDTF is called once per file and reads the file itself: as
+ * {@link VectorizedRowBatch}es, converted column by column, when every column has a vector
+ * reader, and row by row otherwise.
+ *
+ * Arguments are the odps table name, the odps column names (in the order of the columns in the
+ * file), the odps partition spec of the file and the path of the file, e.g.
+ *
+ * SELECT odps_data_dump_vectorized('t', 'c1,c2', 'pt=\'20190101\'', f)
+ * FROM (SELECT DISTINCT INPUT__FILE__NAME AS f FROM hive_t WHERE pt='20190101') files;
+ */
+public class VectorizedOdpsDataTransferUDTF extends OdpsDataTransferUDTF {
+
+  private Configuration conf;
+  private TypeInfo[] odpsColumnTypeInfos;
+
+  @Override
+  public void configure(MapredContext context) {
+    this.conf = context.getJobConf();
+  }
+
+  @Override
+  public void process(Object[] args) throws HiveException {
+    try {
+      if (this.odps == null) {
+        initOdps();
+      }
+
+      if (currentOdpsTableName == null) {
+        currentOdpsTableName =
+            ((StringObjectInspector) objectInspectors[0]).getPrimitiveJavaObject(args[0]).trim();
+        String odpsColumnNameString =
+            ((StringObjectInspector) objectInspectors[1]).getPrimitiveJavaObject(args[1]).trim();
+        odpsColumnNames = new ArrayList<>(Arrays.asList(trimAll(odpsColumnNameString.split(","))));
+
+        TableSchema schema = odps.tables().get(currentOdpsTableName).getSchema();
+        odpsColumnIndexes = new int[odpsColumnNames.size()];
+        odpsColumnTypeInfos = new TypeInfo[odpsColumnNames.size()];
+        for (int i = 0; i < odpsColumnNames.size(); i++) {
+          odpsColumnIndexes[i] = schema.getColumnIndex(odpsColumnNames.get(i));
+          odpsColumnTypeInfos[i] = schema.getColumn(odpsColumnIndexes[i]).getTypeInfo();
+        }
+        uploadPool = new PartitionUploadPool(tunnel, odps.getDefaultProject(),
+            currentOdpsTableName, maxOpenPartitions, partitionBufferBytes);
+      }
+
+      String partitionSpec =
+          ((StringObjectInspector) objectInspectors[2]).getPrimitiveJavaObject(args[2]).trim();
+      String file =
+          ((StringObjectInspector) objectInspectors[3]).getPrimitiveJavaObject(args[3]).trim();
+      transferFile(new Path(file), uploadPool.get(partitionSpec));
+    } catch (Exception e) {
+      e.printStackTrace();
+      throw new HiveException(e);
+    }
+  }
+
+  private void transferFile(Path path, PartitionUploadPool.PartitionUpload upload)
+      throws IOException {
+    if (conf == null) {
+      conf = new Configuration();
+    }
+    FileSystem fs = path.getFileSystem(conf);
+    Reader reader = OrcFile.createReader(fs, path);
+    StructObjectInspector rowInspector = (StructObjectInspector) reader.getObjectInspector();
+    List<? extends StructField> fields = rowInspector.getAllStructFieldRefs();
+    if (fields.size() != odpsColumnNames.size()) {
+      throw new IllegalArgumentException("File " + path + " has " + fields.size()
+          + " columns, but " + odpsColumnNames.size() + " odps columns are given");
+    }
+
+    boolean vectorized = true;
+    for (StructField field : fields) {
+      vectorized &= HiveVectorColumnConverter.isSupported(field.getFieldObjectInspector());
+    }
+
+    RecordReader rows = reader.rows();
+    try {
+      if (vectorized) {
+        transferBatches(rows, fields, upload);
+      } else {
+        transferRows(rows, rowInspector, fields, upload);
+      }
+    } finally {
+      rows.close();
+    }
+  }
+
+  private void transferBatches(RecordReader rows, List<? extends StructField> fields,
+      PartitionUploadPool.PartitionUpload upload) throws IOException {
+    HiveVectorColumnConverter[] converters = new HiveVectorColumnConverter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      converters[i] = HiveVectorColumnConverter.create(fields.get(i).getFieldObjectInspector());
+    }
+
+    VectorizedRowBatch batch = null;
+    Record[] records = new Record[VectorizedRowBatch.DEFAULT_SIZE];
+    while (rows.hasNext()) {
+      batch = rows.nextBatch(batch);
+      if (records.length < batch.size) {
+        records = new Record[batch.size];
+      }
+      for (int i = 0; i < batch.size; i++) {
+        records[i] = upload.newRecord();
+      }
+      // The struct reader fills cols in file column order
+      for (int c = 0; c < converters.length; c++) {
+        converters[c].convert(batch, batch.cols[c], records, odpsColumnIndexes[c]);
+      }
+      for (int i = 0; i < batch.size; i++) {
+        upload.write(records[i]);
+      }
+    }
+  }
+
+  private void transferRows(RecordReader rows, StructObjectInspector rowInspector,
+      List<? extends StructField> fields, PartitionUploadPool.PartitionUpload upload)
+      throws IOException {
+    CompiledObjectConverter[] converters = new CompiledObjectConverter[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      converters[i] = HiveObjectConverter.compile(
+          fields.get(i).getFieldObjectInspector(), odpsColumnTypeInfos[i]);
+    }
+    Object row = null;
+    while (rows.hasNext()) {
+      row = rows.next(row);
+      List<Object> values = rowInspector.getStructFieldsDataAsList(row);
+      Record record = upload.newRecord();
+      for (int i = 0; i < converters.length; i++) {
+        Object value = values.get(i);
+        if (value == null) {
+          continue;
+        }
+        record.set(odpsColumnIndexes[i], converters[i].convert(value));
+      }
+      upload.write(record);
+    }
+  }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer.converter;
+
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.SimpleStruct;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.StructTypeInfo;
+import com.aliyun.odps.type.TypeInfo;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.MapObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BinaryObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BooleanObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.ByteObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.DateObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.DoubleObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.FloatObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.HiveCharObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.HiveDecimalObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.HiveVarcharObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.IntObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.LongObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.ShortObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.TimestampObjectInspector;
+
+/**
+ * A converter bound to one hive object inspector and one odps type, built once by
+ * {@link HiveObjectConverter#compile(ObjectInspector, TypeInfo)}. Primitive leaves hold their
+ * typed object inspector and read the value through it, complex types hold the converters of
+ * their elements and fields, so converting a value does no type dispatch.
+ */
+public abstract class CompiledObjectConverter {
+
+  /**
+   * Converts a hive object to an odps object, null stays null
+   * @param o hive object
+   * @return odps object
+   */
+  public abstract Object convert(Object o);
+
+  /**
+   * Returns the leaf converter for values of a primitive object inspector.
+   */
+  static CompiledObjectConverter primitive(PrimitiveObjectInspector objectInspector) {
+    switch (objectInspector.getPrimitiveCategory()) {
+      case BINARY:
+        return new BinaryConverter((BinaryObjectInspector) objectInspector);
+      case BOOLEAN:
+        return new BooleanConverter((BooleanObjectInspector) objectInspector);
+      case BYTE:
+        return new ByteConverter((ByteObjectInspector) objectInspector);
+      case CHAR:
+        return new CharConverter((HiveCharObjectInspector) objectInspector);
+      case DATE:
+        return new DateConverter((DateObjectInspector) objectInspector);
+      case DECIMAL:
+        return new DecimalConverter((HiveDecimalObjectInspector) objectInspector);
+      case DOUBLE:
+        return new DoubleConverter((DoubleObjectInspector) objectInspector);
+      case FLOAT:
+        return new FloatConverter((FloatObjectInspector) objectInspector);
+      case INT:
+        return new IntegerConverter((IntObjectInspector) objectInspector);
+      case LONG:
+        return new LongConverter((LongObjectInspector) objectInspector);
+      case SHORT:
+        return new ShortConverter((ShortObjectInspector) objectInspector);
+      case STRING:
+        return new StringConverter((StringObjectInspector) objectInspector);
+      case TIMESTAMP:
+        return new TimestampConverter((TimestampObjectInspector) objectInspector);
+      case VARCHAR:
+        return new VarcharConverter((HiveVarcharObjectInspector) objectInspector);
+      default:
+        throw new IllegalArgumentException(
+            "Unsupported hive data type:" + objectInspector.getPrimitiveCategory());
+    }
+  }
+
+  static class BinaryConverter extends CompiledObjectConverter {
+    private final BinaryObjectInspector objectInspector;
+
+    BinaryConverter(BinaryObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : new Binary(objectInspector.getPrimitiveJavaObject(o));
+    }
+  }
+
+  static class BooleanConverter extends CompiledObjectConverter {
+    private final BooleanObjectInspector objectInspector;
+
+    BooleanConverter(BooleanObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class ByteConverter extends CompiledObjectConverter {
+    private final ByteObjectInspector objectInspector;
+
+    ByteConverter(ByteObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class CharConverter extends CompiledObjectConverter {
+    private final HiveCharObjectInspector objectInspector;
+
+    CharConverter(HiveCharObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      // TODO: support hive.compatible (return a Char object)
+      return o == null ? null : objectInspector.getPrimitiveJavaObject(o).getValue();
+    }
+  }
+
+  static class DateConverter extends CompiledObjectConverter {
+    private final DateObjectInspector objectInspector;
+
+    DateConverter(DateObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null
+          ? null : new java.sql.Date(objectInspector.getPrimitiveJavaObject(o).getTime());
+    }
+  }
+
+  static class DecimalConverter extends CompiledObjectConverter {
+    private final HiveDecimalObjectInspector objectInspector;
+
+    DecimalConverter(HiveDecimalObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.getPrimitiveJavaObject(o).bigDecimalValue();
+    }
+  }
+
+  static class DoubleConverter extends CompiledObjectConverter {
+    private final DoubleObjectInspector objectInspector;
+
+    DoubleConverter(DoubleObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class FloatConverter extends CompiledObjectConverter {
+    private final FloatObjectInspector objectInspector;
+
+    FloatConverter(FloatObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class IntegerConverter extends CompiledObjectConverter {
+    private final IntObjectInspector objectInspector;
+
+    IntegerConverter(IntObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class LongConverter extends CompiledObjectConverter {
+    private final LongObjectInspector objectInspector;
+
+    LongConverter(LongObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class ShortConverter extends CompiledObjectConverter {
+    private final ShortObjectInspector objectInspector;
+
+    ShortConverter(ShortObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.get(o);
+    }
+  }
+
+  static class StringConverter extends CompiledObjectConverter {
+    private final StringObjectInspector objectInspector;
+
+    StringConverter(StringObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.getPrimitiveJavaObject(o);
+    }
+  }
+
+  static class TimestampConverter extends CompiledObjectConverter {
+    private final TimestampObjectInspector objectInspector;
+
+    TimestampConverter(TimestampObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : objectInspector.getPrimitiveJavaObject(o);
+    }
+  }
+
+  static class VarcharConverter extends CompiledObjectConverter {
+    private final HiveVarcharObjectInspector objectInspector;
+
+    VarcharConverter(HiveVarcharObjectInspector objectInspector) {
+      this.objectInspector = objectInspector;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      return o == null ? null : new Varchar(objectInspector.getPrimitiveJavaObject(o).getValue());
+    }
+  }
+
+  static class ListConverter extends CompiledObjectConverter {
+    private final ListObjectInspector listObjectInspector;
+    private final CompiledObjectConverter elementConverter;
+
+    ListConverter(ListObjectInspector listObjectInspector,
+        CompiledObjectConverter elementConverter) {
+      this.listObjectInspector = listObjectInspector;
+      this.elementConverter = elementConverter;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      if (o == null) {
+        return null;
+      }
+      int length = listObjectInspector.getListLength(o);
+      List<Object> newList = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        newList.add(elementConverter.convert(listObjectInspector.getListElement(o, i)));
+      }
+      return newList;
+    }
+  }
+
+  static class MapConverter extends CompiledObjectConverter {
+    private final MapObjectInspector mapObjectInspector;
+    private final CompiledObjectConverter keyConverter;
+    private final CompiledObjectConverter valueConverter;
+
+    MapConverter(MapObjectInspector mapObjectInspector, CompiledObjectConverter keyConverter,
+        CompiledObjectConverter valueConverter) {
+      this.mapObjectInspector = mapObjectInspector;
+      this.keyConverter = keyConverter;
+      this.valueConverter = valueConverter;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      if (o == null) {
+        return null;
+      }
+      Map<?, ?> map = mapObjectInspector.getMap(o);
+      Map<Object, Object> newMap = new HashMap<>(map.size() * 4 / 3 + 1);
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        newMap.put(keyConverter.convert(entry.getKey()), valueConverter.convert(entry.getValue()));
+      }
+      return newMap;
+    }
+  }
+
+  static class StructConverter extends CompiledObjectConverter {
+    private final StructObjectInspector structObjectInspector;
+    private final StructTypeInfo structTypeInfo;
+    private final StructField[] fields;
+    private final CompiledObjectConverter[] fieldConverters;
+
+    StructConverter(StructObjectInspector structObjectInspector, StructTypeInfo structTypeInfo,
+        StructField[] fields, CompiledObjectConverter[] fieldConverters) {
+      this.structObjectInspector = structObjectInspector;
+      this.structTypeInfo = structTypeInfo;
+      this.fields = fields;
+      this.fieldConverters = fieldConverters;
+    }
+
+    @Override
+    public Object convert(Object o) {
+      if (o == null) {
+        return null;
+      }
+      List<Object> odpsValues = new ArrayList<>(fields.length);
+      for (int i = 0; i < fields.length; i++) {
+        odpsValues.add(
+            fieldConverters[i].convert(structObjectInspector.getStructFieldData(o, fields[i])));
+      }
+      return new SimpleStruct(structTypeInfo, odpsValues);
+    }
+  }
+}
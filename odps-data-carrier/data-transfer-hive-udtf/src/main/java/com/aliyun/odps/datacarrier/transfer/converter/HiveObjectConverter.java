@@ -19,13 +19,21 @@
 
 package com.aliyun.odps.datacarrier.transfer.converter;
 
+import com.aliyun.odps.type.ArrayTypeInfo;
+import com.aliyun.odps.type.MapTypeInfo;
+import com.aliyun.odps.type.StructTypeInfo;
 import com.aliyun.odps.type.TypeInfo;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.MapObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 
 public class HiveObjectConverter {
 
@@ -68,7 +76,14 @@ public class HiveObjectConverter {
   }
 
   public static Object convert(ObjectInspector objectInspector, Object o, TypeInfo odpsTypeInfo) {
+    return getConverter(objectInspector).convert(objectInspector, o, odpsTypeInfo);
+  }
 
+  /**
+   * Returns the converter for values of the given object inspector. Callers converting many
+   * values of the same column should look it up once and reuse it.
+   */
+  public static AbstractHiveObjectConverter getConverter(ObjectInspector objectInspector) {
     if (objectInspector.getCategory().equals(Category.PRIMITIVE)) {
       PrimitiveObjectInspector primitiveObjectInspector =
           (PrimitiveObjectInspector) objectInspector;
@@ -78,18 +93,60 @@ public class HiveObjectConverter {
         throw new IllegalArgumentException(
             "Unsupported hive data type:" + primitiveObjectInspector.getPrimitiveCategory());
       }
-      return hiveObjectConverter.convert(objectInspector, o, odpsTypeInfo);
-
+      return hiveObjectConverter;
     } else if (objectInspector.getCategory().equals(Category.LIST)) {
-
-      return hiveListObjectConverter.convert(objectInspector, o, odpsTypeInfo);
+      return hiveListObjectConverter;
     } else if (objectInspector.getCategory().equals(Category.MAP)) {
-      return hiveMapObjectConverter.convert(objectInspector, o, odpsTypeInfo);
+      return hiveMapObjectConverter;
     } else if (objectInspector.getCategory().equals(Category.STRUCT)) {
-      return hiveStructObjectConverter.convert(objectInspector, o, odpsTypeInfo);
+      return hiveStructObjectConverter;
     } else {
       throw new IllegalArgumentException(
           "Unsupported hive data type: " + objectInspector.getCategory());
     }
   }
+
+  /**
+   * Builds the converter tree for values of the given object inspector and odps type. Use it
+   * instead of {@link #convert(ObjectInspector, Object, TypeInfo)} when converting many values
+   * of the same column.
+   */
+  public static CompiledObjectConverter compile(ObjectInspector objectInspector,
+      TypeInfo odpsTypeInfo) {
+    switch (objectInspector.getCategory()) {
+      case PRIMITIVE:
+        return CompiledObjectConverter.primitive((PrimitiveObjectInspector) objectInspector);
+      case LIST: {
+        ListObjectInspector listObjectInspector = (ListObjectInspector) objectInspector;
+        return new CompiledObjectConverter.ListConverter(listObjectInspector,
+            compile(listObjectInspector.getListElementObjectInspector(),
+                ((ArrayTypeInfo) odpsTypeInfo).getElementTypeInfo()));
+      }
+      case MAP: {
+        MapObjectInspector mapObjectInspector = (MapObjectInspector) objectInspector;
+        MapTypeInfo mapTypeInfo = (MapTypeInfo) odpsTypeInfo;
+        return new CompiledObjectConverter.MapConverter(mapObjectInspector,
+            compile(mapObjectInspector.getMapKeyObjectInspector(), mapTypeInfo.getKeyTypeInfo()),
+            compile(mapObjectInspector.getMapValueObjectInspector(),
+                mapTypeInfo.getValueTypeInfo()));
+      }
+      case STRUCT: {
+        StructObjectInspector structObjectInspector = (StructObjectInspector) objectInspector;
+        StructTypeInfo structTypeInfo = (StructTypeInfo) odpsTypeInfo;
+        List<TypeInfo> fieldTypeInfos = structTypeInfo.getFieldTypeInfos();
+        List<? extends StructField> fieldList = structObjectInspector.getAllStructFieldRefs();
+        StructField[] fields = fieldList.toArray(new StructField[fieldList.size()]);
+        CompiledObjectConverter[] fieldConverters = new CompiledObjectConverter[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+          fieldConverters[i] =
+              compile(fields[i].getFieldObjectInspector(), fieldTypeInfos.get(i));
+        }
+        return new CompiledObjectConverter.StructConverter(
+            structObjectInspector, structTypeInfo, fields, fieldConverters);
+      }
+      default:
+        throw new IllegalArgumentException(
+            "Unsupported hive data type: " + objectInspector.getCategory());
+    }
+  }
 }
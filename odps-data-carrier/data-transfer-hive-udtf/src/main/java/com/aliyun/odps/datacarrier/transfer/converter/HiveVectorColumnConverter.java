@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer.converter;
+
+import com.aliyun.odps.data.Record;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampUtils;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+
+/**
+ * Converts one column of a {@link VectorizedRowBatch} into a column of odps records. The values
+ * are produced in a loop over the column vector and the same Java types as the row-wise
+ * converters, so both paths write identical records.
+ */
+public abstract class HiveVectorColumnConverter {
+
+  /**
+   * Whether columns of this type can be read as column vectors. ORC in hive 0.13 has no vector
+   * readers for complex types, char, varchar and binary.
+   */
+  public static boolean isSupported(ObjectInspector objectInspector) {
+    if (!objectInspector.getCategory().equals(Category.PRIMITIVE)) {
+      return false;
+    }
+    switch (((PrimitiveObjectInspector) objectInspector).getPrimitiveCategory()) {
+      case BOOLEAN:
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+      case FLOAT:
+      case DOUBLE:
+      case STRING:
+      case DECIMAL:
+      case DATE:
+      case TIMESTAMP:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  public static HiveVectorColumnConverter create(ObjectInspector objectInspector) {
+    if (!isSupported(objectInspector)) {
+      throw new IllegalArgumentException(
+          "Unsupported hive data type for vectorized transfer: " + objectInspector.getTypeName());
+    }
+    switch (((PrimitiveObjectInspector) objectInspector).getPrimitiveCategory()) {
+      case BOOLEAN:
+        return new BooleanConverter();
+      case BYTE:
+        return new ByteConverter();
+      case SHORT:
+        return new ShortConverter();
+      case INT:
+        return new IntegerConverter();
+      case LONG:
+        return new LongConverter();
+      case FLOAT:
+        return new FloatConverter();
+      case DOUBLE:
+        return new DoubleConverter();
+      case STRING:
+        return new StringConverter();
+      case DECIMAL:
+        return new DecimalConverter();
+      case DATE:
+        return new DateConverter();
+      default:
+        return new TimestampConverter();
+    }
+  }
+
+  /**
+   * Sets column odpsColumnIndex of records[0, batch.size) from the given column vector.
+   */
+  public void convert(VectorizedRowBatch batch, ColumnVector vector, Record[] records,
+      int odpsColumnIndex) {
+    if (vector.isRepeating) {
+      if (vector.noNulls || !vector.isNull[0]) {
+        Object value = get(vector, 0);
+        for (int i = 0; i < batch.size; i++) {
+          records[i].set(odpsColumnIndex, value);
+        }
+      }
+      return;
+    }
+
+    int[] selected = batch.selected;
+    boolean selectedInUse = batch.selectedInUse;
+    boolean noNulls = vector.noNulls;
+    boolean[] isNull = vector.isNull;
+    for (int i = 0; i < batch.size; i++) {
+      int row = selectedInUse ? selected[i] : i;
+      if (noNulls || !isNull[row]) {
+        records[i].set(odpsColumnIndex, get(vector, row));
+      }
+    }
+  }
+
+  /**
+   * Returns the odps value of a non-null row of the vector.
+   */
+  abstract Object get(ColumnVector vector, int row);
+
+  private static class BooleanConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return ((LongColumnVector) vector).vector[row] != 0;
+    }
+  }
+
+  private static class ByteConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return (byte) ((LongColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class ShortConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return (short) ((LongColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class IntegerConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return (int) ((LongColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class LongConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return ((LongColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class FloatConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return (float) ((DoubleColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class DoubleConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return ((DoubleColumnVector) vector).vector[row];
+    }
+  }
+
+  private static class StringConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      BytesColumnVector bytesVector = (BytesColumnVector) vector;
+      return new String(bytesVector.vector[row], bytesVector.start[row], bytesVector.length[row],
+          StandardCharsets.UTF_8);
+    }
+  }
+
+  private static class DecimalConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      return ((DecimalColumnVector) vector).vector[row].toBigDecimal();
+    }
+  }
+
+  private static class DateConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      // Days since epoch
+      return new java.sql.Date(
+          DateWritable.daysToMillis((int) ((LongColumnVector) vector).vector[row]));
+    }
+  }
+
+  private static class TimestampConverter extends HiveVectorColumnConverter {
+    @Override
+    Object get(ColumnVector vector, int row) {
+      // Nanoseconds since epoch
+      Timestamp timestamp = new Timestamp(0);
+      TimestampUtils.assignTimeInNanoSec(((LongColumnVector) vector).vector[row], timestamp);
+      return timestamp;
+    }
+  }
+}
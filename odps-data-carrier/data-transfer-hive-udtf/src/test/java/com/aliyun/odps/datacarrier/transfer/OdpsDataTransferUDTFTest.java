@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.Table;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.Tables;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
+import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class OdpsDataTransferUDTFTest {
+
+  private TableSchema schema;
+  private Tables tables;
+  private Table table;
+  private List<String> partitions;
+  private List<Record> written;
+  private OdpsDataTransferUDTF udtf;
+
+  @Before
+  public void setUp() throws Exception {
+    schema = new TableSchema();
+    schema.addColumn(new Column("id", OdpsType.BIGINT));
+    schema.addColumn(new Column("userName", OdpsType.STRING));
+    schema.addPartitionColumn(new Column("dt", OdpsType.STRING));
+
+    table = mock(Table.class);
+    when(table.getSchema()).thenReturn(schema);
+    tables = mock(Tables.class);
+    when(tables.get("t")).thenReturn(table);
+    Odps odps = mock(Odps.class);
+    when(odps.tables()).thenReturn(tables);
+
+    partitions = new ArrayList<>();
+    written = new ArrayList<>();
+    TableTunnel tunnel = mock(TableTunnel.class);
+    when(tunnel.createUploadSession(anyString(), eq("t"), any(PartitionSpec.class)))
+        .thenAnswer(new Answer<UploadSession>() {
+          @Override
+          public UploadSession answer(InvocationOnMock invocation) throws Throwable {
+            partitions.add(invocation.getArguments()[2].toString());
+            return newSession();
+          }
+        });
+
+    udtf = new OdpsDataTransferUDTF();
+    udtf.odps = odps;
+    udtf.tunnel = tunnel;
+    ObjectInspector stringInspector = PrimitiveObjectInspectorFactory.javaStringObjectInspector;
+    udtf.initialize(new ObjectInspector[] {
+        stringInspector, stringInspector, stringInspector,
+        stringInspector, PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        stringInspector});
+  }
+
+  @Test
+  public void testResolveSchemaOncePerTable() throws Exception {
+    udtf.process(new Object[] {"t", "userName, id", "dt", "a", 1L, "20190101"});
+    udtf.process(new Object[] {"t", "userName, id", "dt", null, 2L, "20190101"});
+    udtf.process(new Object[] {"t", "userName, id", "dt", "c", 3L, "20190102"});
+    udtf.close();
+
+    verify(tables, times(1)).get("t");
+    verify(table, times(1)).getSchema();
+    assertEquals(2, partitions.size());
+    assertEquals(3, written.size());
+  }
+
+  @Test
+  public void testSetByIndexLikeByName() throws Exception {
+    udtf.process(new Object[] {"t", "userName, id", "dt", "a", 1L, "20190101"});
+    udtf.process(new Object[] {"t", "userName, id", "dt", null, 2L, "20190101"});
+
+    // the values are set by resolved index, they must land where set by name used to put them
+    Record expected = new ArrayRecord(schema);
+    expected.set("userName", "a");
+    expected.set("id", 1L);
+    assertArrayEquals(expected.toArray(), written.get(0).toArray());
+
+    expected = new ArrayRecord(schema);
+    expected.set("id", 2L);
+    assertArrayEquals(expected.toArray(), written.get(1).toArray());
+  }
+
+  @Test
+  public void testColumnNameCase() throws Exception {
+    // column names are matched exactly, as set by name did
+    try {
+      new ArrayRecord(schema).set("USERNAME", "a");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    try {
+      udtf.process(new Object[] {"t", "USERNAME, id", "dt", "a", 1L, "20190101"});
+      fail();
+    } catch (HiveException e) {
+      assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+    assertTrue(written.isEmpty());
+  }
+
+  private UploadSession newSession() throws Exception {
+    UploadSession session = mock(UploadSession.class);
+    when(session.newRecord()).thenAnswer(new Answer<Record>() {
+      @Override
+      public Record answer(InvocationOnMock invocation) {
+        return new ArrayRecord(schema);
+      }
+    });
+    TunnelBufferedWriter writer = mock(TunnelBufferedWriter.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        written.add((Record) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(writer).write(any(Record.class));
+    when(session.openBufferedWriter(true)).thenReturn(writer);
+    return session;
+  }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer.converter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.SimpleStruct;
+import com.aliyun.odps.type.TypeInfo;
+import com.aliyun.odps.type.TypeInfoFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.hadoop.hive.common.type.HiveChar;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class CompiledObjectConverterTest {
+
+  private static Object compileAndConvert(ObjectInspector objectInspector, TypeInfo typeInfo,
+      Object value) {
+    return HiveObjectConverter.compile(objectInspector, typeInfo).convert(value);
+  }
+
+  /**
+   * The compiled leaf must produce the same value and type as the row-wise converter.
+   */
+  private static void assertPrimitive(ObjectInspector objectInspector, TypeInfo typeInfo,
+      Object value) {
+    Object expected = HiveObjectConverter.convert(objectInspector, value, typeInfo);
+    Object actual = compileAndConvert(objectInspector, typeInfo, value);
+    assertEquals(expected.getClass(), actual.getClass());
+    if (expected instanceof Binary) {
+      assertArrayEquals(((Binary) expected).data(), ((Binary) actual).data());
+    } else {
+      assertEquals(expected, actual);
+    }
+    assertNull(compileAndConvert(objectInspector, typeInfo, null));
+  }
+
+  @Test
+  public void testJavaPrimitives() {
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaBooleanObjectInspector,
+        TypeInfoFactory.BOOLEAN, true);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaByteObjectInspector,
+        TypeInfoFactory.TINYINT, (byte) -1);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaShortObjectInspector,
+        TypeInfoFactory.SMALLINT, (short) 300);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaIntObjectInspector,
+        TypeInfoFactory.INT, 70000);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        TypeInfoFactory.BIGINT, Long.MAX_VALUE);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaFloatObjectInspector,
+        TypeInfoFactory.FLOAT, 1.5f);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaDoubleObjectInspector,
+        TypeInfoFactory.DOUBLE, -2.25);
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+        TypeInfoFactory.STRING, "abc");
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaHiveDecimalObjectInspector,
+        TypeInfoFactory.DECIMAL, HiveDecimal.create("12.345"));
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaDateObjectInspector,
+        TypeInfoFactory.DATE, Date.valueOf("2020-02-29"));
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaTimestampObjectInspector,
+        TypeInfoFactory.DATETIME, Timestamp.valueOf("2020-02-29 01:02:03.456"));
+    assertPrimitive(PrimitiveObjectInspectorFactory.javaByteArrayObjectInspector,
+        TypeInfoFactory.BINARY, new byte[] {1, 2, 3});
+    assertPrimitive(PrimitiveObjectInspectorFactory.getPrimitiveJavaObjectInspector(
+        org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory.getCharTypeInfo(5)),
+        TypeInfoFactory.getCharTypeInfo(5), new HiveChar("ab", 5));
+    assertPrimitive(PrimitiveObjectInspectorFactory.getPrimitiveJavaObjectInspector(
+        org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory.getVarcharTypeInfo(5)),
+        TypeInfoFactory.getVarcharTypeInfo(5), new HiveVarchar("ab", 5));
+  }
+
+  @Test
+  public void testWritablePrimitives() {
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableIntObjectInspector,
+        TypeInfoFactory.INT, new IntWritable(5));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableLongObjectInspector,
+        TypeInfoFactory.BIGINT, new LongWritable(-5));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableDoubleObjectInspector,
+        TypeInfoFactory.DOUBLE, new DoubleWritable(0.5));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableStringObjectInspector,
+        TypeInfoFactory.STRING, new Text("text"));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableDateObjectInspector,
+        TypeInfoFactory.DATE, new DateWritable(Date.valueOf("2019-12-31")));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableTimestampObjectInspector,
+        TypeInfoFactory.DATETIME,
+        new TimestampWritable(Timestamp.valueOf("2019-12-31 23:59:59.999")));
+    assertPrimitive(PrimitiveObjectInspectorFactory.writableBinaryObjectInspector,
+        TypeInfoFactory.BINARY, new BytesWritable("bin".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(BigDecimal.class, compileAndConvert(
+        PrimitiveObjectInspectorFactory.writableHiveDecimalObjectInspector,
+        TypeInfoFactory.DECIMAL,
+        new org.apache.hadoop.hive.serde2.io.HiveDecimalWritable(HiveDecimal.create("1.5")))
+        .getClass());
+  }
+
+  @Test
+  public void testListWithNullElements() {
+    ObjectInspector objectInspector = ObjectInspectorFactory.getStandardListObjectInspector(
+        PrimitiveObjectInspectorFactory.javaLongObjectInspector);
+    TypeInfo typeInfo = TypeInfoFactory.getArrayTypeInfo(TypeInfoFactory.BIGINT);
+
+    Object converted = compileAndConvert(objectInspector, typeInfo, Arrays.asList(1L, null, 3L));
+    assertEquals(Arrays.asList(1L, null, 3L), converted);
+    assertEquals(new ArrayList<Object>(),
+        compileAndConvert(objectInspector, typeInfo, new ArrayList<Long>()));
+    assertNull(compileAndConvert(objectInspector, typeInfo, null));
+  }
+
+  @Test
+  public void testMapWithNullValues() {
+    ObjectInspector objectInspector = ObjectInspectorFactory.getStandardMapObjectInspector(
+        PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+        PrimitiveObjectInspectorFactory.javaIntObjectInspector);
+    TypeInfo typeInfo = TypeInfoFactory.getMapTypeInfo(TypeInfoFactory.STRING,
+        TypeInfoFactory.INT);
+
+    Map<String, Integer> map = new HashMap<>();
+    map.put("a", 1);
+    map.put("b", null);
+    assertEquals(map, compileAndConvert(objectInspector, typeInfo, map));
+    assertNull(compileAndConvert(objectInspector, typeInfo, null));
+  }
+
+  @Test
+  public void testNestedStructWithNulls() {
+    // struct<id:bigint, tags:array<string>, inner:struct<name:string, attrs:map<string,double>>>
+    ObjectInspector innerInspector = ObjectInspectorFactory.getStandardStructObjectInspector(
+        Arrays.asList("name", "attrs"),
+        Arrays.<ObjectInspector>asList(
+            PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+            ObjectInspectorFactory.getStandardMapObjectInspector(
+                PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+                PrimitiveObjectInspectorFactory.javaDoubleObjectInspector)));
+    ObjectInspector objectInspector = ObjectInspectorFactory.getStandardStructObjectInspector(
+        Arrays.asList("id", "tags", "inner"),
+        Arrays.<ObjectInspector>asList(
+            PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+            ObjectInspectorFactory.getStandardListObjectInspector(
+                PrimitiveObjectInspectorFactory.javaStringObjectInspector),
+            innerInspector));
+
+    TypeInfo innerType = TypeInfoFactory.getStructTypeInfo(Arrays.asList("name", "attrs"),
+        Arrays.<TypeInfo>asList(TypeInfoFactory.STRING,
+            TypeInfoFactory.getMapTypeInfo(TypeInfoFactory.STRING, TypeInfoFactory.DOUBLE)));
+    TypeInfo typeInfo = TypeInfoFactory.getStructTypeInfo(Arrays.asList("id", "tags", "inner"),
+        Arrays.<TypeInfo>asList(TypeInfoFactory.BIGINT,
+            TypeInfoFactory.getArrayTypeInfo(TypeInfoFactory.STRING), innerType));
+    CompiledObjectConverter converter = HiveObjectConverter.compile(objectInspector, typeInfo);
+
+    Map<String, Double> attrs = new HashMap<>();
+    attrs.put("x", null);
+    List<Object> row = Arrays.<Object>asList(7L, Arrays.asList("t", null),
+        Arrays.<Object>asList(null, attrs));
+    SimpleStruct struct = (SimpleStruct) converter.convert(row);
+    assertEquals(7L, struct.getFieldValue(0));
+    assertEquals(Arrays.asList("t", null), struct.getFieldValue(1));
+    SimpleStruct inner = (SimpleStruct) struct.getFieldValue(2);
+    assertNull(inner.getFieldValue(0));
+    assertEquals(attrs, inner.getFieldValue(1));
+
+    // null fields, including a null nested struct, stay null
+    struct = (SimpleStruct) converter.convert(Arrays.asList(null, null, null));
+    assertNull(struct.getFieldValue(0));
+    assertNull(struct.getFieldValue(1));
+    assertNull(struct.getFieldValue(2));
+    assertNull(converter.convert(null));
+  }
+
+  @Test
+  public void testListOfStructs() {
+    ObjectInspector structInspector = ObjectInspectorFactory.getStandardStructObjectInspector(
+        Arrays.asList("k", "v"),
+        Arrays.<ObjectInspector>asList(
+            PrimitiveObjectInspectorFactory.javaIntObjectInspector,
+            PrimitiveObjectInspectorFactory.javaStringObjectInspector));
+    TypeInfo structType = TypeInfoFactory.getStructTypeInfo(Arrays.asList("k", "v"),
+        Arrays.<TypeInfo>asList(TypeInfoFactory.INT, TypeInfoFactory.STRING));
+    CompiledObjectConverter converter = HiveObjectConverter.compile(
+        ObjectInspectorFactory.getStandardListObjectInspector(structInspector),
+        TypeInfoFactory.getArrayTypeInfo(structType));
+
+    List<?> converted = (List<?>) converter.convert(Arrays.asList(
+        Arrays.<Object>asList(1, "a"), null, Arrays.<Object>asList(2, null)));
+    assertEquals(3, converted.size());
+    assertEquals("a", ((SimpleStruct) converted.get(0)).getFieldValue(1));
+    assertNull(converted.get(1));
+    assertEquals(2, ((SimpleStruct) converted.get(2)).getFieldValue(0));
+    assertNull(((SimpleStruct) converted.get(2)).getFieldValue(1));
+  }
+}
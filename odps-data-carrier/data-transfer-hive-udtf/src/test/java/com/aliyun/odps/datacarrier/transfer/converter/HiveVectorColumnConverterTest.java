@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.datacarrier.transfer.converter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import org.apache.hadoop.hive.common.type.Decimal128;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.junit.Test;
+
+public class HiveVectorColumnConverterTest {
+
+  private static final int SIZE = 4;
+
+  private static VectorizedRowBatch batch(ColumnVector vector) {
+    VectorizedRowBatch batch = new VectorizedRowBatch(1, SIZE);
+    batch.cols[0] = vector;
+    batch.size = SIZE;
+    return batch;
+  }
+
+  private static Record[] convert(ObjectInspector objectInspector, VectorizedRowBatch batch,
+      OdpsType odpsType) {
+    Record[] records = new Record[batch.size];
+    for (int i = 0; i < records.length; i++) {
+      records[i] = new ArrayRecord(new Column[] {new Column("c", odpsType)});
+    }
+    HiveVectorColumnConverter.create(objectInspector)
+        .convert(batch, batch.cols[0], records, 0);
+    return records;
+  }
+
+  /**
+   * The vectorized values must equal what the row-wise converter makes of the same hive value.
+   */
+  private static void assertSameAsRowConverter(ObjectInspector objectInspector, Object hiveValue,
+      Object vectorValue) {
+    Object rowValue = HiveObjectConverter.convert(objectInspector, hiveValue, null);
+    assertEquals(rowValue, vectorValue);
+    assertEquals(rowValue.getClass(), vectorValue.getClass());
+  }
+
+  @Test
+  public void testLongVectorTypes() {
+    LongColumnVector vector = new LongColumnVector(SIZE);
+    vector.vector[0] = 1;
+    vector.vector[1] = -2;
+    vector.vector[2] = 127;
+    vector.vector[3] = 0;
+
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        batch(vector), OdpsType.BIGINT);
+    assertEquals(-2L, records[1].get(0));
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaLongObjectInspector, -2L,
+        records[1].get(0));
+
+    records = convert(PrimitiveObjectInspectorFactory.javaIntObjectInspector, batch(vector),
+        OdpsType.INT);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaIntObjectInspector, 127,
+        records[2].get(0));
+
+    records = convert(PrimitiveObjectInspectorFactory.javaShortObjectInspector, batch(vector),
+        OdpsType.SMALLINT);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaShortObjectInspector,
+        (short) 1, records[0].get(0));
+
+    records = convert(PrimitiveObjectInspectorFactory.javaByteObjectInspector, batch(vector),
+        OdpsType.TINYINT);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaByteObjectInspector,
+        (byte) 127, records[2].get(0));
+
+    records = convert(PrimitiveObjectInspectorFactory.javaBooleanObjectInspector, batch(vector),
+        OdpsType.BOOLEAN);
+    assertEquals(true, records[0].get(0));
+    assertEquals(false, records[3].get(0));
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaBooleanObjectInspector, true,
+        records[1].get(0));
+  }
+
+  @Test
+  public void testDoubleVectorTypes() {
+    DoubleColumnVector vector = new DoubleColumnVector(SIZE);
+    vector.vector[0] = 1.5;
+    vector.vector[1] = -0.25;
+
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaDoubleObjectInspector,
+        batch(vector), OdpsType.DOUBLE);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaDoubleObjectInspector, 1.5,
+        records[0].get(0));
+
+    records = convert(PrimitiveObjectInspectorFactory.javaFloatObjectInspector, batch(vector),
+        OdpsType.FLOAT);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaFloatObjectInspector, -0.25f,
+        records[1].get(0));
+  }
+
+  @Test
+  public void testStringVector() {
+    BytesColumnVector vector = new BytesColumnVector(SIZE);
+    vector.initBuffer();
+    byte[] bytes = "xxhello\u4e16\u754c".getBytes(StandardCharsets.UTF_8);
+    vector.setRef(0, bytes, 2, bytes.length - 2);
+    vector.setVal(1, bytes, 0, 2);
+    vector.setRef(2, bytes, 0, 0);
+    vector.setRef(3, bytes, 0, bytes.length);
+
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+        batch(vector), OdpsType.STRING);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaStringObjectInspector,
+        "hello\u4e16\u754c", records[0].get(0));
+    assertEquals("xx", records[1].getString(0));
+    assertEquals("", records[2].getString(0));
+  }
+
+  @Test
+  public void testDecimalVector() {
+    DecimalColumnVector vector = new DecimalColumnVector(SIZE, 10, 2);
+    vector.vector[0].update(new Decimal128("123.45", (short) 2));
+    vector.vector[1].update(new Decimal128("-0.01", (short) 2));
+
+    ObjectInspector objectInspector = PrimitiveObjectInspectorFactory
+        .getPrimitiveJavaObjectInspector(TypeInfoFactory.getDecimalTypeInfo(10, 2));
+    Record[] records = convert(objectInspector, batch(vector), OdpsType.DECIMAL);
+    assertEquals(0, new BigDecimal("123.45").compareTo((BigDecimal) records[0].get(0)));
+    assertEquals(0, new BigDecimal("-0.01").compareTo((BigDecimal) records[1].get(0)));
+    assertEquals(BigDecimal.class,
+        HiveObjectConverter.convert(objectInspector, HiveDecimal.create("1"), null).getClass());
+    assertEquals(BigDecimal.class, records[0].get(0).getClass());
+  }
+
+  @Test
+  public void testDateAndTimestampVectors() {
+    Date date = Date.valueOf("2019-02-28");
+    LongColumnVector dates = new LongColumnVector(SIZE);
+    dates.vector[0] = DateWritable.dateToDays(date);
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaDateObjectInspector,
+        batch(dates), OdpsType.DATE);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaDateObjectInspector, date,
+        records[0].get(0));
+
+    Timestamp timestamp = Timestamp.valueOf("2019-02-28 12:34:56.123456789");
+    LongColumnVector timestamps = new LongColumnVector(SIZE);
+    timestamps.vector[0] = timestamp.getTime() / 1000 * 1000000000L + timestamp.getNanos();
+    records = convert(PrimitiveObjectInspectorFactory.javaTimestampObjectInspector,
+        batch(timestamps), OdpsType.DATETIME);
+    assertSameAsRowConverter(PrimitiveObjectInspectorFactory.javaTimestampObjectInspector,
+        timestamp, records[0].get(0));
+    assertEquals(123456789, ((Timestamp) records[0].get(0)).getNanos());
+  }
+
+  @Test
+  public void testNulls() {
+    LongColumnVector vector = new LongColumnVector(SIZE);
+    vector.noNulls = false;
+    vector.vector[0] = 1;
+    vector.isNull[1] = true;
+    vector.vector[1] = 99;
+    vector.vector[2] = 3;
+    vector.isNull[3] = true;
+
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        batch(vector), OdpsType.BIGINT);
+    assertEquals(1L, records[0].get(0));
+    assertNull(records[1].get(0));
+    assertEquals(3L, records[2].get(0));
+    assertNull(records[3].get(0));
+  }
+
+  @Test
+  public void testRepeating() {
+    LongColumnVector vector = new LongColumnVector(SIZE);
+    vector.isRepeating = true;
+    vector.vector[0] = 7;
+    vector.vector[1] = 99;
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaLongObjectInspector,
+        batch(vector), OdpsType.BIGINT);
+    for (Record record : records) {
+      assertEquals(7L, record.get(0));
+    }
+
+    // a repeating null leaves every row null
+    vector.noNulls = false;
+    vector.isNull[0] = true;
+    records = convert(PrimitiveObjectInspectorFactory.javaLongObjectInspector, batch(vector),
+        OdpsType.BIGINT);
+    for (Record record : records) {
+      assertNull(record.get(0));
+    }
+  }
+
+  @Test
+  public void testSelectedInUse() {
+    LongColumnVector vector = new LongColumnVector(SIZE);
+    vector.noNulls = false;
+    for (int i = 0; i < SIZE; i++) {
+      vector.vector[i] = i * 10;
+    }
+    vector.isNull[2] = true;
+
+    VectorizedRowBatch batch = batch(vector);
+    batch.selectedInUse = true;
+    batch.selected[0] = 1;
+    batch.selected[1] = 2;
+    batch.selected[2] = 3;
+    batch.size = 3;
+
+    Record[] records = convert(PrimitiveObjectInspectorFactory.javaLongObjectInspector, batch,
+        OdpsType.BIGINT);
+    assertEquals(3, records.length);
+    assertEquals(10L, records[0].get(0));
+    assertNull(records[1].get(0));
+    assertEquals(30L, records[2].get(0));
+  }
+
+  @Test
+  public void testSupportedTypes() {
+    assertTrue(HiveVectorColumnConverter.isSupported(
+        PrimitiveObjectInspectorFactory.javaStringObjectInspector));
+    assertFalse(HiveVectorColumnConverter.isSupported(
+        PrimitiveObjectInspectorFactory.javaByteArrayObjectInspector));
+    assertFalse(HiveVectorColumnConverter.isSupported(
+        ObjectInspectorFactory.getStandardListObjectInspector(
+            PrimitiveObjectInspectorFactory.javaLongObjectInspector)));
+    try {
+      HiveVectorColumnConverter.create(
+          PrimitiveObjectInspectorFactory.javaByteArrayObjectInspector);
+      throw new AssertionError("binary columns have no vector converter");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
@@ -33,6 +33,7 @@ import com.aliyun.odps.datacarrier.commons.risk.Risk;
 import com.aliyun.odps.datacarrier.metaprocessor.report.ReportBuilder;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,10 +54,20 @@ import org.apache.commons.cli.Options;
  */
 public class MetaProcessor {
   private MetaManager metaManager;
+  private boolean vectorized;
   public Map<String, Set<String>> odpsProjectNameToTableNameSet;
 
   public MetaProcessor(String metaPath) throws IOException {
+    this(metaPath, false);
+  }
+
+  /**
+   * @param vectorized generate Hive UDTF SQL that transfers whole ORC files with
+   *                   odps_data_dump_vectorized, every table must be stored as ORC
+   */
+  public MetaProcessor(String metaPath, boolean vectorized) throws IOException {
     this.metaManager = new MetaManager(metaPath);
+    this.vectorized = vectorized;
   }
 
   private void run(String outputPath) throws IOException {
@@ -67,6 +78,8 @@ public class MetaProcessor {
     GlobalMetaModel globalMeta = metaManager.getGlobalMeta();
     for (String databaseName : metaManager.listDatabases()) {
       DatabaseMetaModel databaseMeta = metaManager.getDatabaseMeta(databaseName);
+      List<String> partitionTableNames =
+          Arrays.asList(metaManager.listPartitionTables(databaseName));
 
       for (String tableName : metaManager.listTables(databaseName)) {
         TableMetaModel tableMeta = metaManager.getTableMeta(databaseName, tableName);
@@ -81,7 +94,18 @@ public class MetaProcessor {
         reportBuilder.add(databaseName, tableName, createTableStatement);
 
         // Generate Hive UDTF SQL statements
-        String multiPartitionHiveUdtfSQL = getMultiPartitionHiveUdtfSQL(databaseMeta, tableMeta);
+        String multiPartitionHiveUdtfSQL;
+        if (!vectorized) {
+          multiPartitionHiveUdtfSQL = getMultiPartitionHiveUdtfSQL(databaseMeta, tableMeta);
+        } else if (tableMeta.partitionColumns.isEmpty()) {
+          multiPartitionHiveUdtfSQL = getVectorizedHiveUdtfSQL(databaseMeta, tableMeta, null);
+        } else if (partitionTableNames.contains(tableName)) {
+          multiPartitionHiveUdtfSQL = String.join("\n",
+              getVectorizedHiveUdtfSQL(databaseMeta, tableMeta));
+        } else {
+          // A partitioned table without partitions has no files
+          multiPartitionHiveUdtfSQL = "";
+        }
         intermediateDataDirManager.setHiveUdtfSQLMultiPartition(
             databaseName, tableName, multiPartitionHiveUdtfSQL);
       }
@@ -100,8 +124,9 @@ public class MetaProcessor {
             contentBuilder.toString());
 
         // Generate Hive UDTF SQL statements
-        List<String> singlePartitionHiveUdtfSQL =
-            getSinglePartitionHiveUdtfSQL(databaseMeta, tableMeta);
+        List<String> singlePartitionHiveUdtfSQL = vectorized
+            ? getVectorizedHiveUdtfSQL(databaseMeta, tableMeta)
+            : getSinglePartitionHiveUdtfSQL(databaseMeta, tableMeta);
         intermediateDataDirManager.setHiveUdtfSQLSinglePartition(databaseName, partitionTableName,
             String.join("\n", singlePartitionHiveUdtfSQL));
       }
@@ -312,6 +337,48 @@ public class MetaProcessor {
     return hiveUdtfSQLBuilder.toString();
   }
 
+  private List<String> getVectorizedHiveUdtfSQL(DatabaseMetaModel databaseMeta,
+      TableMetaModel tableMeta) throws IOException {
+    TablePartitionMetaModel tablePartitionMeta =
+        metaManager.getTablePartitionMeta(databaseMeta.databaseName, tableMeta.tableName);
+
+    List<String> hiveSQLList = new ArrayList<>();
+    for (PartitionMetaModel partitionMeta : tablePartitionMeta.partitions) {
+      hiveSQLList.add(getVectorizedHiveUdtfSQL(databaseMeta, tableMeta, partitionMeta));
+    }
+    return hiveSQLList;
+  }
+
+  /**
+   * The vectorized UDTF is called once per ORC file of the table or partition and reads the file
+   * itself, so the files are listed with INPUT__FILE__NAME.
+   *
+   * @param partitionMeta null for a table without partitions
+   */
+  private String getVectorizedHiveUdtfSQL(DatabaseMetaModel databaseMeta,
+      TableMetaModel tableMeta, PartitionMetaModel partitionMeta) {
+    List<String> odpsColumnNames = new ArrayList<>();
+    for (ColumnMetaModel columnMeta : tableMeta.columns) {
+      odpsColumnNames.add(columnMeta.odpsColumnName);
+    }
+    String partitionSpec = partitionMeta == null ? "" : partitionMeta.partitionSpec;
+
+    StringBuilder hiveUdtfSQLBuilder = new StringBuilder();
+    hiveUdtfSQLBuilder.append("SELECT odps_data_dump_vectorized(\n")
+        .append("\'").append(tableMeta.odpsTableName).append("\',\n")
+        .append("\'").append(String.join(",", odpsColumnNames)).append("\',\n")
+        .append("\'").append(partitionSpec.replace("\'", "\\\'")).append("\',\n")
+        .append("f)\n")
+        .append("FROM (SELECT DISTINCT INPUT__FILE__NAME AS f FROM ")
+        .append(databaseMeta.databaseName).append(".`").append(tableMeta.tableName).append("`");
+    if (partitionMeta != null) {
+      // pt='1',region='cn' -> pt='1' AND region='cn'
+      hiveUdtfSQLBuilder.append(" WHERE ").append(partitionSpec.replace("\',", "\' AND "));
+    }
+    hiveUdtfSQLBuilder.append(") files;\n");
+    return hiveUdtfSQLBuilder.toString();
+  }
+
   public static void main(String[] args) throws Exception {
     Option meta = Option
         .builder("i")
@@ -327,6 +394,12 @@ public class MetaProcessor {
         .hasArg()
         .desc("Output directory generated by meta processor")
         .build();
+    Option vectorized = Option
+        .builder("v")
+        .longOpt("vectorized")
+        .argName("vectorized")
+        .desc("Generate Hive UDTF SQL that transfers whole ORC files, all tables must be ORC")
+        .build();
     Option help = Option
         .builder("h")
         .longOpt("help")
@@ -337,13 +410,15 @@ public class MetaProcessor {
     Options options = new Options();
     options.addOption(meta);
     options.addOption(outputDir);
+    options.addOption(vectorized);
     options.addOption(help);
 
     CommandLineParser parser = new DefaultParser();
     CommandLine cmd = parser.parse(options, args);
 
     if (cmd.hasOption("input-dir") && cmd.hasOption("output-dir") && !cmd.hasOption("help")) {
-      MetaProcessor metaProcessor = new MetaProcessor(cmd.getOptionValue("input-dir"));
+      MetaProcessor metaProcessor =
+          new MetaProcessor(cmd.getOptionValue("input-dir"), cmd.hasOption("vectorized"));
       metaProcessor.run(cmd.getOptionValue("output-dir"));
     } else {
         HelpFormatter formatter = new HelpFormatter();
@@ -185,12 +185,19 @@ public String toString() {
   @StoredAsProperty("odps.shardTimeout") private int odpsShardTimeout;
   @StoredAsProperty("odps.retryCount") private int odpsRetryCount;
   @StoredAsProperty("odps.batchSize") private int odpsBatchSize;
+  @StoredAsProperty("odps.batch.bytes") private long odpsBatchBytes;
+  @StoredAsProperty("odps.batch.adaptive") private boolean odpsAdaptiveBatch;
   @StoredAsProperty("odps.hubLifeCycle") private int odpsHubLifeCycle;
   @StoredAsProperty("odps.partition.spec") private String odpsPartitionSpec;
   @StoredAsProperty("hdfs.to.odps") private boolean hdfsToOdps;
   @StoredAsProperty("odps.disable.dynamic.partitions") private boolean odpsDisableDynamicPartitions;
   @StoredAsProperty("odps.overwrite.table") private boolean overwriteOdpsTable;
   @StoredAsProperty("odps.use.compress") private boolean useCompressInUpload;
+  @StoredAsProperty("odps.block.writers") private int odpsBlockWriters;
+  @StoredAsProperty("odps.upload.threads") private int odpsUploadThreads;
+  @StoredAsProperty("odps.reader.threads") private int odpsReaderThreads;
+  @StoredAsProperty("odps.split.size") private long odpsSplitSize;
+  @StoredAsProperty("odps.job.commit") private boolean odpsJobCommit;
 
   public boolean isSkipFailed() {
     return skipFailed;
@@ -232,6 +239,90 @@ public void setOdpsUseCompressInUpload(boolean useCompress) {
     this.useCompressInUpload = useCompress;
   }
 
+  /**
+   * @return the number of concurrent block writers of the long-lived tunnel
+   * upload mode, or 0 to upload every batch in its own session.
+   */
+  public int getOdpsBlockWriters() {
+    return odpsBlockWriters;
+  }
+
+  public void setOdpsBlockWriters(int odpsBlockWriters) {
+    this.odpsBlockWriters = odpsBlockWriters;
+  }
+
+  /**
+   * @return the number of background upload threads, or 0 to upload on the
+   * map task's own thread.
+   */
+  public int getOdpsUploadThreads() {
+    return odpsUploadThreads;
+  }
+
+  public void setOdpsUploadThreads(int odpsUploadThreads) {
+    this.odpsUploadThreads = odpsUploadThreads;
+  }
+
+  /**
+   * @return the number of concurrent readers each export map task uses to
+   * download its range of the ODPS table.
+   */
+  public int getOdpsReaderThreads() {
+    return odpsReaderThreads;
+  }
+
+  public void setOdpsReaderThreads(int odpsReaderThreads) {
+    this.odpsReaderThreads = odpsReaderThreads;
+  }
+
+  /**
+   * @return the estimated number of bytes each export map task reads from
+   * ODPS, or 0 to spread the table over all map tasks.
+   */
+  public long getOdpsSplitSize() {
+    return odpsSplitSize;
+  }
+
+  public void setOdpsSplitSize(long odpsSplitSize) {
+    this.odpsSplitSize = odpsSplitSize;
+  }
+
+  /**
+   * @return true if the import is committed once by the job instead of by
+   * every map task.
+   */
+  public boolean isOdpsJobCommit() {
+    return odpsJobCommit;
+  }
+
+  public void setOdpsJobCommit(boolean odpsJobCommit) {
+    this.odpsJobCommit = odpsJobCommit;
+  }
+
+  /**
+   * @return the memory ceiling in bytes of the rows buffered for upload by
+   * one map task.
+   */
+  public long getOdpsBatchBytes() {
+    return odpsBatchBytes;
+  }
+
+  public void setOdpsBatchBytes(long odpsBatchBytes) {
+    this.odpsBatchBytes = odpsBatchBytes;
+  }
+
+  /**
+   * @return true if the upload batch size is tuned to the upload throughput
+   * while the task runs.
+   */
+  public boolean isOdpsAdaptiveBatch() {
+    return odpsAdaptiveBatch;
+  }
+
+  public void setOdpsAdaptiveBatch(boolean odpsAdaptiveBatch) {
+    this.odpsAdaptiveBatch = odpsAdaptiveBatch;
+  }
+
 
   private Properties mapColumnOdps;
 
@@ -1093,9 +1184,13 @@ private void initDefaults(Configuration baseConfiguration) {
     // ODPS default settings
     this.odpsHubLifeCycle = OdpsConstants.DEFAULT_HUBLIFECYCLE;
     this.odpsBatchSize = OdpsConstants.DEFAULT_BATCH_SIZE;
+    this.odpsBatchBytes = OdpsConstants.DEFAULT_BATCH_BYTES;
     this.odpsRetryCount = OdpsConstants.DEFAULT_RETRY_COUNT;
     this.odpsShardNum = OdpsConstants.DEFAULT_SHARD_NUM;
     this.odpsShardTimeout = OdpsConstants.DEFAULT_SHARD_TIMEOUT;
+    this.odpsBlockWriters = OdpsConstants.DEFAULT_BLOCK_WRITERS;
+    this.odpsUploadThreads = OdpsConstants.DEFAULT_UPLOAD_THREADS;
+    this.odpsReaderThreads = OdpsConstants.DEFAULT_EXPORT_READER_THREADS;
 
     this.hdfsToOdps = false;
     this.skipFailed = false;
@@ -0,0 +1,369 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.lib;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.BytesWritable;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.data.AbstractChar;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.Struct;
+
+/**
+ * Reads the values of an ODPS Record straight into the Java types of a
+ * generated SqoopRecord class, without rendering them as strings first.
+ * Generated classes look up the index of each of their columns through a
+ * {@link ColumnIndex} and then call one getter per field.
+ *
+ * <p>Every getter returns null for a null value or a column index of -1,
+ * i.e. a column the record does not have. Values of any ODPS type are
+ * accepted: numbers are narrowed or widened as needed, DATETIME, DATE and
+ * TIMESTAMP values are converted between the java.sql types, CHAR and
+ * VARCHAR are read as strings, BINARY as bytes, and ARRAY, MAP and STRUCT
+ * values are rendered as JSON when read as strings.</p>
+ */
+public final class OdpsRecordLoader {
+
+  private static final String UTF8 = "UTF-8";
+
+  private OdpsRecordLoader() { }
+
+  /**
+   * The indexes of a fixed list of column names in the records being read,
+   * resolved again only when a record comes with different columns.
+   */
+  public static final class ColumnIndex {
+    private final String[] names;
+    private volatile Resolved resolved;
+
+    public ColumnIndex(String... names) {
+      this.names = names;
+    }
+
+    public int[] get(Column[] columns) {
+      Resolved r = resolved;
+      if (r == null || !sameNames(r.columns, columns)) {
+        r = new Resolved(columns, resolve(columns, names));
+        resolved = r;
+      }
+      return r.indexes;
+    }
+
+    private static boolean sameNames(Column[] a, Column[] b) {
+      if (a == b) {
+        return true;
+      }
+      if (a == null || b == null || a.length != b.length) {
+        return false;
+      }
+      for (int i = 0; i < a.length; i++) {
+        if (!a[i].getName().equals(b[i].getName())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static final class Resolved {
+      private final Column[] columns;
+      private final int[] indexes;
+
+      private Resolved(Column[] columns, int[] indexes) {
+        this.columns = columns;
+        this.indexes = indexes;
+      }
+    }
+  }
+
+  /**
+   * Returns the index of each name in columns, matched case-insensitively,
+   * or -1 for a name that is not there.
+   */
+  public static int[] resolve(Column[] columns, String[] names) {
+    Map<String, Integer> positions = new HashMap<String, Integer>();
+    for (int i = 0; i < columns.length; i++) {
+      positions.put(columns[i].getName().toLowerCase(), i);
+    }
+    int[] indexes = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      Integer pos = positions.get(names[i].toLowerCase());
+      indexes[i] = pos == null ? -1 : pos;
+    }
+    return indexes;
+  }
+
+  private static Object get(Record record, int idx) {
+    return idx < 0 ? null : record.get(idx);
+  }
+
+  public static Integer getInteger(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Integer) {
+      return (Integer) v;
+    } else if (v instanceof Number) {
+      return ((Number) v).intValue();
+    }
+    return Integer.valueOf(toString(v).trim());
+  }
+
+  public static Long getLong(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Long) {
+      return (Long) v;
+    } else if (v instanceof Number) {
+      return ((Number) v).longValue();
+    } else if (v instanceof java.util.Date) {
+      return ((java.util.Date) v).getTime();
+    }
+    return Long.valueOf(toString(v).trim());
+  }
+
+  public static Float getFloat(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Float) {
+      return (Float) v;
+    } else if (v instanceof Number) {
+      return ((Number) v).floatValue();
+    }
+    return Float.valueOf(toString(v).trim());
+  }
+
+  public static Double getDouble(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Double) {
+      return (Double) v;
+    } else if (v instanceof Number) {
+      return ((Number) v).doubleValue();
+    }
+    return Double.valueOf(toString(v).trim());
+  }
+
+  public static Boolean getBoolean(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Boolean) {
+      return (Boolean) v;
+    } else if (v instanceof Number) {
+      return ((Number) v).doubleValue() != 0;
+    }
+    return BooleanParser.valueOf(toString(v).trim());
+  }
+
+  public static BigDecimal getBigDecimal(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof BigDecimal) {
+      return (BigDecimal) v;
+    } else if (v instanceof BigInteger) {
+      return new BigDecimal((BigInteger) v);
+    } else if (v instanceof Double || v instanceof Float) {
+      return BigDecimal.valueOf(((Number) v).doubleValue());
+    } else if (v instanceof Number) {
+      return BigDecimal.valueOf(((Number) v).longValue());
+    }
+    return new BigDecimal(toString(v).trim());
+  }
+
+  public static java.sql.Date getDate(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof java.sql.Date) {
+      return (java.sql.Date) v;
+    } else if (v instanceof java.util.Date) {
+      return new java.sql.Date(((java.util.Date) v).getTime());
+    } else if (v instanceof Number) {
+      return new java.sql.Date(((Number) v).longValue());
+    }
+    return java.sql.Date.valueOf(toString(v).trim());
+  }
+
+  public static Time getTime(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Time) {
+      return (Time) v;
+    } else if (v instanceof java.util.Date) {
+      return new Time(((java.util.Date) v).getTime());
+    } else if (v instanceof Number) {
+      return new Time(((Number) v).longValue());
+    }
+    return Time.valueOf(toString(v).trim());
+  }
+
+  public static Timestamp getTimestamp(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null || v instanceof Timestamp) {
+      return (Timestamp) v;
+    } else if (v instanceof java.util.Date) {
+      return new Timestamp(((java.util.Date) v).getTime());
+    } else if (v instanceof Number) {
+      return new Timestamp(((Number) v).longValue());
+    }
+    return Timestamp.valueOf(toString(v).trim());
+  }
+
+  public static String getString(Record record, int idx) {
+    Object v = get(record, idx);
+    return v == null ? null : toString(v);
+  }
+
+  public static BytesWritable getBytesWritable(Record record, int idx) {
+    Object v = get(record, idx);
+    if (v == null) {
+      return null;
+    } else if (v instanceof byte[]) {
+      return new BytesWritable((byte[]) v);
+    } else if (v instanceof Binary) {
+      return new BytesWritable(((Binary) v).data());
+    }
+    return new BytesWritable(utf8(toString(v)));
+  }
+
+  public static com.cloudera.sqoop.lib.ClobRef getClobRef(Record record,
+      int idx) {
+    String v = getString(record, idx);
+    return v == null ? null : ClobRef.parse(v);
+  }
+
+  public static com.cloudera.sqoop.lib.BlobRef getBlobRef(Record record,
+      int idx) {
+    String v = getString(record, idx);
+    return v == null ? null : BlobRef.parse(v);
+  }
+
+  /**
+   * Renders a value of any ODPS type as a string. STRING values may be held
+   * as UTF-8 bytes; ARRAY, MAP and STRUCT values become JSON.
+   */
+  public static String toString(Object v) {
+    if (v instanceof String) {
+      return (String) v;
+    } else if (v instanceof byte[]) {
+      return utf8((byte[]) v);
+    } else if (v instanceof Binary) {
+      return utf8(((Binary) v).data());
+    } else if (v instanceof AbstractChar) {
+      return ((AbstractChar) v).getValue();
+    } else if (v instanceof List || v instanceof Map || v instanceof Struct) {
+      StringBuilder sb = new StringBuilder();
+      appendJson(sb, v);
+      return sb.toString();
+    }
+    return v.toString();
+  }
+
+  private static void appendJson(StringBuilder sb, Object v) {
+    if (v == null) {
+      sb.append("null");
+    } else if (v instanceof Number || v instanceof Boolean) {
+      sb.append(v);
+    } else if (v instanceof List) {
+      sb.append('[');
+      Iterator<?> it = ((List<?>) v).iterator();
+      while (it.hasNext()) {
+        appendJson(sb, it.next());
+        if (it.hasNext()) {
+          sb.append(',');
+        }
+      }
+      sb.append(']');
+    } else if (v instanceof Map) {
+      sb.append('{');
+      Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) v).entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<?, ?> e = it.next();
+        Object key = e.getKey();
+        appendJsonString(sb, key == null ? "null" : toString(key));
+        sb.append(':');
+        appendJson(sb, e.getValue());
+        if (it.hasNext()) {
+          sb.append(',');
+        }
+      }
+      sb.append('}');
+    } else if (v instanceof Struct) {
+      Struct struct = (Struct) v;
+      sb.append('{');
+      for (int i = 0; i < struct.getFieldCount(); i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        appendJsonString(sb, struct.getFieldName(i));
+        sb.append(':');
+        appendJson(sb, struct.getFieldValue(i));
+      }
+      sb.append('}');
+    } else {
+      appendJsonString(sb, toString(v));
+    }
+  }
+
+  private static void appendJsonString(StringBuilder sb, String s) {
+    sb.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format("\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    sb.append('"');
+  }
+
+  private static String utf8(byte[] bytes) {
+    try {
+      return new String(bytes, UTF8);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static byte[] utf8(String s) {
+    try {
+      return s.getBytes(UTF8);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -100,7 +100,11 @@ public RecordParser(final com.cloudera.sqoop.lib.DelimiterSet delimitersIn) {
     this.outputs = new ArrayList<String>();
   }
 
-  // TODO: Support field name
+  /**
+   * Return a map from column name to the string form of each value of an
+   * ODPS record. Generated record classes read ODPS records with the typed
+   * getters of {@link OdpsRecordLoader} instead.
+   */
   public Map parseRecord(Record input)
 		  throws com.cloudera.sqoop.lib.RecordParser.ParseError {
     if (null == input) {
@@ -142,9 +146,11 @@ public Map parseRecord(Record input)
           colValue = v == null ? null : v.toString();
           break;
         }
-        default:
-          throw new RuntimeException("Unknown column type: "
-                  + columns[i].getType());
+        default: {
+          Object v = input.get(i);
+          colValue = v == null ? null : OdpsRecordLoader.toString(v);
+          break;
+        }
       }
       res.put(columns[i].getName(), colValue);
     }
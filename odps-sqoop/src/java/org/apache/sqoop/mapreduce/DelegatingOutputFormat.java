@@ -111,6 +111,10 @@ protected Configuration getConf() {
       return this.conf;
     }
 
+    public FieldMapProcessor getMapProcessor() {
+      return this.mapProcessor;
+    }
+
     @Override
     /** {@inheritDoc} */
     public void close(TaskAttemptContext context)
@@ -244,6 +244,12 @@ protected void configureInputFormat(Job job, String tableName,
       if (partitionSpec != null) {
         conf.set(OdpsConstants.PARTITION_SPEC, partitionSpec);
       }
+      conf.setInt(OdpsConstants.EXPORT_READER_THREADS,
+          options.getOdpsReaderThreads());
+      if (options.getOdpsSplitSize() > 0) {
+        conf.setLong(OdpsConstants.EXPORT_SPLIT_BYTES,
+            options.getOdpsSplitSize());
+      }
       setMapperClass(OdpsExportMapper.class);
     }
     super.configureInputFormat(job, tableName, tableClassName, splitByCol);
@@ -0,0 +1,108 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.mapreduce.odps;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.sqoop.mapreduce.AutoProgressMapper;
+import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsInputRow;
+import org.apache.sqoop.orm.ClassWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Copies the fields of GenericRecords into the input column values of an
+ * {@link OdpsInputRow}, keeping their Avro types. The field of each input
+ * column is resolved by position once per schema.
+ */
+public abstract class HdfsOdpsGenericRecordMapper<K, V>
+    extends AutoProgressMapper<K, V, OdpsInputRow, NullWritable> {
+
+  private OdpsInputRow row;
+  private Schema schema;
+  private int[] fieldPositions;
+
+  @Override
+  protected void setup(Context context)
+      throws IOException, InterruptedException {
+    super.setup(context);
+    row = new OdpsInputRow(context.getConfiguration().getStrings(
+        OdpsConstants.INPUT_COL_NAMES));
+  }
+
+  protected OdpsInputRow toRow(GenericRecord record) throws IOException {
+    if (record.getSchema() != schema) {
+      resolve(record.getSchema());
+    }
+    Object[] values = row.getValues();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = fromAvro(record.get(fieldPositions[i]));
+    }
+    return row;
+  }
+
+  private void resolve(Schema avroSchema) throws IOException {
+    String[] columnNames = row.getColumnNames();
+    int[] positions = new int[columnNames.length];
+    for (int i = 0; i < columnNames.length; i++) {
+      Schema.Field field = getFieldIgnoreCase(avroSchema, columnNames[i]);
+      if (field == null) {
+        field = getFieldIgnoreCase(avroSchema,
+            ClassWriter.toIdentifier(columnNames[i]));
+      }
+      if (field == null) {
+        throw new IOException("Cannot find field " + columnNames[i]
+            + " in Avro schema " + avroSchema);
+      }
+      positions[i] = field.pos();
+    }
+    schema = avroSchema;
+    fieldPositions = positions;
+  }
+
+  private static Schema.Field getFieldIgnoreCase(Schema avroSchema,
+      String fieldName) {
+    for (Schema.Field field : avroSchema.getFields()) {
+      if (field.name().equalsIgnoreCase(fieldName)) {
+        return field;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Unwraps the Avro values the record converter does not take as they are.
+   * Strings and enum symbols are left to their string form.
+   */
+  static Object fromAvro(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    if (value instanceof GenericFixed) {
+      return ((GenericFixed) value).bytes();
+    }
+    return value;
+  }
+}
@@ -22,6 +22,7 @@
 import com.aliyun.odps.tunnel.TableTunnel;
 import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.config.ConfigurationHelper;
+import com.cloudera.sqoop.lib.DelimiterSet;
 import com.cloudera.sqoop.lib.SqoopRecord;
 import com.cloudera.sqoop.mapreduce.JobBase;
 import com.cloudera.sqoop.orm.TableClassName;
@@ -43,10 +44,7 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
-import org.apache.hadoop.io.DefaultStringifier;
-import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.InputFormat;
 import org.apache.hadoop.mapreduce.Job;
@@ -54,19 +52,16 @@
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.sqoop.lib.FieldMapProcessor;
-import org.apache.sqoop.manager.ConnManager;
 import org.apache.sqoop.manager.ImportJobContext;
-import org.apache.sqoop.mapreduce.AvroExportMapper;
 import org.apache.sqoop.mapreduce.AvroInputFormat;
-import org.apache.sqoop.mapreduce.DelegatingOutputFormat;
 import org.apache.sqoop.mapreduce.ExportInputFormat;
 import org.apache.sqoop.mapreduce.ExportJobBase;
 import org.apache.sqoop.mapreduce.ExportJobBase.FileType;
 //import org.apache.sqoop.mapreduce.ParquetExportMapper;
 import org.apache.sqoop.mapreduce.SequenceFileExportMapper;
-import org.apache.sqoop.mapreduce.TextExportMapper;
 import org.apache.sqoop.mapreduce.hcat.SqoopHCatUtilities;
 import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsInputRow;
 import org.apache.sqoop.odps.OdpsUploadProcessor;
 import org.apache.sqoop.odps.OdpsUtil;
 import org.apache.sqoop.util.PerfCounters;
@@ -147,7 +142,9 @@ public void runImport(String tableName, String ormJarFile) throws IOException {
     tableClassName =
         new TableClassName(options).getClassForTable(tableName);
     Configuration conf = options.getConf();
-    loadJars(conf, ormJarFile, tableClassName);
+    if (ormJarFile != null) {
+      loadJars(conf, ormJarFile, tableClassName);
+    }
     SqoopOptions options = context.getOptions();
 
     if (!isDynamicPartitions(options.getOdpsPartitionValue())) {
@@ -157,7 +154,12 @@ public void runImport(String tableName, String ormJarFile) throws IOException {
     this.disableDynamicPartitions = options.isOdpsDisableDynamicPartitions();
 
     Job job = createJob(conf);
-    job.getConfiguration().set("mapred.jar", ormJarFile);
+    if (ormJarFile != null) {
+      job.getConfiguration().set("mapred.jar", ormJarFile);
+    } else {
+      // Text, Avro and Parquet files need no generated record class.
+      job.setJarByClass(HdfsOdpsImportJob.class);
+    }
 
     if (options.getMapreduceJobName() != null) {
       job.setJobName(options.getMapreduceJobName());
@@ -236,12 +238,8 @@ protected void configureInputFormat(Job job, String tableName, String tableClass
       SqoopHCatUtilities.configureExportInputFormat(options, job, context.getConnManager(),
           tableName, job.getConfiguration());
       return;
-    } else if (fileType == FileType.AVRO_DATA_FILE) {
-      LOG.debug("Configuring for Avro export");
-      configureGenericRecordExportInputFormat(job, tableName);
     } else if (fileType == FileType.PARQUET_FILE) {
       LOG.debug("Configuring for Parquet export");
-      configureGenericRecordExportInputFormat(job, tableName);
       FileSystem fs = FileSystem.get(job.getConfiguration());
       String uri = "dataset:" + fs.makeQualified(getInputPath());
       Exception caughtException = null;
@@ -339,54 +337,51 @@ private DatasetDescriptor getDatasetDescriptorFromParquetFile(Job job, FileSyste
     return descriptor;
   }
 
-  private void configureGenericRecordExportInputFormat(Job job, String tableName)
-      throws IOException {
-    if (options.getOdpsTable() != null) {
-      MapWritable columnTypes = new MapWritable();
-      Map<String, OdpsType> colTypeMap = getColTypeMap();
-      for (Map.Entry<String, OdpsType> e : colTypeMap.entrySet()) {
-        String column = e.getKey();
-        if (column != null) {
-          Text columnName = new Text(column);
-          Text columnType = new Text(toJavaType(e.getValue()));
-          columnTypes.put(columnName, columnType);
-        }
-      }
-      DefaultStringifier.store(job.getConfiguration(), columnTypes,
-          AvroExportMapper.AVRO_COLUMN_TYPES_MAP);
-      return;
-    }
-    ConnManager connManager = context.getConnManager();
-    Map<String, Integer> columnTypeInts;
-    if (options.getCall() == null) {
-      columnTypeInts = connManager.getColumnTypes(
-          tableName,
-          options.getSqlQuery());
-    } else {
-      columnTypeInts = connManager.getColumnTypesForProcedure(
-          options.getCall());
-    }
-    String[] specifiedColumns = options.getColumns();
-    MapWritable columnTypes = new MapWritable();
-    for (Map.Entry<String, Integer> e : columnTypeInts.entrySet()) {
-      String column = e.getKey();
-      column = (specifiedColumns == null) ? column : options.getColumnNameCaseInsensitive(column);
-      if (column != null) {
-        Text columnName = new Text(column);
-        Text columnType = new Text(connManager.toJavaType(tableName, column, e.getValue()));
-        columnTypes.put(columnName, columnType);
-      }
-    }
-    DefaultStringifier.store(job.getConfiguration(), columnTypes,
-        AvroExportMapper.AVRO_COLUMN_TYPES_MAP);
-  }
-
   @Override
   protected void configureMapper(Job job, String tableName,
                                  String tableClassName) {
-    job.setOutputKeyClass(SqoopRecord.class);
+    if (needsRecordClass(fileType)) {
+      job.setOutputKeyClass(SqoopRecord.class);
+    } else {
+      job.setOutputKeyClass(OdpsInputRow.class);
+    }
     job.setOutputValueClass(NullWritable.class);
     job.setMapperClass(getMapperClass());
+
+    Configuration conf = job.getConfiguration();
+    DelimiterSet delimiters = options.getInputDelimiters();
+    conf.setInt(OdpsConstants.INPUT_FIELD_DELIM,
+        delimiters.getFieldsTerminatedBy());
+    conf.setInt(OdpsConstants.INPUT_ENCLOSED_BY, delimiters.getEnclosedBy());
+    conf.setInt(OdpsConstants.INPUT_ESCAPED_BY, delimiters.getEscapedBy());
+    conf.setBoolean(OdpsConstants.INPUT_ENCLOSE_REQUIRED,
+        delimiters.isEncloseRequired());
+    // The generated parser compares with the string form of the option.
+    conf.set(OdpsConstants.INPUT_NULL_STRING,
+        String.valueOf(options.getInNullStringValue()));
+  }
+
+  /**
+   * @return true if files of this type are read through the generated
+   * record class: sequence files hold instances of it and HCatalog tables
+   * are mapped onto it. Other files are converted by column index.
+   */
+  private static boolean needsRecordClass(FileType fileType) {
+    return fileType == FileType.SEQUENCE_FILE
+        || fileType == FileType.HCATALOG_MANAGED_FILE;
+  }
+
+  /**
+   * @return true if the import of {@code options} needs the record class
+   * generated for the table.
+   */
+  public static boolean needsRecordClass(SqoopOptions options)
+      throws IOException {
+    if (options.getHCatTableName() != null) {
+      return true;
+    }
+    return needsRecordClass(getFileType(options.getConf(),
+        new Path(options.getExportDir())));
   }
 
 
@@ -399,19 +394,19 @@ protected Class<? extends Mapper> getMapperClass() {
       case SEQUENCE_FILE:
         return SequenceFileExportMapper.class;
       case AVRO_DATA_FILE:
-        return AvroExportMapper.class;
+        return HdfsOdpsAvroMapper.class;
       case PARQUET_FILE:
-        return ParquetExportMapper.class;
+        return HdfsOdpsParquetMapper.class;
       case UNKNOWN:
       default:
-        return TextExportMapper.class;
+        return HdfsOdpsTextMapper.class;
     }
   }
 
   @Override
   protected Class<? extends OutputFormat> getOutputFormatClass()
       throws ClassNotFoundException {
-    return DelegatingOutputFormat.class;
+    return OdpsOutputFormat.class;
   }
 
   @Override
@@ -457,6 +452,11 @@ protected void configureOutputFormat(Job job, String tableName,
     }
     conf.setInt(OdpsConstants.RETRY_COUNT, options.getOdpsRetryCount());
     conf.setInt(OdpsConstants.BATCH_SIZE, options.getOdpsBatchSize());
+    conf.setLong(OdpsConstants.BATCH_BYTES, options.getOdpsBatchBytes());
+    conf.setBoolean(OdpsConstants.BATCH_ADAPTIVE,
+        options.isOdpsAdaptiveBatch());
+    conf.setInt(OdpsConstants.BLOCK_WRITERS, options.getOdpsBlockWriters());
+    conf.setInt(OdpsConstants.UPLOAD_THREADS, options.getOdpsUploadThreads());
     conf.setBoolean(OdpsConstants.USE_COMPRESS_IN_UPLOAD, options.isOdpsUseCompressInUpload());
 
     job.getConfiguration().set(ExportJobBase.SQOOP_EXPORT_TABLE_CLASS_KEY, tableClassName);
@@ -547,6 +547,16 @@ protected void jobSetup(Job job) throws IOException, ImportException {
       }
 
     }
+
+    if (options.isOdpsJobCommit()) {
+      TableTunnel tunnel = new TableTunnel(odps);
+      String tunnelEndPoint = options.getOdpsTunnelEndPoint();
+      if (tunnelEndPoint != null) {
+        tunnel.setEndpoint(OdpsUtil.getTunnelEndPoint(tunnelEndPoint));
+      }
+      OdpsOutputCommitter.configureJob(job.getConfiguration(),
+          tables.get(tableName), tunnel);
+    }
   }
   
   private Map buildPartitionMap(Table odpsTable) {
@@ -680,8 +690,11 @@ protected void propagateOptionsToJob(Job job) {
       conf.setInt("mapreduce.map.maxattempts", sqoopMaxAttempts);
     }
 
-    conf.setBoolean("mapred.map.tasks.speculative.execution", false);
-    conf.setBoolean("mapred.reduce.tasks.speculative.execution", false);
+    if (!options.isOdpsJobCommit()) {
+      // Every attempt commits its own rows.
+      conf.setBoolean("mapred.map.tasks.speculative.execution", false);
+      conf.setBoolean("mapred.reduce.tasks.speculative.execution", false);
+    }
     conf.setBoolean(OdpsConstants.ODPS_DISABLE_DYNAMIC_PARTITIONS, this.disableDynamicPartitions);
 //    conf.set(OdpsConstants.ODPS_TUNNEL_UPLOAD_SESSION_ID, uploadSession.getId());
   }
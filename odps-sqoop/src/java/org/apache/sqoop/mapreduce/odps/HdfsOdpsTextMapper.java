@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.mapreduce.odps;
+
+import com.cloudera.sqoop.lib.DelimiterSet;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.sqoop.lib.RecordParser;
+import org.apache.sqoop.mapreduce.AutoProgressMapper;
+import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsInputRow;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Splits delimited text lines into the input column values of an
+ * {@link OdpsInputRow}, without a generated record class. As in the
+ * generated parser, a field equal to the input null string is null and
+ * extra fields are ignored.
+ */
+public class HdfsOdpsTextMapper
+    extends AutoProgressMapper<LongWritable, Text, OdpsInputRow, NullWritable> {
+
+  public static final Log LOG =
+      LogFactory.getLog(HdfsOdpsTextMapper.class.getName());
+
+  private RecordParser parser;
+  private String nullString;
+  private OdpsInputRow row;
+
+  @Override
+  protected void setup(Context context)
+      throws IOException, InterruptedException {
+    super.setup(context);
+    Configuration conf = context.getConfiguration();
+    parser = new RecordParser(new DelimiterSet(
+        (char) conf.getInt(OdpsConstants.INPUT_FIELD_DELIM, ','), '\n',
+        (char) conf.getInt(OdpsConstants.INPUT_ENCLOSED_BY,
+            DelimiterSet.NULL_CHAR),
+        (char) conf.getInt(OdpsConstants.INPUT_ESCAPED_BY,
+            DelimiterSet.NULL_CHAR),
+        conf.getBoolean(OdpsConstants.INPUT_ENCLOSE_REQUIRED, false)));
+    nullString = conf.get(OdpsConstants.INPUT_NULL_STRING, "null");
+    row = new OdpsInputRow(conf.getStrings(OdpsConstants.INPUT_COL_NAMES));
+  }
+
+  @Override
+  public void map(LongWritable key, Text val, Context context)
+      throws IOException, InterruptedException {
+    Object[] values = row.getValues();
+    try {
+      List<String> fields = parser.parseRecord(val);
+      if (fields.size() < values.length) {
+        throw new RecordParser.ParseError("Expected " + values.length
+            + " fields but found " + fields.size());
+      }
+      for (int i = 0; i < values.length; i++) {
+        String field = fields.get(i);
+        values[i] = nullString.equals(field) ? null : field;
+      }
+    } catch (RecordParser.ParseError pe) {
+      LOG.error("Cannot parse input at position " + key + ": " + val, pe);
+      if (!skipFailed) {
+        throw new IOException("Can't import data, please check failed map "
+            + "task logs", pe);
+      }
+      return;
+    }
+    context.write(row, NullWritable.get());
+  }
+}
@@ -18,11 +18,16 @@
 package org.apache.sqoop.mapreduce.odps;
 
 import com.aliyun.odps.Odps;
+import com.aliyun.odps.Partition;
 import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.Table;
 import com.aliyun.odps.account.AliyunAccount;
 import com.aliyun.odps.tunnel.TableTunnel;
 import com.aliyun.odps.tunnel.TunnelException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.mapreduce.RecordReader;
@@ -33,10 +38,15 @@
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class OdpsExportInputFormat extends InputFormat {
+
+  public static final Log LOG = LogFactory.getLog(
+      OdpsExportInputFormat.class.getName());
+
   @Override
   public List<InputSplit> getSplits(JobContext jobContext) throws IOException, InterruptedException {
       Configuration conf = jobContext.getConfiguration();
@@ -50,26 +60,78 @@ public List<InputSplit> getSplits(JobContext jobContext) throws IOException, Int
       odps.setEndpoint(endpoint);
       odps.setDefaultProject(project);
       TableTunnel tunnel = new TableTunnel(odps);
-      PartitionSpec partitionSpec = null;
-      if (partitionSpecString != null) {
-          partitionSpec = new PartitionSpec(partitionSpecString);
-      }
-      TableTunnel.DownloadSession downloadSession;
+      Table table = odps.tables().get(project, tableName);
       try {
-          if (partitionSpec == null) {
-              downloadSession = tunnel.createDownloadSession(project, tableName);
+          List<OdpsSplitter.Slice> slices = new ArrayList<OdpsSplitter.Slice>();
+          if (partitionSpecString == null) {
+              TableTunnel.DownloadSession downloadSession =
+                  tunnel.createDownloadSession(project, tableName);
+              slices.add(new OdpsSplitter.Slice(null, downloadSession.getId(),
+                  downloadSession.getRecordCount(), getSize(table, null)));
           } else {
-              downloadSession = tunnel.createDownloadSession(project, tableName,
-                      partitionSpec);
+              for (PartitionSpec partitionSpec
+                  : getPartitions(table, partitionSpecString)) {
+                  TableTunnel.DownloadSession downloadSession =
+                      tunnel.createDownloadSession(project, tableName,
+                          partitionSpec);
+                  slices.add(new OdpsSplitter.Slice(partitionSpec.toString(),
+                      downloadSession.getId(), downloadSession.getRecordCount(),
+                      getSize(table, partitionSpec)));
+              }
           }
-          long count = downloadSession.getRecordCount();
 
           OdpsSplitter splitter = new OdpsSplitter();
-          return splitter.split(conf, count);
+          return splitter.split(conf, slices);
       } catch (TunnelException e) {
           throw new IOException(e);
-      } catch (SQLException e) {
-          throw new IOException(e);
+      }
+  }
+
+  /**
+   * Returns the partitions named by the partition spec option, which is
+   * either one partition spec or several patterns.
+   */
+  private static List<PartitionSpec> getPartitions(Table table,
+      String partitionSpecString) throws IOException {
+      if (!OdpsSplitter.isPattern(partitionSpecString)) {
+          return Collections.singletonList(
+              new PartitionSpec(partitionSpecString));
+      }
+      List<PartitionSpec> partitions = new ArrayList<PartitionSpec>();
+      try {
+          for (Partition partition : table.getPartitions()) {
+              partitions.add(partition.getPartitionSpec());
+          }
+      } catch (RuntimeException e) {
+          throw new IOException("Can't list the partitions of table "
+              + table.getName(), e);
+      }
+      List<PartitionSpec> selected =
+          OdpsSplitter.selectPartitions(partitions, partitionSpecString);
+      if (selected.isEmpty()) {
+          throw new IOException("No partition of table " + table.getName()
+              + " matches " + partitionSpecString);
+      }
+      LOG.info("Exporting " + selected.size() + " partitions of table "
+          + table.getName());
+      return selected;
+  }
+
+  /**
+   * @return the size in bytes of the partition, or of the table if
+   * partitionSpec is null, or 0 if the metadata can't be read.
+   */
+  private static long getSize(Table table, PartitionSpec partitionSpec) {
+      try {
+          if (partitionSpec == null) {
+              return table.getSize();
+          }
+          return table.getPartition(partitionSpec).getSize();
+      } catch (RuntimeException e) {
+          LOG.warn("Can't read the size of " + (partitionSpec == null
+              ? "table " + table.getName() : "partition " + partitionSpec)
+              + ", splitting it by record count", e);
+          return 0;
       }
   }
 
@@ -79,29 +141,104 @@ public RecordReader createRecordReader(InputSplit inputSplit, TaskAttemptContext
       return new OdpsSqoopRecordReader(odpsSplit);
   }
 
+  /**
+   * A range of records of one partition, read through a download session.
+   */
+  public static class Range {
+
+      private final String partitionSpec;
+      private final String downloadSessionId;
+      private final long start;
+      private final long length;
+
+      /**
+       * @param partitionSpec the partition, or null for the whole table or
+       * the partition spec of the job
+       * @param downloadSessionId the session the range was planned on, or
+       * null if the reader should create its own session
+       */
+      public Range(String partitionSpec, String downloadSessionId,
+                   long start, long length) {
+          this.partitionSpec = partitionSpec;
+          this.downloadSessionId = downloadSessionId;
+          this.start = start;
+          this.length = length;
+      }
+
+      public String getPartitionSpec() {
+          return partitionSpec;
+      }
+
+      public String getDownloadSessionId() {
+          return downloadSessionId;
+      }
+
+      public long getStart() {
+          return start;
+      }
+
+      public long getLength() {
+          return length;
+      }
+  }
+
+  /**
+   * One or more ranges of records, read one after the other by a map task.
+   */
   public static class OdpsExportInputSplit extends InputSplit implements Writable {
 
-      private long start;
+      private List<Range> ranges;
       private long length;
 
       public OdpsExportInputSplit() {
+          this.ranges = Collections.emptyList();
+      }
 
+      public OdpsExportInputSplit(long start, long readCount,
+                                  String downloadSessionId) {
+          this(Collections.singletonList(
+              new Range(null, downloadSessionId, start, readCount)));
       }
 
-      public OdpsExportInputSplit(long start, long readCount) {
-          this.start = start;
-          this.length = readCount;
+      public OdpsExportInputSplit(List<Range> ranges) {
+          this.ranges = ranges;
+          this.length = 0;
+          for (Range range : ranges) {
+              this.length += range.getLength();
+          }
       }
 
+      /**
+       * @return the number of records of all ranges
+       */
       @Override
       public long getLength() throws IOException, InterruptedException {
           return length;
       }
 
+      public List<Range> getRanges() {
+          return ranges;
+      }
+
+      /**
+       * @return the start of the first range
+       */
       public long getStart() {
-          return start;
+          return ranges.isEmpty() ? 0 : ranges.get(0).getStart();
+      }
+
+      /**
+       * @return the id of the download session the first range was planned
+       * on, or null if the reader should create its own session.
+       */
+      public String getDownloadSessionId() {
+          return ranges.isEmpty() ? null : ranges.get(0).getDownloadSessionId();
       }
 
+      /**
+       * ODPS tables are not stored on the cluster, so a split has no
+       * preferred location.
+       */
       @Override
       public String[] getLocations() throws IOException, InterruptedException {
           return new String[0];
@@ -109,15 +246,31 @@ public String[] getLocations() throws IOException, InterruptedException {
 
       @Override
       public void write(DataOutput dataOutput) throws IOException {
-          dataOutput.writeLong(start);
-          dataOutput.writeLong(start + length - 1);
+          dataOutput.writeInt(ranges.size());
+          for (Range range : ranges) {
+              dataOutput.writeLong(range.getStart());
+              dataOutput.writeLong(range.getLength());
+              Text.writeString(dataOutput, range.getDownloadSessionId() == null
+                  ? "" : range.getDownloadSessionId());
+              Text.writeString(dataOutput, range.getPartitionSpec() == null
+                  ? "" : range.getPartitionSpec());
+          }
       }
 
       @Override
       public void readFields(DataInput dataInput) throws IOException {
-          start = dataInput.readLong();
-          long end = dataInput.readLong();
-          length = end - start + 1;
+          int count = dataInput.readInt();
+          ranges = new ArrayList<Range>(count);
+          length = 0;
+          for (int i = 0; i < count; i++) {
+              long start = dataInput.readLong();
+              long rangeLength = dataInput.readLong();
+              String id = Text.readString(dataInput);
+              String spec = Text.readString(dataInput);
+              ranges.add(new Range(spec.isEmpty() ? null : spec,
+                  id.isEmpty() ? null : id, start, rangeLength));
+              length += rangeLength;
+          }
       }
   }
 }
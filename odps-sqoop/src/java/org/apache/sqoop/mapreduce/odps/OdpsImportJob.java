@@ -19,6 +19,7 @@
 
 import com.aliyun.odps.*;
 import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.tunnel.TableTunnel;
 import com.cloudera.sqoop.SqoopOptions;
 import com.cloudera.sqoop.lib.SqoopRecord;
 import com.cloudera.sqoop.manager.ImportJobContext;
@@ -35,7 +36,6 @@
 import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.sqoop.lib.FieldMapProcessor;
 import org.apache.sqoop.mapreduce.DataDrivenImportJob;
-import org.apache.sqoop.mapreduce.DelegatingOutputFormat;
 import org.apache.sqoop.odps.OdpsConstants;
 import org.apache.sqoop.odps.OdpsUploadProcessor;
 import org.apache.sqoop.odps.OdpsUtil;
@@ -72,7 +72,7 @@ protected Class<? extends Mapper> getMapperClass() {
   @Override
   protected Class<? extends OutputFormat> getOutputFormatClass()
           throws ClassNotFoundException {
-    return DelegatingOutputFormat.class;
+    return OdpsOutputFormat.class;
   }
 
   @Override
@@ -118,6 +118,11 @@ protected void configureOutputFormat(Job job, String tableName,
     }
     conf.setInt(OdpsConstants.RETRY_COUNT, options.getOdpsRetryCount());
     conf.setInt(OdpsConstants.BATCH_SIZE, options.getOdpsBatchSize());
+    conf.setLong(OdpsConstants.BATCH_BYTES, options.getOdpsBatchBytes());
+    conf.setBoolean(OdpsConstants.BATCH_ADAPTIVE,
+        options.isOdpsAdaptiveBatch());
+    conf.setInt(OdpsConstants.BLOCK_WRITERS, options.getOdpsBlockWriters());
+    conf.setInt(OdpsConstants.UPLOAD_THREADS, options.getOdpsUploadThreads());
   }
 
   private String [] getColumnNames() {
@@ -209,6 +214,16 @@ protected void jobSetup(Job job) throws IOException, ImportException {
         }
       }
     }
+
+    if (options.isOdpsJobCommit()) {
+      TableTunnel tunnel = new TableTunnel(odps);
+      String tunnelEndPoint = options.getOdpsTunnelEndPoint();
+      if (tunnelEndPoint != null) {
+        tunnel.setEndpoint(OdpsUtil.getTunnelEndPoint(tunnelEndPoint));
+      }
+      OdpsOutputCommitter.configureJob(job.getConfiguration(),
+          tables.get(tableName), tunnel);
+    }
   }
 
   private Map<String, OdpsType> getColTypeMap() {
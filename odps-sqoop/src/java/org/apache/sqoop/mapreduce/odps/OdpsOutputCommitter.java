@@ -0,0 +1,357 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.mapreduce.odps;
+
+import com.aliyun.odps.Odps;
+import com.aliyun.odps.OdpsException;
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.Table;
+import com.aliyun.odps.account.AliyunAccount;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskID;
+import org.apache.sqoop.odps.OdpsBlockManifest;
+import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsTunnelUploadSession;
+import org.apache.sqoop.odps.OdpsUploadProcessor;
+import org.apache.sqoop.odps.OdpsUploadSession;
+import org.apache.sqoop.odps.OdpsUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Commits an ODPS import once for the whole job, so failed, retried and
+ * speculative task attempts never leave duplicate rows behind.
+ *
+ * <p>Task attempts write tunnel blocks but do not commit them; on close
+ * every attempt stores the blocks it wrote in a manifest under the job's
+ * commit directory. Task commit keeps the manifest of the one attempt that
+ * is committed, and job commit commits every upload session once with the
+ * blocks of all kept manifests. Blocks of other attempts are never
+ * committed and expire with their sessions.</p>
+ */
+public class OdpsOutputCommitter extends OutputCommitter {
+
+  public static final Log LOG =
+      LogFactory.getLog(OdpsOutputCommitter.class.getName());
+
+  private static final String COMMIT_DIR_NAME = ".sqoop-odps-commit";
+  private static final String ATTEMPT_PREFIX = "attempt-";
+  private static final String TASK_PREFIX = "task-";
+  private static final int COMMIT_RETRY_LIMIT = 6;
+
+  private static final PathFilter TASK_MANIFESTS = new PathFilter() {
+    @Override
+    public boolean accept(Path path) {
+      return path.getName().startsWith(TASK_PREFIX);
+    }
+  };
+
+  private TableTunnel tunnel;
+
+  public static boolean isJobCommit(Configuration conf) {
+    return conf.getBoolean(OdpsConstants.JOB_COMMIT, false);
+  }
+
+  /**
+   * Turns job level commit on for the job. If all records go to one target
+   * known up front, the table or a static partition, the job's upload session
+   * for it is created here and shared by all tasks. Partitions that depend
+   * on the records are written through sessions of the task attempts, which
+   * the job commits the same way.
+   */
+  public static void configureJob(Configuration conf, Table odpsTable,
+                                  TableTunnel tunnel) throws IOException {
+    conf.setBoolean(OdpsConstants.JOB_COMMIT, true);
+    if (conf.get(OdpsConstants.JOB_COMMIT_DIR) == null) {
+      Path dir = new Path(FileSystem.get(conf).getHomeDirectory(),
+          COMMIT_DIR_NAME + Path.SEPARATOR + conf.get(OdpsConstants.TABLE_NAME)
+          + "_" + UUID.randomUUID().toString());
+      conf.set(OdpsConstants.JOB_COMMIT_DIR, dir.toString());
+    }
+    conf.setInt(OdpsConstants.JOB_SESSION_COUNT, 0);
+
+    String[] partitionKeys = strToArray(conf.get(OdpsConstants.PARTITION_KEY));
+    String[] partitionValues =
+        strToArray(conf.get(OdpsConstants.PARTITION_VALUE));
+    String partitionSpec = null;
+    if (partitionKeys != null && partitionValues != null) {
+      for (String partitionValue : partitionValues) {
+        if (OdpsUploadProcessor.tagPattern.matcher(partitionValue).find()) {
+          LOG.info("Partitions depend on the records, the upload sessions "
+              + "of the task attempts are committed by the job");
+          return;
+        }
+      }
+      partitionSpec = getPartitionSpec(partitionKeys, partitionValues);
+    }
+
+    String project = conf.get(OdpsConstants.PROJECT);
+    String tableName = conf.get(OdpsConstants.TABLE_NAME);
+    TableTunnel.UploadSession uploadSession;
+    try {
+      if (partitionSpec == null) {
+        uploadSession = tunnel.createUploadSession(project, tableName);
+      } else {
+        odpsTable.createPartition(new PartitionSpec(partitionSpec), true);
+        uploadSession = tunnel.createUploadSession(project, tableName,
+            new PartitionSpec(partitionSpec));
+      }
+    } catch (OdpsException e) {
+      throw new IOException("Could not create the upload session of the job",
+          e);
+    }
+    addJobSession(conf, partitionSpec, uploadSession.getId());
+    LOG.info("Created upload session " + uploadSession.getId()
+        + (partitionSpec == null ? "" : " for partition " + partitionSpec));
+  }
+
+  static void addJobSession(Configuration conf, String partitionSpec,
+                            String sessionId) {
+    int count = conf.getInt(OdpsConstants.JOB_SESSION_COUNT, 0);
+    conf.set(OdpsConstants.JOB_SESSION_PREFIX + count + ".id", sessionId);
+    if (partitionSpec != null) {
+      conf.set(OdpsConstants.JOB_SESSION_PREFIX + count + ".partition",
+          partitionSpec);
+    }
+    conf.setInt(OdpsConstants.JOB_SESSION_COUNT, count + 1);
+  }
+
+  /**
+   * @return the ids of the job's upload sessions by partition spec, with a
+   * null key for a non-partitioned table
+   */
+  public static Map<String, String> getJobSessionIds(Configuration conf) {
+    Map<String, String> sessionIds = new HashMap<String, String>();
+    int count = conf.getInt(OdpsConstants.JOB_SESSION_COUNT, 0);
+    for (int i = 0; i < count; i++) {
+      sessionIds.put(conf.get(OdpsConstants.JOB_SESSION_PREFIX + i
+          + ".partition"), conf.get(OdpsConstants.JOB_SESSION_PREFIX + i
+          + ".id"));
+    }
+    return sessionIds;
+  }
+
+  /** The attempt this task side configuration belongs to. */
+  public static TaskAttemptID getTaskAttemptID(Configuration conf) {
+    String attemptId = conf.get("mapreduce.task.attempt.id",
+        conf.get("mapred.task.id"));
+    if (attemptId == null) {
+      throw new IllegalStateException("Job level commit needs a task "
+          + "attempt id");
+    }
+    return TaskAttemptID.forName(attemptId);
+  }
+
+  /** Where the attempt stores the blocks it wrote. */
+  public static Path getAttemptManifestPath(Configuration conf,
+                                            TaskAttemptID attemptId) {
+    return new Path(getCommitDir(conf), ATTEMPT_PREFIX + attemptId);
+  }
+
+  static Path getTaskManifestPath(Configuration conf, TaskID taskId) {
+    return new Path(getCommitDir(conf), TASK_PREFIX + taskId);
+  }
+
+  private static Path getCommitDir(Configuration conf) {
+    String dir = conf.get(OdpsConstants.JOB_COMMIT_DIR);
+    if (dir == null) {
+      throw new IllegalStateException("Job level commit is not configured");
+    }
+    return new Path(dir);
+  }
+
+  /** Stores the blocks of an attempt, called when its writer is closed. */
+  public static void writeAttemptManifest(Configuration conf,
+      TaskAttemptID attemptId, OdpsBlockManifest manifest) throws IOException {
+    Path path = getAttemptManifestPath(conf, attemptId);
+    FSDataOutputStream out = path.getFileSystem(conf).create(path, true);
+    try {
+      manifest.write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  @Override
+  public void setupJob(JobContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path dir = getCommitDir(conf);
+    dir.getFileSystem(conf).mkdirs(dir);
+  }
+
+  @Override
+  public void setupTask(TaskAttemptContext context) {
+  }
+
+  @Override
+  public boolean needsTaskCommit(TaskAttemptContext context)
+      throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path path = getAttemptManifestPath(conf, context.getTaskAttemptID());
+    return path.getFileSystem(conf).exists(path);
+  }
+
+  @Override
+  public void commitTask(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    TaskAttemptID attemptId = context.getTaskAttemptID();
+    Path attemptPath = getAttemptManifestPath(conf, attemptId);
+    Path taskPath = getTaskManifestPath(conf, attemptId.getTaskID());
+    FileSystem fs = attemptPath.getFileSystem(conf);
+    // Left behind by an attempt committed before the job was recovered.
+    fs.delete(taskPath, false);
+    if (!fs.rename(attemptPath, taskPath)) {
+      throw new IOException("Could not commit " + attemptPath + " as "
+          + taskPath);
+    }
+  }
+
+  @Override
+  public void abortTask(TaskAttemptContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path path = getAttemptManifestPath(conf, context.getTaskAttemptID());
+    path.getFileSystem(conf).delete(path, false);
+  }
+
+  @Override
+  public void commitJob(JobContext context) throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path dir = getCommitDir(conf);
+    FileSystem fs = dir.getFileSystem(conf);
+
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    for (FileStatus status : fs.listStatus(dir, TASK_MANIFESTS)) {
+      InputStream in = fs.open(status.getPath());
+      try {
+        manifest.addAll(OdpsBlockManifest.read(in));
+      } finally {
+        in.close();
+      }
+    }
+
+    try {
+      for (OdpsBlockManifest.Entry entry : manifest.getEntries()) {
+        Long[] blockIds = entry.getBlockIds();
+        if (blockIds.length == 0) {
+          continue;
+        }
+        commitSession(attach(conf, entry.getPartitionSpec(),
+            entry.getSessionId()), entry.getPartitionSpec(), blockIds);
+      }
+    } catch (TunnelException e) {
+      throw new IOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    fs.delete(dir, true);
+  }
+
+  @Override
+  public void abortJob(JobContext context, JobStatus.State state)
+      throws IOException {
+    Configuration conf = context.getConfiguration();
+    Path dir = getCommitDir(conf);
+    dir.getFileSystem(conf).delete(dir, true);
+  }
+
+  private void commitSession(OdpsUploadSession session, String partitionSpec,
+                             Long[] blockIds)
+      throws InterruptedException, IOException {
+    int count = 0;
+    while (true) {
+      try {
+        session.commit(blockIds);
+        break;
+      } catch (TunnelException te) {
+        LOG.warn("Commit exception in retry " + count, te);
+      }
+      count++;
+      if (count >= COMMIT_RETRY_LIMIT) {
+        throw new IOException("Upload Session commit failed, after retry "
+            + COMMIT_RETRY_LIMIT + " times.");
+      }
+      Thread.sleep(5 * 1000);
+    }
+    LOG.info("Committed " + blockIds.length + " blocks of upload session "
+        + session.getId() + (partitionSpec == null ? ""
+        : " for partition " + partitionSpec));
+  }
+
+  /** Reopens an upload session written by the tasks. */
+  protected OdpsUploadSession attach(Configuration conf, String partitionSpec,
+      String sessionId) throws TunnelException {
+    if (tunnel == null) {
+      Odps odps = new Odps(new AliyunAccount(
+          conf.get(OdpsConstants.ACCESS_ID),
+          conf.get(OdpsConstants.ACCESS_KEY)));
+      odps.setUserAgent(OdpsUtil.getUserAgent());
+      odps.setDefaultProject(conf.get(OdpsConstants.PROJECT));
+      odps.setEndpoint(conf.get(OdpsConstants.ENDPOINT));
+      tunnel = new TableTunnel(odps);
+      String tunnelEndPoint = conf.get(OdpsConstants.TUNNEL_ENDPOINT);
+      if (tunnelEndPoint != null) {
+        tunnel.setEndpoint(OdpsUtil.getTunnelEndPoint(tunnelEndPoint));
+      }
+    }
+    return OdpsTunnelUploadSession.attach(tunnel,
+        conf.get(OdpsConstants.PROJECT), conf.get(OdpsConstants.TABLE_NAME),
+        partitionSpec, sessionId, false);
+  }
+
+  private static String[] strToArray(String s) {
+    if (s == null) {
+      return null;
+    }
+    return s.split(",");
+  }
+
+  private static String getPartitionSpec(String[] partKeys,
+                                         String[] partValues) {
+    if (partKeys.length != partValues.length) {
+      throw new RuntimeException("Numbers of partition key and "
+          + "partition value are not equal.");
+    }
+    StringBuilder sb = new StringBuilder();
+    String sep = "";
+    for (int i = 0; i < partKeys.length; i++) {
+      sb.append(sep).append(partKeys[i]).append("='")
+          .append(partValues[i]).append("'");
+      sep = ",";
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.mapreduce.odps;
+
+import com.cloudera.sqoop.lib.FieldMappable;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.sqoop.mapreduce.DelegatingOutputFormat;
+import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsUploadProcessor;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+/**
+ * Delegates records to {@link org.apache.sqoop.odps.OdpsUploadProcessor},
+ * committing them through {@link OdpsOutputCommitter} if job level commit
+ * is on, and counting its batches in the task counters.
+ */
+public class OdpsOutputFormat<K extends FieldMappable, V>
+    extends DelegatingOutputFormat<K, V> {
+
+  public static final Log LOG =
+      LogFactory.getLog(OdpsOutputFormat.class.getName());
+
+  @Override
+  public RecordWriter<K, V> getRecordWriter(TaskAttemptContext context)
+      throws IOException {
+    RecordWriter<K, V> writer = super.getRecordWriter(context);
+    if (writer instanceof DelegatingOutputFormat.DelegatingRecordWriter) {
+      Object processor =
+          ((DelegatingOutputFormat.DelegatingRecordWriter) writer)
+          .getMapProcessor();
+      if (processor instanceof OdpsUploadProcessor) {
+        ((OdpsUploadProcessor) processor).setBatchCounters(
+            getCounter(context, OdpsConstants.COUNTER_BATCH_ROWS),
+            getCounter(context, OdpsConstants.COUNTER_BATCH_BYTES),
+            getCounter(context, OdpsConstants.COUNTER_BATCHES));
+      }
+    }
+    return writer;
+  }
+
+  /**
+   * @return the counter, or null if the task context has no counters, as
+   * on Hadoop 1.
+   */
+  static Counter getCounter(TaskAttemptContext context, String name) {
+    try {
+      Method method = context.getClass().getMethod("getCounter",
+          String.class, String.class);
+      return (Counter) method.invoke(context, OdpsConstants.COUNTER_GROUP,
+          name);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      LOG.warn("Can't get counter " + name, e);
+      return null;
+    }
+  }
+
+  @Override
+  public OutputCommitter getOutputCommitter(TaskAttemptContext context)
+      throws IOException, InterruptedException {
+    if (OdpsOutputCommitter.isJobCommit(context.getConfiguration())) {
+      return new OdpsOutputCommitter();
+    }
+    return super.getOutputCommitter(context);
+  }
+}
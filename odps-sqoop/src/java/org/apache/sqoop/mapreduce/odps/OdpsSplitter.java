@@ -17,45 +17,277 @@
  */
 package org.apache.sqoop.mapreduce.odps;
 
-import com.aliyun.odps.tunnel.TableTunnel;
-import com.aliyun.odps.tunnel.TunnelException;
+import com.aliyun.odps.PartitionSpec;
 import com.cloudera.sqoop.config.ConfigurationHelper;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.InputSplit;
-import org.apache.sqoop.mapreduce.db.IntegerSplitter;
+import org.apache.sqoop.odps.OdpsConstants;
 
-import java.io.IOException;
-import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 
-public class OdpsSplitter extends IntegerSplitter {
-  public List<InputSplit> split(Configuration conf, long count) 
-      throws SQLException, IOException, TunnelException {
+/**
+ * Plans the splits of an ODPS export. The rows of all selected partitions
+ * are laid out one after the other and cut into splits of about the same
+ * number of bytes, estimated from the size and record count of each
+ * partition. A large partition is spread over several splits, small
+ * partitions are packed into one split with one range per partition.
+ */
+public class OdpsSplitter {
+
+  public static final Log LOG = LogFactory.getLog(
+      OdpsSplitter.class.getName());
+
+  /**
+   * The rows of one partition, or of an unpartitioned table, as seen by one
+   * download session.
+   */
+  public static class Slice {
+    private final String partitionSpec;
+    private final String downloadSessionId;
+    private final long recordCount;
+    private final long bytes;
+
+    /**
+     * @param partitionSpec the partition, or null for the whole table
+     * @param bytes the size of the partition, or 0 if unknown
+     */
+    public Slice(String partitionSpec, String downloadSessionId,
+        long recordCount, long bytes) {
+      this.partitionSpec = partitionSpec;
+      this.downloadSessionId = downloadSessionId;
+      this.recordCount = recordCount;
+      this.bytes = bytes;
+    }
+
+    public String getPartitionSpec() {
+      return partitionSpec;
+    }
+
+    public String getDownloadSessionId() {
+      return downloadSessionId;
+    }
+
+    public long getRecordCount() {
+      return recordCount;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+  }
 
+  /**
+   * Splits the slices into splits of the configured byte budget, or into
+   * as many splits as there are map tasks if no budget is configured.
+   */
+  public List<InputSplit> split(Configuration conf, List<Slice> slices) {
     int numSplits = ConfigurationHelper.getConfNumMaps(conf);
     if (numSplits < 1) {
-        numSplits = 1;
+      numSplits = 1;
     }
+    long splitBytes = conf.getLong(OdpsConstants.EXPORT_SPLIT_BYTES, 0);
     long splitLimit = org.apache.sqoop.config.ConfigurationHelper
         .getSplitLimit(conf);
-    List<Long> splitPoints = split(numSplits, splitLimit, 0, count);
+    return split(slices, numSplits, splitBytes, splitLimit);
+  }
+
+  /**
+   * @param numSplits the number of splits to aim for if splitBytes is not
+   * positive
+   * @param splitBytes the byte budget of one split, or 0
+   * @param splitLimit the maximum number of rows of an average split, or
+   * not positive for no limit
+   */
+  public static List<InputSplit> split(List<Slice> slices, int numSplits,
+      long splitBytes, long splitLimit) {
+    double[] rowBytes = estimateRowBytes(slices);
+    double totalBytes = 0;
+    long totalRows = 0;
+    for (int i = 0; i < slices.size(); i++) {
+      totalBytes += slices.get(i).getRecordCount() * rowBytes[i];
+      totalRows += slices.get(i).getRecordCount();
+    }
     List<InputSplit> splits = new ArrayList<InputSplit>();
+    if (totalRows == 0) {
+      return splits;
+    }
+
+    double target = splitBytes > 0 ? splitBytes : totalBytes / numSplits;
+    if (splitLimit > 0) {
+      target = Math.min(target, splitLimit * (totalBytes / totalRows));
+    }
+    long maxSplits = Math.max(1, (long) Math.ceil(totalBytes / target - 1e-9));
+
+    // Split k takes every row that starts within [k, k + 1) * target bytes.
+    List<OdpsExportInputFormat.Range> ranges =
+        new ArrayList<OdpsExportInputFormat.Range>();
+    double offset = 0;
+    long splitIndex = 0;
+    for (int i = 0; i < slices.size(); i++) {
+      Slice slice = slices.get(i);
+      long pos = 0;
+      while (pos < slice.getRecordCount()) {
+        long rows = slice.getRecordCount() - pos;
+        double boundary = (splitIndex + 1) * target;
+        boolean last = splitIndex >= maxSplits - 1;
+        if (!last) {
+          long toBoundary =
+              (long) Math.ceil((boundary - offset) / rowBytes[i] - 1e-9);
+          if (toBoundary <= 0) {
+            closeSplit(splits, ranges);
+            splitIndex++;
+            continue;
+          }
+          rows = Math.min(rows, toBoundary);
+        }
+        ranges.add(new OdpsExportInputFormat.Range(slice.getPartitionSpec(),
+            slice.getDownloadSessionId(), pos, rows));
+        pos += rows;
+        offset += rows * rowBytes[i];
+        if (!last && offset >= boundary - 1e-9) {
+          closeSplit(splits, ranges);
+          splitIndex++;
+        }
+      }
+    }
+    closeSplit(splits, ranges);
+    LOG.info("Planned " + splits.size() + " splits of about "
+        + (long) target + " bytes over " + slices.size() + " partitions");
+    return splits;
+  }
+
+  private static void closeSplit(List<InputSplit> splits,
+      List<OdpsExportInputFormat.Range> ranges) {
+    if (!ranges.isEmpty()) {
+      splits.add(new OdpsExportInputFormat.OdpsExportInputSplit(
+          new ArrayList<OdpsExportInputFormat.Range>(ranges)));
+      ranges.clear();
+    }
+  }
 
-    long start = splitPoints.get(0);
-    for (int i = 1; i < splitPoints.size(); i++) {
-      long end = splitPoints.get(i);
-      long readLength;
-      if (i == splitPoints.size() - 1) {
-          readLength = end - start;
+  /**
+   * Bytes per row of each slice. Slices without size metadata get the
+   * average of the others, or 1 if no slice has any, which splits by rows.
+   */
+  static double[] estimateRowBytes(List<Slice> slices) {
+    double[] rowBytes = new double[slices.size()];
+    long knownBytes = 0;
+    long knownRows = 0;
+    for (Slice slice : slices) {
+      if (slice.getBytes() > 0 && slice.getRecordCount() > 0) {
+        knownBytes += slice.getBytes();
+        knownRows += slice.getRecordCount();
+      }
+    }
+    double average = knownRows == 0 ? 1 : (double) knownBytes / knownRows;
+    for (int i = 0; i < rowBytes.length; i++) {
+      Slice slice = slices.get(i);
+      if (slice.getBytes() > 0 && slice.getRecordCount() > 0) {
+        rowBytes[i] = (double) slice.getBytes() / slice.getRecordCount();
       } else {
-          readLength = end - start - 1;
+        rowBytes[i] = average;
       }
-      splits.add(new OdpsExportInputFormat
-          .OdpsExportInputSplit(start, readLength));
-      start = end;
     }
+    return rowBytes;
+  }
 
-    return splits;
+  /**
+   * @return true if the partition spec option names more than one
+   * partition, i.e. it lists several specs separated by ';' or uses the
+   * wildcards '*' and '?' in a value.
+   */
+  public static boolean isPattern(String partitionSpecs) {
+    return partitionSpecs.indexOf(';') >= 0
+        || partitionSpecs.indexOf('*') >= 0
+        || partitionSpecs.indexOf('?') >= 0;
+  }
+
+  /**
+   * Returns the partitions matching any of the ';' separated specs. A spec
+   * matches a partition if each of its keys has a matching value; keys it
+   * leaves out match anything.
+   */
+  public static List<PartitionSpec> selectPartitions(
+      List<PartitionSpec> partitions, String partitionSpecs) {
+    List<Map<String, Pattern>> patterns = new ArrayList<Map<String, Pattern>>();
+    for (String spec : partitionSpecs.split(";")) {
+      if (!spec.trim().isEmpty()) {
+        patterns.add(parsePattern(spec));
+      }
+    }
+    List<PartitionSpec> selected = new ArrayList<PartitionSpec>();
+    for (PartitionSpec partition : partitions) {
+      for (Map<String, Pattern> pattern : patterns) {
+        if (matches(partition, pattern)) {
+          selected.add(partition);
+          break;
+        }
+      }
+    }
+    return selected;
+  }
+
+  private static boolean matches(PartitionSpec partition,
+      Map<String, Pattern> pattern) {
+    Map<String, String> values = new LinkedHashMap<String, String>();
+    for (String key : partition.keys()) {
+      values.put(key.toLowerCase(), partition.get(key));
+    }
+    for (Map.Entry<String, Pattern> e : pattern.entrySet()) {
+      String value = values.get(e.getKey());
+      if (value == null || !e.getValue().matcher(value).matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Map<String, Pattern> parsePattern(String spec) {
+    Map<String, Pattern> pattern = new LinkedHashMap<String, Pattern>();
+    for (String part : spec.split(",")) {
+      int eq = part.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Invalid partition spec: " + spec);
+      }
+      String key = part.substring(0, eq).trim().toLowerCase();
+      String value = unquote(part.substring(eq + 1).trim());
+      pattern.put(key, globToRegex(value));
+    }
+    return pattern;
+  }
+
+  private static String unquote(String value) {
+    if (value.length() >= 2 && (value.startsWith("'") && value.endsWith("'")
+        || value.startsWith("\"") && value.endsWith("\""))) {
+      return value.substring(1, value.length() - 1);
+    }
+    return value;
+  }
+
+  private static Pattern globToRegex(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c == '*' || c == '?') {
+        if (literal.length() > 0) {
+          regex.append(Pattern.quote(literal.toString()));
+          literal.setLength(0);
+        }
+        regex.append(c == '*' ? ".*" : ".");
+      } else {
+        literal.append(c);
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString());
   }
 }
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.tunnel.TunnelException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves uploads off the caller's thread. Batches passed to
+ * {@link #write(List)} go through a bounded queue to background upload
+ * threads, each owning its own delegate writer; the caller blocks only when
+ * the queue is full. The first upload failure is rethrown by the next
+ * {@link #write(List)} or by {@link #close()}.
+ */
+public class OdpsAsyncWriter extends OdpsWriter {
+  public static final Log LOG =
+      LogFactory.getLog(OdpsAsyncWriter.class.getName());
+
+  private static final List<OdpsRowDO> END_OF_STREAM =
+      Collections.emptyList();
+  private static final long OFFER_WAIT_MS = 100;
+
+  /** Creates the delegate writer of one upload thread. */
+  public interface WriterFactory {
+    OdpsWriter create() throws TunnelException, IOException;
+  }
+
+  private final BlockingQueue<List<OdpsRowDO>> queue;
+  private final List<Thread> uploaders;
+  private volatile Throwable failure;
+  private boolean closed;
+
+  public OdpsAsyncWriter(WriterFactory writerFactory, int threads,
+                         int queueSize) throws TunnelException, IOException {
+    if (threads <= 0 || queueSize <= 0) {
+      throw new IllegalArgumentException("Upload threads and queue size "
+          + "must be positive");
+    }
+    queue = new ArrayBlockingQueue<List<OdpsRowDO>>(queueSize);
+    uploaders = new ArrayList<Thread>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread t = new Thread(new Uploader(writerFactory.create()),
+          "odps-uploader-" + i);
+      t.setDaemon(true);
+      uploaders.add(t);
+    }
+    for (Thread t : uploaders) {
+      t.start();
+    }
+  }
+
+  @Override
+  public void write(List<OdpsRowDO> rowList)
+      throws InterruptedException, TunnelException, IOException {
+    if (rowList == null || rowList.isEmpty()) {
+      return;
+    }
+    checkFailure();
+    enqueue(new ArrayList<OdpsRowDO>(rowList));
+  }
+
+  /**
+   * Waits for the upload threads to drain the queue and close their writers.
+   */
+  @Override
+  public void close() throws InterruptedException, TunnelException,
+      IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      for (int i = 0; i < uploaders.size(); i++) {
+        enqueue(END_OF_STREAM);
+      }
+    } catch (IOException e) {
+      // An upload thread failed; the rest are stopped below.
+    }
+    for (Thread t : uploaders) {
+      if (failure != null) {
+        t.interrupt();
+      }
+      t.join();
+    }
+    checkFailure();
+  }
+
+  private void enqueue(List<OdpsRowDO> batch)
+      throws InterruptedException, IOException {
+    while (!queue.offer(batch, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+      checkFailure();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure;
+    if (t != null) {
+      throw new IOException("Upload to ODPS failed", t);
+    }
+  }
+
+  private class Uploader implements Runnable {
+    private final OdpsWriter writer;
+
+    Uploader(OdpsWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (failure == null) {
+          List<OdpsRowDO> batch = queue.take();
+          if (batch == END_OF_STREAM) {
+            if (failure == null) {
+              writer.close();
+            }
+            return;
+          }
+          writer.write(batch);
+        }
+      } catch (InterruptedException e) {
+        // Stopped because another upload thread failed.
+      } catch (Throwable t) {
+        LOG.error("Upload thread " + Thread.currentThread().getName()
+            + " failed", t);
+        if (failure == null) {
+          failure = t;
+        }
+      }
+    }
+  }
+}
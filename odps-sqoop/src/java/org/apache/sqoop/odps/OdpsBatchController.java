@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Decides how many rows go into one upload batch. A fixed controller keeps
+ * the configured row count. An adaptive controller climbs towards the batch
+ * size with the best upload throughput: after every full batch it doubles
+ * or halves the row count, and turns around when throughput drops. A batch
+ * that takes longer than the latency limit halves the row count, and a
+ * batch cut short by the byte limit pulls it down to what fits. The row
+ * count is then held for one batch within the limits, which becomes the
+ * new throughput baseline, before the controller grows again.
+ */
+public class OdpsBatchController {
+
+  public static final Log LOG =
+      LogFactory.getLog(OdpsBatchController.class.getName());
+
+  /** Throughput changes within this fraction count as noise. */
+  static final double TOLERANCE = 0.1;
+
+  private final boolean adaptive;
+  private final int minRows;
+  private final int maxRows;
+  private final long maxLatencyNanos;
+
+  private int batchRows;
+  private boolean growing = true;
+  private boolean holding;
+  private double lastThroughput;
+
+  /** Creates a controller that keeps batchRows. */
+  public OdpsBatchController(int batchRows) {
+    this(batchRows, batchRows, batchRows, 0, false);
+  }
+
+  /**
+   * @param initialRows the row count of the first batch
+   * @param minRows the smallest row count the controller will choose
+   * @param maxRows the largest row count the controller will choose
+   * @param maxLatencyMs batches slower than this shrink the row count
+   */
+  public OdpsBatchController(int initialRows, int minRows, int maxRows,
+                             long maxLatencyMs, boolean adaptive) {
+    if (minRows <= 0 || minRows > maxRows) {
+      throw new IllegalArgumentException("Invalid batch row bounds ["
+          + minRows + ", " + maxRows + "]");
+    }
+    this.adaptive = adaptive;
+    this.minRows = minRows;
+    this.maxRows = maxRows;
+    this.maxLatencyNanos = maxLatencyMs * 1000000L;
+    this.batchRows = clamp(initialRows);
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * @return the number of rows after which the current batch is sent
+   */
+  public int getBatchRows() {
+    return batchRows;
+  }
+
+  /**
+   * Reports a sent batch.
+   *
+   * @param rows the rows of the batch
+   * @param bytes the estimated size of the batch
+   * @param elapsedNanos the time since the previous batch was sent,
+   *                     throughput is measured over it
+   * @param writeNanos the time it took to hand the batch to the writer,
+   *                   checked against the latency limit
+   */
+  public void onBatchSent(int rows, long bytes, long elapsedNanos,
+                          long writeNanos) {
+    if (!adaptive || rows <= 0 || elapsedNanos <= 0) {
+      return;
+    }
+    int previous = batchRows;
+    double throughput = bytes * 1e9 / elapsedNanos;
+    if (rows < batchRows) {
+      // Cut by the byte limit, more rows would not fit anyway.
+      batchRows = clamp(rows);
+      holding = true;
+    } else if (writeNanos > maxLatencyNanos) {
+      batchRows = clamp(batchRows / 2);
+      holding = true;
+    } else if (holding) {
+      holding = false;
+      growing = true;
+    } else {
+      if (lastThroughput > 0
+          && throughput < lastThroughput * (1 - TOLERANCE)) {
+        growing = !growing;
+      }
+      batchRows = clamp(growing ? (long) batchRows * 2 : batchRows / 2);
+    }
+    lastThroughput = throughput;
+    if (batchRows != previous && LOG.isDebugEnabled()) {
+      LOG.debug("Batch size changed from " + previous + " to " + batchRows
+          + " rows");
+    }
+  }
+
+  private int clamp(long rows) {
+    return (int) Math.max(minRows, Math.min(maxRows, rows));
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The blocks a task attempt wrote but did not commit, by upload session.
+ * Under job level commit every attempt writes its manifest on close, the
+ * committed attempt's manifest is kept on task commit and the job commits
+ * each session once with the blocks of all kept manifests.
+ */
+public class OdpsBlockManifest {
+
+  /** Blocks of one upload session. */
+  public static class Entry {
+    private final String sessionId;
+    private final String partitionSpec;
+    private final SortedSet<Long> blockIds = new TreeSet<Long>();
+
+    Entry(String sessionId, String partitionSpec) {
+      this.sessionId = sessionId;
+      this.partitionSpec = partitionSpec;
+    }
+
+    public String getSessionId() {
+      return sessionId;
+    }
+
+    /** The partition spec, or null for a non-partitioned table. */
+    public String getPartitionSpec() {
+      return partitionSpec;
+    }
+
+    public Long[] getBlockIds() {
+      return blockIds.toArray(new Long[blockIds.size()]);
+    }
+  }
+
+  private final Map<String, Entry> entries =
+      new LinkedHashMap<String, Entry>();
+
+  /** Called concurrently by the writers of one attempt. */
+  public synchronized void add(String partitionSpec, String sessionId,
+                               Long[] blockIds) {
+    Entry entry = entries.get(sessionId);
+    if (entry == null) {
+      entry = new Entry(sessionId, partitionSpec);
+      entries.put(sessionId, entry);
+    }
+    for (Long blockId : blockIds) {
+      entry.blockIds.add(blockId);
+    }
+  }
+
+  public synchronized void addAll(OdpsBlockManifest other) {
+    for (Entry entry : other.getEntries()) {
+      add(entry.partitionSpec, entry.sessionId, entry.getBlockIds());
+    }
+  }
+
+  public synchronized Collection<Entry> getEntries() {
+    return new ArrayList<Entry>(entries.values());
+  }
+
+  public synchronized boolean isEmpty() {
+    return entries.isEmpty();
+  }
+
+  /**
+   * One line per session: id, comma separated block ids and the partition
+   * spec, which is empty for a non-partitioned table.
+   */
+  public synchronized void write(OutputStream out) throws IOException {
+    Writer writer = new OutputStreamWriter(out, "UTF-8");
+    for (Entry entry : entries.values()) {
+      writer.write(entry.sessionId);
+      writer.write('\t');
+      String sep = "";
+      for (Long blockId : entry.blockIds) {
+        writer.write(sep);
+        writer.write(blockId.toString());
+        sep = ",";
+      }
+      writer.write('\t');
+      if (entry.partitionSpec != null) {
+        writer.write(entry.partitionSpec);
+      }
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  public static OdpsBlockManifest read(InputStream in) throws IOException {
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    BufferedReader reader =
+        new BufferedReader(new InputStreamReader(in, "UTF-8"));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) {
+        continue;
+      }
+      String[] fields = line.split("\t", 3);
+      if (fields.length != 3) {
+        throw new IOException("Malformed block manifest line: " + line);
+      }
+      List<Long> blockIds = new ArrayList<Long>();
+      if (!fields[1].isEmpty()) {
+        for (String blockId : fields[1].split(",")) {
+          blockIds.add(Long.valueOf(blockId));
+        }
+      }
+      manifest.add(fields[2].isEmpty() ? null : fields[2], fields[0],
+          blockIds.toArray(new Long[blockIds.size()]));
+    }
+    return manifest;
+  }
+}
@@ -0,0 +1,294 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TunnelException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Uploads one partition through a single long-lived upload session.
+ * Records are buffered into blocks, full blocks are written on the shared
+ * writer pool, and all blocks are committed together in {@link #close()}.
+ */
+class OdpsBlockUploader {
+  public static final Log LOG =
+      LogFactory.getLog(OdpsBlockUploader.class.getName());
+
+  /** The tunnel only accepts block ids below this value. */
+  static final long MAX_BLOCK_ID = 20000L;
+  private static final int COMMIT_RETRY_LIMIT = 6;
+
+  private final String partitionSpec;
+  private final OdpsUploadSession.Factory sessionFactory;
+  private final ExecutorService executor;
+  private final Semaphore inFlightBlocks;
+  private final int blockRecords;
+  private final int retryCount;
+
+  private OdpsUploadSession session;
+  private long nextBlockId;
+  private long blockLimit = MAX_BLOCK_ID;
+  // Job level commit: blocks are recorded instead of committed, and the
+  // job's session for this partition is used while the id range lasts.
+  private OdpsBlockManifest manifest;
+  private OdpsUploadSession jobSession;
+  private List<Record> buffer;
+  private long bufferedBytes;
+  private final List<Future<Long>> pendingBlocks =
+      new ArrayList<Future<Long>>();
+  private final List<Long> writtenBlocks = new ArrayList<Long>();
+
+  OdpsBlockUploader(String partitionSpec,
+                    OdpsUploadSession.Factory sessionFactory,
+                    ExecutorService executor, Semaphore inFlightBlocks,
+                    int blockRecords, int retryCount) {
+    this.partitionSpec = partitionSpec;
+    this.sessionFactory = sessionFactory;
+    this.executor = executor;
+    this.inFlightBlocks = inFlightBlocks;
+    this.blockRecords = blockRecords;
+    this.retryCount = retryCount;
+  }
+
+  public String getPartitionSpec() {
+    return partitionSpec;
+  }
+
+  /**
+   * Records the blocks in {@code manifest} instead of committing them. Blocks
+   * go to {@code jobSession} with ids in [firstBlockId, blockLimit) first,
+   * then to sessions of this uploader's own. Must be called before the first
+   * record is appended.
+   *
+   * @param jobSession the session the job opened for this partition, or null
+   */
+  public void setJobCommit(OdpsBlockManifest manifest,
+                           OdpsUploadSession jobSession, long firstBlockId,
+                           long blockLimit) {
+    this.manifest = manifest;
+    if (jobSession != null && firstBlockId < blockLimit) {
+      this.jobSession = jobSession;
+      this.nextBlockId = firstBlockId;
+      this.blockLimit = blockLimit;
+    }
+  }
+
+  /**
+   * @return the next free block id of the job session, or -1 if this
+   * uploader does not write to it (any more)
+   */
+  public long getJobBlockCursor() {
+    return jobSession != null ? nextBlockId : -1;
+  }
+
+  /** Estimated size of the records not yet handed to the writer pool. */
+  public long getBufferedBytes() {
+    return bufferedBytes;
+  }
+
+  public void append(Record record)
+      throws InterruptedException, TunnelException, IOException {
+    if (buffer == null) {
+      buffer = new ArrayList<Record>(blockRecords);
+    }
+    buffer.add(record);
+    bufferedBytes += OdpsUtil.estimateRecordSize(record);
+    if (buffer.size() >= blockRecords) {
+      flushBlock();
+    }
+  }
+
+  /**
+   * Hands the buffered records to the writer pool as a new block. Blocks
+   * while the pool already has as many blocks in flight as it has writers.
+   */
+  public void flushBlock()
+      throws InterruptedException, TunnelException, IOException {
+    if (buffer == null || buffer.isEmpty()) {
+      return;
+    }
+    reapCompletedBlocks();
+    if (session == null) {
+      session = jobSession != null ? jobSession : createSession();
+    } else if (nextBlockId >= blockLimit) {
+      // Out of block ids: commit what we have and continue in a new session.
+      LOG.info("Upload session " + session.getId() + " reached block id "
+          + blockLimit + ", committing and opening a new one");
+      awaitBlocks();
+      commitSession();
+      session = createSession();
+      jobSession = null;
+      nextBlockId = 0;
+      blockLimit = MAX_BLOCK_ID;
+    }
+
+    final OdpsUploadSession blockSession = session;
+    final long blockId = nextBlockId++;
+    final List<Record> records = buffer;
+    buffer = null;
+    bufferedBytes = 0;
+
+    inFlightBlocks.acquire();
+    try {
+      pendingBlocks.add(executor.submit(new Callable<Long>() {
+        @Override
+        public Long call() throws Exception {
+          try {
+            writeBlock(blockSession, blockId, records);
+            return blockId;
+          } finally {
+            inFlightBlocks.release();
+          }
+        }
+      }));
+    } catch (RejectedExecutionException e) {
+      inFlightBlocks.release();
+      throw new IOException("Block writer pool is shut down", e);
+    }
+  }
+
+  /**
+   * Writes out the remaining records, waits for every block and commits the
+   * session. Nothing is committed if any block failed.
+   */
+  public void close()
+      throws InterruptedException, TunnelException, IOException {
+    flushBlock();
+    awaitBlocks();
+    if (session != null && !writtenBlocks.isEmpty()) {
+      commitSession();
+    }
+    session = null;
+  }
+
+  private OdpsUploadSession createSession()
+      throws InterruptedException, TunnelException {
+    int retry = 0;
+    while (true) {
+      try {
+        return sessionFactory.create(partitionSpec);
+      } catch (TunnelException e) {
+        LOG.warn("Create upload session exception in retry " + retry, e);
+        retry++;
+        if (retry > retryCount) {
+          throw e;
+        }
+        Thread.sleep(50 + 1000 * (retry - 1));
+      }
+    }
+  }
+
+  private void writeBlock(OdpsUploadSession blockSession, long blockId,
+                          List<Record> records)
+      throws InterruptedException, TunnelException, IOException {
+    int retry = 0;
+    while (true) {
+      try {
+        blockSession.writeBlock(blockId, records);
+        return;
+      } catch (Exception e) {
+        LOG.warn("Write block " + blockId + " exception in retry " + retry, e);
+        retry++;
+        if (retry > retryCount) {
+          throw new IOException("Write block " + blockId + " of session "
+              + blockSession.getId() + " failed. Retry count reaches limit.",
+              e);
+        }
+        Thread.sleep(50 + 1000 * (retry - 1));
+      }
+    }
+  }
+
+  private void reapCompletedBlocks() throws InterruptedException, IOException {
+    Iterator<Future<Long>> it = pendingBlocks.iterator();
+    while (it.hasNext()) {
+      Future<Long> future = it.next();
+      if (future.isDone()) {
+        it.remove();
+        writtenBlocks.add(getBlockId(future));
+      }
+    }
+  }
+
+  private void awaitBlocks() throws InterruptedException, IOException {
+    try {
+      for (Future<Long> future : pendingBlocks) {
+        writtenBlocks.add(getBlockId(future));
+      }
+    } finally {
+      pendingBlocks.clear();
+    }
+  }
+
+  private Long getBlockId(Future<Long> future)
+      throws InterruptedException, IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  private void commitSession() throws InterruptedException, IOException {
+    Collections.sort(writtenBlocks);
+    Long[] blockIds = writtenBlocks.toArray(new Long[writtenBlocks.size()]);
+    if (manifest != null) {
+      manifest.add(partitionSpec, session.getId(), blockIds);
+      writtenBlocks.clear();
+      return;
+    }
+    int count = 0;
+    while (true) {
+      try {
+        session.commit(blockIds);
+        break;
+      } catch (TunnelException te) {
+        LOG.warn("Commit exception in retry " + count, te);
+      }
+      count++;
+      if (count >= COMMIT_RETRY_LIMIT) {
+        throw new IOException("Upload Session commit failed, after retry "
+            + COMMIT_RETRY_LIMIT + " times.");
+      }
+      Thread.sleep(5 * 1000);
+    }
+    LOG.info("Committed " + blockIds.length + " blocks of upload session "
+        + session.getId() + (partitionSpec == null ? ""
+        : " for partition " + partitionSpec));
+    writtenBlocks.clear();
+  }
+}
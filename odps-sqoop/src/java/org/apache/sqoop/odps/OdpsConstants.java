@@ -45,10 +45,59 @@ private OdpsConstants() {}
 
   public static final String PARTITION_SPEC = "sqoop.odps.partition.spec";
   public static final String USE_COMPRESS_IN_UPLOAD = "sqoop.odps.use.compress";
+  public static final String BLOCK_WRITERS = "sqoop.odps.block.writers";
+  public static final String BLOCK_RECORDS = "sqoop.odps.block.records";
+  public static final String UPLOAD_THREADS = "sqoop.odps.upload.threads";
+  public static final String UPLOAD_QUEUE_SIZE = "sqoop.odps.upload.queue.size";
+  public static final String MAX_OPEN_PARTITIONS =
+      "sqoop.odps.max.open.partitions";
+  public static final String PARTITION_BUFFER_BYTES =
+      "sqoop.odps.partition.buffer.bytes";
+  public static final String EXPORT_READER_THREADS =
+      "sqoop.odps.export.reader.threads";
+  public static final String EXPORT_READER_QUEUE_SIZE =
+      "sqoop.odps.export.reader.queue.size";
+  public static final String EXPORT_SPLIT_BYTES =
+      "sqoop.odps.export.split.bytes";
+  public static final String JOB_COMMIT = "sqoop.odps.job.commit";
+  public static final String JOB_COMMIT_DIR = "sqoop.odps.job.commit.dir";
+  public static final String JOB_SESSION_COUNT =
+      "sqoop.odps.job.session.count";
+  public static final String JOB_SESSION_PREFIX = "sqoop.odps.job.session.";
+  public static final String INPUT_FIELD_DELIM =
+      "sqoop.odps.input.field.delim";
+  public static final String INPUT_ENCLOSED_BY =
+      "sqoop.odps.input.enclosed.by";
+  public static final String INPUT_ESCAPED_BY = "sqoop.odps.input.escaped.by";
+  public static final String INPUT_ENCLOSE_REQUIRED =
+      "sqoop.odps.input.enclose.required";
+  public static final String INPUT_NULL_STRING =
+      "sqoop.odps.input.null.string";
+  public static final String BATCH_BYTES = "sqoop.odps.batch.bytes";
+  public static final String BATCH_ADAPTIVE = "sqoop.odps.batch.adaptive";
+  public static final String BATCH_MAX_LATENCY_MS =
+      "sqoop.odps.batch.max.latency.ms";
+
+  public static final String COUNTER_GROUP = "ODPS upload";
+  public static final String COUNTER_BATCH_ROWS = "Rows in batches";
+  public static final String COUNTER_BATCH_BYTES = "Bytes in batches";
+  public static final String COUNTER_BATCHES = "Batches";
 
   public static final int DEFAULT_BATCH_SIZE = 1000;
+  public static final long DEFAULT_BATCH_BYTES = 64L * 1024 * 1024;
+  public static final long DEFAULT_BATCH_MAX_LATENCY_MS = 10000;
+  public static final int ADAPTIVE_BATCH_MIN_ROWS = 100;
+  public static final int ADAPTIVE_BATCH_MAX_ROWS = 1 << 20;
   public static final int DEFAULT_SHARD_NUM = 1;
   public static final int DEFAULT_SHARD_TIMEOUT = 60;
   public static final int DEFAULT_RETRY_COUNT = 3;
+  public static final int DEFAULT_BLOCK_WRITERS = 0;
+  public static final int DEFAULT_BLOCK_RECORDS = 20000;
+  public static final int DEFAULT_UPLOAD_THREADS = 0;
+  public static final int DEFAULT_MAX_OPEN_PARTITIONS = 128;
+  public static final long DEFAULT_PARTITION_BUFFER_BYTES = 256L * 1024 * 1024;
+  public static final int DEFAULT_EXPORT_READER_THREADS = 1;
+  public static final int DEFAULT_EXPORT_READER_QUEUE_SIZE = 16;
+  public static final int EXPORT_READER_BATCH_SIZE = 1000;
   public static final int DEFAULT_HUBLIFECYCLE = 7;
 }
@@ -0,0 +1,63 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.cloudera.sqoop.lib.FieldMappable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A row read straight from an input file, with its values in input column
+ * order. The HDFS import mappers pass it to {@link OdpsUploadProcessor},
+ * which converts the values by column index, so no generated record class
+ * is needed. Mappers reuse one instance; it is only valid until the next
+ * row is written.
+ */
+public class OdpsInputRow implements FieldMappable {
+
+  private final String[] columnNames;
+  private final Object[] values;
+
+  public OdpsInputRow(String[] columnNames) {
+    this.columnNames = columnNames;
+    this.values = new Object[columnNames.length];
+  }
+
+  public String[] getColumnNames() {
+    return columnNames;
+  }
+
+  /** The values in input column order, filled in place by the mapper. */
+  public Object[] getValues() {
+    return values;
+  }
+
+  /**
+   * Only used to resolve the tags of dynamic partition values. Keys are in
+   * lower case, as the tags are looked up.
+   */
+  @Override
+  public Map<String, Object> getFieldMap() {
+    Map<String, Object> fields = new HashMap<String, Object>();
+    for (int i = 0; i < columnNames.length; i++) {
+      fields.put(columnNames[i].toLowerCase(), values[i]);
+    }
+    return fields;
+  }
+}
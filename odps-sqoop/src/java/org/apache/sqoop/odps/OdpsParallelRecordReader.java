@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+import com.aliyun.odps.tunnel.TunnelException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a range of a download session with several concurrent readers.
+ * The range is cut into one contiguous sub-range per fetch thread; each
+ * thread reads its sub-range into batches and puts them on a bounded queue,
+ * so at most queueSize batches are buffered ahead of the caller. Records
+ * from different sub-ranges are interleaved. The first fetch failure is
+ * rethrown by the next {@link #read()}.
+ */
+public class OdpsParallelRecordReader implements RecordReader {
+  public static final Log LOG =
+      LogFactory.getLog(OdpsParallelRecordReader.class.getName());
+
+  private static final List<Record> END_OF_RANGE =
+      Collections.emptyList();
+  private static final long POLL_WAIT_MS = 100;
+
+  /** Opens a reader over [start, start + count) of the download session. */
+  public interface RangeReaderFactory {
+    RecordReader open(long start, long count)
+        throws TunnelException, IOException;
+  }
+
+  private final BlockingQueue<List<Record>> queue;
+  private final List<Thread> fetchers;
+  private final int batchSize;
+  private volatile Throwable failure;
+  private volatile boolean closed;
+
+  private List<Record> current = END_OF_RANGE;
+  private int currentPos;
+  private int finishedFetchers;
+
+  public OdpsParallelRecordReader(RangeReaderFactory readerFactory,
+                                  long start, long length, int threads,
+                                  int queueSize, int batchSize) {
+    if (threads <= 0 || queueSize <= 0 || batchSize <= 0) {
+      throw new IllegalArgumentException("Reader threads, queue size and "
+          + "batch size must be positive");
+    }
+    this.batchSize = batchSize;
+    // Never start more threads than there are records to read
+    int n = (int) Math.max(1, Math.min(threads, length));
+    queue = new ArrayBlockingQueue<List<Record>>(queueSize);
+    fetchers = new ArrayList<Thread>(n);
+    long subStart = start;
+    for (int i = 0; i < n; i++) {
+      long subLength = length / n + (i < length % n ? 1 : 0);
+      Thread t = new Thread(new Fetcher(readerFactory, subStart, subLength),
+          "odps-reader-" + i);
+      t.setDaemon(true);
+      fetchers.add(t);
+      subStart += subLength;
+    }
+    for (Thread t : fetchers) {
+      t.start();
+    }
+  }
+
+  @Override
+  public Record read() throws IOException {
+    while (currentPos >= current.size()) {
+      if (finishedFetchers == fetchers.size()) {
+        checkFailure();
+        return null;
+      }
+      current = take();
+      currentPos = 0;
+      if (current == END_OF_RANGE) {
+        finishedFetchers++;
+      }
+    }
+    return current.get(currentPos++);
+  }
+
+  /**
+   * Stops the fetch threads. Records not read yet are dropped.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Thread t : fetchers) {
+      t.interrupt();
+    }
+    try {
+      for (Thread t : fetchers) {
+        t.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while stopping ODPS readers", e);
+    }
+  }
+
+  private List<Record> take() throws IOException {
+    try {
+      List<Record> batch;
+      while ((batch = queue.poll(POLL_WAIT_MS, TimeUnit.MILLISECONDS))
+          == null) {
+        checkFailure();
+      }
+      return batch;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading from ODPS", e);
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure;
+    if (t != null) {
+      throw new IOException("Download from ODPS failed", t);
+    }
+  }
+
+  private class Fetcher implements Runnable {
+    private final RangeReaderFactory readerFactory;
+    private final long start;
+    private final long count;
+
+    Fetcher(RangeReaderFactory readerFactory, long start, long count) {
+      this.readerFactory = readerFactory;
+      this.start = start;
+      this.count = count;
+    }
+
+    @Override
+    public void run() {
+      RecordReader reader = null;
+      try {
+        if (count > 0) {
+          reader = readerFactory.open(start, count);
+          List<Record> batch = new ArrayList<Record>(batchSize);
+          Record record;
+          while (!closed && (record = reader.read()) != null) {
+            batch.add(record);
+            if (batch.size() == batchSize) {
+              queue.put(batch);
+              batch = new ArrayList<Record>(batchSize);
+            }
+          }
+          if (!batch.isEmpty()) {
+            queue.put(batch);
+          }
+        }
+        queue.put(END_OF_RANGE);
+      } catch (InterruptedException e) {
+        // Stopped by close().
+      } catch (Throwable t) {
+        if (!closed) {
+          LOG.error("Reader thread " + Thread.currentThread().getName()
+              + " failed", t);
+          if (failure == null) {
+            failure = t;
+          }
+        }
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            LOG.warn("Failed to close ODPS record reader", e);
+          }
+        }
+      }
+    }
+  }
+}
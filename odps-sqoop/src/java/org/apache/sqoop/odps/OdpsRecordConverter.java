@@ -0,0 +1,467 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Varchar;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.io.BytesWritable;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts input rows into ODPS records. The mapping from input columns to
+ * ODPS column indexes and the per-column conversion are resolved once per
+ * schema, so a row costs one typed set per field. Values that already have
+ * the column's Java type are stored as they are, integral values of date
+ * and time columns are taken as epoch milliseconds; anything else goes
+ * through its string form.
+ *
+ * <p>A field that cannot be converted is left null and counted; the row is
+ * still returned. Instances are not thread-safe.</p>
+ */
+public class OdpsRecordConverter {
+  public static final Log LOG =
+      LogFactory.getLog(OdpsRecordConverter.class.getName());
+
+  private static final int MAX_LOGGED_DIRTY_FIELDS = 10;
+  private static final int UNKNOWN = -1;
+
+  private final Column[] odpsColumns;
+  private final String[] inputColNames;
+  private final int[] odpsIndexes;
+  private final FieldConverter[] converters;
+  // Input key as seen in rows -> input position; also learns case variants.
+  private final Map<String, Integer> inputPositions;
+  private final Map<String, Integer> lowerCasePositions;
+
+  private long dirtyRecords;
+  private long dirtyFields;
+
+  public OdpsRecordConverter(TableSchema schema, List<String> inputColNames,
+                             String dateFormatString) {
+    this.odpsColumns = schema.getColumns().toArray(new Column[0]);
+    Map<String, Integer> odpsIndexByName = new HashMap<String, Integer>();
+    for (int i = 0; i < odpsColumns.length; i++) {
+      odpsIndexByName.put(odpsColumns[i].getName().toLowerCase(), i);
+    }
+
+    SimpleDateFormat dateFormat = dateFormatString == null
+        ? null : new SimpleDateFormat(dateFormatString);
+    int n = inputColNames.size();
+    this.inputColNames = inputColNames.toArray(new String[n]);
+    this.odpsIndexes = new int[n];
+    this.converters = new FieldConverter[n];
+    this.inputPositions = new HashMap<String, Integer>();
+    this.lowerCasePositions = new HashMap<String, Integer>();
+    for (int i = 0; i < n; i++) {
+      String colName = this.inputColNames[i];
+      if (StringUtils.isEmpty(colName)) {
+        odpsIndexes[i] = UNKNOWN;
+        continue;
+      }
+      Integer odpsIndex = odpsIndexByName.get(colName.toLowerCase());
+      if (odpsIndex == null) {
+        throw new RuntimeException(this.getClass().getName()
+            + " field not exists in odps table, field=" + colName);
+      }
+      odpsIndexes[i] = odpsIndex;
+      converters[i] = compile(odpsColumns[odpsIndex].getType(), dateFormat);
+      inputPositions.put(colName, i);
+      lowerCasePositions.put(colName.toLowerCase(), i);
+    }
+  }
+
+  /** Converts a row whose values are in input column order. */
+  public ArrayRecord convert(Object[] values) {
+    ArrayRecord record = new ArrayRecord(odpsColumns);
+    boolean dirty = false;
+    int n = Math.min(values.length, odpsIndexes.length);
+    for (int i = 0; i < n; i++) {
+      if (odpsIndexes[i] != UNKNOWN && values[i] != null) {
+        dirty |= !setField(record, i, values[i]);
+      }
+    }
+    if (dirty) {
+      dirtyRecords++;
+    }
+    return record;
+  }
+
+  /**
+   * Converts a row keyed by input column name. Keys that are not input
+   * columns are ignored.
+   */
+  public ArrayRecord convert(Map<String, Object> fields) {
+    ArrayRecord record = new ArrayRecord(odpsColumns);
+    boolean dirty = false;
+    for (Map.Entry<String, Object> entry : fields.entrySet()) {
+      Object value = entry.getValue();
+      if (value == null) {
+        continue;
+      }
+      int pos = getInputPosition(entry.getKey());
+      if (pos != UNKNOWN && odpsIndexes[pos] != UNKNOWN) {
+        dirty |= !setField(record, pos, value);
+      }
+    }
+    if (dirty) {
+      dirtyRecords++;
+    }
+    return record;
+  }
+
+  /** Number of rows in which at least one field could not be converted. */
+  public long getDirtyRecordCount() {
+    return dirtyRecords;
+  }
+
+  public long getDirtyFieldCount() {
+    return dirtyFields;
+  }
+
+  private int getInputPosition(String key) {
+    Integer pos = inputPositions.get(key);
+    if (pos == null) {
+      pos = key == null ? null : lowerCasePositions.get(key.toLowerCase());
+      if (pos == null) {
+        pos = UNKNOWN;
+      }
+      inputPositions.put(key, pos);
+    }
+    return pos;
+  }
+
+  private boolean setField(ArrayRecord record, int pos, Object value) {
+    try {
+      converters[pos].set(record, odpsIndexes[pos], value);
+      return true;
+    } catch (Exception e) {
+      dirtyFields++;
+      if (dirtyFields <= MAX_LOGGED_DIRTY_FIELDS) {
+        LOG.warn("Cannot convert value of column " + inputColNames[pos]
+            + " to " + odpsColumns[odpsIndexes[pos]].getType()
+            + ", leaving it null: " + e);
+      }
+      return false;
+    }
+  }
+
+  /** Stores one input value into one ODPS column. */
+  abstract static class FieldConverter {
+    abstract void set(ArrayRecord record, int idx, Object value)
+        throws Exception;
+  }
+
+  private static boolean isIntegral(Object value) {
+    return value instanceof Long || value instanceof Integer
+        || value instanceof Short || value instanceof Byte;
+  }
+
+  static FieldConverter compile(OdpsType type,
+                                final SimpleDateFormat dateFormat) {
+    switch (type) {
+      case STRING:
+        return new StringFieldConverter() {
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setString(idx, v);
+          }
+        };
+      case CHAR:
+        return new StringFieldConverter() {
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setChar(idx, new Char(v));
+          }
+        };
+      case VARCHAR:
+        return new StringFieldConverter() {
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setVarchar(idx, new Varchar(v));
+          }
+        };
+      case BIGINT:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (isIntegral(v)) {
+              r.setBigint(idx, ((Number) v).longValue());
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setBigint(idx, Long.parseLong(v));
+          }
+        };
+      case INT:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Integer || v instanceof Short
+                || v instanceof Byte) {
+              r.setInt(idx, ((Number) v).intValue());
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setInt(idx, Integer.parseInt(v));
+          }
+        };
+      case SMALLINT:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Short || v instanceof Byte) {
+              r.setSmallint(idx, ((Number) v).shortValue());
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setSmallint(idx, Short.parseShort(v));
+          }
+        };
+      case TINYINT:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Byte) {
+              r.setTinyint(idx, (Byte) v);
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setTinyint(idx, Byte.parseByte(v));
+          }
+        };
+      case DOUBLE:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Number) {
+              r.setDouble(idx, ((Number) v).doubleValue());
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setDouble(idx, Double.parseDouble(v));
+          }
+        };
+      case FLOAT:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Float || isIntegral(v)) {
+              r.setFloat(idx, ((Number) v).floatValue());
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setFloat(idx, Float.parseFloat(v));
+          }
+        };
+      case DECIMAL:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof BigDecimal) {
+              r.setDecimal(idx, (BigDecimal) v);
+            } else if (isIntegral(v)) {
+              r.setDecimal(idx, BigDecimal.valueOf(((Number) v).longValue()));
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setDecimal(idx, new BigDecimal(v));
+          }
+        };
+      case BOOLEAN:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Boolean) {
+              r.setBoolean(idx, (Boolean) v);
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            String s = v.toLowerCase();
+            if ("true".equals(s) || "1".equals(s) || "y".equals(s)) {
+              r.setBoolean(idx, true);
+            } else if ("false".equals(s) || "0".equals(s) || "n".equals(s)) {
+              r.setBoolean(idx, false);
+            } else {
+              throw new IllegalArgumentException("Not a boolean: " + v);
+            }
+          }
+        };
+      case DATETIME:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof java.util.Date) {
+              r.setDatetime(idx, (java.util.Date) v);
+            } else if (isIntegral(v)) {
+              r.setDatetime(idx, new java.util.Date(((Number) v).longValue()));
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v)
+              throws ParseException {
+            r.setDatetime(idx, parseDate(v, dateFormat));
+          }
+        };
+      case DATE:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof java.sql.Date) {
+              r.setDate(idx, (java.sql.Date) v);
+            } else if (v instanceof java.util.Date) {
+              r.setDate(idx, new java.sql.Date(((java.util.Date) v).getTime()));
+            } else if (isIntegral(v)) {
+              r.setDate(idx, new java.sql.Date(((Number) v).longValue()));
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v)
+              throws ParseException {
+            r.setDate(idx, new java.sql.Date(parseDate(v, dateFormat).getTime()));
+          }
+        };
+      case TIMESTAMP:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof Timestamp) {
+              r.setTimestamp(idx, (Timestamp) v);
+            } else if (v instanceof java.util.Date) {
+              r.setTimestamp(idx, new Timestamp(((java.util.Date) v).getTime()));
+            } else if (isIntegral(v)) {
+              r.setTimestamp(idx, new Timestamp(((Number) v).longValue()));
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v)
+              throws ParseException {
+            if (dateFormat == null) {
+              r.setTimestamp(idx, Timestamp.valueOf(v));
+            } else {
+              r.setTimestamp(idx, new Timestamp(dateFormat.parse(v).getTime()));
+            }
+          }
+        };
+      case BINARY:
+        return new StringFieldConverter() {
+          @Override
+          void set(ArrayRecord r, int idx, Object v) throws Exception {
+            if (v instanceof byte[]) {
+              r.setBinary(idx, new Binary((byte[]) v));
+            } else if (v instanceof BytesWritable) {
+              BytesWritable w = (BytesWritable) v;
+              r.setBinary(idx,
+                  new Binary(Arrays.copyOf(w.getBytes(), w.getLength())));
+            } else {
+              super.set(r, idx, v);
+            }
+          }
+
+          @Override
+          void setString(ArrayRecord r, int idx, String v) {
+            r.setBinary(idx, new Binary(v.getBytes()));
+          }
+        };
+      default:
+        throw new RuntimeException("Unknown column type: " + type);
+    }
+  }
+
+  private static java.util.Date parseDate(String v,
+                                          SimpleDateFormat dateFormat)
+      throws ParseException {
+    if (dateFormat == null) {
+      return Timestamp.valueOf(v);
+    }
+    return dateFormat.parse(v);
+  }
+
+  /**
+   * Converter that goes through the value's string form. Empty strings are
+   * treated as null, as the string based import always did.
+   */
+  abstract static class StringFieldConverter extends FieldConverter {
+    @Override
+    void set(ArrayRecord record, int idx, Object value) throws Exception {
+      String s = value instanceof String ? (String) value : value.toString();
+      if (!s.isEmpty()) {
+        setString(record, idx, s);
+      }
+    }
+
+    abstract void setString(ArrayRecord record, int idx, String value)
+        throws Exception;
+  }
+}
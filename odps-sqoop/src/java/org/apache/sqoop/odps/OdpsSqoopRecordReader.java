@@ -32,6 +32,8 @@
 import org.apache.sqoop.mapreduce.odps.OdpsExportInputFormat;
 
 import java.io.IOException;
+import java.util.List;
+
 public class OdpsSqoopRecordReader extends RecordReader<LongWritable, Record> {
   private TaskAttemptContext context;
 
@@ -40,16 +42,25 @@ public class OdpsSqoopRecordReader extends RecordReader<LongWritable, Record> {
 
   private com.aliyun.odps.data.RecordReader odpsRecordReader;
 
-  private long start;
+  private final List<OdpsExportInputFormat.Range> ranges;
+  private int rangeIndex;
   private long length;
   private long pos;
+  private long readCount;
+
+  private String project;
+  private String tableName;
+  private String partitionSpecString;
+  private TableTunnel tunnel;
+  private int readerThreads;
+  private int queueSize;
 
   public OdpsSqoopRecordReader(OdpsExportInputFormat
       .OdpsExportInputSplit split)
           throws IOException, InterruptedException {
-    this.start = split.getStart();
+    this.ranges = split.getRanges();
     this.length = split.getLength();
-    this.pos = this.start;
+    this.rangeIndex = -1;
   }
 
   @Override
@@ -57,10 +68,10 @@ public void initialize(InputSplit inputSplit,
       TaskAttemptContext taskAttemptContext) 
           throws IOException, InterruptedException {
     Configuration conf = taskAttemptContext.getConfiguration();
-    String project = conf.get(OdpsConstants.PROJECT);
+    project = conf.get(OdpsConstants.PROJECT);
     String endpoint = conf.get(OdpsConstants.ENDPOINT);
-    String tableName = conf.get(OdpsConstants.TABLE_NAME);
-    String partitionSpecString = conf.get(OdpsConstants.PARTITION_SPEC);
+    tableName = conf.get(OdpsConstants.TABLE_NAME);
+    partitionSpecString = conf.get(OdpsConstants.PARTITION_SPEC);
     String accessID = conf.get(OdpsConstants.ACCESS_ID);
     String accessKey = conf.get(OdpsConstants.ACCESS_KEY);
 
@@ -68,23 +79,71 @@ public void initialize(InputSplit inputSplit,
     odps.setUserAgent(OdpsUtil.getUserAgent());
     odps.setEndpoint(endpoint);
     odps.setDefaultProject(project);
-    TableTunnel tunnel = new TableTunnel(odps);
+    tunnel = new TableTunnel(odps);
+    readerThreads = conf.getInt(OdpsConstants.EXPORT_READER_THREADS,
+        OdpsConstants.DEFAULT_EXPORT_READER_THREADS);
+    queueSize = conf.getInt(OdpsConstants.EXPORT_READER_QUEUE_SIZE,
+        OdpsConstants.DEFAULT_EXPORT_READER_QUEUE_SIZE);
+  }
+
+  /**
+   * Closes the reader of the current range and opens the next one.
+   *
+   * @return false if there is no range left
+   */
+  private boolean openNextRange() throws IOException {
+    if (this.odpsRecordReader != null) {
+      this.odpsRecordReader.close();
+      this.odpsRecordReader = null;
+    }
+    if (++rangeIndex >= ranges.size()) {
+      return false;
+    }
+    OdpsExportInputFormat.Range range = ranges.get(rangeIndex);
+    String spec = range.getPartitionSpec() != null
+        ? range.getPartitionSpec() : partitionSpecString;
     PartitionSpec partitionSpec = null;
-    if (partitionSpecString != null) {
-      partitionSpec = new PartitionSpec(partitionSpecString);
+    if (spec != null) {
+      partitionSpec = new PartitionSpec(spec);
     }
-    TableTunnel.DownloadSession downloadSession;
+    String downloadSessionId = range.getDownloadSessionId();
     try {
-      if (partitionSpec == null) {
-        downloadSession = tunnel.createDownloadSession(project, tableName);
+      // Attach to the session the splits were planned on, so the ranges of
+      // all tasks refer to the same snapshot of the table
+      final TableTunnel.DownloadSession downloadSession;
+      if (downloadSessionId == null) {
+        if (partitionSpec == null) {
+          downloadSession = tunnel.createDownloadSession(project, tableName);
+        } else {
+          downloadSession = tunnel.createDownloadSession(project, tableName,
+                partitionSpec);
+        }
+      } else if (partitionSpec == null) {
+        downloadSession = tunnel.getDownloadSession(project, tableName,
+            downloadSessionId);
       } else {
-        downloadSession = tunnel.createDownloadSession(project, tableName,
-              partitionSpec);
+        downloadSession = tunnel.getDownloadSession(project, tableName,
+            partitionSpec, downloadSessionId);
+      }
+      this.pos = range.getStart();
+      if (readerThreads > 1) {
+        this.odpsRecordReader = new OdpsParallelRecordReader(
+            new OdpsParallelRecordReader.RangeReaderFactory() {
+              @Override
+              public com.aliyun.odps.data.RecordReader open(long rangeStart,
+                  long rangeCount) throws TunnelException, IOException {
+                return downloadSession.openRecordReader(rangeStart, rangeCount);
+              }
+            }, range.getStart(), range.getLength(), readerThreads, queueSize,
+            OdpsConstants.EXPORT_READER_BATCH_SIZE);
+      } else {
+        this.odpsRecordReader = downloadSession.openRecordReader(
+            range.getStart(), range.getLength());
       }
-      this.odpsRecordReader = downloadSession.openRecordReader(start, length);
     } catch (TunnelException e) {
       throw new IOException(e);
     }
+    return true;
   }
 
   @Override
@@ -92,13 +151,17 @@ public boolean nextKeyValue() throws IOException, InterruptedException {
     if (this.key == null) {
       this.key = new LongWritable();
     }
-    this.key.set(this.pos);
-    this.value = this.odpsRecordReader.read();
-    if (this.value == null) {
-      return false;
+    while (this.odpsRecordReader == null
+        || (this.value = this.odpsRecordReader.read()) == null) {
+      if (!openNextRange()) {
+        this.value = null;
+        return false;
+      }
     }
+    this.key.set(this.pos);
 
     this.pos += 1;
+    this.readCount += 1;
     return true;
   }
 
@@ -116,12 +179,13 @@ public Record getCurrentValue() throws IOException, InterruptedException {
   @Override
   public float getProgress() throws IOException, InterruptedException {
     return this.length == 0 ? 0.0F 
-        : Math.min(1.0F,
-            (float) (this.pos - this.start) / (float) this.length);
+        : Math.min(1.0F, (float) this.readCount / (float) this.length);
   }
 
   @Override
   public void close() throws IOException {
-    // DO NOTHING
+    if (this.odpsRecordReader != null) {
+      this.odpsRecordReader.close();
+    }
   }
 }
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.PartitionSpec;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordWriter;
+import com.aliyun.odps.tunnel.TableTunnel;
+import com.aliyun.odps.tunnel.TunnelException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@link OdpsUploadSession} backed by a real {@link TableTunnel} session.
+ */
+public class OdpsTunnelUploadSession implements OdpsUploadSession {
+
+  private final TableTunnel.UploadSession uploadSession;
+  private final boolean useCompress;
+
+  public OdpsTunnelUploadSession(TableTunnel.UploadSession uploadSession,
+                                 boolean useCompress) {
+    this.uploadSession = uploadSession;
+    this.useCompress = useCompress;
+  }
+
+  @Override
+  public String getId() {
+    return uploadSession.getId();
+  }
+
+  @Override
+  public void writeBlock(long blockId, List<Record> records)
+      throws TunnelException, IOException {
+    RecordWriter writer = uploadSession.openRecordWriter(blockId, useCompress);
+    try {
+      for (Record r : records) {
+        writer.write(r);
+      }
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Override
+  public void commit(Long[] blockIds) throws TunnelException, IOException {
+    uploadSession.commit(blockIds);
+  }
+
+  /**
+   * Reopens an upload session created elsewhere, e.g. by the job client.
+   */
+  public static OdpsUploadSession attach(TableTunnel tunnel, String project,
+      String tableName, String partitionSpec, String sessionId,
+      boolean useCompress) throws TunnelException {
+    TableTunnel.UploadSession uploadSession;
+    if (partitionSpec == null) {
+      uploadSession = tunnel.getUploadSession(project, tableName, sessionId);
+    } else {
+      uploadSession = tunnel.getUploadSession(project, tableName,
+          new PartitionSpec(partitionSpec), sessionId);
+    }
+    return new OdpsTunnelUploadSession(uploadSession, useCompress);
+  }
+
+  public static OdpsUploadSession.Factory factory(final TableTunnel tunnel,
+      final String project, final String tableName, final boolean useCompress) {
+    return new OdpsUploadSession.Factory() {
+      @Override
+      public OdpsUploadSession create(String partitionSpec)
+          throws TunnelException {
+        TableTunnel.UploadSession uploadSession;
+        if (partitionSpec == null) {
+          uploadSession = tunnel.createUploadSession(project, tableName);
+        } else {
+          uploadSession = tunnel.createUploadSession(project, tableName,
+              new PartitionSpec(partitionSpec));
+        }
+        return new OdpsTunnelUploadSession(uploadSession, useCompress);
+      }
+    };
+  }
+}
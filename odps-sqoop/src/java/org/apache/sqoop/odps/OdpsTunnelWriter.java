@@ -17,25 +17,34 @@
  */
 package org.apache.sqoop.odps;
 
-import com.aliyun.odps.PartitionSpec;
 import com.aliyun.odps.data.Record;
 import com.aliyun.odps.data.RecordWriter;
 import com.aliyun.odps.tunnel.TableTunnel;
 import com.aliyun.odps.tunnel.TableTunnel.UploadSession;
 import com.aliyun.odps.tunnel.TunnelException;
 import com.aliyun.odps.tunnel.io.TunnelBufferedWriter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 public class OdpsTunnelWriter extends OdpsWriter {
   public static final Log LOG = LogFactory.getLog(OdpsTunnelWriter.class.getName());
+  // Bounds of TunnelBufferedWriter.setBufferSize.
+  private static final long MIN_BUFFER_SIZE = 1024L * 1024;
+  private static final long MAX_BUFFER_SIZE = 1000L * 1024 * 1024;
   private TableTunnel tunnel;
   private String project;
   private String tableName;
@@ -44,17 +53,67 @@ public class OdpsTunnelWriter extends OdpsWriter {
   private TableTunnel.UploadSession sharedUploadSession;
   private RecordWriter sharedWriter;
   private boolean useCompress;
+  private OdpsUploadSession.Factory sessionFactory;
+
+  // Long-lived mode: one uploader per partition, kept in access order so
+  // the least recently used partition can be committed and dropped.
+  private LinkedHashMap<String, OdpsBlockUploader> blockUploaders;
+  private ExecutorService blockWriterPool;
+  private Semaphore inFlightBlocks;
+  private int blockRecords;
+  private int maxOpenPartitions = Integer.MAX_VALUE;
+  private long maxBufferedBytes = Long.MAX_VALUE;
+  private long bufferedBytes;
+
+  // Job level commit, see setJobCommit.
+  private OdpsBlockManifest manifest;
+  private Map<String, OdpsUploadSession> jobSessions;
+  private Map<String, Long> jobBlockCursors;
+  private long jobBlockLimit;
 
   public OdpsTunnelWriter(TableTunnel tunnel, String project,
                           String tableName, int retryCount, String sessionId, boolean useCompress) {
+    this(OdpsTunnelUploadSession.factory(tunnel, project, tableName, useCompress),
+        retryCount);
     this.tunnel = tunnel;
     this.project = project;
     this.tableName = tableName;
-    this.retryCount = retryCount;
     this.sharedSessionId = sessionId;
     this.useCompress = useCompress;
   }
 
+  /**
+   * Creates a writer that opens a new session for every partition of every
+   * batch and commits it before returning from {@link #write(List)}.
+   */
+  public OdpsTunnelWriter(OdpsUploadSession.Factory sessionFactory,
+                          int retryCount) {
+    this.sessionFactory = sessionFactory;
+    this.retryCount = retryCount;
+  }
+
+  /**
+   * Creates a long-lived writer: each partition gets one upload session for
+   * the lifetime of the writer, records are cut into blocks of
+   * {@code blockRecords} rows written by {@code blockWriters} concurrent
+   * writers, and all blocks are committed once in {@link #close()}.
+   */
+  public OdpsTunnelWriter(OdpsUploadSession.Factory sessionFactory,
+                          int retryCount, int blockWriters, int blockRecords) {
+    this(sessionFactory, retryCount);
+    if (blockWriters <= 0 || blockRecords <= 0) {
+      throw new IllegalArgumentException("Block writers and block records "
+          + "must be positive");
+    }
+    this.blockRecords = blockRecords;
+    this.blockUploaders =
+        new LinkedHashMap<String, OdpsBlockUploader>(16, 0.75f, true);
+    this.inFlightBlocks = new Semaphore(blockWriters);
+    this.blockWriterPool = Executors.newFixedThreadPool(blockWriters,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("odps-block-writer-%d").build());
+  }
+
   public OdpsTunnelWriter(TableTunnel tunnel, String project, String tableName, int retryCount,
       UploadSession uploadSession, boolean useCompress) throws TunnelException {
     this.tunnel = tunnel;
@@ -67,12 +126,80 @@ public OdpsTunnelWriter(TableTunnel tunnel, String project, String tableName, in
     this.useCompress = useCompress;
   }
 
+  /**
+   * Sets how many bytes the writer of the shared session buffers before it
+   * writes a block, clamped to the range the tunnel accepts.
+   */
+  public void setBufferSize(long bytes) {
+    if (sharedWriter == null) {
+      throw new IllegalStateException("Only the shared session writer "
+          + "is buffered");
+    }
+    ((TunnelBufferedWriter) sharedWriter).setBufferSize(
+        Math.max(MIN_BUFFER_SIZE, Math.min(MAX_BUFFER_SIZE, bytes)));
+  }
+
+  /**
+   * Bounds the long-lived mode for dynamic partitions: at most
+   * {@code maxOpenPartitions} partitions keep an open session, and at most
+   * {@code maxBufferedBytes} of records wait in partition buffers. Going over
+   * either limit commits the least recently used partitions.
+   */
+  public void setPartitionCacheLimits(int maxOpenPartitions,
+                                      long maxBufferedBytes) {
+    if (maxOpenPartitions <= 0 || maxBufferedBytes <= 0) {
+      throw new IllegalArgumentException("Partition cache limits must be "
+          + "positive");
+    }
+    this.maxOpenPartitions = maxOpenPartitions;
+    this.maxBufferedBytes = maxBufferedBytes;
+  }
+
+  /**
+   * Leaves committing to the job: blocks of the long-lived mode are recorded
+   * in {@code manifest} instead of being committed. Partitions with a job
+   * session write their blocks there using ids in
+   * [firstBlockId, blockLimit), and open sessions of their own once the
+   * range is used up; other partitions always use their own sessions.
+   *
+   * @param jobSessions the job's sessions by partition spec, with a null key
+   *                    for a non-partitioned table
+   */
+  public void setJobCommit(OdpsBlockManifest manifest,
+                           Map<String, OdpsUploadSession> jobSessions,
+                           long firstBlockId, long blockLimit) {
+    if (blockUploaders == null) {
+      throw new IllegalStateException("Job commit needs the long-lived "
+          + "mode");
+    }
+    this.manifest = manifest;
+    this.jobSessions = jobSessions;
+    this.jobBlockCursors = new HashMap<String, Long>();
+    for (String partitionSpec : jobSessions.keySet()) {
+      jobBlockCursors.put(partitionSpec, firstBlockId);
+    }
+    this.jobBlockLimit = blockLimit;
+  }
+
   @Override
   public void write(List<OdpsRowDO> rowList)
           throws InterruptedException, TunnelException, IOException {
     if (rowList == null || rowList.isEmpty()) {
       return;
     }
+    if (blockUploaders != null) {
+      for (OdpsRowDO rowDO : rowList) {
+        OdpsBlockUploader uploader =
+            getBlockUploader(rowDO.getPartitionSpec());
+        bufferedBytes -= uploader.getBufferedBytes();
+        uploader.append(rowDO.getRecord());
+        bufferedBytes += uploader.getBufferedBytes();
+        if (bufferedBytes > maxBufferedBytes) {
+          releaseBufferedBytes(uploader);
+        }
+      }
+      return;
+    }
     Map<String, List<Record>> partitionRecordMap
             = new HashMap<String, List<Record>>();
     for (OdpsRowDO rowDO: rowList) {
@@ -97,21 +224,10 @@ public void write(List<OdpsRowDO> rowList)
       }
       
       while (true) {
-        RecordWriter writer = null;
         try {
-          String partition = mapEntry.getKey();
-          TableTunnel.UploadSession uploadSession;
-          if (partition == null) {
-            uploadSession = tunnel.createUploadSession(project, tableName);
-          } else {
-            uploadSession = tunnel.createUploadSession(project, tableName,
-                new PartitionSpec(partition));
-          }
-          writer = uploadSession.openRecordWriter(0, useCompress);
-          for (Record r : mapEntry.getValue()) {
-            writer.write(r);
-          }
-          writer.close();
+          OdpsUploadSession uploadSession =
+              sessionFactory.create(mapEntry.getKey());
+          uploadSession.writeBlock(0, mapEntry.getValue());
           uploadSession.commit(new Long[]{0L});
           break;
         } catch (Exception e) {
@@ -123,21 +239,87 @@ public void write(List<OdpsRowDO> rowList)
           }
           int sleepTime = 50 + 1000 * (retry - 1);
           Thread.sleep(sleepTime);
-        } finally {
-          try {
-            if (writer != null) {
-              writer.close();
-            }
-          } catch (Exception e) {
-            // Do Nothing
-          }
         }
       }
     }
   }
 
+  private OdpsBlockUploader getBlockUploader(String partitionSpec)
+      throws InterruptedException, TunnelException, IOException {
+    OdpsBlockUploader uploader = blockUploaders.get(partitionSpec);
+    if (uploader == null) {
+      while (blockUploaders.size() >= maxOpenPartitions) {
+        evictEldestUploader();
+      }
+      uploader = new OdpsBlockUploader(partitionSpec, sessionFactory,
+          blockWriterPool, inFlightBlocks, blockRecords, retryCount);
+      if (manifest != null) {
+        // An evicted partition continues after the ids it already used.
+        Long cursor = jobBlockCursors.get(partitionSpec);
+        OdpsUploadSession jobSession = jobSessions.get(partitionSpec);
+        uploader.setJobCommit(manifest, cursor == null || cursor < 0
+            ? null : jobSession, cursor == null ? 0 : cursor, jobBlockLimit);
+      }
+      blockUploaders.put(partitionSpec, uploader);
+    }
+    return uploader;
+  }
+
+  /**
+   * Commits least recently used partitions until the buffered records fit
+   * the budget again. If the current partition alone is over budget, its
+   * buffer is written out as a short block instead.
+   */
+  private void releaseBufferedBytes(OdpsBlockUploader current)
+      throws InterruptedException, TunnelException, IOException {
+    while (bufferedBytes > maxBufferedBytes && blockUploaders.size() > 1) {
+      evictEldestUploader();
+    }
+    if (bufferedBytes > maxBufferedBytes) {
+      bufferedBytes -= current.getBufferedBytes();
+      current.flushBlock();
+    }
+  }
+
+  private void evictEldestUploader()
+      throws InterruptedException, TunnelException, IOException {
+    Iterator<OdpsBlockUploader> it = blockUploaders.values().iterator();
+    OdpsBlockUploader eldest = it.next();
+    it.remove();
+    bufferedBytes -= eldest.getBufferedBytes();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Evicting partition " + eldest.getPartitionSpec());
+    }
+    eldest.close();
+    String partitionSpec = eldest.getPartitionSpec();
+    if (manifest != null && jobBlockCursors.containsKey(partitionSpec)) {
+      jobBlockCursors.put(partitionSpec, eldest.getJobBlockCursor());
+    }
+  }
+
+  private void closeBlockUploaders()
+      throws InterruptedException, TunnelException, IOException {
+    try {
+      // Hand every partition's tail block to the pool before waiting on any.
+      for (OdpsBlockUploader uploader : blockUploaders.values()) {
+        uploader.flushBlock();
+      }
+      for (OdpsBlockUploader uploader
+          : new ArrayList<OdpsBlockUploader>(blockUploaders.values())) {
+        uploader.close();
+        blockUploaders.remove(uploader.getPartitionSpec());
+      }
+      bufferedBytes = 0;
+    } finally {
+      blockWriterPool.shutdownNow();
+    }
+  }
+
   @Override
   public void close() throws InterruptedException, TunnelException, IOException {
+    if (blockUploaders != null) {
+      closeBlockUploaders();
+    }
     if (sharedWriter != null) {
       sharedWriter.close();
     }
@@ -33,6 +33,9 @@
 import org.apache.hadoop.conf.Configurable;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.sqoop.mapreduce.odps.OdpsOutputCommitter;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -61,17 +64,48 @@ public class OdpsUploadProcessor implements Closeable, Configurable,
   private int shardTimeout;
   private int retryCount;
   private int batchSize;
+  // A batch is sent when it reaches the controller's row count or
+  // maxBatchBytes, whichever comes first.
+  private OdpsBatchController batchController;
+  private long maxBatchBytes;
+  private long batchBytes;
+  private long lastBatchNanos;
+  private Counter batchRowsCounter;
+  private Counter batchBytesCounter;
+  private Counter batchesCounter;
   private String[] partitionKeys;
   private String[] partitionValues;
+  private boolean dynamicPartitions;
   private String inputDateFormat;
   private boolean autoCreatePartition = true;
   private Map partitionMap;
   private boolean useCompress;
+  private int blockWriters;
+  private int blockRecords;
+  private String staticPartitionSpec;
+  private int uploadThreads;
+  private int uploadQueueSize;
+  // Job level commit, see OdpsOutputCommitter.
+  private boolean jobCommit;
+  private TaskAttemptID attemptId;
+  private OdpsBlockManifest manifest;
+  private Map<String, OdpsUploadSession> jobSessions;
+  private long[] jobBlockRange;
+  private int jobWriters;
 
   @Override
   public void close() throws IOException {
+    long dirtyRecords = odpsRecordBuilder.getDirtyRecordCount();
+    if (dirtyRecords > 0) {
+      LOG.warn(dirtyRecords + " records had fields that could not be "
+          + "converted to their ODPS column type and were written as null");
+    }
+    if (batchController.isAdaptive()) {
+      LOG.info("Batch size at the end of the task: "
+          + batchController.getBatchRows() + " rows");
+    }
     try {
-      sendBatch(rowDOList);
+      sendBatch(rowDOList, true);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -81,12 +115,15 @@ public void close() throws IOException {
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    if (jobCommit) {
+      OdpsOutputCommitter.writeAttemptManifest(conf, attemptId, manifest);
+    }
   }
 
   @Override
   public void setConf(Configuration configuration) {
     this.conf = configuration;
-    rowDOList = new LinkedList<OdpsRowDO>();
+    rowDOList = new ArrayList<OdpsRowDO>();
 
     inputDateFormat = conf.get(OdpsConstants.DATE_FORMAT);
     retryCount = conf.getInt(OdpsConstants.RETRY_COUNT,
@@ -94,11 +131,25 @@ public void setConf(Configuration configuration) {
     batchSize = conf.getInt(OdpsConstants.BATCH_SIZE,
             OdpsConstants.DEFAULT_BATCH_SIZE);
     useCompress = conf.getBoolean(OdpsConstants.USE_COMPRESS_IN_UPLOAD, false);
+    blockWriters = conf.getInt(OdpsConstants.BLOCK_WRITERS,
+            OdpsConstants.DEFAULT_BLOCK_WRITERS);
+    blockRecords = conf.getInt(OdpsConstants.BLOCK_RECORDS,
+            OdpsConstants.DEFAULT_BLOCK_RECORDS);
+    uploadThreads = conf.getInt(OdpsConstants.UPLOAD_THREADS,
+            OdpsConstants.DEFAULT_UPLOAD_THREADS);
+    uploadQueueSize = conf.getInt(OdpsConstants.UPLOAD_QUEUE_SIZE,
+            2 * uploadThreads);
+    jobCommit = conf.getBoolean(OdpsConstants.JOB_COMMIT, false);
+    if (jobCommit && blockWriters <= 0) {
+      // Only the long-lived mode can leave committing to the job.
+      blockWriters = 1;
+    }
+    configureBatching();
 
-    String project = conf.get(OdpsConstants.PROJECT);
+    final String project = conf.get(OdpsConstants.PROJECT);
     String endpoint = conf.get(OdpsConstants.ENDPOINT);
-    String tableName = conf.get(OdpsConstants.TABLE_NAME);
-    String tunnelEndPoint = OdpsUtil.getTunnelEndPoint(conf.get(OdpsConstants.TUNNEL_ENDPOINT));
+    final String tableName = conf.get(OdpsConstants.TABLE_NAME);
+    final String tunnelEndPoint = OdpsUtil.getTunnelEndPoint(conf.get(OdpsConstants.TUNNEL_ENDPOINT));
 
     odps = new Odps(new AliyunAccount(conf.get(OdpsConstants.ACCESS_ID),
             conf.get(OdpsConstants.ACCESS_KEY)));
@@ -110,34 +161,155 @@ public void setConf(Configuration configuration) {
     if (partitionKeys != null) {
       partitionMap = buildPartitionMap();
     }
+    dynamicPartitions = partitionValues != null
+            && hasPartitionTags(partitionValues);
 
     List<String> inputColumnNames = Arrays.asList(
             conf.getStrings(OdpsConstants.INPUT_COL_NAMES));
     odpsRecordBuilder = new OdpsRecordBuilder(odpsTable,
             inputDateFormat, inputColumnNames);
     try {
-      if (conf.getBoolean(OdpsConstants.ODPS_DISABLE_DYNAMIC_PARTITIONS, false)) {
-        String partition = getPartitionSpec(partitionKeys, partitionValues, Maps.newHashMap());
-        TableTunnel.UploadSession uploadSession = null;
-        TableTunnel tunnel = new TableTunnel(odps);
-        if (StringUtils.isNotEmpty(tunnelEndPoint)) {
-          tunnel.setEndpoint(tunnelEndPoint);
-        }
-        if (partition == null) {
-          uploadSession = tunnel.createUploadSession(project, tableName);
-        } else {
-          uploadSession =
-              tunnel.createUploadSession(project, tableName, new PartitionSpec(partition));
-        }
-        odpsWriter =
-            buildTunnelWriter(project, tableName, tunnelEndPoint, retryCount, uploadSession);
+      if (jobCommit) {
+        attachJobSessions(project, tableName, tunnelEndPoint);
+      }
+      if (uploadThreads > 0) {
+        odpsWriter = new OdpsAsyncWriter(new OdpsAsyncWriter.WriterFactory() {
+          @Override
+          public OdpsWriter create() throws TunnelException {
+            return buildOdpsWriter(project, tableName, tunnelEndPoint);
+          }
+        }, uploadThreads, uploadQueueSize);
       } else {
-        odpsWriter =
-            buildTunnelWriter(project, tableName, tunnelEndPoint, retryCount, new String(""));
+        odpsWriter = buildOdpsWriter(project, tableName, tunnelEndPoint);
       }
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
+    lastBatchNanos = System.nanoTime();
+  }
+
+  /**
+   * Splits the memory ceiling of the task between the batch being filled,
+   * the batches waiting for or held by upload threads, and the buffers of
+   * shared session writers.
+   */
+  private void configureBatching() {
+    long memoryBytes = conf.getLong(OdpsConstants.BATCH_BYTES,
+            OdpsConstants.DEFAULT_BATCH_BYTES);
+    int buffers = 1;
+    if (uploadThreads > 0) {
+      buffers += uploadQueueSize + uploadThreads;
+    }
+    if (isSharedSession()) {
+      buffers += Math.max(uploadThreads, 1);
+    }
+    maxBatchBytes = Math.max(1, memoryBytes / buffers);
+
+    int rows = Math.max(batchSize, 1);
+    if (conf.getBoolean(OdpsConstants.BATCH_ADAPTIVE, false)) {
+      batchController = new OdpsBatchController(rows,
+              Math.min(rows, OdpsConstants.ADAPTIVE_BATCH_MIN_ROWS),
+              Math.max(rows, OdpsConstants.ADAPTIVE_BATCH_MAX_ROWS),
+              conf.getLong(OdpsConstants.BATCH_MAX_LATENCY_MS,
+                  OdpsConstants.DEFAULT_BATCH_MAX_LATENCY_MS), true);
+    } else {
+      batchController = new OdpsBatchController(rows);
+    }
+  }
+
+  /**
+   * @return true if all batches go through one upload session per writer
+   * that is committed when the task ends.
+   */
+  private boolean isSharedSession() {
+    return !jobCommit
+            && conf.getBoolean(OdpsConstants.ODPS_DISABLE_DYNAMIC_PARTITIONS,
+                false);
+  }
+
+  /**
+   * Counts the rows, bytes and batches sent in task counters. They are
+   * totals, so the job counters add up over all tasks, and their ratios
+   * give the average batch size of the job. Any counter may be null.
+   */
+  public void setBatchCounters(Counter batchRows, Counter batchBytes,
+                               Counter batches) {
+    this.batchRowsCounter = batchRows;
+    this.batchBytesCounter = batchBytes;
+    this.batchesCounter = batches;
+  }
+
+  private static void increment(Counter counter, long value) {
+    if (counter != null) {
+      counter.increment(value);
+    }
+  }
+
+  private void attachJobSessions(String project, String tableName,
+                                 String tunnelEndPoint)
+          throws TunnelException {
+    attemptId = OdpsOutputCommitter.getTaskAttemptID(conf);
+    manifest = new OdpsBlockManifest();
+    TableTunnel tunnel = new TableTunnel(odps);
+    if (StringUtils.isNotEmpty(tunnelEndPoint)) {
+      tunnel.setEndpoint(tunnelEndPoint);
+    }
+    jobSessions = new HashMap<String, OdpsUploadSession>();
+    for (Map.Entry<String, String> entry
+            : OdpsOutputCommitter.getJobSessionIds(conf).entrySet()) {
+      jobSessions.put(entry.getKey(), OdpsTunnelUploadSession.attach(tunnel,
+              project, tableName, entry.getKey(), entry.getValue(),
+              useCompress));
+    }
+    jobBlockRange = getJobBlockRange(attemptId,
+            conf.getInt("mapreduce.job.maps",
+                    conf.getInt("mapred.map.tasks", 1)),
+            conf.getInt("mapreduce.map.maxattempts",
+                    conf.getInt("mapred.map.max.attempts", 4)));
+  }
+
+  /**
+   * The ids [first, limit) of the job sessions' blocks an attempt may use.
+   * Every attempt of a map task, plus one speculative attempt, gets a range
+   * of its own, so blocks of an attempt that is not committed never
+   * overwrite blocks of the one that is. The range is empty, and the attempt
+   * writes through upload sessions of its own, if the job has too many maps
+   * to give every attempt a block, or if the attempt id is past the slots
+   * of its task, as with extra speculative attempts.
+   */
+  static long[] getJobBlockRange(TaskAttemptID attemptId, int maps,
+                                 int maxAttempts) {
+    int slots = maxAttempts + 1;
+    if (attemptId.getId() >= slots) {
+      return new long[] {0, 0};
+    }
+    long perAttempt = OdpsBlockUploader.MAX_BLOCK_ID
+            / ((long) Math.max(maps, 1) * slots);
+    long first = ((long) attemptId.getTaskID().getId() * slots
+            + attemptId.getId()) * perAttempt;
+    return new long[] {first, first + perAttempt};
+  }
+
+  private OdpsWriter buildOdpsWriter(String project, String tableName,
+                                     String tunnelEndPoint)
+          throws TunnelException {
+    if (isSharedSession()) {
+      String partition = getPartitionSpec(partitionKeys, partitionValues, Maps.newHashMap());
+      TableTunnel.UploadSession uploadSession = null;
+      TableTunnel tunnel = new TableTunnel(odps);
+      if (StringUtils.isNotEmpty(tunnelEndPoint)) {
+        tunnel.setEndpoint(tunnelEndPoint);
+      }
+      if (partition == null) {
+        uploadSession = tunnel.createUploadSession(project, tableName);
+      } else {
+        uploadSession =
+            tunnel.createUploadSession(project, tableName, new PartitionSpec(partition));
+      }
+      return buildTunnelWriter(project, tableName, tunnelEndPoint, retryCount, uploadSession);
+    } else {
+      return buildTunnelWriter(project, tableName, tunnelEndPoint, retryCount, new String(""));
+    }
   }
 
   private Map buildPartitionMap() {
@@ -163,16 +335,27 @@ public Configuration getConf() {
   @Override
   public void accept(FieldMappable record) throws IOException,
           ProcessingException {
-    Map<String, Object> fields = record.getFieldMap();
     OdpsRowDO rowDO = new OdpsRowDO();
     try {
-      rowDO.setRecord(odpsRecordBuilder.buildRecord(fields));
+      Map<String, Object> fields;
+      if (record instanceof OdpsInputRow) {
+        // Converted by column index, the field map is only built for
+        // partition value tags.
+        rowDO.setRecord(odpsRecordBuilder.buildRecord(
+                ((OdpsInputRow) record).getValues()));
+        fields = dynamicPartitions ? record.getFieldMap() : null;
+      } else {
+        fields = record.getFieldMap();
+        rowDO.setRecord(odpsRecordBuilder.buildRecord(fields));
+      }
       String partitionSpec = getPartitionSpec(partitionKeys,
               partitionValues, fields);
       rowDO.setPartitionSpec(partitionSpec);
       rowDOList.add(rowDO);
-      if (rowDOList.size() >= batchSize) {
-        sendBatch(rowDOList);
+      batchBytes += OdpsUtil.estimateRecordSize(rowDO.getRecord());
+      if (rowDOList.size() >= batchController.getBatchRows()
+              || batchBytes >= maxBatchBytes) {
+        sendBatch(rowDOList, false);
       }
     } catch (Exception e) {
       throw new ProcessingException(e);
@@ -184,6 +367,9 @@ private String getPartitionSpec(String[] partKeys,
     if (partKeys == null || partValues == null) {
       return null;
     }
+    if (staticPartitionSpec != null) {
+      return staticPartitionSpec;
+    }
     if (partKeys.length != partValues.length) {
       throw new RuntimeException("Numbers of partition key and "
               + "partition value are not equal.");
@@ -205,9 +391,22 @@ private String getPartitionSpec(String[] partKeys,
       }
       partitionMap.put(partitionSpec, true);
     }
+    if (!hasPartitionTags(partValues)) {
+      // No per-row tags, every row goes to the same partition.
+      staticPartitionSpec = partitionSpec;
+    }
     return partitionSpec;
   }
 
+  private static boolean hasPartitionTags(String[] partValues) {
+    for (String partValue : partValues) {
+      if (tagPattern.matcher(partValue).find()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public final static String TAG_REGEX = "\\%(\\w|\\%)|\\%\\{([\\w\\.-]+)\\}";
   public final static Pattern tagPattern = Pattern.compile(TAG_REGEX);
   public static String escapeString(String in, Map rowMap) {
@@ -230,12 +429,29 @@ public static String escapeString(String in, Map rowMap) {
     return sb.toString();
   }
 
-  private void sendBatch(List<OdpsRowDO> rowDOList)
+  /**
+   * @param last true for the tail batch of the task, which doesn't say
+   *             anything about the right batch size
+   */
+  private void sendBatch(List<OdpsRowDO> rowDOList, boolean last)
           throws InterruptedException, ParseException,
           TunnelException, IOException {
     if (rowDOList != null && rowDOList.size() > 0) {
+      long start = System.nanoTime();
       odpsWriter.write(rowDOList);
+      long end = System.nanoTime();
+      if (!last) {
+        // Throughput is measured over everything since the previous batch,
+        // so it also holds when batches are uploaded in the background.
+        batchController.onBatchSent(rowDOList.size(), batchBytes,
+                end - lastBatchNanos, end - start);
+      }
+      lastBatchNanos = end;
+      increment(batchRowsCounter, rowDOList.size());
+      increment(batchBytesCounter, batchBytes);
+      increment(batchesCounter, 1);
       rowDOList.clear();
+      batchBytes = 0;
     }
   }
 
@@ -253,6 +469,24 @@ private OdpsWriter buildTunnelWriter(String project, String tableName,
     if (StringUtils.isNotEmpty(tunnelEndPoint)) {
       tunnel.setEndpoint(tunnelEndPoint);
     }
+    if (blockWriters > 0) {
+      OdpsTunnelWriter writer = new OdpsTunnelWriter(
+          OdpsTunnelUploadSession.factory(tunnel, project, tableName,
+              useCompress), retryCount, blockWriters, blockRecords);
+      writer.setPartitionCacheLimits(
+          conf.getInt(OdpsConstants.MAX_OPEN_PARTITIONS,
+              OdpsConstants.DEFAULT_MAX_OPEN_PARTITIONS),
+          conf.getLong(OdpsConstants.PARTITION_BUFFER_BYTES,
+              OdpsConstants.DEFAULT_PARTITION_BUFFER_BYTES));
+      if (jobCommit) {
+        // Concurrent writers of the attempt split its block id range.
+        int writers = Math.max(uploadThreads, 1);
+        long perWriter = (jobBlockRange[1] - jobBlockRange[0]) / writers;
+        long first = jobBlockRange[0] + jobWriters++ * perWriter;
+        writer.setJobCommit(manifest, jobSessions, first, first + perWriter);
+      }
+      return writer;
+    }
     return new OdpsTunnelWriter(tunnel, project, tableName, retryCount, sessionId, useCompress);
   }
   
@@ -262,7 +496,10 @@ private OdpsWriter buildTunnelWriter(String project, String tableName,
     if (StringUtils.isNotEmpty(tunnelEndPoint)) {
       tunnel.setEndpoint(tunnelEndPoint);
     }
-    return new OdpsTunnelWriter(tunnel, project, tableName, retryCount, uploadSession, useCompress);
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(tunnel, project, tableName,
+        retryCount, uploadSession, useCompress);
+    writer.setBufferSize(maxBatchBytes);
+    return writer;
   }
 
 }
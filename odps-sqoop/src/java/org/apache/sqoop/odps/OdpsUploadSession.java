@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.sqoop.odps;
+
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TunnelException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The part of a tunnel upload session used by {@link OdpsTunnelWriter}.
+ * A session targets one table partition; blocks written through it only
+ * become visible once they are committed.
+ */
+public interface OdpsUploadSession {
+
+  String getId();
+
+  /**
+   * Writes the records as block {@code blockId}, replacing any earlier
+   * contents of that block. May be called concurrently for distinct blocks.
+   */
+  void writeBlock(long blockId, List<Record> records)
+      throws TunnelException, IOException;
+
+  void commit(Long[] blockIds) throws TunnelException, IOException;
+
+  /**
+   * Opens upload sessions for a partition spec, or for the whole table when
+   * the spec is null.
+   */
+  interface Factory {
+    OdpsUploadSession create(String partitionSpec) throws TunnelException;
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.apache.sqoop.odps;
 
+import com.aliyun.odps.data.Record;
+
 import java.util.Random;
 
 /**
@@ -59,4 +61,26 @@ public static String getTunnelEndPoint(String tunnelEndpoints) {
     int index = rand.nextInt(endpoints.length);
     return endpoints[index];
   }
+
+  /**
+   * Rough estimate of the heap held by a record, used to keep buffered
+   * upload data within a memory budget.
+   */
+  public static long estimateRecordSize(Record record) {
+    Object[] values = record.toArray();
+    long size = 16 + 8L * values.length;
+    for (Object value : values) {
+      if (value == null) {
+        continue;
+      }
+      if (value instanceof byte[]) {
+        size += 16 + ((byte[]) value).length;
+      } else if (value instanceof String) {
+        size += 40 + 2L * ((String) value).length();
+      } else {
+        size += 32;
+      }
+    }
+    return size;
+  }
 }
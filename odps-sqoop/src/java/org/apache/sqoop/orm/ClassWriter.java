@@ -33,6 +33,7 @@
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.io.BytesWritable;
+import org.apache.sqoop.lib.OdpsRecordLoader;
 import org.apache.sqoop.mapreduce.ImportJobBase;
 
 import com.cloudera.sqoop.SqoopOptions;
@@ -1363,17 +1364,37 @@ private void generateParseMethod(String typ, StringBuilder sb) {
     sb.append("    if (null == this.__parser) {\n");
     sb.append("      this.__parser = new RecordParser(__inputDelimiters);\n");
     sb.append("    }\n");
-    if (!typ.equals("Record")) {
-      sb.append("    List<String> __fields = "
-          + "this.__parser.parseRecord(__record);\n");
-    } else {
-      sb.append("    Map __fields = "
-          + "this.__parser.parseRecord(__record);\n");
-    }
+    sb.append("    List<String> __fields = "
+        + "this.__parser.parseRecord(__record);\n");
     sb.append("    __loadFromFields(__fields);\n");
     sb.append("  }\n\n");
   }
 
+  /**
+   * Helper method for generateParser(). Writes out the parse() method for
+   * ODPS records, which reads each field by column index with the typed
+   * getters of OdpsRecordLoader instead of going through strings.
+   */
+  private void generateRecordParseMethod(String [] rawColNames,
+      StringBuilder sb) {
+    sb.append("  private static final OdpsRecordLoader.ColumnIndex "
+        + "__recordIndex = new OdpsRecordLoader.ColumnIndex(");
+    for (int i = 0; i < rawColNames.length; i++) {
+      sb.append(i == 0 ? "\n      " : ",\n      ");
+      sb.append("\"" + rawColNames[i] + "\"");
+    }
+    sb.append(");\n");
+    sb.append("  public void parse(Record __record) "
+        + "throws RecordParser.ParseError {\n");
+    sb.append("    if (null == __record) {\n");
+    sb.append("      throw new RecordParser.ParseError("
+        + "\"null input record\");\n");
+    sb.append("    }\n");
+    sb.append("    __loadFromRecord(__record, "
+        + "__recordIndex.get(__record.getColumns()));\n");
+    sb.append("  }\n\n");
+  }
+
   /**
    * Helper method for parseColumn(). Interpret the string null representation
    * for a particular column.
@@ -1398,19 +1419,10 @@ private void parseNullVal(String javaType, String colName, StringBuilder sb) {
    * field of a specified name and type from the next element of the field
    * strings list.
    */
-  private void parseColumn(String colName, int colType, StringBuilder sb, boolean isRecord) {
+  private void parseColumn(String colName, int colType, StringBuilder sb) {
     // assume that we have __it and __cur_str vars, based on
     // __loadFromFields() code.
-    String lowerColName = colName.toLowerCase();
-    if (isRecord) {
-      sb.append("    if (fieldMap.get(\"" + lowerColName + "\") != null) {\n");
-      sb.append("      __cur_str = fieldMap.get(\"" + lowerColName + "\").toString();\n");
-      sb.append("    } else {\n");
-      sb.append("      __cur_str = \"" + this.options.getInNullStringValue() + "\";\n");
-      sb.append("    }\n");
-    } else {
-      sb.append("    __cur_str = __it.next();\n");
-    }
+    sb.append("    __cur_str = __it.next();\n");
     String javaType = toJavaType(colName, colType);
 
     parseNullVal(javaType, colName, sb);
@@ -1462,14 +1474,59 @@ private void parseColumn(String colName, int colType, StringBuilder sb, boolean
     sb.append("    }\n\n"); // the closing '{' based on code in parseNullVal();
   }
 
+  /**
+   * Helper method for generateParser(). Generates the code that loads one
+   * field of a specified name and type from the ODPS record column at
+   * position i of the resolved column indexes.
+   */
+  private void loadColumnFromRecord(String colName, int colType, int i,
+      StringBuilder sb) {
+    String javaType = toJavaType(colName, colType);
+    String getter;
+    if (javaType.equals("String")) {
+      getter = "getString";
+    } else if (javaType.equals("Integer")) {
+      getter = "getInteger";
+    } else if (javaType.equals("Long")) {
+      getter = "getLong";
+    } else if (javaType.equals("Float")) {
+      getter = "getFloat";
+    } else if (javaType.equals("Double")) {
+      getter = "getDouble";
+    } else if (javaType.equals("Boolean")) {
+      getter = "getBoolean";
+    } else if (javaType.equals("java.sql.Date")) {
+      getter = "getDate";
+    } else if (javaType.equals("java.sql.Time")) {
+      getter = "getTime";
+    } else if (javaType.equals("java.sql.Timestamp")) {
+      getter = "getTimestamp";
+    } else if (javaType.equals("java.math.BigDecimal")) {
+      getter = "getBigDecimal";
+    } else if (javaType.equals(ClobRef.class.getName())) {
+      getter = "getClobRef";
+    } else if (javaType.equals(BlobRef.class.getName())) {
+      getter = "getBlobRef";
+    } else if (javaType.equals(BytesWritable.class.getName())) {
+      getter = "getBytesWritable";
+    } else {
+      LOG.error("No ODPS record getter available for Java type " + javaType);
+      return;
+    }
+    sb.append("    __cur_col = \"" + colName + "\";\n");
+    sb.append("    this." + colName + " = OdpsRecordLoader." + getter
+        + "(__record, __idx[" + i + "]);\n");
+  }
+
   /**
    * Generate the parse() method.
    * @param columnTypes - mapping from column names to sql types
    * @param colNames - ordered list of column names for table.
+   * @param rawColNames - column names as they appear in the input records.
    * @param sb - StringBuilder to append code to
    */
   private void generateParser(Map<String, Integer> columnTypes,
-      String [] colNames, StringBuilder sb) {
+      String [] colNames, String [] rawColNames, StringBuilder sb) {
 
     int numberOfMethods =
             this.getNumberOfMethods(colNames, maxColumnsPerMethod);
@@ -1491,7 +1548,7 @@ private void generateParser(Map<String, Integer> columnTypes,
     generateParseMethod("char []", sb);
     generateParseMethod("ByteBuffer", sb);
     generateParseMethod("CharBuffer", sb);
-    generateParseMethod("Record", sb);
+    generateRecordParseMethod(rawColNames, sb);
 
     // The wrapper methods call __loadFromFields() to actually interpret the
     // raw field data as string, int, boolean, etc. The generation of this
@@ -1504,29 +1561,30 @@ private void generateParser(Map<String, Integer> columnTypes,
       }
     } else {
       myGenerateParser(columnTypes, colNames, sb, 0,
-              maxColumnsPerMethod, false, false);
+              maxColumnsPerMethod, false);
     }
     sb.append("  }\n\n");
 
     for (int i = 0; i < numberOfMethods; ++i) {
       myGenerateParser(columnTypes, colNames, sb, i,
-              maxColumnsPerMethod, true, false);
+              maxColumnsPerMethod, true);
     }
 
-    sb.append("  private void __loadFromFields(Map fieldMap) {\n");
+    sb.append("  private void __loadFromRecord(Record __record, "
+        + "int [] __idx) {\n");
     if (numberOfMethods > 1) {
       for (int i = 0; i < numberOfMethods; ++i) {
-        sb.append("    this.__loadFromFields" + i + "(fieldMap);\n");
+        sb.append("    this.__loadFromRecord" + i + "(__record, __idx);\n");
       }
     } else {
-      myGenerateParser(columnTypes, colNames, sb, 0,
-          maxColumnsPerMethod, false, true);
+      myGenerateRecordLoader(columnTypes, colNames, sb, 0,
+          maxColumnsPerMethod, false);
     }
     sb.append("  }\n\n");
 
     for (int i = 0; i < numberOfMethods; ++i) {
-      myGenerateParser(columnTypes, colNames, sb, i,
-          maxColumnsPerMethod, true, true);
+      myGenerateRecordLoader(columnTypes, colNames, sb, i,
+          maxColumnsPerMethod, true);
     }
   }
 
@@ -1542,18 +1600,13 @@ private void generateParser(Map<String, Integer> columnTypes,
   private void myGenerateParser(Map<String, Integer> columnTypes,
                                 String[] colNames, StringBuilder sb,
                                 int methodNumber, int size,
-                                boolean wrapInMethod, boolean isRecord) {
+                                boolean wrapInMethod) {
     // The wrapper methods call __loadFromFields() to actually interpret the
     // raw field data as string, int, boolean, etc. The generation of this
     // method is type-dependent for the fields.
     if (wrapInMethod) {
-      if (!isRecord) {
-        sb.append("  private void __loadFromFields" + methodNumber
-            + "(Iterator<String> __it) {\n");
-      } else {
-        sb.append("  private void __loadFromFields" + methodNumber
-            + "(Map fieldMap) {\n");
-      }
+      sb.append("  private void __loadFromFields" + methodNumber
+          + "(Iterator<String> __it) {\n");
     }
     sb.append("    String __cur_str = null;\n");
     sb.append("    try {\n");
@@ -1561,7 +1614,7 @@ private void myGenerateParser(Map<String, Integer> columnTypes,
          i < topBoundary(colNames, methodNumber, size); ++i) {
       String colName = colNames[i];
       int colType = columnTypes.get(colName);
-      parseColumn(colName, colType, sb, isRecord);
+      parseColumn(colName, colType, sb);
     }
     sb.append("    } catch (RuntimeException e) {");
     sb.append("    throw new RuntimeException("
@@ -1572,6 +1625,40 @@ private void myGenerateParser(Map<String, Integer> columnTypes,
     }
   }
 
+  /**
+   * Generate the __loadFromRecord() method used by parse(Record).
+   * @param columnTypes - mapping from column names to sql types
+   * @param colNames - ordered list of column names for table.
+   * @param sb - StringBuilder to append code to
+   * @param methodNumber - method number
+   * @param size - number of columns per method
+   * @param wrapInMethod - wrap body in a method.
+   */
+  private void myGenerateRecordLoader(Map<String, Integer> columnTypes,
+                                      String[] colNames, StringBuilder sb,
+                                      int methodNumber, int size,
+                                      boolean wrapInMethod) {
+    if (wrapInMethod) {
+      sb.append("  private void __loadFromRecord" + methodNumber
+          + "(Record __record, int [] __idx) {\n");
+    }
+    sb.append("    String __cur_col = null;\n");
+    sb.append("    try {\n");
+    for (int i = methodNumber * size;
+         i < topBoundary(colNames, methodNumber, size); ++i) {
+      String colName = colNames[i];
+      int colType = columnTypes.get(colName);
+      loadColumnFromRecord(colName, colType, i, sb);
+    }
+    sb.append("    } catch (RuntimeException e) {\n");
+    sb.append("      throw new RuntimeException("
+        + "\"Can't load column \" + __cur_col + \" from input record\", e);\n");
+    sb.append("    }\n");
+    if (wrapInMethod) {
+      sb.append("  }\n\n");
+    }
+  }
+
   /**
    * Generate the write() method used by the Hadoop RPC system.
    * @param columnTypes - mapping from column names to sql types
@@ -1926,6 +2013,7 @@ private StringBuilder generateClassForColumns(
     sb.append("import " + DelimiterSet.class.getCanonicalName() + ";\n");
     sb.append("import " + FieldFormatter.class.getCanonicalName() + ";\n");
     sb.append("import " + RecordParser.class.getCanonicalName() + ";\n");
+    sb.append("import " + OdpsRecordLoader.class.getCanonicalName() + ";\n");
     sb.append("import " + BooleanParser.class.getCanonicalName() + ";\n");
     sb.append("import " + BlobRef.class.getCanonicalName() + ";\n");
     sb.append("import " + ClobRef.class.getCanonicalName() + ";\n");
@@ -1966,7 +2054,7 @@ private StringBuilder generateClassForColumns(
     generateHadoopRead(columnTypes, colNames, sb);
     generateHadoopWrite(columnTypes, colNames, sb);
     generateToString(columnTypes, colNames, sb);
-    generateParser(columnTypes, colNames, sb);
+    generateParser(columnTypes, colNames, rawColNames, sb);
     generateCloneMethod(columnTypes, colNames, sb);
     generateGetFieldMap(columnTypes, colNames, rawColNames, sb);
     generateSetField(columnTypes, colNames, rawColNames, sb);
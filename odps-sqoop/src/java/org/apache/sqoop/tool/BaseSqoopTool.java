@@ -210,11 +210,18 @@ public abstract class BaseSqoopTool extends com.cloudera.sqoop.tool.SqoopTool {
   public static final String ODPS_SHARDTIMEOUT_ARG = "odps-shard-timeout";
   public static final String ODPS_RETRY_COUNT_ARG = "odps-retry-count";
   public static final String ODPS_BATCH_SIZE_ARG = "odps-batch-size";
+  public static final String ODPS_BATCH_BYTES_ARG = "odps-batch-bytes";
+  public static final String ODPS_ADAPTIVE_BATCH_ARG = "odps-adaptive-batch";
   public static final String ODPS_HUBLIFECYCLE = "odps-hublifecycle";
   public static final String HDFS_TO_ODPS = "hdfs-to-odps";
   public static final String ODPS_DISABLE_DYNAMIC_PARTITIONS = "disable-dynamic-partitions";
   public static final String ODPS_OVERWRITE_ARG = "odps-overwrite";
   public static final String ODPS_USE_COMPRESS = "odps-compress";
+  public static final String ODPS_BLOCK_WRITERS_ARG = "odps-block-writers";
+  public static final String ODPS_UPLOAD_THREADS_ARG = "odps-upload-threads";
+  public static final String ODPS_READER_THREADS_ARG = "odps-reader-threads";
+  public static final String ODPS_SPLIT_SIZE_ARG = "odps-split-size";
+  public static final String ODPS_JOB_COMMIT_ARG = "odps-job-commit";
 
   //Accumulo arguments.
   public static final String ACCUMULO_TABLE_ARG = "accumulo-table";
@@ -890,6 +897,17 @@ protected RelatedOptions getOdpsOptions() {
       .withDescription("Set the upload batch size (default 1000)")
       .withLongOpt(ODPS_BATCH_SIZE_ARG)
       .create());
+    odpsOpts.addOption(OptionBuilder.withArgName("bytes")
+      .hasArg()
+      .withDescription("Set the memory ceiling of the rows buffered for "
+         + "upload by each map task (default 67108864)")
+      .withLongOpt(ODPS_BATCH_BYTES_ARG)
+      .create());
+    odpsOpts.addOption(OptionBuilder
+      .withDescription("Tune the upload batch size to the upload throughput, "
+         + "starting from the batch size")
+      .withLongOpt(ODPS_ADAPTIVE_BATCH_ARG)
+      .create());
     odpsOpts.addOption(OptionBuilder.withArgName("retry count")
       .hasArg()
       .withDescription("Set the batch upload retry count (default 3)")
@@ -909,6 +927,24 @@ protected RelatedOptions getOdpsOptions() {
       .withDescription("Use compress in upload")
       .withLongOpt(ODPS_USE_COMPRESS)
       .create());
+    odpsOpts.addOption(OptionBuilder.withArgName("n")
+      .hasArg()
+      .withDescription("Keep one upload session per partition and write "
+         + "blocks with n concurrent writers, committing once per task "
+         + "(default 0, one session per batch)")
+      .withLongOpt(ODPS_BLOCK_WRITERS_ARG)
+      .create());
+    odpsOpts.addOption(OptionBuilder.withArgName("n")
+      .hasArg()
+      .withDescription("Upload batches from n background threads so reading "
+         + "and uploading overlap (default 0, upload inline)")
+      .withLongOpt(ODPS_UPLOAD_THREADS_ARG)
+      .create());
+    odpsOpts.addOption(OptionBuilder
+      .withDescription("Commit the import once when the job succeeds, so "
+         + "retried and speculative map tasks are safe")
+      .withLongOpt(ODPS_JOB_COMMIT_ARG)
+      .create());
     return odpsOpts;
   }
 
@@ -1479,6 +1515,12 @@ protected void applyOdpsOptions(CommandLine in, SqoopOptions out) {
     if (in.hasOption(ODPS_BATCH_SIZE_ARG)) {
       out.setOdpsBatchSize(Integer.parseInt(in.getOptionValue(ODPS_BATCH_SIZE_ARG)));
     }
+    if (in.hasOption(ODPS_BATCH_BYTES_ARG)) {
+      out.setOdpsBatchBytes(Long.parseLong(in.getOptionValue(ODPS_BATCH_BYTES_ARG)));
+    }
+    if (in.hasOption(ODPS_ADAPTIVE_BATCH_ARG)) {
+      out.setOdpsAdaptiveBatch(true);
+    }
     if (in.hasOption(ODPS_HUBLIFECYCLE)) {
       out.setOdpsHubLifeCycle(Integer.parseInt(in.getOptionValue(ODPS_HUBLIFECYCLE)));
     }
@@ -1495,6 +1537,21 @@ protected void applyOdpsOptions(CommandLine in, SqoopOptions out) {
     if (in.hasOption(ODPS_USE_COMPRESS)) {
       out.setOdpsUseCompressInUpload(true);
     }
+    if (in.hasOption(ODPS_BLOCK_WRITERS_ARG)) {
+      out.setOdpsBlockWriters(Integer.parseInt(in.getOptionValue(ODPS_BLOCK_WRITERS_ARG)));
+    }
+    if (in.hasOption(ODPS_UPLOAD_THREADS_ARG)) {
+      out.setOdpsUploadThreads(Integer.parseInt(in.getOptionValue(ODPS_UPLOAD_THREADS_ARG)));
+    }
+    if (in.hasOption(ODPS_READER_THREADS_ARG)) {
+      out.setOdpsReaderThreads(Integer.parseInt(in.getOptionValue(ODPS_READER_THREADS_ARG)));
+    }
+    if (in.hasOption(ODPS_SPLIT_SIZE_ARG)) {
+      out.setOdpsSplitSize(Long.parseLong(in.getOptionValue(ODPS_SPLIT_SIZE_ARG)));
+    }
+    if (in.hasOption(ODPS_JOB_COMMIT_ARG)) {
+      out.setOdpsJobCommit(true);
+    }
   }
 
   protected void applyHBaseOptions(CommandLine in, SqoopOptions out) {
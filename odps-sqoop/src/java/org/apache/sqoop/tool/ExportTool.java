@@ -220,9 +220,23 @@ protected RelatedOptions getOdpsOptions() {
         .create());
     odpsOpts.addOption(OptionBuilder.withArgName("partitionSpec")
         .hasArg()
-        .withDescription("Set the ODPS table partitionSpec")
+        .withDescription("Set the ODPS table partitionSpec; several specs "
+            + "separated by ';' and the wildcards * and ? select several "
+            + "partitions")
         .withLongOpt(ODPS_PARTITION_SPEC_ARG)
         .create());
+    odpsOpts.addOption(OptionBuilder.withArgName("n")
+        .hasArg()
+        .withDescription("Download the range of each map task with n "
+            + "concurrent readers (default 1)")
+        .withLongOpt(ODPS_READER_THREADS_ARG)
+        .create());
+    odpsOpts.addOption(OptionBuilder.withArgName("bytes")
+        .hasArg()
+        .withDescription("Give each map task about this many bytes of the "
+            + "ODPS table (default: spread the table over all map tasks)")
+        .withLongOpt(ODPS_SPLIT_SIZE_ARG)
+        .create());
     return odpsOpts;
   }
 
@@ -40,6 +40,7 @@
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.util.StringUtils;
+import org.apache.sqoop.mapreduce.odps.HdfsOdpsImportJob;
 
 import com.cloudera.sqoop.Sqoop;
 import com.cloudera.sqoop.SqoopOptions;
@@ -474,8 +475,12 @@ protected boolean importTable(SqoopOptions options, String tableName,
       HiveImport hiveImport) throws IOException, ImportException {
     String jarFile = null;
 
-    // Generate the ORM code for the tables.
-    jarFile = codeGenerator.generateORM(options, tableName);
+    // Generate the ORM code for the tables. HDFS files other than sequence
+    // files are imported to ODPS without it.
+    if (!options.isHdfsToOdps()
+        || HdfsOdpsImportJob.needsRecordClass(options)) {
+      jarFile = codeGenerator.generateORM(options, tableName);
+    }
 
     Path outputPath = getOutputPath(options, tableName);
 
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+
+import maxcompute.data.collectors.common.maxcompute.RecordUtil;
+import org.apache.sqoop.odps.OdpsRecordConverter;
+
+/**
+ * Compares the string based record conversion the ODPS import used before
+ * OdpsRecordConverter with the schema-compiled converter, on 50-column
+ * rows of mixed BIGINT, DOUBLE, DECIMAL, DATETIME and STRING columns.
+ * Run with:
+ * src/scripts/run-perftest.sh OdpsRecordConverterPerfTest [rows]
+ */
+public class OdpsRecordConverterPerfTest {
+
+  private static final int NUM_COLUMNS = 50;
+  private static final OdpsType[] TYPES = { OdpsType.BIGINT,
+      OdpsType.DOUBLE, OdpsType.DECIMAL, OdpsType.DATETIME, OdpsType.STRING };
+
+  private int numRows = 1000000;
+  private TableSchema schema;
+  private List<String> colNames;
+  private Column[] columns;
+  private long startTime;
+  private long sink;
+
+  private void setUp() {
+    schema = new TableSchema();
+    colNames = new ArrayList<String>();
+    for (int i = 0; i < NUM_COLUMNS; i++) {
+      String name = "COL_" + i;
+      schema.addColumn(new Column(name.toLowerCase(), TYPES[i % TYPES.length]));
+      colNames.add(name);
+    }
+    columns = schema.getColumns().toArray(new Column[0]);
+  }
+
+  /** A row as a generated SqoopRecord hands it over. */
+  private Map<String, Object> makeRow(long i) {
+    Map<String, Object> row = new TreeMap<String, Object>();
+    for (int c = 0; c < NUM_COLUMNS; c++) {
+      Object value;
+      switch (TYPES[c % TYPES.length]) {
+        case BIGINT:
+          value = i + c;
+          break;
+        case DOUBLE:
+          value = (i + c) / 3.0;
+          break;
+        case DECIMAL:
+          value = BigDecimal.valueOf(i + c, 2);
+          break;
+        case DATETIME:
+          value = new Timestamp(1500000000000L + i * 1000);
+          break;
+        default:
+          value = "value-" + i + "-" + c;
+      }
+      row.put(colNames.get(c), value);
+    }
+    return row;
+  }
+
+  private void startTiming(String s) {
+    System.out.println(s);
+    startTime = System.currentTimeMillis();
+  }
+
+  private void stopTiming() {
+    long delta = System.currentTimeMillis() - startTime;
+    System.out.println("Finished. Time elapsed: " + delta + " ms, "
+        + (numRows * 1000L / Math.max(delta, 1)) + " rows/s");
+  }
+
+  private void runStringConversion(List<Map<String, Object>> rows)
+      throws Exception {
+    Map<String, OdpsType> types = new TreeMap<String, OdpsType>();
+    for (Column column : columns) {
+      types.put(column.getName(), column.getType());
+    }
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    startTiming("String based conversion of " + numRows + " rows");
+    for (int i = 0; i < numRows; i++) {
+      ArrayRecord record = new ArrayRecord(columns);
+      for (Map.Entry<String, Object> e : rows.get(i % rows.size()).entrySet()) {
+        Object value = e.getValue();
+        RecordUtil.setFieldValue(record, e.getKey().toLowerCase(),
+            value == null ? null : value.toString(),
+            types.get(e.getKey().toLowerCase()), dateFormat);
+      }
+      sink += record.getColumnCount();
+    }
+    stopTiming();
+  }
+
+  private void runCompiledConversion(List<Map<String, Object>> rows) {
+    OdpsRecordConverter converter =
+        new OdpsRecordConverter(schema, colNames, null);
+    startTiming("Schema-compiled conversion of " + numRows + " rows");
+    for (int i = 0; i < numRows; i++) {
+      sink += converter.convert(rows.get(i % rows.size())).getColumnCount();
+    }
+    stopTiming();
+    System.out.println("Dirty records: " + converter.getDirtyRecordCount());
+  }
+
+  public void run() throws Exception {
+    setUp();
+    List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(makeRow(i));
+    }
+    // Warm up both paths before measuring.
+    int measuredRows = numRows;
+    numRows = Math.min(measuredRows, 100000);
+    runStringConversion(rows);
+    runCompiledConversion(rows);
+    numRows = measuredRows;
+    runStringConversion(rows);
+    runCompiledConversion(rows);
+    System.out.println("(" + sink + ")");
+  }
+
+  public static void main(String [] args) throws Exception {
+    OdpsRecordConverterPerfTest test = new OdpsRecordConverterPerfTest();
+    if (args.length > 0) {
+      test.numRows = Integer.parseInt(args[0]);
+    }
+    test.run();
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+
+import org.apache.sqoop.odps.OdpsRowDO;
+import org.apache.sqoop.odps.OdpsTunnelWriter;
+import org.apache.sqoop.odps.OdpsUploadSession;
+import org.apache.sqoop.odps.OdpsWriter;
+
+/**
+ * Compares the per-batch and the long-lived OdpsTunnelWriter modes against
+ * a local stand-in tunnel that only simulates request latency.
+ * Run with:
+ * src/scripts/run-perftest.sh OdpsTunnelWriterPerfTest \
+ *     [rows] [batchSize] [blockWriters] [blockRecords]
+ */
+public class OdpsTunnelWriterPerfTest {
+
+  // Simulated tunnel latencies in milliseconds.
+  private static final long CREATE_SESSION_MS = 50;
+  private static final long COMMIT_MS = 50;
+  private static final long BLOCK_RTT_MS = 10;
+  private static final long RECORDS_PER_MS = 1000;
+
+  private int numRows = 200000;
+  private int batchSize = 1000;
+  private int blockWriters = 4;
+  private int blockRecords = 20000;
+  private long startTime;
+
+  /** Stand-in tunnel which sleeps instead of talking to a server. */
+  private static class LocalSessionFactory
+      implements OdpsUploadSession.Factory {
+    @Override
+    public OdpsUploadSession create(String partitionSpec) {
+      sleep(CREATE_SESSION_MS);
+      return new OdpsUploadSession() {
+        @Override
+        public String getId() {
+          return "local";
+        }
+
+        @Override
+        public void writeBlock(long blockId, List<Record> records) {
+          sleep(BLOCK_RTT_MS + records.size() / RECORDS_PER_MS);
+        }
+
+        @Override
+        public void commit(Long[] blockIds) {
+          sleep(COMMIT_MS);
+        }
+      };
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void startTiming(String s) {
+    System.out.println(s);
+    startTime = System.currentTimeMillis();
+  }
+
+  private void stopTiming() {
+    long delta = System.currentTimeMillis() - startTime;
+    System.out.println("Finished. Time elapsed: " + delta + " ms, "
+        + (numRows * 1000L / Math.max(delta, 1)) + " rows/s");
+  }
+
+  private void upload(OdpsWriter writer) throws Exception {
+    Column[] columns = new Column[] { new Column("id", OdpsType.BIGINT) };
+    List<OdpsRowDO> batch = new ArrayList<OdpsRowDO>(batchSize);
+    for (int i = 0; i < numRows; i++) {
+      Record record = new ArrayRecord(columns);
+      record.setBigint(0, (long) i);
+      OdpsRowDO row = new OdpsRowDO();
+      row.setRecord(record);
+      batch.add(row);
+      if (batch.size() >= batchSize) {
+        writer.write(batch);
+        batch.clear();
+      }
+    }
+    writer.write(batch);
+    writer.close();
+  }
+
+  public void run() throws Exception {
+    LocalSessionFactory factory = new LocalSessionFactory();
+
+    startTiming("Uploading " + numRows + " rows, one session per batch of "
+        + batchSize);
+    upload(new OdpsTunnelWriter(factory, 0));
+    stopTiming();
+
+    startTiming("Uploading " + numRows + " rows, long-lived session with "
+        + blockWriters + " block writers of " + blockRecords + " records");
+    upload(new OdpsTunnelWriter(factory, 0, blockWriters, blockRecords));
+    stopTiming();
+  }
+
+  public static void main(String [] args) throws Exception {
+    OdpsTunnelWriterPerfTest test = new OdpsTunnelWriterPerfTest();
+    if (args.length > 0) {
+      test.numRows = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      test.batchSize = Integer.parseInt(args[1]);
+    }
+    if (args.length > 2) {
+      test.blockWriters = Integer.parseInt(args[2]);
+    }
+    if (args.length > 3) {
+      test.blockRecords = Integer.parseInt(args[3]);
+    }
+    test.run();
+  }
+}
@@ -0,0 +1,235 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.mapreduce.odps;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.mapred.AvroWrapper;
+import org.apache.avro.util.Utf8;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.sqoop.mapreduce.SqoopMapper;
+import org.apache.sqoop.odps.OdpsConstants;
+import org.apache.sqoop.odps.OdpsInputRow;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Runs the HDFS import mappers against a mocked task context and checks
+ * the input rows they write.
+ */
+public class TestHdfsOdpsMappers extends TestCase {
+
+  private static final Schema SCHEMA = new Schema.Parser().parse(
+      "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+      + "{\"name\":\"ID\",\"type\":\"long\"},"
+      + "{\"name\":\"name\",\"type\":[\"null\",\"string\"]},"
+      + "{\"name\":\"my_col\",\"type\":\"bytes\"},"
+      + "{\"name\":\"hash\",\"type\":{\"type\":\"fixed\",\"name\":\"h\","
+      + "\"size\":2}}]}");
+
+  private Configuration conf;
+  private List<Object[]> rows;
+
+  @Override
+  protected void setUp() {
+    conf = new Configuration(false);
+    rows = new ArrayList<Object[]>();
+  }
+
+  public void testTextDelimitersAndNullString() throws Exception {
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "id", "name", "note");
+    conf.setInt(OdpsConstants.INPUT_FIELD_DELIM, '\t');
+    conf.setInt(OdpsConstants.INPUT_ENCLOSED_BY, '"');
+    conf.set(OdpsConstants.INPUT_NULL_STRING, "\\N");
+    HdfsOdpsTextMapper mapper = new HdfsOdpsTextMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+
+    mapper.map(new LongWritable(0), new Text("1\t\"a\tb\"\t\\N"), context);
+    // Extra fields are ignored, and "null" is data with another null string.
+    mapper.map(new LongWritable(1), new Text("2\tnull\t,\textra"), context);
+
+    assertEquals(2, rows.size());
+    assertEquals(Arrays.<Object>asList("1", "a\tb", null),
+        Arrays.asList(rows.get(0)));
+    assertEquals(Arrays.<Object>asList("2", "null", ","),
+        Arrays.asList(rows.get(1)));
+  }
+
+  public void testTextDefaults() throws Exception {
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "id", "name");
+    HdfsOdpsTextMapper mapper = new HdfsOdpsTextMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+
+    mapper.map(new LongWritable(0), new Text("1,null"), context);
+
+    assertEquals(1, rows.size());
+    assertEquals(Arrays.<Object>asList("1", null), Arrays.asList(rows.get(0)));
+  }
+
+  public void testTextTooFewFields() throws Exception {
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "id", "name", "note");
+    HdfsOdpsTextMapper mapper = new HdfsOdpsTextMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+    try {
+      mapper.map(new LongWritable(0), new Text("1,a"), context);
+      fail("A line with too few fields was imported");
+    } catch (IOException e) {
+      // expected
+    }
+
+    conf.setBoolean(SqoopMapper.SKIP_FAILED_KEY, true);
+    mapper.setup(context);
+    mapper.map(new LongWritable(0), new Text("1,a"), context);
+    mapper.map(new LongWritable(1), new Text("2,b,c"), context);
+    assertEquals(1, rows.size());
+    assertEquals("2", rows.get(0)[0]);
+  }
+
+  public void testAvroColumnResolution() throws Exception {
+    // Case is ignored, and columns map to their Avro identifiers.
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "my-col", "id", "NAME");
+    HdfsOdpsAvroMapper mapper = new HdfsOdpsAvroMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+
+    mapper.map(new AvroWrapper<GenericRecord>(record(7L, null)),
+        NullWritable.get(), context);
+
+    assertEquals(1, rows.size());
+    Object[] values = rows.get(0);
+    assertTrue(Arrays.equals(new byte[] { 1, 2 }, (byte[]) values[0]));
+    assertEquals(7L, values[1]);
+    assertNull(values[2]);
+  }
+
+  public void testAvroSchemaChange() throws Exception {
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "name", "id");
+    HdfsOdpsParquetMapper mapper = new HdfsOdpsParquetMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+    mapper.map(record(1L, "a"), NullWritable.get(), context);
+
+    // Same fields in another order: positions are resolved again.
+    Schema reordered = new Schema.Parser().parse(
+        "{\"type\":\"record\",\"name\":\"r\",\"fields\":["
+        + "{\"name\":\"name\",\"type\":\"string\"},"
+        + "{\"name\":\"id\",\"type\":\"long\"}]}");
+    GenericRecord other = new GenericData.Record(reordered);
+    other.put("name", new Utf8("b"));
+    other.put("id", 2L);
+    mapper.map(other, NullWritable.get(), context);
+
+    assertEquals(2, rows.size());
+    assertEquals(Arrays.<Object>asList(new Utf8("a"), 1L),
+        Arrays.asList(rows.get(0)));
+    assertEquals(Arrays.<Object>asList(new Utf8("b"), 2L),
+        Arrays.asList(rows.get(1)));
+  }
+
+  public void testAvroMissingField() throws Exception {
+    conf.setStrings(OdpsConstants.INPUT_COL_NAMES, "id", "missing");
+    HdfsOdpsParquetMapper mapper = new HdfsOdpsParquetMapper();
+    Mapper.Context context = mockContext();
+    mapper.setup(context);
+    try {
+      mapper.map(record(1L, "a"), NullWritable.get(), context);
+      fail("A column without a field was imported");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().contains("missing"));
+    }
+  }
+
+  public void testFromAvro() {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 9, 1, 2 });
+    buffer.get();
+    assertTrue(Arrays.equals(new byte[] { 1, 2 },
+        (byte[]) HdfsOdpsGenericRecordMapper.fromAvro(buffer)));
+    // The buffer itself is left as it was.
+    assertEquals(1, buffer.position());
+
+    GenericData.Fixed fixed = new GenericData.Fixed(
+        SCHEMA.getField("hash").schema(), new byte[] { 3, 4 });
+    assertTrue(Arrays.equals(new byte[] { 3, 4 },
+        (byte[]) HdfsOdpsGenericRecordMapper.fromAvro(fixed)));
+
+    Utf8 string = new Utf8("s");
+    assertSame(string, HdfsOdpsGenericRecordMapper.fromAvro(string));
+    assertEquals(5, HdfsOdpsGenericRecordMapper.fromAvro(5));
+    assertNull(HdfsOdpsGenericRecordMapper.fromAvro(null));
+  }
+
+  public void testInputRowFieldMap() {
+    OdpsInputRow row = new OdpsInputRow(new String[] { "ID", "Name" });
+    row.getValues()[0] = 1L;
+    row.getValues()[1] = "a";
+    Map<String, Object> fields = row.getFieldMap();
+    assertEquals(2, fields.size());
+    assertEquals(1L, fields.get("id"));
+    assertEquals("a", fields.get("name"));
+  }
+
+  private static GenericRecord record(long id, String name) {
+    GenericRecord record = new GenericData.Record(SCHEMA);
+    record.put("ID", id);
+    record.put("name", name == null ? null : new Utf8(name));
+    record.put("my_col", ByteBuffer.wrap(new byte[] { 1, 2 }));
+    record.put("hash", new GenericData.Fixed(
+        SCHEMA.getField("hash").schema(), new byte[] { 0, 0 }));
+    return record;
+  }
+
+  /**
+   * A context that keeps a copy of the values of every row written, as the
+   * mappers reuse one row.
+   */
+  private Mapper.Context mockContext() throws Exception {
+    Mapper.Context context = mock(Mapper.Context.class);
+    when(context.getConfiguration()).thenReturn(conf);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        OdpsInputRow row = (OdpsInputRow) invocation.getArguments()[0];
+        rows.add(row.getValues().clone());
+        return null;
+      }
+    }).when(context).write(any(), any());
+    return context;
+  }
+}
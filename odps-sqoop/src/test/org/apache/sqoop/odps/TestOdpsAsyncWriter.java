@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestOdpsAsyncWriter extends TestCase {
+
+  /** Counts rows and closes; optionally fails on the n-th batch. */
+  static class CountingWriter extends OdpsWriter {
+    final AtomicInteger rows;
+    final AtomicInteger closed;
+    final AtomicInteger batches;
+    final int failAtBatch;
+
+    CountingWriter(AtomicInteger rows, AtomicInteger closed,
+                   AtomicInteger batches, int failAtBatch) {
+      this.rows = rows;
+      this.closed = closed;
+      this.batches = batches;
+      this.failAtBatch = failAtBatch;
+    }
+
+    @Override
+    public void write(List<OdpsRowDO> rowList) throws IOException {
+      if (batches.incrementAndGet() == failAtBatch) {
+        throw new IOException("injected failure");
+      }
+      rows.addAndGet(rowList.size());
+    }
+
+    @Override
+    public void close() {
+      closed.incrementAndGet();
+    }
+  }
+
+  private static List<OdpsRowDO> batch(int size) {
+    List<OdpsRowDO> rows = new ArrayList<OdpsRowDO>();
+    for (int i = 0; i < size; i++) {
+      rows.add(new OdpsRowDO());
+    }
+    return rows;
+  }
+
+  private static OdpsAsyncWriter.WriterFactory factory(
+      final AtomicInteger rows, final AtomicInteger closed,
+      final AtomicInteger batches, final int failAtBatch) {
+    return new OdpsAsyncWriter.WriterFactory() {
+      @Override
+      public OdpsWriter create() {
+        return new CountingWriter(rows, closed, batches, failAtBatch);
+      }
+    };
+  }
+
+  public void testAllBatchesUploadedAndWritersClosed() throws Exception {
+    AtomicInteger rows = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    OdpsAsyncWriter writer = new OdpsAsyncWriter(
+        factory(rows, closed, new AtomicInteger(), -1), 3, 2);
+    List<OdpsRowDO> reused = batch(10);
+    for (int i = 0; i < 100; i++) {
+      // The caller may reuse its list as soon as write() returns.
+      writer.write(reused);
+    }
+    writer.close();
+    assertEquals(1000, rows.get());
+    assertEquals(3, closed.get());
+  }
+
+  public void testFailureSurfacesOnClose() throws Exception {
+    AtomicInteger closed = new AtomicInteger();
+    OdpsAsyncWriter writer = new OdpsAsyncWriter(
+        factory(new AtomicInteger(), closed, new AtomicInteger(), 5), 1, 2);
+    try {
+      for (int i = 0; i < 100; i++) {
+        writer.write(batch(1));
+      }
+    } catch (IOException e) {
+      // write() may already see the failure.
+    }
+    try {
+      writer.close();
+      fail("Expected the upload failure to be reported");
+    } catch (IOException e) {
+      assertEquals("injected failure", e.getCause().getMessage());
+    }
+    assertEquals(0, closed.get());
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import junit.framework.TestCase;
+
+public class TestOdpsBatchController extends TestCase {
+
+  private static final long MS = 1000000L;
+
+  public void testFixedControllerKeepsRows() {
+    OdpsBatchController controller = new OdpsBatchController(1000);
+    assertFalse(controller.isAdaptive());
+    controller.onBatchSent(1000, 1000000, 10 * MS, 10 * MS);
+    controller.onBatchSent(10, 100, 10 * MS, 10 * MS);
+    assertEquals(1000, controller.getBatchRows());
+  }
+
+  public void testGrowsWhileThroughputRises() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 10000, true);
+    controller.onBatchSent(1000, 1000, 10 * MS, MS);
+    assertEquals(2000, controller.getBatchRows());
+    controller.onBatchSent(2000, 2000, 12 * MS, MS);
+    assertEquals(4000, controller.getBatchRows());
+  }
+
+  public void testTurnsAroundWhenThroughputDrops() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 10000, true);
+    controller.onBatchSent(1000, 1000, 10 * MS, MS);
+    assertEquals(2000, controller.getBatchRows());
+    // half the throughput of the previous batch
+    controller.onBatchSent(2000, 2000, 40 * MS, MS);
+    assertEquals(1000, controller.getBatchRows());
+    // noise within the tolerance keeps the direction
+    controller.onBatchSent(1000, 1000, 21 * MS, MS);
+    assertEquals(500, controller.getBatchRows());
+  }
+
+  public void testShrinksWhenSlowerThanLatencyLimit() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 50, true);
+    controller.onBatchSent(1000, 1000, 100 * MS, 100 * MS);
+    assertEquals(500, controller.getBatchRows());
+  }
+
+  public void testBatchCutByBytes() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 10000, true);
+    controller.onBatchSent(300, 1000, 10 * MS, MS);
+    assertEquals(300, controller.getBatchRows());
+  }
+
+  public void testHoldsAndGrowsAgainAfterByteCut() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 10000, true);
+    controller.onBatchSent(300, 1000, 10 * MS, MS);
+    assertEquals(300, controller.getBatchRows());
+    // full batches at the cut size are held once, not halved
+    controller.onBatchSent(300, 1000, 10 * MS, MS);
+    assertEquals(300, controller.getBatchRows());
+    controller.onBatchSent(300, 1000, 10 * MS, MS);
+    assertEquals(600, controller.getBatchRows());
+    controller.onBatchSent(600, 2000, 10 * MS, MS);
+    assertEquals(1200, controller.getBatchRows());
+    // cut again, and held again
+    controller.onBatchSent(700, 2000, 10 * MS, MS);
+    assertEquals(700, controller.getBatchRows());
+    controller.onBatchSent(700, 2000, 10 * MS, MS);
+    assertEquals(700, controller.getBatchRows());
+  }
+
+  public void testGrowsAgainWhenLatencyRecovers() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 100000, 50, true);
+    controller.onBatchSent(1000, 1000, 100 * MS, 100 * MS);
+    assertEquals(500, controller.getBatchRows());
+    controller.onBatchSent(500, 500, 100 * MS, 100 * MS);
+    assertEquals(250, controller.getBatchRows());
+    controller.onBatchSent(250, 250, 10 * MS, 10 * MS);
+    assertEquals(250, controller.getBatchRows());
+    controller.onBatchSent(250, 250, 10 * MS, 10 * MS);
+    assertEquals(500, controller.getBatchRows());
+  }
+
+  public void testRowsStayWithinBounds() {
+    OdpsBatchController controller =
+        new OdpsBatchController(1000, 100, 3000, 10000, true);
+    for (int i = 0; i < 5; i++) {
+      int rows = controller.getBatchRows();
+      controller.onBatchSent(rows, rows, MS, MS);
+    }
+    assertEquals(3000, controller.getBatchRows());
+
+    controller = new OdpsBatchController(1000, 100, 3000, 1, true);
+    for (int i = 0; i < 5; i++) {
+      int rows = controller.getBatchRows();
+      controller.onBatchSent(rows, rows, 10 * MS, 10 * MS);
+    }
+    assertEquals(100, controller.getBatchRows());
+    assertEquals(3000,
+        new OdpsBatchController(5000, 100, 3000, 1, true).getBatchRows());
+  }
+
+  public void testInvalidBounds() {
+    try {
+      new OdpsBatchController(1000, 0, 100, 1, true);
+      fail("expected invalid bounds to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+}
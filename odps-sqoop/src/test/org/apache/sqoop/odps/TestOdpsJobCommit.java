@@ -0,0 +1,256 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.sqoop.mapreduce.odps.OdpsOutputCommitter;
+
+public class TestOdpsJobCommit extends TestCase {
+
+  private static final Column[] COLUMNS =
+      new Column[] { new Column("id", OdpsType.BIGINT) };
+
+  private static List<OdpsRowDO> rows(String partition, int from, int to) {
+    List<OdpsRowDO> rows = new ArrayList<OdpsRowDO>();
+    for (int i = from; i < to; i++) {
+      Record record = new ArrayRecord(COLUMNS);
+      record.setBigint(0, (long) i);
+      OdpsRowDO row = new OdpsRowDO();
+      row.setRecord(record);
+      row.setPartitionSpec(partition);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static Map<String, OdpsBlockManifest.Entry> bySession(
+      OdpsBlockManifest manifest) {
+    Map<String, OdpsBlockManifest.Entry> entries =
+        new HashMap<String, OdpsBlockManifest.Entry>();
+    for (OdpsBlockManifest.Entry entry : manifest.getEntries()) {
+      entries.put(entry.getSessionId(), entry);
+    }
+    return entries;
+  }
+
+  public void testBlocksAreRecordedInsteadOfCommitted() throws Exception {
+    TestOdpsTunnelWriter.FakeSessionFactory factory =
+        new TestOdpsTunnelWriter.FakeSessionFactory();
+    OdpsUploadSession jobSession = factory.create("pt='a'");
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 2, 5);
+    writer.setJobCommit(manifest,
+        Collections.singletonMap("pt='a'", jobSession), 100, 200);
+    writer.write(rows("pt='a'", 0, 50));
+    writer.write(rows("pt='b'", 0, 10));
+    writer.close();
+
+    assertTrue(factory.committed.isEmpty());
+    Map<String, OdpsBlockManifest.Entry> entries = bySession(manifest);
+    assertEquals(2, entries.size());
+    OdpsBlockManifest.Entry a = entries.get(jobSession.getId());
+    assertEquals("pt='a'", a.getPartitionSpec());
+    assertEquals(10, a.getBlockIds().length);
+    assertEquals(Long.valueOf(100), a.getBlockIds()[0]);
+    assertEquals(Long.valueOf(109), a.getBlockIds()[9]);
+    for (OdpsBlockManifest.Entry entry : entries.values()) {
+      if (entry != a) {
+        // no job session for this partition, it gets one of its own
+        assertEquals("pt='b'", entry.getPartitionSpec());
+        assertEquals(Arrays.asList(0L, 1L),
+            Arrays.asList(entry.getBlockIds()));
+      }
+    }
+  }
+
+  public void testExhaustedRangeContinuesInOwnSession() throws Exception {
+    TestOdpsTunnelWriter.FakeSessionFactory factory =
+        new TestOdpsTunnelWriter.FakeSessionFactory();
+    OdpsUploadSession jobSession = factory.create(null);
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 1, 10);
+    Map<String, OdpsUploadSession> jobSessions =
+        new HashMap<String, OdpsUploadSession>();
+    jobSessions.put(null, jobSession);
+    writer.setJobCommit(manifest, jobSessions, 7, 10);
+    writer.write(rows(null, 0, 50));
+    writer.close();
+
+    assertTrue(factory.committed.isEmpty());
+    Map<String, OdpsBlockManifest.Entry> entries = bySession(manifest);
+    assertEquals(2, entries.size());
+    assertEquals(Arrays.asList(7L, 8L, 9L),
+        Arrays.asList(entries.get(jobSession.getId()).getBlockIds()));
+    entries.remove(jobSession.getId());
+    assertEquals(Arrays.asList(0L, 1L),
+        Arrays.asList(entries.values().iterator().next().getBlockIds()));
+  }
+
+  public void testManifestRoundTripAndMerge() throws Exception {
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    manifest.add("pt='a',ds='1'", "s1", new Long[] { 3L, 1L });
+    manifest.add(null, "s2", new Long[0]);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    manifest.write(bytes);
+    OdpsBlockManifest copy = OdpsBlockManifest.read(
+        new ByteArrayInputStream(bytes.toByteArray()));
+
+    Map<String, OdpsBlockManifest.Entry> entries = bySession(copy);
+    assertEquals("pt='a',ds='1'", entries.get("s1").getPartitionSpec());
+    assertEquals(Arrays.asList(1L, 3L),
+        Arrays.asList(entries.get("s1").getBlockIds()));
+    assertNull(entries.get("s2").getPartitionSpec());
+    assertEquals(0, entries.get("s2").getBlockIds().length);
+
+    OdpsBlockManifest other = new OdpsBlockManifest();
+    other.add("pt='a',ds='1'", "s1", new Long[] { 2L });
+    copy.addAll(other);
+    assertEquals(Arrays.asList(1L, 2L, 3L),
+        Arrays.asList(bySession(copy).get("s1").getBlockIds()));
+  }
+
+  public void testAttemptBlockRangesAreDisjoint() {
+    int maps = 7;
+    int maxAttempts = 4;
+    long previousLimit = 0;
+    for (int task = 0; task < maps; task++) {
+      for (int attempt = 0; attempt <= maxAttempts; attempt++) {
+        long[] range = OdpsUploadProcessor.getJobBlockRange(
+            TaskAttemptID.forName(attemptName(task, attempt)), maps,
+            maxAttempts);
+        assertTrue(range[0] < range[1]);
+        assertEquals(previousLimit, range[0]);
+        previousLimit = range[1];
+      }
+    }
+    assertTrue(previousLimit <= OdpsBlockUploader.MAX_BLOCK_ID);
+  }
+
+  public void testAttemptsPastTheirSlotsGetNoBlocks() {
+    int maps = 7;
+    int maxAttempts = 4;
+    for (int attempt : new int[] { maxAttempts + 1, 12 }) {
+      long[] range = OdpsUploadProcessor.getJobBlockRange(
+          TaskAttemptID.forName(attemptName(3, attempt)), maps, maxAttempts);
+      // An empty range makes the attempt open upload sessions of its own.
+      assertEquals(range[0], range[1]);
+    }
+    long[] last = OdpsUploadProcessor.getJobBlockRange(
+        TaskAttemptID.forName(attemptName(3, maxAttempts)), maps, maxAttempts);
+    assertTrue(last[0] < last[1]);
+  }
+
+  public void testJobCommitsOnlyCommittedAttempts() throws Exception {
+    File dir = new File(System.getProperty("test.build.data", "/tmp"),
+        "odps-job-commit-" + System.nanoTime());
+    Configuration conf = new Configuration();
+    conf.set("fs.default.name", "file:///");
+    conf.set(OdpsConstants.JOB_COMMIT_DIR, dir.toURI().toString());
+    final TestOdpsTunnelWriter.FakeSessionFactory factory =
+        new TestOdpsTunnelWriter.FakeSessionFactory();
+    final Map<String, OdpsUploadSession> sessions =
+        new HashMap<String, OdpsUploadSession>();
+    OdpsOutputCommitter committer = new OdpsOutputCommitter() {
+      @Override
+      protected OdpsUploadSession attach(Configuration conf,
+          String partitionSpec, String sessionId) {
+        return sessions.get(sessionId);
+      }
+    };
+    try {
+      OdpsUploadSession jobSession = factory.create(null);
+      sessions.put(jobSession.getId(), jobSession);
+      TaskAttemptContext failed = context(conf, attemptName(0, 0));
+      TaskAttemptContext task0 = context(conf, attemptName(0, 1));
+      TaskAttemptContext task1 = context(conf, attemptName(1, 0));
+      committer.setupJob(task0);
+
+      writeManifest(conf, failed, jobSession.getId(), 0L, 1L);
+      committer.abortTask(failed);
+      writeManifest(conf, task0, jobSession.getId(), 4L, 5L);
+      assertTrue(committer.needsTaskCommit(task0));
+      committer.commitTask(task0);
+      writeManifest(conf, task1, jobSession.getId(), 8L);
+      committer.commitTask(task1);
+      assertTrue(factory.committed.isEmpty());
+
+      committer.commitJob(task0);
+      assertEquals(1, factory.committed.size());
+      assertEquals(Arrays.asList(4L, 5L, 8L),
+          factory.committed.get("null/" + jobSession.getId()));
+      assertFalse(dir.exists());
+
+      committer.setupJob(task0);
+      committer.abortJob(task0, JobStatus.State.FAILED);
+      assertFalse(dir.exists());
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+
+  private static String attemptName(int task, int attempt) {
+    return "attempt_201701011200_0001_m_00000" + task + "_" + attempt;
+  }
+
+  private static void writeManifest(Configuration conf,
+      TaskAttemptContext context, String sessionId, Long... blockIds)
+      throws Exception {
+    OdpsBlockManifest manifest = new OdpsBlockManifest();
+    manifest.add(null, sessionId, blockIds);
+    OdpsOutputCommitter.writeAttemptManifest(conf,
+        context.getTaskAttemptID(), manifest);
+  }
+
+  private static TaskAttemptContext context(Configuration conf,
+      String attemptId) throws Exception {
+    Class cls;
+    try {
+      cls = Class.forName(
+          "org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl");
+    } catch (ClassNotFoundException cnfe) {
+      // Not hadoop 2.0
+      cls = Class.forName("org.apache.hadoop.mapreduce.TaskAttemptContext");
+    }
+    Constructor c = cls.getConstructor(Configuration.class,
+        TaskAttemptID.class);
+    return (TaskAttemptContext) c.newInstance(conf,
+        TaskAttemptID.forName(attemptId));
+  }
+}
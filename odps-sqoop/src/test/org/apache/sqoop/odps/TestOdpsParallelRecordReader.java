@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.data.RecordReader;
+
+import junit.framework.TestCase;
+import org.apache.sqoop.mapreduce.odps.OdpsExportInputFormat;
+
+public class TestOdpsParallelRecordReader extends TestCase {
+
+  private static final Column[] COLUMNS =
+      new Column[] { new Column("id", OdpsType.BIGINT) };
+
+  /** Returns the record numbers of its range; optionally fails midway. */
+  static class RangeReader implements RecordReader {
+    private long next;
+    private final long end;
+    private final long failAt;
+    private final AtomicInteger closed;
+
+    RangeReader(long start, long count, long failAt, AtomicInteger closed) {
+      this.next = start;
+      this.end = start + count;
+      this.failAt = failAt;
+      this.closed = closed;
+    }
+
+    @Override
+    public Record read() throws IOException {
+      if (next == failAt) {
+        throw new IOException("injected failure");
+      }
+      if (next >= end) {
+        return null;
+      }
+      Record record = new ArrayRecord(COLUMNS);
+      record.setBigint(0, next++);
+      return record;
+    }
+
+    @Override
+    public void close() {
+      closed.incrementAndGet();
+    }
+  }
+
+  private static OdpsParallelRecordReader.RangeReaderFactory factory(
+      final long failAt, final AtomicInteger opened,
+      final AtomicInteger closed) {
+    return new OdpsParallelRecordReader.RangeReaderFactory() {
+      @Override
+      public RecordReader open(long start, long count) {
+        opened.incrementAndGet();
+        return new RangeReader(start, count, failAt, closed);
+      }
+    };
+  }
+
+  public void testEveryRecordReadOnce() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    long start = 100;
+    int length = 10007;
+    OdpsParallelRecordReader reader = new OdpsParallelRecordReader(
+        factory(-1, opened, closed), start, length, 4, 2, 64);
+
+    boolean[] seen = new boolean[length];
+    int count = 0;
+    Record record;
+    while ((record = reader.read()) != null) {
+      int i = (int) (record.getBigint(0) - start);
+      assertFalse("record " + i + " read twice", seen[i]);
+      seen[i] = true;
+      count++;
+    }
+    assertEquals(length, count);
+    assertNull(reader.read());
+    reader.close();
+    assertEquals(4, opened.get());
+    assertEquals(4, closed.get());
+  }
+
+  public void testMoreThreadsThanRecords() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    OdpsParallelRecordReader reader = new OdpsParallelRecordReader(
+        factory(-1, opened, closed), 0, 3, 8, 4, 10);
+    int count = 0;
+    while (reader.read() != null) {
+      count++;
+    }
+    reader.close();
+    assertEquals(3, count);
+    assertEquals(3, opened.get());
+  }
+
+  public void testEmptyRange() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    OdpsParallelRecordReader reader = new OdpsParallelRecordReader(
+        factory(-1, opened, closed), 0, 0, 4, 4, 10);
+    assertNull(reader.read());
+    reader.close();
+    assertEquals(0, opened.get());
+  }
+
+  public void testFailureIsRethrown() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    OdpsParallelRecordReader reader = new OdpsParallelRecordReader(
+        factory(5000, opened, closed), 0, 10000, 4, 2, 100);
+    try {
+      while (reader.read() != null) {
+        // drain
+      }
+      fail("expected the fetch failure to surface");
+    } catch (IOException e) {
+      assertEquals("injected failure", e.getCause().getMessage());
+    } finally {
+      reader.close();
+    }
+    assertEquals(4, closed.get());
+  }
+
+  public void testCloseBeforeEndStopsReaders() throws Exception {
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    OdpsParallelRecordReader reader = new OdpsParallelRecordReader(
+        factory(-1, opened, closed), 0, 1000000, 4, 1, 10);
+    assertNotNull(reader.read());
+    reader.close();
+    assertEquals(opened.get(), closed.get());
+  }
+
+  public void testSplitCarriesDownloadSessionId() throws Exception {
+    OdpsExportInputFormat.OdpsExportInputSplit split =
+        new OdpsExportInputFormat.OdpsExportInputSplit(10, 90, "session-1");
+    OdpsExportInputFormat.OdpsExportInputSplit copy = roundTrip(split);
+    assertEquals(10, copy.getStart());
+    assertEquals(90, copy.getLength());
+    assertEquals("session-1", copy.getDownloadSessionId());
+
+    split = new OdpsExportInputFormat.OdpsExportInputSplit(0, 5, null);
+    assertNull(roundTrip(split).getDownloadSessionId());
+  }
+
+  private static OdpsExportInputFormat.OdpsExportInputSplit roundTrip(
+      OdpsExportInputFormat.OdpsExportInputSplit split) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(bytes));
+    OdpsExportInputFormat.OdpsExportInputSplit copy =
+        new OdpsExportInputFormat.OdpsExportInputSplit();
+    copy.readFields(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+    return copy;
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.TableSchema;
+import com.aliyun.odps.data.ArrayRecord;
+
+import junit.framework.TestCase;
+
+public class TestOdpsRecordConverter extends TestCase {
+
+  private static TableSchema schema() {
+    TableSchema schema = new TableSchema();
+    schema.addColumn(new Column("id", OdpsType.BIGINT));
+    schema.addColumn(new Column("name", OdpsType.STRING));
+    schema.addColumn(new Column("price", OdpsType.DECIMAL));
+    schema.addColumn(new Column("ts", OdpsType.DATETIME));
+    schema.addColumn(new Column("flag", OdpsType.BOOLEAN));
+    return schema;
+  }
+
+  public void testTypedValuesPassThrough() {
+    // Input order differs from the table order.
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("FLAG", "ts", "price", "name", "ID"), null);
+    Timestamp ts = Timestamp.valueOf("2020-01-02 03:04:05.678");
+    BigDecimal price = new BigDecimal("12.50");
+    ArrayRecord record = converter.convert(
+        new Object[] { Boolean.TRUE, ts, price, "abc", 42L });
+
+    assertEquals(Long.valueOf(42L), record.getBigint(0));
+    assertEquals("abc", record.getString(1));
+    assertSame(price, record.getDecimal(2));
+    assertEquals(ts.getTime(), record.getDatetime(3).getTime());
+    assertEquals(Boolean.TRUE, record.getBoolean(4));
+    assertEquals(0, converter.getDirtyRecordCount());
+  }
+
+  public void testStringValuesAreParsed() {
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("id", "price", "ts", "flag"), "yyyy-MM-dd");
+    ArrayRecord record = converter.convert(
+        new Object[] { "7", "1.5", "2020-01-02", "y" });
+    assertEquals(Long.valueOf(7L), record.getBigint(0));
+    assertEquals(new BigDecimal("1.5"), record.getDecimal(2));
+    assertNotNull(record.getDatetime(3));
+    assertEquals(Boolean.TRUE, record.getBoolean(4));
+  }
+
+  public void testMapInputIsCaseInsensitive() {
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("ID", "NAME"), null);
+    Map<String, Object> row = new HashMap<String, Object>();
+    row.put("Id", 5);
+    row.put("name", "x");
+    row.put("unknown", "ignored");
+    ArrayRecord record = converter.convert(row);
+    assertEquals(Long.valueOf(5L), record.getBigint(0));
+    assertEquals("x", record.getString(1));
+    assertEquals(0, converter.getDirtyRecordCount());
+  }
+
+  public void testBadFieldsAreCountedAndLeftNull() {
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("id", "name", "flag"), null);
+    ArrayRecord record = converter.convert(
+        new Object[] { "not a number", "kept", "maybe" });
+    assertNull(record.getBigint(0));
+    assertEquals("kept", record.getString(1));
+    assertNull(record.getBoolean(4));
+    converter.convert(new Object[] { 1L, "ok", "true" });
+    assertEquals(1, converter.getDirtyRecordCount());
+    assertEquals(2, converter.getDirtyFieldCount());
+  }
+
+  public void testIntegralDateValuesAreEpochMillis() {
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("ts"), null);
+    ArrayRecord record = converter.convert(new Object[] { 1500000000123L });
+    assertEquals(1500000000123L, record.getDatetime(3).getTime());
+    assertEquals(0, converter.getDirtyRecordCount());
+  }
+
+  public void testInputRowValuesByIndex() {
+    OdpsRecordConverter converter = new OdpsRecordConverter(schema(),
+        Arrays.asList("Name", "id"), null);
+    OdpsInputRow row = new OdpsInputRow(new String[] { "Name", "id" });
+    row.getValues()[0] = "abc";
+    row.getValues()[1] = 3;
+    ArrayRecord record = converter.convert(row.getValues());
+    assertEquals("abc", record.getString(1));
+    assertEquals(Long.valueOf(3L), record.getBigint(0));
+    // partition value tags are looked up in lower case
+    assertEquals("abc", row.getFieldMap().get("name"));
+  }
+
+  public void testUnknownInputColumnIsRejected() {
+    try {
+      new OdpsRecordConverter(schema(), Arrays.asList("missing"), null);
+      fail("Expected an unknown column to be rejected");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+}
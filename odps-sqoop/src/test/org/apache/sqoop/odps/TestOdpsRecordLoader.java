@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Binary;
+import com.aliyun.odps.data.Char;
+import com.aliyun.odps.data.Varchar;
+import com.aliyun.odps.type.TypeInfoFactory;
+
+import junit.framework.TestCase;
+import org.apache.sqoop.lib.OdpsRecordLoader;
+
+public class TestOdpsRecordLoader extends TestCase {
+
+  private static ArrayRecord record(Column[] columns, Object[] values) {
+    ArrayRecord record = new ArrayRecord(columns);
+    record.set(values);
+    return record;
+  }
+
+  public void testColumnIndexIgnoresCaseAndOrder() {
+    OdpsRecordLoader.ColumnIndex index =
+        new OdpsRecordLoader.ColumnIndex("ID", "name", "missing");
+    Column[] columns = new Column[] {
+        new Column("name", OdpsType.STRING),
+        new Column("id", OdpsType.BIGINT),
+    };
+    int[] idx = index.get(columns);
+    assertTrue(Arrays.equals(new int[] { 1, 0, -1 }, idx));
+    // Same names in a different array resolve to the cached indexes.
+    assertSame(idx, index.get(columns.clone()));
+
+    Column[] reordered = new Column[] { columns[1], columns[0] };
+    assertTrue(Arrays.equals(new int[] { 0, 1, -1 }, index.get(reordered)));
+  }
+
+  public void testNumbersAreConverted() {
+    Object[] values = new Object[] {
+        Byte.valueOf((byte) 7), Short.valueOf((short) 300),
+        Integer.valueOf(70000), Long.valueOf(5L), Float.valueOf(1.5f),
+        Double.valueOf(2.25), new BigDecimal("3.75"), "42",
+    };
+    ArrayRecord record = record(new Column[] {
+        new Column("t", OdpsType.TINYINT), new Column("s", OdpsType.SMALLINT),
+        new Column("i", OdpsType.INT), new Column("b", OdpsType.BIGINT),
+        new Column("f", OdpsType.FLOAT), new Column("d", OdpsType.DOUBLE),
+        new Column("m", OdpsType.DECIMAL), new Column("str", OdpsType.STRING),
+    }, values);
+
+    assertEquals(Integer.valueOf(7), OdpsRecordLoader.getInteger(record, 0));
+    assertEquals(Long.valueOf(300), OdpsRecordLoader.getLong(record, 1));
+    assertEquals(Long.valueOf(70000), OdpsRecordLoader.getLong(record, 2));
+    assertEquals(Integer.valueOf(5), OdpsRecordLoader.getInteger(record, 3));
+    assertEquals(Double.valueOf(1.5), OdpsRecordLoader.getDouble(record, 4));
+    assertEquals(Float.valueOf(2.25f), OdpsRecordLoader.getFloat(record, 5));
+    assertEquals(new BigDecimal("2.25"),
+        OdpsRecordLoader.getBigDecimal(record, 5));
+    assertEquals(Double.valueOf(3.75), OdpsRecordLoader.getDouble(record, 6));
+    assertEquals(Long.valueOf(42), OdpsRecordLoader.getLong(record, 7));
+    assertEquals(Boolean.TRUE, OdpsRecordLoader.getBoolean(record, 0));
+    assertNull(OdpsRecordLoader.getLong(record, -1));
+  }
+
+  public void testDatesAreConverted() {
+    long millis = Timestamp.valueOf("2020-01-02 03:04:05.678").getTime();
+    ArrayRecord record = record(new Column[] {
+        new Column("dt", OdpsType.DATETIME),
+        new Column("d", OdpsType.DATE),
+        new Column("ts", OdpsType.TIMESTAMP),
+    }, new Object[] {
+        new java.util.Date(millis), java.sql.Date.valueOf("2020-01-02"),
+        new Timestamp(millis),
+    });
+
+    assertEquals(millis, OdpsRecordLoader.getTimestamp(record, 0).getTime());
+    assertEquals(java.sql.Date.valueOf("2020-01-02"),
+        OdpsRecordLoader.getDate(record, 1));
+    assertEquals(millis, OdpsRecordLoader.getTime(record, 2).getTime());
+    assertEquals(Long.valueOf(millis), OdpsRecordLoader.getLong(record, 0));
+  }
+
+  public void testStringsBinaryAndComplexTypes() throws Exception {
+    Map<String, String> map = new LinkedHashMap<String, String>();
+    map.put("k", "v\n");
+    map.put("q\"", null);
+    ArrayRecord record = new ArrayRecord(new Column[] {
+        new Column("c", TypeInfoFactory.getCharTypeInfo(2)),
+        new Column("v", TypeInfoFactory.getVarcharTypeInfo(10)),
+        new Column("bin", OdpsType.BINARY), new Column("s", OdpsType.STRING),
+        new Column("m", TypeInfoFactory.getMapTypeInfo(
+            TypeInfoFactory.STRING, TypeInfoFactory.STRING)),
+        new Column("a", TypeInfoFactory.getArrayTypeInfo(
+            TypeInfoFactory.BIGINT)),
+    });
+    record.set(0, new Char("ab"));
+    record.set(1, new Varchar("xyz"));
+    record.set(2, new Binary(new byte[] { 1, 2, (byte) 0xff }));
+    record.setString(3, "héllo".getBytes("UTF-8"));
+    record.set(4, map);
+    record.set(5, Arrays.asList(1L, null));
+
+    assertEquals("ab", OdpsRecordLoader.getString(record, 0));
+    assertEquals("xyz", OdpsRecordLoader.getString(record, 1));
+    assertTrue(Arrays.equals(new byte[] { 1, 2, (byte) 0xff },
+        OdpsRecordLoader.getBytesWritable(record, 2).copyBytes()));
+    assertEquals("héllo", OdpsRecordLoader.getString(record, 3));
+    assertEquals("{\"k\":\"v\\n\",\"q\\\"\":null}",
+        OdpsRecordLoader.getString(record, 4));
+    assertEquals("[1,null]", OdpsRecordLoader.getString(record, 5));
+  }
+}
@@ -0,0 +1,167 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aliyun.odps.PartitionSpec;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.sqoop.mapreduce.odps.OdpsExportInputFormat;
+import org.apache.sqoop.mapreduce.odps.OdpsSplitter;
+
+public class TestOdpsSplitter extends TestCase {
+
+  private static OdpsExportInputFormat.OdpsExportInputSplit split(
+      List<InputSplit> splits, int i) {
+    return (OdpsExportInputFormat.OdpsExportInputSplit) splits.get(i);
+  }
+
+  /** Checks that the splits read every row of every slice exactly once. */
+  private static void assertCovers(List<OdpsSplitter.Slice> slices,
+      List<InputSplit> splits) {
+    int next = 0;
+    long pos = 0;
+    for (int i = 0; i < splits.size(); i++) {
+      for (OdpsExportInputFormat.Range range : split(splits, i).getRanges()) {
+        while (pos == slices.get(next).getRecordCount()) {
+          next++;
+          pos = 0;
+        }
+        OdpsSplitter.Slice slice = slices.get(next);
+        assertEquals(slice.getPartitionSpec(), range.getPartitionSpec());
+        assertEquals(slice.getDownloadSessionId(),
+            range.getDownloadSessionId());
+        assertEquals(pos, range.getStart());
+        assertTrue(range.getLength() > 0);
+        pos += range.getLength();
+      }
+    }
+    assertEquals(slices.size() - 1, next);
+    assertEquals(slices.get(next).getRecordCount(), pos);
+  }
+
+  public void testEvenSplitKeepsEveryRecord() throws Exception {
+    List<OdpsSplitter.Slice> slices = Arrays.asList(
+        new OdpsSplitter.Slice(null, "s", 10, 0));
+    List<InputSplit> splits = OdpsSplitter.split(slices, 3, 0, -1);
+    assertEquals(3, splits.size());
+    assertCovers(slices, splits);
+    assertEquals(4, splits.get(0).getLength());
+    assertEquals(3, splits.get(1).getLength());
+    assertEquals(3, splits.get(2).getLength());
+  }
+
+  public void testHugeAndTinyPartitionsAreBalancedByBytes() throws Exception {
+    List<OdpsSplitter.Slice> slices = new ArrayList<OdpsSplitter.Slice>();
+    slices.add(new OdpsSplitter.Slice("pt='big'", "s0", 3000, 3000000));
+    for (int i = 1; i <= 100; i++) {
+      // Ten times as wide as the rows of the big partition.
+      slices.add(new OdpsSplitter.Slice("pt='" + i + "'", "s" + i, 10,
+          100000));
+    }
+    List<InputSplit> splits = OdpsSplitter.split(slices, 13, 0, -1);
+    assertEquals(13, splits.size());
+    assertCovers(slices, splits);
+    // 13 MB over 13 splits: the big partition fills three splits, the small
+    // ones are packed ten to a split.
+    for (int i = 0; i < 3; i++) {
+      assertEquals(1, split(splits, i).getRanges().size());
+      assertEquals(1000, splits.get(i).getLength());
+    }
+    for (int i = 3; i < 13; i++) {
+      assertEquals(10, split(splits, i).getRanges().size());
+      assertEquals(100, splits.get(i).getLength());
+    }
+  }
+
+  public void testSplitBytesBudget() throws Exception {
+    List<OdpsSplitter.Slice> slices = Arrays.asList(
+        new OdpsSplitter.Slice("pt='a'", "a", 100, 1000),
+        new OdpsSplitter.Slice("pt='b'", "b", 50, 0));
+    // 10 bytes per row, the second partition gets the average.
+    List<InputSplit> splits = OdpsSplitter.split(slices, 1, 400, -1);
+    assertEquals(4, splits.size());
+    assertCovers(slices, splits);
+    assertEquals(2, split(splits, 2).getRanges().size());
+    assertEquals(30, splits.get(3).getLength());
+  }
+
+  public void testEmptyTableHasNoSplits() {
+    assertTrue(OdpsSplitter.split(Arrays.asList(
+        new OdpsSplitter.Slice(null, "s", 0, 0)), 4, 0, -1).isEmpty());
+  }
+
+  public void testSelectPartitions() {
+    List<PartitionSpec> partitions = Arrays.asList(
+        new PartitionSpec("pt='20200101',region='cn'"),
+        new PartitionSpec("pt='20200102',region='us'"),
+        new PartitionSpec("pt='20191231',region='cn'"),
+        new PartitionSpec("pt='2020.01',region='cn'"));
+    assertTrue(OdpsSplitter.isPattern("pt=2020*"));
+    assertTrue(OdpsSplitter.isPattern("pt=1;pt=2"));
+    assertFalse(OdpsSplitter.isPattern("pt=1,region=cn"));
+
+    List<PartitionSpec> selected =
+        OdpsSplitter.selectPartitions(partitions, "pt=2020*,REGION='cn'");
+    assertEquals(2, selected.size());
+    assertSame(partitions.get(0), selected.get(0));
+    assertSame(partitions.get(3), selected.get(1));
+
+    selected = OdpsSplitter.selectPartitions(partitions,
+        "pt=2020????;pt='20191231'");
+    assertEquals(3, selected.size());
+    assertSame(partitions.get(2), selected.get(2));
+
+    assertTrue(OdpsSplitter.selectPartitions(partitions, "pt=2020.0?1;")
+        .isEmpty());
+  }
+
+  public void testSplitWithSeveralRangesRoundTrips() throws Exception {
+    OdpsExportInputFormat.OdpsExportInputSplit split =
+        new OdpsExportInputFormat.OdpsExportInputSplit(Arrays.asList(
+            new OdpsExportInputFormat.Range("pt='a'", "s1", 5, 10),
+            new OdpsExportInputFormat.Range(null, null, 0, 3)));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    split.write(new DataOutputStream(bytes));
+    OdpsExportInputFormat.OdpsExportInputSplit copy =
+        new OdpsExportInputFormat.OdpsExportInputSplit();
+    copy.readFields(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(13, copy.getLength());
+    assertEquals(2, copy.getRanges().size());
+    OdpsExportInputFormat.Range first = copy.getRanges().get(0);
+    assertEquals("pt='a'", first.getPartitionSpec());
+    assertEquals("s1", first.getDownloadSessionId());
+    assertEquals(5, first.getStart());
+    assertEquals(10, first.getLength());
+    OdpsExportInputFormat.Range second = copy.getRanges().get(1);
+    assertNull(second.getPartitionSpec());
+    assertNull(second.getDownloadSessionId());
+    assertEquals(3, second.getLength());
+  }
+}
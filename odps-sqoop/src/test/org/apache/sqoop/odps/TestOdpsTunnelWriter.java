@@ -0,0 +1,194 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.sqoop.odps;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.aliyun.odps.Column;
+import com.aliyun.odps.OdpsType;
+import com.aliyun.odps.data.ArrayRecord;
+import com.aliyun.odps.data.Record;
+import com.aliyun.odps.tunnel.TunnelException;
+
+import junit.framework.TestCase;
+
+public class TestOdpsTunnelWriter extends TestCase {
+
+  private static final Column[] COLUMNS =
+      new Column[] { new Column("id", OdpsType.BIGINT) };
+
+  /** In-memory stand-in for the tunnel that remembers committed blocks. */
+  static class FakeSessionFactory implements OdpsUploadSession.Factory {
+    final AtomicInteger created = new AtomicInteger();
+    final Map<String, List<Long>> committed =
+        Collections.synchronizedMap(new HashMap<String, List<Long>>());
+    final Map<String, Map<Long, List<Record>>> blocks =
+        Collections.synchronizedMap(
+            new HashMap<String, Map<Long, List<Record>>>());
+    volatile boolean failWrites;
+
+    @Override
+    public OdpsUploadSession create(final String partitionSpec) {
+      final String id = "session-" + created.incrementAndGet();
+      final Map<Long, List<Record>> sessionBlocks =
+          Collections.synchronizedMap(new HashMap<Long, List<Record>>());
+      blocks.put(id, sessionBlocks);
+      return new OdpsUploadSession() {
+        @Override
+        public String getId() {
+          return id;
+        }
+
+        @Override
+        public void writeBlock(long blockId, List<Record> records)
+            throws IOException {
+          if (failWrites) {
+            throw new IOException("injected failure");
+          }
+          sessionBlocks.put(blockId, new ArrayList<Record>(records));
+        }
+
+        @Override
+        public void commit(Long[] blockIds) throws TunnelException {
+          committed.put(String.valueOf(partitionSpec) + "/" + id,
+              Arrays.asList(blockIds));
+        }
+      };
+    }
+
+    long committedRecords() {
+      long count = 0;
+      synchronized (committed) {
+        for (Map.Entry<String, List<Long>> e : committed.entrySet()) {
+          String id = e.getKey().substring(e.getKey().indexOf('/') + 1);
+          for (Long blockId : e.getValue()) {
+            count += blocks.get(id).get(blockId).size();
+          }
+        }
+      }
+      return count;
+    }
+  }
+
+  private static List<OdpsRowDO> rows(String partition, int from, int to) {
+    List<OdpsRowDO> rows = new ArrayList<OdpsRowDO>();
+    for (int i = from; i < to; i++) {
+      Record record = new ArrayRecord(COLUMNS);
+      record.setBigint(0, (long) i);
+      OdpsRowDO row = new OdpsRowDO();
+      row.setRecord(record);
+      row.setPartitionSpec(partition);
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  public void testBatchModeCommitsEveryBatch() throws Exception {
+    FakeSessionFactory factory = new FakeSessionFactory();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0);
+    writer.write(rows("pt='a'", 0, 10));
+    writer.write(rows("pt='a'", 10, 20));
+    writer.close();
+    assertEquals(2, factory.created.get());
+    assertEquals(2, factory.committed.size());
+    assertEquals(20, factory.committedRecords());
+  }
+
+  public void testLongLivedModeCommitsOncePerPartition() throws Exception {
+    FakeSessionFactory factory = new FakeSessionFactory();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 3, 7);
+    for (int i = 0; i < 10; i++) {
+      writer.write(rows("pt='a'", i * 10, i * 10 + 10));
+      writer.write(rows("pt='b'", i * 5, i * 5 + 5));
+    }
+    assertTrue(factory.committed.isEmpty());
+    writer.close();
+
+    assertEquals(2, factory.created.get());
+    assertEquals(2, factory.committed.size());
+    assertEquals(150, factory.committedRecords());
+    for (Map.Entry<String, List<Long>> e : factory.committed.entrySet()) {
+      int expectedBlocks = e.getKey().startsWith("pt='a'") ? 15 : 8;
+      assertEquals(expectedBlocks, e.getValue().size());
+    }
+  }
+
+  public void testLeastRecentlyUsedPartitionIsCommittedOnEviction()
+      throws Exception {
+    FakeSessionFactory factory = new FakeSessionFactory();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 2, 1000);
+    writer.setPartitionCacheLimits(2, Long.MAX_VALUE);
+    writer.write(rows("pt='a'", 0, 10));
+    writer.write(rows("pt='b'", 0, 10));
+    writer.write(rows("pt='a'", 10, 20));
+    assertTrue(factory.committed.isEmpty());
+
+    // Opening a third partition commits b, the least recently used one.
+    writer.write(rows("pt='c'", 0, 10));
+    assertEquals(1, factory.committed.size());
+    assertTrue(factory.committed.keySet().iterator().next()
+        .startsWith("pt='b'"));
+
+    writer.close();
+    assertEquals(3, factory.committed.size());
+    assertEquals(40, factory.committedRecords());
+  }
+
+  public void testBufferBudgetCommitsIdlePartitions() throws Exception {
+    FakeSessionFactory factory = new FakeSessionFactory();
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 2, 1000);
+    long rowBytes = OdpsUtil.estimateRecordSize(
+        rows(null, 0, 1).get(0).getRecord());
+    writer.setPartitionCacheLimits(100, rowBytes * 15);
+    writer.write(rows("pt='a'", 0, 10));
+    assertTrue(factory.committed.isEmpty());
+    writer.write(rows("pt='b'", 0, 10));
+    assertEquals(1, factory.committed.size());
+
+    // A single partition over budget writes a short block but stays open.
+    writer.write(rows("pt='b'", 10, 30));
+    assertEquals(1, factory.committed.size());
+
+    writer.close();
+    assertEquals(2, factory.committed.size());
+    assertEquals(40, factory.committedRecords());
+  }
+
+  public void testLongLivedModeSurfacesWriteFailureOnClose()
+      throws Exception {
+    FakeSessionFactory factory = new FakeSessionFactory();
+    factory.failWrites = true;
+    OdpsTunnelWriter writer = new OdpsTunnelWriter(factory, 0, 2, 100);
+    writer.write(rows(null, 0, 50));
+    try {
+      writer.close();
+      fail("Expected the block write failure to be reported");
+    } catch (IOException e) {
+      // expected
+    }
+    assertTrue(factory.committed.isEmpty());
+  }
+}
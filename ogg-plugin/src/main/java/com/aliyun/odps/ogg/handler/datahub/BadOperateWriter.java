@@ -23,7 +23,9 @@ import com.aliyun.datahub.client.model.Field;
 import com.aliyun.datahub.client.model.RecordEntry;
 import com.aliyun.datahub.client.model.RecordSchema;
 import com.aliyun.datahub.client.model.TupleRecordData;
+import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
 import com.aliyun.odps.ogg.handler.datahub.modle.DirtyRecordInfo;
+import com.aliyun.odps.ogg.handler.datahub.modle.MetricHelper;
 import com.aliyun.odps.ogg.handler.datahub.util.JsonHelper;
 import oracle.goldengate.datasource.DsColumn;
 import oracle.goldengate.datasource.adapt.Op;
@@ -48,6 +50,44 @@ import java.util.Map;
 public class BadOperateWriter {
     private final static Logger logger = LoggerFactory.getLogger(BadOperateWriter.class);
 
+    private static final long STOP_TIMEOUT_MS = 10000;
+
+    // null if dirty records are written synchronously
+    private static volatile DirtyRecordSink sink;
+
+    public static void init(Configure configure) {
+        if (!configure.isDirtyDataContinue() || configure.getDirtyDataQueueSize() <= 0) {
+            return;
+        }
+        DirtyRecordSink s = new DirtyRecordSink(configure.getDirtyDataFile(), configure.getDirtyDataQueueSize(),
+                configure.getDirtyDataBatchSize(), configure.getDirtyDataFileMaxSize(),
+                configure.getDirtyDataFileRollIntervalMs(), configure.getDirtyDataFileRetain(),
+                configure.isDirtyDataFileCompress());
+        s.start();
+        init(s);
+        if (configure.isReportMetric()) {
+            MetricHelper.instance().registerGauge("DirtyRecord.queue", sink::getQueueSize);
+            MetricHelper.instance().registerGauge("DirtyRecord.blocked", sink::getBlocked);
+        }
+    }
+
+    static void init(DirtyRecordSink dirtyRecordSink) {
+        sink = dirtyRecordSink;
+    }
+
+    public static void destroy() {
+        DirtyRecordSink s = sink;
+        if (s != null) {
+            s.stop(STOP_TIMEOUT_MS);
+            if (MetricHelper.instance() != null) {
+                MetricHelper.instance().unregisterGauge("DirtyRecord.queue");
+                MetricHelper.instance().unregisterGauge("DirtyRecord.blocked");
+            }
+            logger.info("Dirty record sink stopped, written: {}, lost: {}", s.getWritten(), s.getLost());
+            sink = null;
+        }
+    }
+
     public static void checkFileSize(String fileName, int maxFileSize) {
         File file = new File(fileName);
 
@@ -58,11 +98,8 @@ public class BadOperateWriter {
         }
     }
 
-    private static void write(Map<String, String> record, String oracleFullTableName, String topicName,
-                             String fileName, int maxFileSize, String msg) {
-
-        checkFileSize(fileName, maxFileSize);
-
+    private static String toJson(Map<String, String> record, String oracleFullTableName, String topicName,
+                                 String msg, long errorTime) {
         DirtyRecordInfo dirtyRecordInfo = new DirtyRecordInfo();
         dirtyRecordInfo.setOracleTable(oracleFullTableName);
         dirtyRecordInfo.setTopicName(topicName);
@@ -70,36 +107,68 @@ public class BadOperateWriter {
         dirtyRecordInfo.setErrorMessage(msg);
 
         SimpleDateFormat simpleDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        dirtyRecordInfo.setErrorTime(simpleDateFormat.format(new Date()));
+        dirtyRecordInfo.setErrorTime(simpleDateFormat.format(new Date(errorTime)));
 
         dirtyRecordInfo.setRecord(record);
+        return JsonHelper.beanToJson(dirtyRecordInfo);
+    }
 
+    private static void write(Map<String, String> record, String oracleFullTableName, String topicName,
+                              String fileName, int maxFileSize, String msg, Runnable onWritten) {
+        long errorTime = System.currentTimeMillis();
+        DirtyRecordSink s = sink;
+        if (s != null) {
+            // formatted on the sink thread
+            s.append(() -> toJson(record, oracleFullTableName, topicName, msg, errorTime), onWritten);
+            return;
+        }
+
+        checkFileSize(fileName, maxFileSize);
         try {
             BufferedWriter bw = new BufferedWriter(new FileWriter(fileName, true));
-            bw.write(JsonHelper.beanToJson(dirtyRecordInfo) + "\n");
+            bw.write(toJson(record, oracleFullTableName, topicName, msg, errorTime) + "\n");
             bw.close();
         } catch (IOException e) {
             logger.error("logBadOperation() failed. ", e);
             throw new RuntimeException("logBadOperation() failed. ", e);
         }
+        if (onWritten != null) {
+            onWritten.run();
+        }
     }
 
 
     public static void write(Op op, String oracleFullTableName, String topicName, String fileName,
                              int maxFileSize, String msg) {
+        write(op, oracleFullTableName, topicName, fileName, maxFileSize, msg, null);
+    }
+
+    /**
+     * @param onWritten runs once the record is in the dirty data file, which may be later on the
+     *                  dirty record sink thread, may be null
+     */
+    public static void write(Op op, String oracleFullTableName, String topicName, String fileName,
+                             int maxFileSize, String msg, Runnable onWritten) {
         Map<String, String> record = new HashMap<String, String>(10);
         List<DsColumn> cols = op.getColumns();
         for (int i = 0; i < cols.size(); i++) {
             String colName = op.getTableMeta().getColumnName(i).toLowerCase();
             record.put(colName, cols.get(i).getAfterValue());
         }
-        write(record, oracleFullTableName, topicName, fileName, maxFileSize, msg);
+        write(record, oracleFullTableName, topicName, fileName, maxFileSize, msg, onWritten);
     }
 
     public static void write(RecordEntry recordEntry, String oracleFullTableName, String topicName,
                              String fileName, int maxFileSize, String msg) {
-        checkFileSize(fileName, maxFileSize);
+        write(recordEntry, oracleFullTableName, topicName, fileName, maxFileSize, msg, null);
+    }
 
+    /**
+     * @param onWritten runs once the record is in the dirty data file, which may be later on the
+     *                  dirty record sink thread, may be null
+     */
+    public static void write(RecordEntry recordEntry, String oracleFullTableName, String topicName,
+                             String fileName, int maxFileSize, String msg, Runnable onWritten) {
         Map<String, String> record = new HashMap<String, String>(10);
         if (recordEntry.getRecordData() instanceof TupleRecordData) {
             TupleRecordData recordData = (TupleRecordData) recordEntry.getRecordData();
@@ -112,6 +181,6 @@ public class BadOperateWriter {
             }
         }
 
-        write(record, oracleFullTableName, topicName, fileName, maxFileSize, msg);
+        write(record, oracleFullTableName, topicName, fileName, maxFileSize, msg, onWritten);
     }
 }
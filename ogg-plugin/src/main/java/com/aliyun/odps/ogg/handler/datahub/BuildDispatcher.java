@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.RecordEntry;
+import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
+import oracle.goldengate.datasource.DsColumn;
+import oracle.goldengate.datasource.DsToken;
+import oracle.goldengate.datasource.adapt.Op;
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spreads the operations of a table over its builders when buildSpeed > 1, by TKN-ROWID, by the
+ * primary key columns or round robin. With resequence on, every operation gets a sequence number
+ * when it is dispatched and the built records are handed to the topic writer in that order,
+ * whichever builder finishes first.
+ */
+public class BuildDispatcher {
+    private final static Logger logger = LoggerFactory.getLogger(BuildDispatcher.class);
+
+    public enum Mode {
+        ROWID, PRIMARY_KEY, ROUND_ROBIN;
+
+        public static Mode parse(String mode) {
+            if ("rowid".equalsIgnoreCase(mode)) {
+                return ROWID;
+            } else if ("primaryKey".equalsIgnoreCase(mode)) {
+                return PRIMARY_KEY;
+            } else if ("roundRobin".equalsIgnoreCase(mode)) {
+                return ROUND_ROBIN;
+            }
+            throw new RuntimeException("Invalid buildDispatch: " + mode + ", must be one of rowid, primaryKey, roundRobin");
+        }
+    }
+
+    private final Mode mode;
+    private final TableMapping tableMapping;
+    private final TopicWriter topicWriter;
+    private final boolean resequence;
+
+    // dispatching thread only
+    private int roundRobin = 0;
+    private long dispatchSequence = 0;
+
+    // built records waiting for an earlier sequence, guarded by this
+    private final Map<Long, Built> built = new HashMap<>();
+    private long writeSequence = 0;
+
+    public BuildDispatcher(Mode mode, boolean resequence, TableMapping tableMapping, TopicWriter topicWriter) {
+        this.mode = mode;
+        this.resequence = resequence;
+        this.tableMapping = tableMapping;
+        this.topicWriter = topicWriter;
+    }
+
+    /**
+     * @return index of the builder for the operation
+     */
+    public int select(Op op, int builders) {
+        switch (mode) {
+            case ROWID:
+                DsToken token = op.getRecord().getUserToken(Constant.ROWID_TOKEN);
+                if (!token.isSet()) {
+                    logger.error("BuildRecord failed, build speed > 1, but oracle table token TKN-ROWID is not set, can not get oracle rowid, table: {}",
+                            tableMapping.getOracleFullTableName());
+                    throw new RuntimeException("BuildRecord failed, build speed > 1, but oracle table token TKN-ROWID is not set, can not get oracle rowid");
+                }
+                return floorMod(token.getValue().hashCode(), builders);
+            case PRIMARY_KEY:
+                List<ColumnMetaData> keyColumns = op.getTableMeta().getKeyColumns();
+                if (keyColumns != null && !keyColumns.isEmpty()) {
+                    return floorMod(keyHash(op, keyColumns), builders);
+                }
+                // a table without key has no order to keep per key
+                return floorMod(roundRobin++, builders);
+            default:
+                return floorMod(roundRobin++, builders);
+        }
+    }
+
+    /**
+     * @return the sequence of the next dispatched operation, -1 if records are not resequenced
+     */
+    public long nextSequence() {
+        return resequence ? dispatchSequence++ : -1;
+    }
+
+    /**
+     * Hands a built record to the topic writer, after every record dispatched before it.
+     *
+     * @param recordEntry null if the operation produced no record, e.g. a dirty one
+     */
+    public void write(long sequence, RecordEntry recordEntry, HandlerInfoManager.Position position) {
+        if (sequence < 0) {
+            if (recordEntry != null) {
+                topicWriter.writeRecord(recordEntry, position);
+            }
+            return;
+        }
+        synchronized (this) {
+            built.put(sequence, new Built(recordEntry, position));
+            Built next;
+            while ((next = built.remove(writeSequence)) != null) {
+                writeSequence++;
+                if (next.recordEntry != null) {
+                    topicWriter.writeRecord(next.recordEntry, next.position);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the sequence of an operation that was never built.
+     */
+    public void skip(long sequence) {
+        if (sequence >= 0) {
+            write(sequence, null, null);
+        }
+    }
+
+    public synchronized int getWaiting() {
+        return built.size();
+    }
+
+    private static int keyHash(Op op, List<ColumnMetaData> keyColumns) {
+        List<DsColumn> columns = op.getColumns();
+        int hash = 1;
+        for (ColumnMetaData keyColumn : keyColumns) {
+            DsColumn column = columns.get(keyColumn.getIndex());
+            String value = column.hasAfterValue() ? column.getAfterValue() : column.getBeforeValue();
+            hash = 31 * hash + (value == null ? 0 : value.hashCode());
+        }
+        return hash;
+    }
+
+    private static int floorMod(int value, int size) {
+        return (value % size + size) % size;
+    }
+
+    private static class Built {
+        private final RecordEntry recordEntry;
+        private final HandlerInfoManager.Position position;
+
+        private Built(RecordEntry recordEntry, HandlerInfoManager.Position position) {
+            this.recordEntry = recordEntry;
+            this.position = position;
+        }
+    }
+}
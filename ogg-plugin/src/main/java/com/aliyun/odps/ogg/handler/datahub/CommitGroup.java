@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+/**
+ * Groups transaction commits so that the handler flushes once per group instead of once per
+ * transaction. A group is closed by the commit that brings it to maxOperations operations or that
+ * comes timeoutMs after the group was opened. Records of an open group are still sent by the
+ * normal batching and acked one by one. The checkpoint is the low watermark of those acks, so a
+ * restart replays from the oldest unacked operation, and operations acked after it are sent
+ * again: delivery is at least once.
+ */
+public class CommitGroup {
+    private final int maxOperations;
+    private final long timeoutMs;
+
+    private int operations = 0;
+    private long openTimestamp = -1;
+
+    public CommitGroup(int maxOperations, long timeoutMs) {
+        this.maxOperations = maxOperations;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public void addOperation() {
+        open(System.currentTimeMillis());
+        operations++;
+    }
+
+    /**
+     * Called on transaction commit.
+     *
+     * @return true if the group is full or timed out and has to be flushed now
+     */
+    public boolean commit() {
+        return commit(System.currentTimeMillis());
+    }
+
+    boolean commit(long currentTimeMs) {
+        open(currentTimeMs);
+        if (operations >= maxOperations || currentTimeMs - openTimestamp >= timeoutMs) {
+            operations = 0;
+            openTimestamp = -1;
+            return true;
+        }
+        return false;
+    }
+
+    public int getOperations() {
+        return operations;
+    }
+
+    private void open(long currentTimeMs) {
+        if (openTimestamp < 0) {
+            openTimestamp = currentTimeMs;
+        }
+    }
+}
@@ -82,6 +82,31 @@ public class ConfigureReader {
             configure.setDirtyDataFileMaxSize(Integer.parseInt(elementText));
         }
 
+        elementText = root.elementTextTrim("dirtyDataQueueSize");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setDirtyDataQueueSize(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("dirtyDataBatchSize");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setDirtyDataBatchSize(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("dirtyDataFileRollIntervalMs");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setDirtyDataFileRollIntervalMs(Long.parseLong(elementText));
+        }
+
+        elementText = root.elementTextTrim("dirtyDataFileRetain");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setDirtyDataFileRetain(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("dirtyDataFileCompress");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setDirtyDataFileCompress(Boolean.parseBoolean(elementText));
+        }
+
         elementText = root.elementTextTrim("retryTimes");
         if (StringUtils.isNotBlank(elementText)) {
             configure.setRetryTimes(Integer.parseInt(elementText));
@@ -102,6 +127,11 @@ public class ConfigureReader {
             configure.setCheckPointFileName(elementText);
         }
 
+        elementText = root.elementTextTrim("checkPointIntervalMs");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setCheckPointIntervalMs(Integer.parseInt(elementText));
+        }
+
         elementText = root.elementTextTrim("charset");
         if (StringUtils.isNotBlank(elementText)) {
             configure.setCharsetName(elementText);
@@ -127,11 +157,52 @@ public class ConfigureReader {
             configure.setPutRecordQueueTimeoutMs(Integer.parseInt(elementText));
         }
 
+        elementText = root.elementTextTrim("putRecordMaxInFlight");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setPutRecordMaxInFlight(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("shardRouter");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setShardRouter(elementText);
+        }
+
         elementText = root.elementTextTrim("commitFlush");
         if (StringUtils.isNotBlank(elementText)) {
             configure.setCommitFlush(Boolean.parseBoolean(elementText));
         }
 
+        elementText = root.elementTextTrim("commitGroupMaxOperations");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setCommitGroupMaxOperations(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("commitGroupTimeoutMs");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setCommitGroupTimeoutMs(Integer.parseInt(elementText));
+        }
+
+        elementText = root.elementTextTrim("pipelineMode");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setPipelineMode(Boolean.parseBoolean(elementText));
+        }
+
+        elementText = root.elementTextTrim("pipelineWaitStrategy");
+        if (StringUtils.isNotBlank(elementText)) {
+            try {
+                RingBuffer.WaitStrategy.valueOf(elementText.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid pipelineWaitStrategy: " + elementText
+                        + ", must be one of BUSY_SPIN, YIELD, PARK");
+            }
+            configure.setPipelineWaitStrategy(elementText.toUpperCase());
+        }
+
+        elementText = root.elementTextTrim("shardRingBufferSize");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setShardRingBufferSize(Integer.parseInt(elementText));
+        }
+
         elementText = root.elementTextTrim("reportMetric");
         if (StringUtils.isNotBlank(elementText)) {
             configure.setReportMetric(Boolean.parseBoolean(elementText));
@@ -142,6 +213,11 @@ public class ConfigureReader {
             configure.setReportMetricIntervalMs(Integer.parseInt(elementText));
         }
 
+        elementText = root.elementTextTrim("reportMetricHttpPort");
+        if (StringUtils.isNotBlank(elementText)) {
+            configure.setReportMetricHttpPort(Integer.parseInt(elementText));
+        }
+
         /* for oracle default config */
         Element element = root.element("defaultOracleConfigure");
         if (element == null) {
@@ -267,6 +343,13 @@ public class ConfigureReader {
                 buildSpeed = Integer.parseInt(elementText);
             }
 
+            String buildDispatch = e.elementTextTrim("buildDispatch");
+            if (StringUtils.isNotBlank(buildDispatch)) {
+                BuildDispatcher.Mode.parse(buildDispatch);
+            }
+
+            String buildResequence = e.elementTextTrim("buildResequence");
+
             String rowIdColumn = e.elementText("rowIdColumn");
 
             String cTypeColumn = e.elementText("ctypeColumn");
@@ -309,6 +392,12 @@ public class ConfigureReader {
             if (buildSpeed > 0) {
                 tableMapping.setBuildSpeed(buildSpeed);
             }
+            if (StringUtils.isNotBlank(buildDispatch)) {
+                tableMapping.setBuildDispatch(buildDispatch);
+            }
+            if (StringUtils.isNotBlank(buildResequence)) {
+                tableMapping.setBuildResequence(Boolean.parseBoolean(buildResequence));
+            }
 
             configure.addTableMapping(tableMapping);
             Map<String, ColumnMapping> columnMappings = Maps.newHashMap();
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.ShardEntry;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A consistent hash ring with VIRTUAL_NODES points per shard id. Adding or removing a shard only
+ * moves the keys of the ring segments next to its points.
+ */
+public class ConsistentHashShardRouter implements ShardRouter {
+    static final int VIRTUAL_NODES = 64;
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private TreeMap<Long, Integer> ring = new TreeMap<>();
+
+    @Override
+    public void update(List<ShardEntry> shards) {
+        TreeMap<Long, Integer> newRing = new TreeMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                newRing.put(hash(shards.get(i).getShardId() + "#" + v), i);
+            }
+        }
+        ring = newRing;
+    }
+
+    @Override
+    public int route(String partitionKey) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash(partitionKey));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    @Override
+    public boolean isStable() {
+        return true;
+    }
+
+    private static long hash(String value) {
+        return HASH.hashBytes(value.getBytes(StandardCharsets.UTF_8)).asLong();
+    }
+}
@@ -42,6 +42,8 @@ public class DatahubHandler extends AbstractHandler {
 
     private String configureFileName;
     private Configure configure;
+    // null if every transaction commit flushes
+    private CommitGroup commitGroup;
 
     @Override
     public void init(DsConfiguration dsConf, DsMetaData dsMeta) {
@@ -50,17 +52,25 @@ public class DatahubHandler extends AbstractHandler {
         try {
             configure = ConfigureReader.reader(configureFileName);
 
+            // before the builders and writers, they register their queue gauges on start
+            if (configure.isReportMetric()) {
+                MetricHelper.init(configure);
+            }
+
             HandlerInfoManager.init(configure);
             logger.info("Init HandlerInfoManager success");
 
+            BadOperateWriter.init(configure);
+
             RecordBuilder.init(configure);
             logger.info("Init RecordBuilder success");
 
             OperationHandlerManager.init();
             logger.info("Init OperationHandlerManager success");
 
-            if (configure.isReportMetric()) {
-                MetricHelper.init(configure);
+            if (configure.isCommitFlush() && configure.getCommitGroupMaxOperations() > 0) {
+                commitGroup = new CommitGroup(configure.getCommitGroupMaxOperations(),
+                        configure.getCommitGroupTimeoutMs());
             }
 
         } catch (Exception e) {
@@ -71,6 +81,7 @@ public class DatahubHandler extends AbstractHandler {
 
     @Override
     public GGDataSource.Status metaDataChanged(DsEvent e, DsMetaData meta) {
+        RecordBuilder.instance().metaDataChanged();
         return super.metaDataChanged(e, meta);
     }
 
@@ -82,7 +93,7 @@ public class DatahubHandler extends AbstractHandler {
 
     @Override
     public Status operationAdded(DsEvent e, DsTransaction tx, DsOperation dsOperation) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         if (logger.isDebugEnabled()) {
             logger.debug(e.toString());
             logger.debug(tx.toString());
@@ -112,6 +123,9 @@ public class DatahubHandler extends AbstractHandler {
             try {
                 operationHandler.process(op, configure);
                 PluginStatictics.addTotalOperations();
+                if (commitGroup != null) {
+                    commitGroup.addOperation();
+                }
             } catch (Exception e1) {
                 logger.error("process error", e1);
                 status = Status.ABEND;
@@ -123,7 +137,8 @@ public class DatahubHandler extends AbstractHandler {
         }
 
         if (configure.isReportMetric()) {
-            MetricHelper.instance().addHandleTime(System.currentTimeMillis() - startTime);
+            MetricHelper.instance().addHandleTime(op.getTableName().getFullName().toLowerCase(),
+                    System.nanoTime() - startTime);
             MetricHelper.instance().addRecord();
         }
         return status;
@@ -131,13 +146,13 @@ public class DatahubHandler extends AbstractHandler {
 
     @Override
     public Status transactionCommit(DsEvent e, DsTransaction tx) {
-        long startTime = System.currentTimeMillis();
-        if (configure.isCommitFlush()) {
+        long startTime = System.nanoTime();
+        if (configure.isCommitFlush() && (commitGroup == null || commitGroup.commit())) {
             RecordBuilder.instance().flushAll();
         }
 
         if (configure.isReportMetric()) {
-            MetricHelper.instance().addCommitTime(System.currentTimeMillis() - startTime);
+            MetricHelper.instance().addCommitTime(System.nanoTime() - startTime);
             MetricHelper.instance().addCommit();
         }
         return super.transactionCommit(e, tx);
@@ -159,8 +174,10 @@ public class DatahubHandler extends AbstractHandler {
     @Override
     public void destroy() {
         logger.warn("Handler destroying...");
-        HandlerInfoManager.instance().saveHandlerInfos();
+        // flush the queued records first, so the final checkpoint covers them
         RecordBuilder.destroy();
+        BadOperateWriter.destroy();
+        HandlerInfoManager.destroy();
         MetricHelper.destroy();
         super.destroy();
     }
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends dirty records to a local file off the caller's thread. Records go into a bounded queue
+ * and a single writer thread formats and appends them in batches through one open writer,
+ * flushing once per batch. The callback of a record runs on the writer thread once the record is
+ * flushed, so callers ack the record there and never before. A full queue blocks the caller, a
+ * failed write is retried, and a record that cannot be formatted fails the sink, after which
+ * append throws and the record is never acked.
+ * The file is rolled to fileName.yyyyMMddHHmmssSSS once it exceeds maxFileSize or is older than
+ * rollIntervalMs, rolled files are optionally gzipped and only the newest retainFiles are kept.
+ */
+public class DirtyRecordSink {
+    private final static Logger logger = LoggerFactory.getLogger(DirtyRecordSink.class);
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long OFFER_TIMEOUT_MS = 1000;
+    private static final long RETRY_INTERVAL_MS = 1000;
+    private static final String GZIP_SUFFIX = ".gz";
+
+    private final File file;
+    private final long maxFileSize;
+    private final long rollIntervalMs;
+    private final int retainFiles;
+    private final boolean compress;
+    private final int batchSize;
+
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    // appends that had to wait for the full queue
+    private final LongAdder blocked = new LongAdder();
+    // accepted records that were never written, so never acked
+    private volatile long lost = 0;
+    private final Thread writeThread;
+    private volatile boolean stop = false;
+    private volatile Exception failure;
+
+    // writer thread only
+    private BufferedWriter writer;
+    // in chars, close enough to bytes for rolling
+    private long fileSize;
+    private long openTime;
+    private long lastRollTime;
+
+    /**
+     * @param maxFileSize    roll once the file is larger, 0 to never roll on size
+     * @param rollIntervalMs roll once the file is older, 0 to never roll on time
+     * @param retainFiles    rolled files to keep, older ones are deleted
+     */
+    public DirtyRecordSink(String fileName, int queueSize, int batchSize, long maxFileSize,
+                           long rollIntervalMs, int retainFiles, boolean compress) {
+        if (queueSize <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("queueSize and batchSize must be positive");
+        }
+        this.file = new File(fileName).getAbsoluteFile();
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.maxFileSize = maxFileSize;
+        this.rollIntervalMs = rollIntervalMs;
+        this.retainFiles = retainFiles;
+        this.compress = compress;
+        this.writeThread = new Thread(this::run, "DirtyRecordSink");
+        this.writeThread.setDaemon(true);
+    }
+
+    public void start() {
+        writeThread.start();
+    }
+
+    /**
+     * Writes the remaining records and closes the file, waits at most timeoutMs.
+     */
+    public void stop(long timeoutMs) {
+        stop = true;
+        try {
+            writeThread.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writeThread.isAlive()) {
+            logger.warn("Dirty record sink not stopped in {} ms, {} records left", timeoutMs, queue.size());
+        }
+    }
+
+    /**
+     * @param line one record, a line break is appended
+     */
+    public void append(String line) {
+        append(() -> line, null);
+    }
+
+    /**
+     * Queues a record, waiting while the queue is full.
+     *
+     * @param line      formats one record on the writer thread, a line break is appended
+     * @param onWritten runs on the writer thread once the record is flushed to the file, may be null
+     * @throws IllegalStateException if the sink has failed or stopped, or the caller was interrupted,
+     *                               the record is not written then
+     */
+    public void append(Supplier<String> line, Runnable onWritten) {
+        Entry entry = new Entry(line, onWritten);
+        try {
+            while (true) {
+                if (failure != null) {
+                    throw new IllegalStateException("Dirty record sink failed", failure);
+                }
+                if (stop) {
+                    throw new IllegalStateException("Dirty record sink stopped");
+                }
+                if (queue.offer(entry, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    accepted.increment();
+                    return;
+                }
+                blocked.increment();
+                logger.warn("Dirty record queue full, waiting for {}", file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the dirty record queue", e);
+        }
+    }
+
+    /**
+     * Waits until every record accepted before the call is written or lost.
+     *
+     * @return false on timeout
+     */
+    public boolean flush(long timeoutMs) throws InterruptedException {
+        long target = accepted.sum();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (written.sum() + lost < target) {
+            if (System.currentTimeMillis() >= deadline || !writeThread.isAlive()) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return times an append waited because the queue was full
+     */
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return accepted records that were not written, they are not acked
+     */
+    public long getLost() {
+        return lost;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (!stop || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                } else if (writer != null && isExpired(System.currentTimeMillis())) {
+                    // an idle file still rolls on time
+                    roll();
+                }
+            } catch (InterruptedException e) {
+                logger.warn("Dirty record sink interrupted", e);
+                break;
+            }
+        }
+        closeWriter();
+    }
+
+    private void writeBatch(List<Entry> batch) throws InterruptedException {
+        List<String> lines = new ArrayList<>(batch.size());
+        List<Runnable> callbacks = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            try {
+                lines.add(entry.line.get());
+                callbacks.add(entry.onWritten);
+            } catch (RuntimeException e) {
+                // the record is never acked, the handler stops on the next append
+                logger.error("Format dirty record failed, dirty record sink stops accepting records", e);
+                failure = e;
+                lost++;
+            }
+        }
+
+        while (true) {
+            try {
+                if (writer != null && shouldRoll(System.currentTimeMillis())) {
+                    roll();
+                }
+                if (writer == null) {
+                    openWriter();
+                }
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                    fileSize += line.length() + 1;
+                }
+                writer.flush();
+                break;
+            } catch (IOException e) {
+                // a retry may write some lines twice, never zero times
+                closeWriter();
+                if (stop) {
+                    logger.error("Write {} dirty records to {} failed, sink stopped, they are not acked",
+                            lines.size(), file, e);
+                    lost += lines.size();
+                    return;
+                }
+                logger.error("Write {} dirty records to {} failed, will retry after {} ms",
+                        lines.size(), file, RETRY_INTERVAL_MS, e);
+                Thread.sleep(RETRY_INTERVAL_MS);
+            }
+        }
+
+        written.add(lines.size());
+        for (Runnable callback : callbacks) {
+            if (callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    private boolean shouldRoll(long now) {
+        return (maxFileSize > 0 && fileSize > maxFileSize) || isExpired(now);
+    }
+
+    private boolean isExpired(long now) {
+        return rollIntervalMs > 0 && now - openTime >= rollIntervalMs;
+    }
+
+    private void openWriter() throws IOException {
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        fileSize = file.length();
+        // an existing file keeps its age across restarts
+        openTime = fileSize > 0 ? Math.min(file.lastModified(), System.currentTimeMillis()) : System.currentTimeMillis();
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Close dirty record file {} failed", file, e);
+            }
+            writer = null;
+        }
+    }
+
+    private void roll() {
+        closeWriter();
+        if (!file.exists() || file.length() == 0) {
+            return;
+        }
+        // names must keep growing, even for rolls within one millisecond
+        long rollTime = Math.max(System.currentTimeMillis(), lastRollTime + 1);
+        File rolled = rolledFile(rollTime);
+        while (rolled.exists() || new File(rolled.getPath() + GZIP_SUFFIX).exists()) {
+            rolled = rolledFile(++rollTime);
+        }
+        lastRollTime = rollTime;
+        if (!file.renameTo(rolled)) {
+            logger.error("Roll dirty record file {} to {} failed", file, rolled);
+            return;
+        }
+        logger.info("Dirty record file rolled to {}", rolled);
+        if (compress) {
+            gzip(rolled);
+        }
+        purge();
+    }
+
+    private File rolledFile(long rollTime) {
+        return new File(file.getPath() + "." + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date(rollTime)));
+    }
+
+    private void gzip(File rolled) {
+        File gz = new File(rolled.getPath() + GZIP_SUFFIX);
+        try (InputStream in = new FileInputStream(rolled);
+             OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException e) {
+            logger.error("Compress dirty record file {} failed, keep it uncompressed", rolled, e);
+            gz.delete();
+            return;
+        }
+        rolled.delete();
+    }
+
+    // rolled names end with a timestamp, so the name order is the roll order
+    private void purge() {
+        File[] rolled = listRolled();
+        for (int i = 0; i < rolled.length - retainFiles; i++) {
+            if (rolled[i].delete()) {
+                logger.info("Dirty record file {} deleted", rolled[i]);
+            }
+        }
+    }
+
+    File[] listRolled() {
+        final String prefix = file.getName() + ".";
+        File[] rolled = file.getParentFile().listFiles((dir, name) -> name.startsWith(prefix)
+                && name.length() > prefix.length() && Character.isDigit(name.charAt(prefix.length())));
+        if (rolled == null) {
+            return new File[0];
+        }
+        Arrays.sort(rolled, (a, b) -> a.getName().compareTo(b.getName()));
+        return rolled;
+    }
+
+    private static class Entry {
+        private final Supplier<String> line;
+        private final Runnable onWritten;
+
+        Entry(Supplier<String> line, Runnable onWritten) {
+            this.line = line;
+            this.onWritten = onWritten;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package com.aliyun.odps.ogg.handler.datahub;
 
 import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,10 +30,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ouyangzhe on 16/12/1.
+ *
+ * Every operation passed to DataHub gets a {@link Position}, which is acked once its record is
+ * written to DataHub or to the dirty data file. The checkpoint is the position of the last
+ * operation that was acked together with all operations before it, and is saved every
+ * checkPointIntervalMs, so a restart replays at most the operations that were in flight.
  */
 public class HandlerInfoManager {
     private final static Logger logger = LoggerFactory
@@ -48,6 +63,19 @@ public class HandlerInfoManager {
 
     private String sendPosition;
 
+    private Position currentPosition;
+
+    // operations in the order they were received, the acked head is removed by saveHandlerInfos
+    private final ConcurrentLinkedQueue<Position> inFlight = new ConcurrentLinkedQueue<>();
+
+    private long ackedRecordId;
+
+    private String ackedPosition;
+
+    private String savedPosition;
+
+    private ScheduledExecutorService scheduledExecutorService;
+
     public long getRecordId() {
         return recordId;
     }
@@ -64,6 +92,17 @@ public class HandlerInfoManager {
         this.sendPosition = sendPosition;
     }
 
+    /**
+     * @return the position of the operation being processed, set by updateHandlerInfos
+     */
+    public Position getCurrentPosition() {
+        return currentPosition;
+    }
+
+    public String getAckedPosition() {
+        return ackedPosition;
+    }
+
     private static HandlerInfoManager handlerInfoManager;
 
     public static HandlerInfoManager instance() {
@@ -73,10 +112,23 @@ public class HandlerInfoManager {
     public static void init(Configure configure) {
         if (handlerInfoManager == null) {
             handlerInfoManager = new HandlerInfoManager(configure);
+            handlerInfoManager.start();
+        }
+    }
+
+    public static void destroy() {
+        if (handlerInfoManager != null) {
+            handlerInfoManager.stop();
         }
+        handlerInfoManager = null;
     }
 
-    public void updateHandlerInfos(long time, String position) {
+    /**
+     * Records an operation handed to the record builders.
+     *
+     * @return the position to ack once the record of the operation is written
+     */
+    public Position updateHandlerInfos(long time, String position) {
         long nid = time * MS_RECORD_MAX;
         if (recordId < nid) {
             recordId = nid;
@@ -84,38 +136,99 @@ public class HandlerInfoManager {
             recordId++;
         }
         this.sendPosition = position;
+
+        Position p = new Position(recordId, position);
+        if (!configure.isCheckPointFileDisable()) {
+            inFlight.add(p);
+        }
+        currentPosition = p;
+        return p;
     }
 
-    public void saveHandlerInfos() {
-        if (configure.isCheckPointFileDisable()) {
+    /**
+     * Moves the checkpoint to the last position acked together with all positions before it,
+     * and writes it to the checkpoint file if it has changed.
+     */
+    public synchronized void saveHandlerInfos() {
+        Position p;
+        while ((p = inFlight.peek()) != null && p.acked) {
+            inFlight.poll();
+            ackedRecordId = p.recordId;
+            ackedPosition = p.position;
+        }
+
+        if (configure.isCheckPointFileDisable() || ackedPosition.equals(savedPosition)) {
             return;
         }
-        DataOutputStream out = null;
+
         try {
-            out = new DataOutputStream(new FileOutputStream(handlerInfoFileName, false));
-            out.writeLong(recordId);
-            out.writeInt(sendPosition.length());
-            out.writeBytes(sendPosition);
+            writeHandlerInfos(ackedRecordId, ackedPosition);
+            savedPosition = ackedPosition;
         } catch (IOException e) {
-            logger.error("Error writing handler info file. recordId: {}, sendPosition: {}.", recordId, sendPosition, e);
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (IOException e) {
-                    logger.error("Close handler info file failed. recordId: {}, sendPosition: {}.", recordId, sendPosition, e);
-                }
-            }
+            logger.error("Error writing handler info file. recordId: {}, sendPosition: {}.", ackedRecordId, ackedPosition, e);
         }
     }
 
-    private HandlerInfoManager(Configure configure) {
+    HandlerInfoManager(Configure configure) {
         this.configure = configure;
         handlerInfoFileName = configure.getCheckPointFileName();
         restoreHandlerInfos(handlerInfoFileName);
+        ackedRecordId = recordId;
+        ackedPosition = sendPosition;
+        savedPosition = sendPosition;
         logger.info("initial recordId: {}, sendPosition: {}", recordId, sendPosition);
     }
 
+    void start() {
+        if (configure.isCheckPointFileDisable()) {
+            return;
+        }
+        scheduledExecutorService = new ScheduledThreadPoolExecutor(1,
+                new BasicThreadFactory.Builder().namingPattern("HandlerInfoManager.Schedule-%d").daemon(true).build());
+        scheduledExecutorService.scheduleAtFixedRate(this::saveHandlerInfos,
+                configure.getCheckPointIntervalMs(), configure.getCheckPointIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (scheduledExecutorService != null) {
+            scheduledExecutorService.shutdownNow();
+        }
+        saveHandlerInfos();
+    }
+
+    // write a temp file, sync it and rename it over the checkpoint file, so a crash leaves
+    // either the old or the new checkpoint
+    private void writeHandlerInfos(long recordId, String position) throws IOException {
+        File file = new File(handlerInfoFileName).getAbsoluteFile();
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        FileOutputStream fos = new FileOutputStream(tmpFile, false);
+        try {
+            DataOutputStream out = new DataOutputStream(fos);
+            byte[] bytes = position.getBytes(Charset.forName("UTF-8"));
+            out.writeLong(recordId);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            fos.close();
+        }
+
+        Files.move(tmpFile.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.getParentFile().toPath());
+    }
+
+    private void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on every platform, the rename is still atomic
+            logger.debug("Sync checkpoint directory failed, dir: {}", dir, e);
+        }
+    }
+
     private void restoreHandlerInfos(String fileName) {
         File handlerInfoFile = new File(fileName);
         if (handlerInfoFile.exists() && !handlerInfoFile.isDirectory()) {
@@ -124,8 +237,8 @@ public class HandlerInfoManager {
                 in = new DataInputStream(new FileInputStream(handlerInfoFile));
                 recordId = in.readLong();
                 int length = in.readInt();
-                byte[] buffer = new byte[1024];
-                in.read(buffer, 0, length);
+                byte[] buffer = new byte[length];
+                in.readFully(buffer);
                 sendPosition = new String(buffer, 0, length, Charset.forName("UTF-8"));
             } catch (IOException e) {
                 logger.error("Error reading handler info file, may cause duplication.", e);
@@ -146,4 +259,30 @@ public class HandlerInfoManager {
             sendPosition = "";
         }
     }
+
+    /**
+     * The trail position of one operation, acked when its record has been written.
+     */
+    public static class Position {
+        private final long recordId;
+        private final String position;
+        private volatile boolean acked = false;
+
+        Position(long recordId, String position) {
+            this.recordId = recordId;
+            this.position = position;
+        }
+
+        public void ack() {
+            acked = true;
+        }
+
+        boolean isAcked() {
+            return acked;
+        }
+
+        public String getPosition() {
+            return position;
+        }
+    }
 }
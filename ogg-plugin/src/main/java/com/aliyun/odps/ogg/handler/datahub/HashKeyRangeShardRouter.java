@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.ShardEntry;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Places a key the way DataHub places a partition key: the md5 of the key, as 32 upper case hex
+ * digits, falls into the [beginHashKey, endHashKey) range of exactly one active shard. A split or
+ * merge only moves the keys of the ranges involved.
+ */
+public class HashKeyRangeShardRouter implements ShardRouter {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    // begin hash keys in ascending order and the index of their shard
+    private String[] beginHashKeys = new String[0];
+    private int[] indexes = new int[0];
+
+    @Override
+    public void update(List<ShardEntry> shards) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(i -> shards.get(i).getBeginHashKey().toUpperCase()));
+        String[] keys = new String[order.size()];
+        int[] idx = new int[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            keys[i] = shards.get(order.get(i)).getBeginHashKey().toUpperCase();
+            idx[i] = order.get(i);
+        }
+        beginHashKeys = keys;
+        indexes = idx;
+    }
+
+    @Override
+    public int route(String partitionKey) {
+        String hashKey = hashKey(partitionKey);
+        // the last range that begins at or before the hash key
+        int pos = Arrays.binarySearch(beginHashKeys, hashKey);
+        if (pos < 0) {
+            pos = Math.max(0, -pos - 2);
+        }
+        return indexes[pos];
+    }
+
+    @Override
+    public boolean isStable() {
+        return true;
+    }
+
+    static String hashKey(String partitionKey) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(partitionKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            chars[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
@@ -23,19 +23,60 @@ import com.aliyun.datahub.client.model.RecordEntry;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class RecordBatch {
     private List<RecordEntry> records = new ArrayList<>();
+    private List<HandlerInfoManager.Position> positions = new ArrayList<>();
+    // partition keys of the records, cleared on the records themselves once they are put to a shard
+    private List<String> partitionKeys = new ArrayList<>();
     private long createTimestamp = System.currentTimeMillis();
+    // the batch itself plus its dirty records not yet in the dirty data file
+    private final AtomicInteger pendingAcks = new AtomicInteger(1);
 
-    public void add(RecordEntry recordEntry) {
+    public void add(RecordEntry recordEntry, HandlerInfoManager.Position position) {
+        add(recordEntry, position, recordEntry.getPartitionKey());
+    }
+
+    public void add(RecordEntry recordEntry, HandlerInfoManager.Position position, String partitionKey) {
         records.add(recordEntry);
+        positions.add(position);
+        partitionKeys.add(partitionKey);
     }
 
     public List<RecordEntry> getRecords() {
         return records;
     }
 
+    public List<HandlerInfoManager.Position> getPositions() {
+        return positions;
+    }
+
+    public List<String> getPartitionKeys() {
+        return partitionKeys;
+    }
+
+    /**
+     * Acks the positions of all records, called once the batch is written. The positions are acked
+     * only after every callback returned by holdAck has run as well.
+     */
+    public void ack() {
+        if (pendingAcks.decrementAndGet() == 0) {
+            for (HandlerInfoManager.Position position : positions) {
+                position.ack();
+            }
+        }
+    }
+
+    /**
+     * Holds back the ack of the batch until the returned callback runs, for a dirty record of the
+     * batch that is written to the dirty data file later.
+     */
+    public Runnable holdAck() {
+        pendingAcks.incrementAndGet();
+        return this::ack;
+    }
+
     public long getCreateTimestamp() {
         return createTimestamp;
     }
@@ -32,7 +32,6 @@ import com.aliyun.datahub.client.model.RecordType;
 import com.aliyun.odps.ogg.handler.datahub.modle.ColumnMapping;
 import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
 import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
-import oracle.goldengate.datasource.DsToken;
 import oracle.goldengate.datasource.adapt.Op;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -90,29 +89,34 @@ public class RecordBuilder {
         }
     }
 
-    public boolean buildRecord(Op op, String opType, String recordId) {
+    public boolean buildRecord(Op op, String opType, String recordId, HandlerInfoManager.Position position) {
         String oracleFullTableName = op.getTableName().getFullName().toLowerCase();
         TableMapping tableMapping = configure.getTableMapping(oracleFullTableName);
 
         if (tableMapping != null) {
             List<TableRecordBuilder> recordBuilders = tableMapping.getTableRecordBuilders();
             if (recordBuilders.size() == 1) {
-                return recordBuilders.get(0).addRecord(op, opType, recordId);
+                return recordBuilders.get(0).addRecord(op, opType, recordId, position, -1);
             } else if (recordBuilders.size() > 1) {
-                DsToken token = op.getRecord().getUserToken(Constant.ROWID_TOKEN);
-                if (token.isSet()) {
-                    int index = ((token.getValue().hashCode() % recordBuilders.size()) + recordBuilders.size()) % recordBuilders.size();
-                    return recordBuilders.get(index).addRecord(op, opType, recordId);
-                } else {
-                    logger.error("BuildRecord failed, build speed > 1, but oracle table token TKN-ROWID is not set, can not get oracle rowid, table: {}",
-                            tableMapping.getOracleFullTableName());
-                    throw new RuntimeException("BuildRecord failed, build speed > 1, but oracle table token TKN-ROWID is not set, can not get oracle rowid");
+                BuildDispatcher buildDispatcher = tableMapping.getBuildDispatcher();
+                int index = buildDispatcher.select(op, recordBuilders.size());
+                long sequence = buildDispatcher.nextSequence();
+                boolean added = false;
+                try {
+                    added = recordBuilders.get(index).addRecord(op, opType, recordId, position, sequence);
+                } finally {
+                    if (!added) {
+                        buildDispatcher.skip(sequence);
+                    }
                 }
+                return added;
             } else {
                 logger.error("RecordBuilder list is empty, table: {}", tableMapping.getOracleFullTableName());
                 return false;
             }
         }
+        // table not mapped, nothing to write
+        position.ack();
         return true;
     }
 
@@ -127,6 +131,14 @@ public class RecordBuilder {
         }
     }
 
+    public void metaDataChanged() {
+        for (Map.Entry<String, TableMapping> entry : configure.getTableMappings().entrySet()) {
+            for (TableRecordBuilder tableRecordBuilder : entry.getValue().getTableRecordBuilders()) {
+                tableRecordBuilder.metaDataChanged();
+            }
+        }
+    }
+
     private RecordBuilder(Configure configure) {
         this.configure = configure;
         initDataHub();
@@ -175,6 +187,11 @@ public class RecordBuilder {
             TopicWriter topicWriter = new TopicWriter(configure, entry.getValue(), client);
             tableMapping.setTopicWriter(topicWriter);
 
+            if (tableMapping.getBuildSpeed() > 1) {
+                tableMapping.setBuildDispatcher(new BuildDispatcher(BuildDispatcher.Mode.parse(tableMapping.getBuildDispatch()),
+                        tableMapping.isBuildResequence(), tableMapping, topicWriter));
+            }
+
             List<TableRecordBuilder> tableRecordBuilders = new ArrayList<>();
             for (int i = 0; i < tableMapping.getBuildSpeed(); i++) {
                 TableRecordBuilder tableRecordBuilder = new TableRecordBuilder(configure, topicWriter, entry.getValue(), i);
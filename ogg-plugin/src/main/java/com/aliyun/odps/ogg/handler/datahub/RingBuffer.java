@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * A bounded ring of pre-allocated slots between one producer thread and one consumer thread.
+ * The producer claims slots with {@link #next(int)}, fills them and makes them visible with
+ * {@link #publish(long)}; the consumer reads every published slot up to {@link #waitFor} and
+ * hands them back with {@link #release(long)}. Sequences only grow, slot i lives at
+ * i & (capacity - 1). No locks are taken, a side that has to wait uses the wait strategy.
+ */
+public class RingBuffer<T> {
+
+    public enum WaitStrategy {
+        /**
+         * spin on the sequence, lowest latency, needs a spare core per waiting thread
+         */
+        BUSY_SPIN,
+        /**
+         * spin a little, then yield the cpu
+         */
+        YIELD,
+        /**
+         * spin a little, then park for a short while
+         */
+        PARK;
+
+        private static final int SPIN_TRIES = 100;
+        private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+        void idle(int counter) {
+            if (this == BUSY_SPIN || counter < SPIN_TRIES) {
+                return;
+            }
+            if (this == YIELD) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private final Object[] entries;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    // last published sequence, written by the producer
+    private final AtomicLong cursor = new AtomicLong(-1);
+    // last released sequence, written by the consumer
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private volatile boolean halted = false;
+
+    // producer side only
+    private long claimed = -1;
+    private long cachedConsumed = -1;
+
+    /**
+     * @param capacity rounded up to a power of two
+     * @param factory  creates the slots, called capacity times
+     */
+    public RingBuffer(int capacity, WaitStrategy waitStrategy, Supplier<T> factory) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < size; i++) {
+            entries[i] = factory.get();
+        }
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(long sequence) {
+        return (T) entries[(int) (sequence & mask)];
+    }
+
+    /**
+     * Claims the next n slots, waiting until the consumer has released enough of them.
+     *
+     * @return the highest claimed sequence
+     * @throws IllegalStateException if the ring buffer is halted while waiting
+     */
+    public long next(int n) {
+        if (n <= 0 || n > entries.length) {
+            throw new IllegalArgumentException("n must be in [1, " + entries.length + "]");
+        }
+        long target = claimed + n;
+        long wrapPoint = target - entries.length;
+        int counter = 0;
+        while (wrapPoint > cachedConsumed) {
+            cachedConsumed = consumed.get();
+            if (wrapPoint <= cachedConsumed) {
+                break;
+            }
+            checkHalted();
+            waitStrategy.idle(counter++);
+        }
+        claimed = target;
+        return target;
+    }
+
+    /**
+     * Makes all claimed slots up to sequence visible to the consumer.
+     */
+    public void publish(long sequence) {
+        cursor.lazySet(sequence);
+    }
+
+    /**
+     * Waits until sequence is published, the timeout passes or the ring buffer is halted.
+     *
+     * @return the last published sequence, smaller than sequence if nothing new arrived
+     */
+    public long waitFor(long sequence, long timeout, TimeUnit unit) {
+        long available = cursor.get();
+        if (available >= sequence) {
+            return available;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int counter = 0;
+        while ((available = cursor.get()) < sequence) {
+            if (halted || System.nanoTime() >= deadline) {
+                break;
+            }
+            waitStrategy.idle(counter++);
+        }
+        return available;
+    }
+
+    /**
+     * Hands all slots up to sequence back to the producer.
+     */
+    public void release(long sequence) {
+        consumed.lazySet(sequence);
+    }
+
+    public long getCursor() {
+        return cursor.get();
+    }
+
+    public long getConsumed() {
+        return consumed.get();
+    }
+
+    public boolean isEmpty() {
+        return consumed.get() >= cursor.get();
+    }
+
+    /**
+     * Waits until the consumer has released everything published before the call.
+     *
+     * @throws IllegalStateException if the ring buffer is halted while waiting
+     */
+    public void drain() {
+        long target = cursor.get();
+        int counter = 0;
+        while (consumed.get() < target) {
+            checkHalted();
+            waitStrategy.idle(counter++);
+        }
+    }
+
+    /**
+     * Wakes up and fails every waiting producer, called when the consumer stops for good.
+     */
+    public void halt() {
+        halted = true;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    private void checkHalted() {
+        if (halted) {
+            throw new IllegalStateException("ring buffer halted");
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.ShardEntry;
+
+import java.util.List;
+
+/**
+ * Maps a partition key to one of the active shards of a topic. Configured with shardRouter: modulo
+ * (the default), consistentHash, hashKeyRange, or the class name of an implementation with a
+ * public no-arg constructor.
+ */
+public interface ShardRouter {
+
+    /**
+     * Called with the active shards, sorted by shard id, whenever the shards of the topic change.
+     */
+    void update(List<ShardEntry> shards);
+
+    /**
+     * @return index of the shard in the list given to the last update
+     */
+    int route(String partitionKey);
+
+    /**
+     * @return true if keys of a shard that is still active keep going to it when other shards are
+     * split or merged, so its writer can keep running while the topology changes
+     */
+    boolean isStable();
+
+    static ShardRouter create(String name) {
+        if (name == null || name.isEmpty() || "modulo".equalsIgnoreCase(name)) {
+            return new ModuloShardRouter();
+        } else if ("consistentHash".equalsIgnoreCase(name)) {
+            return new ConsistentHashShardRouter();
+        } else if ("hashKeyRange".equalsIgnoreCase(name)) {
+            return new HashKeyRangeShardRouter();
+        }
+        try {
+            return (ShardRouter) Class.forName(name).newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new RuntimeException("Invalid shardRouter: " + name, e);
+        }
+    }
+}
@@ -23,16 +23,15 @@ import com.aliyun.datahub.client.model.BlobRecordData;
 import com.aliyun.datahub.client.model.Field;
 import com.aliyun.datahub.client.model.FieldType;
 import com.aliyun.datahub.client.model.RecordEntry;
-import com.aliyun.datahub.client.model.RecordSchema;
 import com.aliyun.datahub.client.model.TupleRecordData;
 import com.aliyun.odps.ogg.handler.datahub.modle.ColumnMapping;
 import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
 import com.aliyun.odps.ogg.handler.datahub.modle.MetricHelper;
 import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
-import com.aliyun.odps.ogg.handler.datahub.util.BucketPath;
 import oracle.goldengate.datasource.DsColumn;
 import oracle.goldengate.datasource.DsToken;
 import oracle.goldengate.datasource.adapt.Op;
+import oracle.goldengate.datasource.meta.TableMetaData;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +43,6 @@ import java.sql.Timestamp;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -56,10 +54,15 @@ public class TableRecordBuilder {
 
     private Configure configure;
     private LinkedBlockingQueue<Record> recordQueue;
+    // replaces recordQueue in pipeline mode, the handler thread is the only producer
+    private RingBuffer<Record> ringBuffer;
     private TableMapping tableMapping;
     private TopicWriter topicWriter;
+    // null with a single builder per table
+    private BuildDispatcher buildDispatcher;
     private Charset charset;
     private Thread buildThread;
+    private volatile TupleProjection projection;
     private volatile boolean sync = false;
     private volatile boolean stop = true;
 
@@ -67,20 +70,39 @@ public class TableRecordBuilder {
         this.configure = configure;
         this.topicWriter = topicWriter;
         this.tableMapping = tableMapping;
-        this.recordQueue = new LinkedBlockingQueue<>(configure.getBuildRecordQueueSize());
+        this.buildDispatcher = tableMapping.getBuildDispatcher();
+        if (configure.isPipelineMode()) {
+            this.ringBuffer = new RingBuffer<>(configure.getBuildRecordQueueSize(),
+                    RingBuffer.WaitStrategy.valueOf(configure.getPipelineWaitStrategy()), Record::new);
+        } else {
+            this.recordQueue = new LinkedBlockingQueue<>(configure.getBuildRecordQueueSize());
+        }
 
         if (!Charset.isSupported(configure.getCharsetName())) {
             throw new InvalidParameterException("Invalid charsetName: " + configure.getCharsetName());
         }
         charset = Charset.forName(configure.getCharsetName());
-        buildThread = new Thread(this::run, tableMapping.getOracleFullTableName() + ".RecordBuilder-" + index);
+        buildThread = new Thread(configure.isPipelineMode() ? this::runPipeline : this::run,
+                tableMapping.getOracleFullTableName() + ".RecordBuilder-" + index);
     }
 
 
-    public boolean addRecord(Op op, String opType, String recordId) {
-        if (!stop) {
+    /**
+     * @param sequence dispatch sequence of the operation, -1 if the table is not resequenced
+     */
+    public boolean addRecord(Op op, String opType, String recordId, HandlerInfoManager.Position position, long sequence) {
+        if (!stop && ringBuffer != null) {
+            try {
+                long slot = ringBuffer.next(1);
+                ringBuffer.get(slot).set(opType, recordId, op, position, sequence);
+                ringBuffer.publish(slot);
+                return true;
+            } catch (IllegalStateException e) {
+                throw new RuntimeException("record builder has stopped.");
+            }
+        } else if (!stop) {
             try {
-                boolean ret = recordQueue.offer(new Record(opType, recordId, op), configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+                boolean ret = recordQueue.offer(new Record(opType, recordId, op, position, sequence), configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
                 if (!ret) {
                     logger.warn("offer record to queue falied");
                 }
@@ -97,14 +119,28 @@ public class TableRecordBuilder {
     public void start() {
         buildThread.start();
         stop = false;
+        if (configure.isReportMetric()) {
+            // records waiting to be built
+            MetricHelper.instance().registerGauge(buildThread.getName(), ringBuffer != null
+                    ? () -> ringBuffer.getCursor() - ringBuffer.getConsumed() : () -> recordQueue.size());
+        }
     }
 
     public void stop() {
         stop = true;
+        if (configure.isReportMetric()) {
+            MetricHelper.instance().unregisterGauge(buildThread.getName());
+        }
     }
 
     public void sync() {
-        if (!stop) {
+        if (!stop && ringBuffer != null) {
+            try {
+                ringBuffer.drain();
+            } catch (IllegalStateException e) {
+                throw new RuntimeException("record builder has stopped.");
+            }
+        } else if (!stop) {
             try {
                 if (!recordQueue.isEmpty()) {
                     synchronized (syncLock) {
@@ -115,7 +151,7 @@ public class TableRecordBuilder {
                                 Record record = recordQueue.poll(configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
                                 if (record != null) {
                                     RecordEntry recordEntry = buildRecord(record);
-                                    topicWriter.writeRecord(recordEntry);
+                                    write(record, recordEntry);
                                 }
                             } catch (InterruptedException e) {
                                 logger.warn("BuildRecord failed, will retry", e);
@@ -137,7 +173,6 @@ public class TableRecordBuilder {
 
     private void run() {
         while (!stop) {
-            Record record = null;
             try {
                 if (sync) {
                     synchronized (syncLock) {
@@ -146,31 +181,81 @@ public class TableRecordBuilder {
                         syncLock.wait(SYNC_LOCK_WAIT_TIMEOUT_MS);
                     }
                 } else {
-                    record = recordQueue.poll(configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
-                    if (record != null) {
-                        RecordEntry recordEntry = buildRecord(record);
-                        topicWriter.writeRecord(recordEntry);
+                    Record record = recordQueue.poll(configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+                    if (record != null && !buildAndWrite(record)) {
+                        stop = true;
                     }
                 }
             } catch (InterruptedException e) {
                 logger.warn("BuildRecord failed, will retry", e);
-            } catch (Exception e) {
-                logger.error("RecordBuild failed, table: {}", tableMapping.getOracleFullTableName(), e);
-                if (configure.isDirtyDataContinue()) {
-                    if (record != null) {
-                        BadOperateWriter.write(record.op, tableMapping.getOracleFullTableName(), tableMapping.getTopicName(),
-                                configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), e.getMessage());
-                    }
-                } else {
-                    logger.error("RecordBuild failed, will stop...");
+            }
+        }
+    }
+
+    // consume the ring buffer in batches: every slot published so far is built, then all of
+    // them are released at once
+    private void runPipeline() {
+        long next = ringBuffer.getConsumed() + 1;
+        while (!stop) {
+            long available = ringBuffer.waitFor(next, configure.getBuildRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+            while (next <= available && !stop) {
+                Record record = ringBuffer.get(next);
+                if (!buildAndWrite(record)) {
                     stop = true;
+                    break;
                 }
+                record.clear();
+                next++;
             }
+            ringBuffer.release(next - 1);
+        }
+        ringBuffer.halt();
+    }
+
+    /**
+     * @return false if the record failed and the builder has to stop
+     */
+    private boolean buildAndWrite(Record record) {
+        boolean built = false;
+        try {
+            RecordEntry recordEntry = buildRecord(record);
+            built = true;
+            write(record, recordEntry);
+        } catch (Exception e) {
+            logger.error("RecordBuild failed, table: {}", tableMapping.getOracleFullTableName(), e);
+            if (configure.isDirtyDataContinue()) {
+                try {
+                    // acked once the operation is in the dirty data file
+                    BadOperateWriter.write(record.op, tableMapping.getOracleFullTableName(), tableMapping.getTopicName(),
+                            configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), e.getMessage(),
+                            record.position::ack);
+                } catch (RuntimeException de) {
+                    logger.error("Write dirty record failed, will stop..., table: {}",
+                            tableMapping.getOracleFullTableName(), de);
+                    return false;
+                }
+                if (!built && buildDispatcher != null) {
+                    // let the records dispatched after this one through
+                    buildDispatcher.skip(record.sequence);
+                }
+            } else {
+                logger.error("RecordBuild failed, will stop...");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(Record record, RecordEntry recordEntry) {
+        if (buildDispatcher != null) {
+            buildDispatcher.write(record.sequence, recordEntry, record.position);
+        } else {
+            topicWriter.writeRecord(recordEntry, record.position);
         }
     }
 
     private RecordEntry buildRecord(Record record) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         RecordEntry recordEntry = new RecordEntry();
 
         if (logger.isDebugEnabled()) {
@@ -190,70 +275,59 @@ public class TableRecordBuilder {
         recordEntry.addAttribute(Constant.TABNMAE, tableMapping.getOracleTableName());
 
         if (configure.isReportMetric()) {
-            MetricHelper.instance().addBuildTime(System.currentTimeMillis() - startTime);
+            MetricHelper.instance().addBuildTime(tableMapping.getOracleFullTableName(), System.nanoTime() - startTime);
         }
         return recordEntry;
     }
 
     private void buildTupleRecord(Record record, TableMapping tableMapping, RecordEntry recordEntry) {
         TupleRecordData recordData = new TupleRecordData(tableMapping.getRecordSchema());
-        RecordSchema recordSchema = tableMapping.getRecordSchema();
+        TupleProjection projection = getProjection(record.op.getTableMeta());
         StringBuilder hashString = new StringBuilder();
 
         List<DsColumn> columns = record.op.getColumns();
 
-        String rowIdColumn = tableMapping.getRowIdColumn();
-        if (StringUtils.isNotBlank(rowIdColumn)) {
+        if (projection.rowIdIndex >= 0) {
             DsToken token = record.rowIdToken;
             if (!token.isSet()) {
                 logger.error("BuildRecord failed, oracle table token TKN-ROWID is not set, can not get oracle rowid, table: {}",
                         tableMapping.getOracleFullTableName());
                 throw new RuntimeException("oracle table token TKN-ROWID is not set, can not get oracle rowid");
             }
-            recordData.setField(rowIdColumn, token.getValue());
+            recordData.setField(projection.rowIdIndex, token.getValue());
         }
 
-        String ctype = tableMapping.getcTypeColumn();
-        if (StringUtils.isNotBlank(ctype)) {
-            recordData.setField(ctype, record.opType);
+        if (projection.cTypeIndex >= 0) {
+            recordData.setField(projection.cTypeIndex, record.opType);
         }
 
-        String ctime = tableMapping.getcTimeColumn();
-        if (StringUtils.isNotBlank(ctime)) {
-            if (recordSchema.getField(ctime).getType() == FieldType.STRING) {
-                recordData.setField(ctime, record.op.getTimestamp());
-            } else if (recordSchema.getField(ctime).getType() == FieldType.TIMESTAMP) {
-                recordData.setField(ctime, convertStrToMicroseconds(record.op.getTimestamp()));
+        if (projection.cTimeIndex >= 0) {
+            if (projection.cTimeField.getType() == FieldType.STRING) {
+                recordData.setField(projection.cTimeIndex, record.op.getTimestamp());
+            } else if (projection.cTimeField.getType() == FieldType.TIMESTAMP) {
+                recordData.setField(projection.cTimeIndex, convertStrToMicroseconds(record.op.getTimestamp()));
             } else {
                 logger.error("BuildRecord failed, cTimeColumn type must be string or timestamp in DataHub, type: {}",
-                        recordSchema.getField(ctime).getType().name());
+                        projection.cTimeField.getType().name());
                 throw new RuntimeException("cTimeColumn type must be string or timestamp in DataHub");
             }
         }
 
-        String cId = tableMapping.getcIdColumn();
-        if (StringUtils.isNotBlank(cId)) {
-            recordData.setField(cId, record.recordId);
+        if (projection.cIdIndex >= 0) {
+            recordData.setField(projection.cIdIndex, record.recordId);
         }
 
-        Timestamp timestamp = Timestamp.valueOf(record.op.getTimestamp());
-        Map<String, String> constMap = tableMapping.getConstColumnMappings();
-        if (constMap != null && !constMap.isEmpty()) {
-            for (Map.Entry<String, String> entry : constMap.entrySet()) {
-                recordData.setField(entry.getKey(), BucketPath.escapeString(entry.getValue(),
-                        timestamp.getTime(), tableMapping.getConstColumnMappings()));
+        if (projection.constIndexes.length > 0) {
+            long timestamp = projection.isConstTimeTagged() ? Timestamp.valueOf(record.op.getTimestamp()).getTime() : 0;
+            String[] constValues = projection.getConstValues(timestamp);
+            for (int i = 0; i < constValues.length; i++) {
+                recordData.setField(projection.constIndexes[i], constValues[i]);
             }
         }
 
-        for (int i = 0; i < columns.size(); i++) {
-
-            String columnName = record.op.getTableMeta().getColumnName(i).toLowerCase();
-            ColumnMapping columnMapping = tableMapping.getColumnMappings().get(columnName);
-            if (columnMapping == null) {
-                continue;
-            }
-
-            DsColumn dsColumn = columns.get(i);
+        for (int i = 0; i < projection.srcIndexes.length; i++) {
+            ColumnMapping columnMapping = projection.columnMappings[i];
+            DsColumn dsColumn = columns.get(projection.srcIndexes[i]);
             String afterValue = dsColumn.getAfterValue();
             String beforeValue = dsColumn.getBeforeValue();
             if (!columnMapping.isDefaultCharset()) {
@@ -261,25 +335,14 @@ public class TableRecordBuilder {
                 beforeValue = dsColumn.hasBeforeValue() ? new String(dsColumn.getBeforeValue().getBytes(charset)) : null;
             }
 
-            String dest = columnMapping.getDest();
-            if (StringUtils.isNotBlank(dest)) {
-                if (columnMapping.isKeyColumn()) {
-                    if (dsColumn.hasAfterValue()) {
-                        setTupleData(recordData, recordSchema.getField(dest), afterValue,
-                                columnMapping.isDateFormat(), columnMapping.getSimpleDateFormat());
-                    } else {
-                        setTupleData(recordData, recordSchema.getField(dest), beforeValue,
-                                columnMapping.isDateFormat(), columnMapping.getSimpleDateFormat());
-                    }
-                } else {
-                    setTupleData(recordData, recordSchema.getField(dest), afterValue,
-                            columnMapping.isDateFormat(), columnMapping.getSimpleDateFormat());
-                }
+            if (projection.destIndexes[i] >= 0) {
+                String value = columnMapping.isKeyColumn() && !dsColumn.hasAfterValue() ? beforeValue : afterValue;
+                setTupleData(recordData, projection.destIndexes[i], projection.destFields[i], value,
+                        columnMapping.isDateFormat(), columnMapping.getSimpleDateFormat());
             }
 
-            String destOld = columnMapping.getDestOld();
-            if (StringUtils.isNotBlank(destOld)) {
-                setTupleData(recordData, recordSchema.getField(destOld), beforeValue,
+            if (projection.destOldIndexes[i] >= 0) {
+                setTupleData(recordData, projection.destOldIndexes[i], projection.destOldFields[i], beforeValue,
                         columnMapping.isDateFormat(), columnMapping.getSimpleDateFormat());
             }
 
@@ -294,6 +357,26 @@ public class TableRecordBuilder {
         recordEntry.setRecordData(recordData);
     }
 
+    // compiled lazily for the metadata version of the record, so records queued before a
+    // metadata change are still built with the columns they were captured with
+    private TupleProjection getProjection(TableMetaData tableMeta) {
+        TupleProjection current = projection;
+        if (current == null || !current.isCompiledFor(tableMeta)) {
+            current = new TupleProjection(tableMeta, tableMapping);
+            projection = current;
+            logger.info("Compiled column projection, table: {}, mapped columns: {}",
+                    tableMapping.getOracleFullTableName(), current.srcIndexes.length);
+        }
+        return current;
+    }
+
+    /**
+     * Drops the compiled column projection, the next tuple record compiles a new one.
+     */
+    public void metaDataChanged() {
+        projection = null;
+    }
+
     private void buildBlobRecord(Record record, TableMapping tableMapping, RecordEntry recordEntry) {
         List<DsColumn> columns = record.op.getColumns();
         if (tableMapping.getColumnMappings().size() != 1) {
@@ -335,31 +418,31 @@ public class TableRecordBuilder {
         recordEntry.addAttribute("opType", record.opType);
     }
 
-    private void setTupleData(TupleRecordData recordData, Field field, String val, boolean isDateFormat, SimpleDateFormat format) {
+    private void setTupleData(TupleRecordData recordData, int index, Field field, String val, boolean isDateFormat, SimpleDateFormat format) {
         if (val == null || val.isEmpty() || field == null || "null".equalsIgnoreCase(val)) {
             return;
         }
         switch (field.getType()) {
             case STRING:
-                recordData.setField(field.getName(), val);
+                recordData.setField(index, val);
                 break;
             case BIGINT:
-                recordData.setField(field.getName(), Long.parseLong(val));
+                recordData.setField(index, Long.parseLong(val));
                 break;
             case DOUBLE:
-                recordData.setField(field.getName(), Double.parseDouble(val));
+                recordData.setField(index, Double.parseDouble(val));
                 break;
             case BOOLEAN:
-                recordData.setField(field.getName(), Boolean.parseBoolean(val));
+                recordData.setField(index, Boolean.parseBoolean(val));
                 break;
             case TIMESTAMP:
                 if (isDateFormat) {
                     if (format == null) {
                         // set timestamp Microseconds
-                        recordData.setField(field.getName(), convertStrToMicroseconds(val));
+                        recordData.setField(index, convertStrToMicroseconds(val));
                     } else {
                         try {
-                            recordData.setField(field.getName(), format.parse(val).getTime() * 1000);
+                            recordData.setField(index, format.parse(val).getTime() * 1000);
                         } catch (ParseException e) {
                             throw new RuntimeException(e);
                         }
@@ -367,11 +450,11 @@ public class TableRecordBuilder {
 
 
                 } else {
-                    recordData.setField(field.getName(), Long.parseLong(val));
+                    recordData.setField(index, Long.parseLong(val));
                 }
                 break;
             case DECIMAL:
-                recordData.setField(field.getName(), new BigDecimal(val));
+                recordData.setField(index, new BigDecimal(val));
                 break;
             default:
                 logger.error("BuildRecord failed, unknown DataHub filed type, type: {}", field.getType().name());
@@ -402,16 +485,37 @@ public class TableRecordBuilder {
 
     class Record {
 
-        public Record(String opType, String recordId, Op op) {
+        public Record() {
+        }
+
+        public Record(String opType, String recordId, Op op, HandlerInfoManager.Position position, long sequence) {
+            set(opType, recordId, op, position, sequence);
+        }
+
+        void set(String opType, String recordId, Op op, HandlerInfoManager.Position position, long sequence) {
+            this.sequence = sequence;
             this.opType = opType;
             this.recordId = recordId;
             this.op = op;
             this.rowIdToken = op.getToken(Constant.ROWID_TOKEN);
+            this.position = position;
+        }
+
+        // drop the references of a reused ring buffer slot
+        void clear() {
+            this.sequence = -1;
+            this.opType = null;
+            this.recordId = null;
+            this.op = null;
+            this.rowIdToken = null;
+            this.position = null;
         }
 
         String opType;
         String recordId;
         Op op;
         DsToken rowIdToken;
+        HandlerInfoManager.Position position;
+        long sequence = -1;
     }
 }
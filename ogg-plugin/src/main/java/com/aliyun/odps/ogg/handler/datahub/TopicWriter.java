@@ -39,7 +39,17 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -60,12 +70,16 @@ public class TopicWriter {
     private long sequence = 0;
     private int index = 0;
     private ScheduledExecutorService scheduledExecutorService;
-    private List<ShardWriter> shardWriters;
+    // replaced as a whole by updateShardWriters, read without a lock by flush, sync and stop
+    private volatile List<ShardWriter> shardWriters;
+    // only used while holding the monitor of this, like the writer list it indexes into
+    private final ShardRouter shardRouter;
 
     public TopicWriter(Configure configure, TableMapping tableMapping, DatahubClient client) {
         this.configure = configure;
         this.tableMapping = tableMapping;
         this.client = client;
+        this.shardRouter = ShardRouter.create(configure.getShardRouter());
 
         scheduledExecutorService = new ScheduledThreadPoolExecutor(2,
                 new BasicThreadFactory.Builder().namingPattern(tableMapping.getTopicName() + ".Writer.Schedule-%d").daemon(true).build());
@@ -97,7 +111,7 @@ public class TopicWriter {
         }
     }
 
-    public synchronized void writeRecord(RecordEntry recordEntry) {
+    public synchronized void writeRecord(RecordEntry recordEntry, HandlerInfoManager.Position position) {
         if (isShardChanged()) {
             logger.warn("Shard changed, restart shard writer, table: {}, topicName: {}",
                     tableMapping.getOracleFullTableName(), tableMapping.getTopicName());
@@ -106,7 +120,11 @@ public class TopicWriter {
 
         recordEntry.setSequence(sequence);
         int idx = getWriteIndex(recordEntry);
-        shardWriters.get(idx).write(recordEntry);
+        while (!shardWriters.get(idx).write(recordEntry, position)) {
+            // the shard was sealed while the writer was waiting for ring buffer space
+            updateShardWriters();
+            idx = getWriteIndex(recordEntry);
+        }
         if (++sequence % configure.getBatchSize() == 0) {
             ++index;
         }
@@ -148,11 +166,12 @@ public class TopicWriter {
         if (partitionKey == null) {
             return ((index % shardWriters.size()) + shardWriters.size()) % shardWriters.size();
         } else {
-            return (partitionKey.hashCode() % shardWriters.size() + shardWriters.size()) % shardWriters.size();
+            return shardRouter.route(partitionKey);
         }
     }
 
-    private List<String> getShardList() {
+    // the active shards, sorted by shard id
+    private List<ShardEntry> getShardList() {
         int retryCount = 0;
         while (true) {
             try {
@@ -173,15 +192,15 @@ public class TopicWriter {
 
                 }
                 shardEntries.sort(Comparator.comparingInt(o -> Integer.parseInt(o.getShardId())));
-                List<String> shardIds = new ArrayList<>();
+                List<ShardEntry> activeShards = new ArrayList<>();
 
                 for (ShardEntry shardEntry : shardEntries) {
                     if (ShardState.ACTIVE.equals(shardEntry.getState())) {
-                        shardIds.add(shardEntry.getShardId());
+                        activeShards.add(shardEntry);
                     }
                 }
 
-                return shardIds;
+                return activeShards;
             } catch (DatahubClientException e) {
                 if (configure.getRetryTimes() > -1 && retryCount >= configure.getRetryTimes()) {
                     logger.error("List shard failed, table: {}, topic: {}", tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), e);
@@ -209,46 +228,131 @@ public class TopicWriter {
         return true;
     }
 
-    private void updateShardWriters() {
+    // writers of shards that are still active keep running if the router keeps their keys on
+    // them, only the records of the other writers are drained and routed again. Holds the monitor
+    // of this like writeRecord, so a record is never routed with a router and a writer list of
+    // different updates, and never added to a writer that is being drained.
+    private synchronized void updateShardWriters() {
         synchronized (writerLock) {
             logger.warn("Update shardWriters...");
-            List<RecordEntry> buffRecords = new ArrayList<>();
+            List<ShardEntry> shards = getShardList();
+            Set<String> activeShardIds = new HashSet<>();
+            for (ShardEntry shard : shards) {
+                activeShardIds.add(shard.getShardId());
+            }
+
+            Map<String, ShardWriter> keptShardWriters = new HashMap<>();
+            RecordBatch buffRecords = new RecordBatch();
             if (shardWriters != null && !shardWriters.isEmpty()) {
                 for (ShardWriter shardWriter : shardWriters) {
-                    while (!shardWriter.batchQueue.isEmpty()) {
-                        RecordBatch batch = shardWriter.batchQueue.peek();
-                        buffRecords.addAll(batch.getRecords());
-                        shardWriter.batchQueue.pop();
+                    if (shardRouter.isStable() && !shardWriter.isShardClosed && !shardWriter.stop
+                            && activeShardIds.contains(shardWriter.shardId)) {
+                        keptShardWriters.put(shardWriter.shardId, shardWriter);
+                    } else {
+                        drain(shardWriter, buffRecords);
                     }
-                    buffRecords.addAll(shardWriter.recordBatch.getRecords());
                 }
             }
 
-            List<String> shardIds = getShardList();
             List<ShardWriter> newShardWriters = new ArrayList<>();
-            for (String shardId : shardIds) {
-                ShardWriter shardWriter = new ShardWriter(shardId);
-                shardWriter.start();
+            for (ShardEntry shard : shards) {
+                ShardWriter shardWriter = keptShardWriters.get(shard.getShardId());
+                if (shardWriter == null) {
+                    shardWriter = new ShardWriter(shard.getShardId());
+                    shardWriter.start();
+                }
                 newShardWriters.add(shardWriter);
             }
+            shardRouter.update(shards);
             this.shardWriters = newShardWriters;
+            logger.warn("Shard writers updated, table: {}, topic: {}, kept: {}, active: {}",
+                    tableMapping.getOracleFullTableName(), tableMapping.getTopicName(),
+                    keptShardWriters.keySet(), activeShardIds);
 
             if (!buffRecords.isEmpty()) {
-                buffRecords.sort(Comparator.comparingLong(RecordEntry::getSequence));
-                for (RecordEntry buffRecord : buffRecords) {
-                    writeRecord(buffRecord);
+                List<RecordEntry> records = buffRecords.getRecords();
+                List<HandlerInfoManager.Position> positions = buffRecords.getPositions();
+                List<String> partitionKeys = buffRecords.getPartitionKeys();
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < records.size(); i++) {
+                    order.add(i);
+                }
+                order.sort(Comparator.comparingLong(i -> records.get(i).getSequence()));
+                for (int i : order) {
+                    // route by the key the record had before it was put to its old shard
+                    records.get(i).setPartitionKey(partitionKeys.get(i));
+                    writeRecord(records.get(i), positions.get(i));
                 }
             }
             logger.warn("Update shardWriters success");
         }
     }
 
+    // stop the writer and collect every record it has not written yet
+    private void drain(ShardWriter shardWriter, RecordBatch buffRecords) {
+        shardWriter.stopAndWait();
+        if (shardWriter.ringBuffer != null) {
+            RingBuffer<ShardSlot> ringBuffer = shardWriter.ringBuffer;
+            for (long s = ringBuffer.getConsumed() + 1; s <= ringBuffer.getCursor(); s++) {
+                ShardSlot slot = ringBuffer.get(s);
+                buffRecords.add(slot.recordEntry, slot.position, slot.partitionKey);
+            }
+            return;
+        }
+        for (InFlightBatch inFlightBatch : shardWriter.inFlight) {
+            addAll(buffRecords, inFlightBatch.batch);
+        }
+        shardWriter.inFlight.clear();
+        while (!shardWriter.batchQueue.isEmpty()) {
+            RecordBatch batch = shardWriter.batchQueue.peek();
+            addAll(buffRecords, batch);
+            shardWriter.batchQueue.pop();
+        }
+        addAll(buffRecords, shardWriter.recordBatch);
+    }
+
+    private void addAll(RecordBatch to, RecordBatch from) {
+        for (int i = 0; i < from.getRecords().size(); i++) {
+            to.add(from.getRecords().get(i), from.getPositions().get(i), from.getPartitionKeys().get(i));
+        }
+    }
+
+    private static class ShardSlot {
+        private RecordEntry recordEntry;
+        private HandlerInfoManager.Position position;
+        private String partitionKey;
+    }
+
+    private static class InFlightBatch {
+        private final RecordBatch batch;
+        // last ring buffer sequence of the batch in pipeline mode
+        private final long endSequence;
+        private final long startTime;
+        private final Future<PutRecordsResult> future;
+
+        private InFlightBatch(RecordBatch batch, long endSequence, long startTime, Future<PutRecordsResult> future) {
+            this.batch = batch;
+            this.endSequence = endSequence;
+            this.startTime = startTime;
+            this.future = future;
+        }
+    }
+
     private class ShardWriter {
         private final Logger logger = LoggerFactory.getLogger(ShardWriter.class);
 
         private String shardId;
         private RecordBatch recordBatch = new RecordBatch();
         private RecordBatchQueue batchQueue = new RecordBatchQueue(configure.getPutRecordQueueSize());
+        // replaces recordBatch and batchQueue in pipeline mode, writeRecord is the only producer
+        private RingBuffer<ShardSlot> ringBuffer;
+        // sync asks the pipeline to write every record up to this sequence
+        private volatile long flushSequence = -1;
+        // batches put concurrently when putRecordMaxInFlight > 1, oldest first
+        private final Deque<InFlightBatch> inFlight = new ConcurrentLinkedDeque<>();
+        // endSequence of the last batch completeOldest took off inFlight
+        private long ackedSequence = -1;
+        private ExecutorService putExecutor;
         private Exception exception;
         private final Object batchLock = new Object();
         private final Object syncLock = new Object();
@@ -259,11 +363,27 @@ public class TopicWriter {
 
         private ShardWriter(String shardId) {
             this.shardId = shardId;
-            writeThread = new Thread(this::run, tableMapping.getTopicName() + "-ShardWriter-" + shardId);
+            if (configure.isPipelineMode()) {
+                ringBuffer = new RingBuffer<>(configure.getShardRingBufferSize(),
+                        RingBuffer.WaitStrategy.valueOf(configure.getPipelineWaitStrategy()), ShardSlot::new);
+            }
+            if (configure.getPutRecordMaxInFlight() > 1) {
+                putExecutor = Executors.newFixedThreadPool(configure.getPutRecordMaxInFlight(),
+                        new BasicThreadFactory.Builder().namingPattern(tableMapping.getTopicName()
+                                + "-ShardWriter-" + shardId + ".Put-%d").daemon(true).build());
+            }
+            writeThread = new Thread(ringBuffer != null ? this::runPipeline : this::run,
+                    tableMapping.getTopicName() + "-ShardWriter-" + shardId);
         }
 
         private void start() {
             writeThread.start();
+            if (configure.isReportMetric()) {
+                // records in pipeline mode, batches otherwise
+                MetricHelper.instance().registerGauge(writeThread.getName(), ringBuffer != null
+                        ? () -> ringBuffer.getCursor() - ringBuffer.getConsumed()
+                        : () -> batchQueue.size() + inFlight.size());
+            }
         }
 
         private void stop() {
@@ -271,18 +391,57 @@ public class TopicWriter {
                 stop = true;
                 writeThread.interrupt();
             }
+            if (configure.isReportMetric()) {
+                MetricHelper.instance().unregisterGauge(writeThread.getName());
+            }
         }
 
-        private void write(RecordEntry recordEntry) {
+        private void stopAndWait() {
+            stop();
+            try {
+                writeThread.join();
+            } catch (InterruptedException e) {
+                logger.warn("Wait ShardWriter stop interrupted, table: {}, topic: {}, shardId: {}",
+                        tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId);
+            }
+        }
+
+        /**
+         * @return false if the shard was sealed before the record could be queued
+         */
+        private boolean write(RecordEntry recordEntry, HandlerInfoManager.Position position) {
+            if (ringBuffer != null) {
+                long sequence;
+                try {
+                    sequence = ringBuffer.next(1);
+                } catch (IllegalStateException e) {
+                    if (isShardClosed) {
+                        return false;
+                    }
+                    throw new RuntimeException(exception != null ? exception.getMessage() : "shard writer has stopped.");
+                }
+                ShardSlot slot = ringBuffer.get(sequence);
+                slot.recordEntry = recordEntry;
+                slot.position = position;
+                slot.partitionKey = recordEntry.getPartitionKey();
+                ringBuffer.publish(sequence);
+                return true;
+            }
+
             synchronized (batchLock) {
-                recordBatch.add(recordEntry);
+                recordBatch.add(recordEntry, position);
                 if (isReady(recordBatch)) {
                     submit();
                 }
             }
+            return true;
         }
 
         private void flush() {
+            if (ringBuffer != null) {
+                // the pipeline checks the batch timeout itself
+                return;
+            }
             synchronized (batchLock) {
                 if (isReady(recordBatch)) {
                     submit();
@@ -291,22 +450,46 @@ public class TopicWriter {
         }
 
         private void sync() {
+            if (ringBuffer != null) {
+                flushSequence = ringBuffer.getCursor();
+                try {
+                    ringBuffer.drain();
+                } catch (IllegalStateException e) {
+                    if (isShardClosed) {
+                        throw new ShardSealedException(new DatahubClientException("shard is closed, shardId: " + shardId));
+                    }
+                    throw new RuntimeException(exception != null ? exception.getMessage() : "shard writer has stopped.");
+                }
+                return;
+            }
+
             synchronized (batchLock) {
                 submit();
             }
 
             try {
-                if (!batchQueue.isEmpty()) {
+                if (!batchQueue.isEmpty() || !inFlight.isEmpty()) {
                     synchronized (syncLock) {
                         sync = true;
-                        syncLock.wait();
-                        while (!batchQueue.isEmpty()) {
-                            RecordBatch recordBatch = batchQueue.peek();
-                            doWrite(recordBatch);
-                            batchQueue.pop();
+                        try {
+                            syncLock.wait();
+                            while (!inFlight.isEmpty()) {
+                                if (!completeOldest()) {
+                                    if (isShardClosed) {
+                                        throw new ShardSealedException(new DatahubClientException("shard is closed, shardId: " + shardId));
+                                    }
+                                    throw new RuntimeException(exception != null ? exception.getMessage() : "shard writer has stopped.");
+                                }
+                            }
+                            while (!batchQueue.isEmpty()) {
+                                RecordBatch recordBatch = batchQueue.peek();
+                                doWrite(recordBatch);
+                                batchQueue.pop();
+                            }
+                        } finally {
+                            sync = false;
+                            syncLock.notify();
                         }
-                        sync = false;
-                        syncLock.notify();
                     }
                 }
             } catch (InterruptedException e) {
@@ -350,6 +533,19 @@ public class TopicWriter {
                                 // wait timeout for prevent deadlock
                                 syncLock.wait(SYNC_LOCK_WAIT_TIMEOUT_MS);
                             }
+                        } else if (putExecutor != null) {
+                            while (inFlight.size() < configure.getPutRecordMaxInFlight()
+                                    && (recordBatch = batchQueue.peek()) != null) {
+                                if (!recordBatch.isEmpty()) {
+                                    send(recordBatch, -1);
+                                }
+                                batchQueue.pop();
+                            }
+                            if (!inFlight.isEmpty()) {
+                                completeOldest();
+                            } else {
+                                batchQueue.waitEmpty(configure.getPutRecordQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+                            }
                         } else {
                             recordBatch = batchQueue.peek();
                             if (recordBatch != null) {
@@ -377,23 +573,184 @@ public class TopicWriter {
                 exception = e;
             }
             stop = true;
+            shutdownPutExecutor();
             logger.warn("ShardWriter stopped, table: {}, topic: {}, shardId: {}",
                     tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId);
         }
 
-        private void doWrite(RecordBatch recordBatch) {
-            if (recordBatch == null || recordBatch.isEmpty()) {
-                return;
+        // take every published record up to batchSize into a batch, write it when it is full, timed
+        // out or asked for by sync, then release all of its slots at once. With more than one put in
+        // flight the slots of a sent batch stay claimed until it and every batch before it are acked.
+        private void runPipeline() {
+            logger.info("ShardWriter started, table: {}, topicName: {}, shardId: {}",
+                    tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId);
+
+            try {
+                long next = ringBuffer.getConsumed() + 1;
+                long batchStart = next;
+                RecordBatch recordBatch = new RecordBatch();
+                while (!stop) {
+                    try {
+                        long available = ringBuffer.waitFor(next,
+                                inFlight.isEmpty() ? configure.getPutRecordQueueTimeoutMs() : 0, TimeUnit.MILLISECONDS);
+                        boolean idle = available < next;
+                        for (; next <= available && recordBatch.getRecords().size() < configure.getBatchSize(); next++) {
+                            ShardSlot slot = ringBuffer.get(next);
+                            recordBatch.add(slot.recordEntry, slot.position, slot.partitionKey);
+                        }
+
+                        if (!recordBatch.isEmpty() && (isReady(recordBatch) || flushSequence >= batchStart)) {
+                            if (putExecutor != null) {
+                                send(recordBatch, next - 1);
+                            } else {
+                                if (!doWrite(recordBatch)) {
+                                    // stopped before the batch was written, keep it for the next writer
+                                    break;
+                                }
+                                releaseUpTo(next - 1);
+                            }
+                            recordBatch = new RecordBatch();
+                            batchStart = next;
+                        }
+
+                        // block on the oldest put only if the window is full or there is nothing else to do
+                        while (!inFlight.isEmpty() && (idle || inFlight.size() >= configure.getPutRecordMaxInFlight()
+                                || inFlight.peek().future.isDone())) {
+                            if (!completeOldest()) {
+                                break;
+                            }
+                            releaseUpTo(ackedSequence);
+                            idle = false;
+                        }
+                    } catch (ShardSealedException e) {
+                        logger.warn("Shard status change, table: {}, topic: {}, shardId: {}",
+                                tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId, e);
+                        isShardClosed = true;
+                        stop = true;
+                    } catch (InterruptedException e) {
+                        if (!stop) {
+                            logger.error("ShardWriter is interrupted, topicName: {}, shardId: {}",
+                                    tableMapping.getProjectName(), shardId, e);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("ShardWriter encounter an unexpected fail, table: {}, topic: {}, shardId: {}",
+                        tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId, e);
+                exception = e;
             }
+            stop = true;
+            shutdownPutExecutor();
+            ringBuffer.halt();
+            logger.warn("ShardWriter stopped, table: {}, topic: {}, shardId: {}",
+                    tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId);
+        }
 
-            List<RecordEntry> records = recordBatch.getRecords();
+        private void releaseUpTo(long sequence) {
+            for (long s = ringBuffer.getConsumed() + 1; s <= sequence; s++) {
+                ShardSlot slot = ringBuffer.get(s);
+                slot.recordEntry = null;
+                slot.position = null;
+                slot.partitionKey = null;
+            }
+            ringBuffer.release(sequence);
+        }
+
+        private void shutdownPutExecutor() {
+            if (putExecutor != null) {
+                putExecutor.shutdownNow();
+            }
+        }
+
+        private void prepare(List<RecordEntry> records) {
             for (RecordEntry record : records) {
                 record.setPartitionKey(null);
                 record.setHashKey(null);
                 record.setShardId(shardId);
             }
+        }
+
+        // put the batch on the put executor without waiting, completeOldest picks up the result
+        private void send(RecordBatch recordBatch, long endSequence) {
+            List<RecordEntry> records = recordBatch.getRecords();
+            prepare(records);
+            Future<PutRecordsResult> future = putExecutor.submit(
+                    () -> client.putRecords(tableMapping.getProjectName(), tableMapping.getTopicName(), records));
+            inFlight.add(new InFlightBatch(recordBatch, endSequence, System.nanoTime(), future));
+        }
+
+        /**
+         * Waits for the oldest in flight batch and acks it. If its put failed, no later batch is
+         * acked: the writer waits until none of the later puts is running any more, then writes the
+         * failed batch and every later one again with doWrite in sequence order. A later batch whose
+         * put had landed before the failed one is thus written twice, but the shard ends with all
+         * batches in order, and nothing is acked before every batch ahead of it is written.
+         *
+         * @return false if the writer was stopped before the batches were written
+         */
+        private boolean completeOldest() throws InterruptedException {
+            InFlightBatch oldest = inFlight.peek();
+            PutRecordsResult putRecordsResult = getResult(oldest);
+
+            if (putRecordsResult != null && putRecordsResult.getFailedRecordCount() == 0) {
+                if (configure.isReportMetric()) {
+                    MetricHelper.instance().addPutTime(tableMapping.getTopicName(), shardId, System.nanoTime() - oldest.startTime);
+                }
+                logger.info("Write DataHub success, table: {}, topic: {}, shard: {}, recordNum: {}",
+                        tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId,
+                        oldest.batch.getRecords().size());
+
+                PluginStatictics.addSendTimesInTx();
+                oldest.batch.ack();
+                ackedSequence = oldest.endSequence;
+                inFlight.poll();
+                return true;
+            }
 
-            long startTime = System.currentTimeMillis();
+            for (InFlightBatch inFlightBatch : inFlight) {
+                if (inFlightBatch != oldest) {
+                    getResult(inFlightBatch);
+                }
+            }
+            logger.warn("Write DataHub failed, write {} batches again in order, table: {}, topic: {}, shard: {}",
+                    inFlight.size(), tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId);
+            InFlightBatch inFlightBatch;
+            while ((inFlightBatch = inFlight.peek()) != null) {
+                if (!doWrite(inFlightBatch.batch)) {
+                    return false;
+                }
+                ackedSequence = inFlightBatch.endSequence;
+                inFlight.poll();
+            }
+            return true;
+        }
+
+        /**
+         * @return the result of the put, null if it failed with an exception
+         */
+        private PutRecordsResult getResult(InFlightBatch inFlightBatch) throws InterruptedException {
+            try {
+                return inFlightBatch.future.get();
+            } catch (ExecutionException e) {
+                logger.error("Write DataHub failed. table: {}, topic: {}, shard: {}, recordNum: {}",
+                        tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId,
+                        inFlightBatch.batch.getRecords().size(), e.getCause());
+                return null;
+            }
+        }
+
+        /**
+         * @return false if the writer was stopped before the batch was written
+         */
+        private boolean doWrite(RecordBatch recordBatch) {
+            if (recordBatch == null || recordBatch.isEmpty()) {
+                return true;
+            }
+
+            List<RecordEntry> records = recordBatch.getRecords();
+            prepare(records);
+
+            long startTime = System.nanoTime();
             String errorMessage = "unknown";
             PutRecordsResult putRecordsResult = null;
 
@@ -411,13 +768,14 @@ public class TopicWriter {
                     if (putRecordsResult.getFailedRecordCount() == 0) {
 
                         if (configure.isReportMetric()) {
-                            MetricHelper.instance().addPutTime(System.currentTimeMillis() - startTime);
+                            MetricHelper.instance().addPutTime(tableMapping.getTopicName(), shardId, System.nanoTime() - startTime);
                         }
                         logger.info("Write DataHub success, table: {}, topic: {}, shard: {}, recordNum: {}",
                                 tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId, records.size());
 
                         PluginStatictics.addSendTimesInTx();
-                        break;
+                        recordBatch.ack();
+                        return true;
                     } else {
                         errorMessage = putRecordsResult.getPutErrorEntries().get(0).getMessage();
                     }
@@ -440,7 +798,8 @@ public class TopicWriter {
                             if ("MalformedRecord".equals(errorEntry.getErrorcode())) {
                                 if (configure.isDirtyDataContinue()) {
                                     BadOperateWriter.write(entry, tableMapping.getOracleFullTableName(), tableMapping.getTopicName(),
-                                            configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorEntry.getMessage());
+                                            configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorEntry.getMessage(),
+                                            recordBatch.holdAck());
                                 } else {
                                     logger.error("Write DataHub failed, dirty data found, table: {}, topic: {}, shard: {}, record: {}",
                                             tableMapping.getOracleFullTableName(), tableMapping.getTopicName(), shardId, JsonHelper.beanToJson(entry));
@@ -474,21 +833,26 @@ public class TopicWriter {
                         if (putRecordsResult == null) {
                             for (RecordEntry entry : records) {
                                 BadOperateWriter.write(entry, tableMapping.getOracleFullTableName(), tableMapping.getTopicName(),
-                                        configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorMessage);
+                                        configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorMessage,
+                                        recordBatch.holdAck());
                             }
                         } else {
                             for (int i = 0; i < putRecordsResult.getFailedRecordCount(); ++i) {
                                 BadOperateWriter.write(putRecordsResult.getFailedRecords().get(i), tableMapping.getOracleFullTableName(),
-                                        tableMapping.getTopicName(), configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorMessage);
+                                        tableMapping.getTopicName(), configure.getDirtyDataFile(), configure.getDirtyDataFileMaxSize(), errorMessage,
+                                        recordBatch.holdAck());
                             }
                         }
                     } else {
                         throw new DatahubClientException("Write DataHub failed, " + errorMessage);
                     }
-                    break;
+                    // the positions are acked once the dirty records are in the dirty data file
+                    recordBatch.ack();
+                    return true;
                 }
                 retryCount++;
             }
+            return false;
         }
     }
 }
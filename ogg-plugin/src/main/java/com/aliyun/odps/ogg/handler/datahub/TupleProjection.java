@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.Field;
+import com.aliyun.datahub.client.model.RecordSchema;
+import com.aliyun.odps.ogg.handler.datahub.modle.ColumnMapping;
+import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
+import com.aliyun.odps.ogg.handler.datahub.util.BucketPath;
+import oracle.goldengate.datasource.meta.TableMetaData;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * The column mapping of one table compiled against one version of its oracle metadata. Every
+ * mapped source column is resolved once to its column mapping and DataHub field indexes, so
+ * building a tuple record no longer looks anything up by name. Const columns without a time tag
+ * are rendered once, the others once per time bucket: a second, or a millisecond if %t is used.
+ */
+class TupleProjection {
+    private static final long SECOND_BUCKET_MS = 1000;
+
+    private final TableMetaData tableMeta;
+
+    // one entry per mapped source column
+    final int[] srcIndexes;
+    final ColumnMapping[] columnMappings;
+    final Field[] destFields;
+    final int[] destIndexes;
+    final Field[] destOldFields;
+    final int[] destOldIndexes;
+
+    // -1 if the column is not configured
+    final int rowIdIndex;
+    final int cTypeIndex;
+    final int cTimeIndex;
+    final Field cTimeField;
+    final int cIdIndex;
+
+    final int[] constIndexes;
+    private final String[] constTemplates;
+    private final Map<String, String> constColumnMappings;
+    private final boolean constTimeTagged;
+    private final long constBucketMs;
+    private volatile RenderedConsts renderedConsts;
+
+    TupleProjection(TableMetaData tableMeta, TableMapping tableMapping) {
+        this.tableMeta = tableMeta;
+        RecordSchema recordSchema = tableMapping.getRecordSchema();
+        Map<String, ColumnMapping> mappings = tableMapping.getColumnMappings();
+
+        List<Integer> mapped = new ArrayList<>();
+        for (int i = 0; i < tableMeta.getNumColumns(); i++) {
+            if (mappings.get(tableMeta.getColumnName(i).toLowerCase()) != null) {
+                mapped.add(i);
+            }
+        }
+        srcIndexes = new int[mapped.size()];
+        columnMappings = new ColumnMapping[mapped.size()];
+        destFields = new Field[mapped.size()];
+        destIndexes = new int[mapped.size()];
+        destOldFields = new Field[mapped.size()];
+        destOldIndexes = new int[mapped.size()];
+        for (int i = 0; i < mapped.size(); i++) {
+            int src = mapped.get(i);
+            ColumnMapping columnMapping = mappings.get(tableMeta.getColumnName(src).toLowerCase());
+            srcIndexes[i] = src;
+            columnMappings[i] = columnMapping;
+            destIndexes[i] = fieldIndex(recordSchema, columnMapping.getDest());
+            destFields[i] = destIndexes[i] < 0 ? null : recordSchema.getField(destIndexes[i]);
+            destOldIndexes[i] = fieldIndex(recordSchema, columnMapping.getDestOld());
+            destOldFields[i] = destOldIndexes[i] < 0 ? null : recordSchema.getField(destOldIndexes[i]);
+        }
+
+        rowIdIndex = fieldIndex(recordSchema, tableMapping.getRowIdColumn());
+        cTypeIndex = fieldIndex(recordSchema, tableMapping.getcTypeColumn());
+        cTimeIndex = fieldIndex(recordSchema, tableMapping.getcTimeColumn());
+        cTimeField = cTimeIndex < 0 ? null : recordSchema.getField(cTimeIndex);
+        cIdIndex = fieldIndex(recordSchema, tableMapping.getcIdColumn());
+
+        constColumnMappings = tableMapping.getConstColumnMappings();
+        int constNum = constColumnMappings == null ? 0 : constColumnMappings.size();
+        constIndexes = new int[constNum];
+        constTemplates = new String[constNum];
+        boolean timeTagged = false;
+        boolean millisTagged = false;
+        if (constNum > 0) {
+            int i = 0;
+            for (Map.Entry<String, String> entry : constColumnMappings.entrySet()) {
+                constIndexes[i] = recordSchema.getFieldIndex(entry.getKey());
+                constTemplates[i] = entry.getValue();
+                timeTagged |= hasTimeTag(entry.getValue());
+                millisTagged |= entry.getValue().contains("%t");
+                i++;
+            }
+        }
+        constTimeTagged = timeTagged;
+        constBucketMs = millisTagged ? 1 : SECOND_BUCKET_MS;
+        if (!constTimeTagged) {
+            renderedConsts = render(0);
+        }
+    }
+
+    /**
+     * @return true if the projection was compiled against this metadata version
+     */
+    boolean isCompiledFor(TableMetaData tableMeta) {
+        return this.tableMeta == tableMeta;
+    }
+
+    boolean isConstTimeTagged() {
+        return constTimeTagged;
+    }
+
+    /**
+     * @param timestamp record time in milliseconds, ignored if no const column has a time tag
+     */
+    String[] getConstValues(long timestamp) {
+        RenderedConsts consts = renderedConsts;
+        if (constTimeTagged) {
+            long bucket = Math.floorDiv(timestamp, constBucketMs);
+            if (consts == null || consts.bucket != bucket) {
+                consts = render(timestamp);
+                renderedConsts = consts;
+            }
+        }
+        return consts.values;
+    }
+
+    private RenderedConsts render(long timestamp) {
+        String[] values = new String[constTemplates.length];
+        for (int i = 0; i < constTemplates.length; i++) {
+            values[i] = BucketPath.escapeString(constTemplates[i], timestamp, constColumnMappings);
+        }
+        return new RenderedConsts(Math.floorDiv(timestamp, constBucketMs), values);
+    }
+
+    // %{name} only reads other const columns, every other tag depends on the time
+    private static boolean hasTimeTag(String template) {
+        Matcher matcher = BucketPath.tagPattern.matcher(template);
+        while (matcher.find()) {
+            if (matcher.group(1) != null && !"%".equals(matcher.group(1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int fieldIndex(RecordSchema recordSchema, String name) {
+        if (StringUtils.isBlank(name) || !recordSchema.containsField(name)) {
+            return -1;
+        }
+        return recordSchema.getFieldIndex(name);
+    }
+
+    private static class RenderedConsts {
+        private final long bucket;
+        private final String[] values;
+
+        private RenderedConsts(long bucket, String[] values) {
+            this.bucket = bucket;
+            this.values = values;
+        }
+    }
+}
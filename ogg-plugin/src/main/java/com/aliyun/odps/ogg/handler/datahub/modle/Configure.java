@@ -48,12 +48,26 @@ public class Configure {
 
     private int dirtyDataFileMaxSize = 500 * 1000000;
 
+    // 0 writes dirty records synchronously, otherwise writers wait while the queue is full
+    private int dirtyDataQueueSize = 0;
+
+    private int dirtyDataBatchSize = 500;
+
+    // 0 never rolls on time
+    private long dirtyDataFileRollIntervalMs = 0;
+
+    private int dirtyDataFileRetain = 1;
+
+    private boolean dirtyDataFileCompress = false;
+
     private int retryTimes = -1;
 
     private int retryIntervalMs = 3000;
 
     private String checkPointFileName = "datahub_ogg_plugin.chk";
 
+    private int checkPointIntervalMs = 5000;
+
     private Map<String, TableMapping> tableMappings;
 
     private boolean isCheckPointFileDisable = false;
@@ -68,12 +82,28 @@ public class Configure {
 
     private int putRecordQueueTimeoutMs = 1000;
 
+    private int putRecordMaxInFlight = 1;
+
+    private String shardRouter = "modulo";
+
     private boolean commitFlush = true;
 
+    private int commitGroupMaxOperations = 0;
+
+    private int commitGroupTimeoutMs = 1000;
+
+    private boolean pipelineMode = false;
+
+    private String pipelineWaitStrategy = "PARK";
+
+    private int shardRingBufferSize = 8192;
+
     private boolean reportMetric = false;
 
     private int reportMetricIntervalMs = 5 * 60 * 1000;
 
+    private int reportMetricHttpPort = 0;
+
     public String getOracleSid() {
         return oracleSid;
     }
@@ -163,6 +193,51 @@ public class Configure {
         this.dirtyDataFileMaxSize = dirtyDataFileMaxSize * 1000000;
     }
 
+    public int getDirtyDataQueueSize() {
+        return dirtyDataQueueSize;
+    }
+
+    public Configure setDirtyDataQueueSize(int dirtyDataQueueSize) {
+        this.dirtyDataQueueSize = dirtyDataQueueSize;
+        return this;
+    }
+
+    public int getDirtyDataBatchSize() {
+        return dirtyDataBatchSize;
+    }
+
+    public Configure setDirtyDataBatchSize(int dirtyDataBatchSize) {
+        this.dirtyDataBatchSize = dirtyDataBatchSize;
+        return this;
+    }
+
+    public long getDirtyDataFileRollIntervalMs() {
+        return dirtyDataFileRollIntervalMs;
+    }
+
+    public Configure setDirtyDataFileRollIntervalMs(long dirtyDataFileRollIntervalMs) {
+        this.dirtyDataFileRollIntervalMs = dirtyDataFileRollIntervalMs;
+        return this;
+    }
+
+    public int getDirtyDataFileRetain() {
+        return dirtyDataFileRetain;
+    }
+
+    public Configure setDirtyDataFileRetain(int dirtyDataFileRetain) {
+        this.dirtyDataFileRetain = dirtyDataFileRetain;
+        return this;
+    }
+
+    public boolean isDirtyDataFileCompress() {
+        return dirtyDataFileCompress;
+    }
+
+    public Configure setDirtyDataFileCompress(boolean dirtyDataFileCompress) {
+        this.dirtyDataFileCompress = dirtyDataFileCompress;
+        return this;
+    }
+
     public int getRetryTimes() {
         return retryTimes;
     }
@@ -187,6 +262,15 @@ public class Configure {
         this.checkPointFileName = checkPointFileName;
     }
 
+    public int getCheckPointIntervalMs() {
+        return checkPointIntervalMs;
+    }
+
+    public Configure setCheckPointIntervalMs(int checkPointIntervalMs) {
+        this.checkPointIntervalMs = checkPointIntervalMs;
+        return this;
+    }
+
     public boolean isCheckPointFileDisable() {
         return isCheckPointFileDisable;
     }
@@ -259,6 +343,24 @@ public class Configure {
         return this;
     }
 
+    public int getPutRecordMaxInFlight() {
+        return putRecordMaxInFlight;
+    }
+
+    public Configure setPutRecordMaxInFlight(int putRecordMaxInFlight) {
+        this.putRecordMaxInFlight = putRecordMaxInFlight;
+        return this;
+    }
+
+    public String getShardRouter() {
+        return shardRouter;
+    }
+
+    public Configure setShardRouter(String shardRouter) {
+        this.shardRouter = shardRouter;
+        return this;
+    }
+
     public boolean isCommitFlush() {
         return commitFlush;
     }
@@ -268,6 +370,51 @@ public class Configure {
         return this;
     }
 
+    public int getCommitGroupMaxOperations() {
+        return commitGroupMaxOperations;
+    }
+
+    public Configure setCommitGroupMaxOperations(int commitGroupMaxOperations) {
+        this.commitGroupMaxOperations = commitGroupMaxOperations;
+        return this;
+    }
+
+    public int getCommitGroupTimeoutMs() {
+        return commitGroupTimeoutMs;
+    }
+
+    public Configure setCommitGroupTimeoutMs(int commitGroupTimeoutMs) {
+        this.commitGroupTimeoutMs = commitGroupTimeoutMs;
+        return this;
+    }
+
+    public boolean isPipelineMode() {
+        return pipelineMode;
+    }
+
+    public Configure setPipelineMode(boolean pipelineMode) {
+        this.pipelineMode = pipelineMode;
+        return this;
+    }
+
+    public String getPipelineWaitStrategy() {
+        return pipelineWaitStrategy;
+    }
+
+    public Configure setPipelineWaitStrategy(String pipelineWaitStrategy) {
+        this.pipelineWaitStrategy = pipelineWaitStrategy;
+        return this;
+    }
+
+    public int getShardRingBufferSize() {
+        return shardRingBufferSize;
+    }
+
+    public Configure setShardRingBufferSize(int shardRingBufferSize) {
+        this.shardRingBufferSize = shardRingBufferSize;
+        return this;
+    }
+
     public boolean isReportMetric() {
         return reportMetric;
     }
@@ -283,4 +430,12 @@ public class Configure {
     public void setReportMetricIntervalMs(int reportMetricIntervalMs) {
         this.reportMetricIntervalMs = reportMetricIntervalMs;
     }
+
+    public int getReportMetricHttpPort() {
+        return reportMetricHttpPort;
+    }
+
+    public void setReportMetricHttpPort(int reportMetricHttpPort) {
+        this.reportMetricHttpPort = reportMetricHttpPort;
+    }
 }
@@ -23,24 +23,46 @@ import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
 
 public class MetricHelper {
     private final static Logger logger = LoggerFactory.getLogger(MetricHelper.class);
 
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    // prometheus quantile label values
+    private static final String[] QUANTILE_NAMES = {"0.5", "0.99", "0.999"};
+
     private Configure configure;
     private ScheduledExecutorService scheduledExecutorService;
+    private MetricExporter metricExporter;
 
     private long start;
-    private AtomicLong buildTime;
-    private AtomicLong putTime;
-    private AtomicLong handleTime;
-    private AtomicLong commitTime;
-    private AtomicLong recordNum;
-    private AtomicLong commitNum;
+    private LongAdder recordNum;
+    private LongAdder commitNum;
+
+    // latencies in microseconds, per stage and per table or shard
+    private LatencyHistogram handleLatency;
+    private LatencyHistogram buildLatency;
+    private LatencyHistogram putLatency;
+    private LatencyHistogram commitLatency;
+    private ConcurrentMap<String, LatencyHistogram> tableHandleLatency;
+    private ConcurrentMap<String, LatencyHistogram> tableBuildLatency;
+    private ConcurrentMap<String, LatencyHistogram> shardPutLatency;
+
+    // queue depths, read when reported
+    private ConcurrentMap<String, LongSupplier> gauges;
+
+    // metrics of the last finished interval, served by the exporter
+    private volatile Map<String, Long> lastReport = Collections.emptyMap();
 
 
     private static MetricHelper metricHelper;
@@ -66,74 +88,156 @@ public class MetricHelper {
         if (scheduledExecutorService != null) {
             scheduledExecutorService.shutdownNow();
         }
+        if (metricExporter != null) {
+            metricExporter.stop();
+        }
     }
 
     private MetricHelper(Configure configure) {
         this.configure = configure;
 
-        buildTime = new AtomicLong();
-        putTime = new AtomicLong();
-        handleTime = new AtomicLong();
-        commitTime = new AtomicLong();
-        recordNum = new AtomicLong();
-        commitNum = new AtomicLong();
-        reset();
+        recordNum = new LongAdder();
+        commitNum = new LongAdder();
+        handleLatency = new LatencyHistogram();
+        buildLatency = new LatencyHistogram();
+        putLatency = new LatencyHistogram();
+        commitLatency = new LatencyHistogram();
+        tableHandleLatency = new ConcurrentHashMap<>();
+        tableBuildLatency = new ConcurrentHashMap<>();
+        shardPutLatency = new ConcurrentHashMap<>();
+        gauges = new ConcurrentHashMap<>();
+        start = System.currentTimeMillis();
 
         scheduledExecutorService = new ScheduledThreadPoolExecutor(1,
                 new BasicThreadFactory.Builder().namingPattern("Metric.Reporter-%d").daemon(true).build());
 
-        scheduledExecutorService.scheduleAtFixedRate(() -> {
-            report();
-            reset();
-        }, configure.getReportMetricIntervalMs(), configure.getReportMetricIntervalMs(), TimeUnit.MILLISECONDS);
+        scheduledExecutorService.scheduleAtFixedRate(this::report,
+                configure.getReportMetricIntervalMs(), configure.getReportMetricIntervalMs(), TimeUnit.MILLISECONDS);
+
+        metricExporter = new MetricExporter(this, configure.getReportMetricHttpPort());
+        metricExporter.start();
     }
 
     public void addRecord() {
-        recordNum.getAndIncrement();
+        recordNum.increment();
     }
 
     public void addCommit() {
-        commitNum.getAndIncrement();
+        commitNum.increment();
+    }
+
+    public void addHandleTime(String table, long nanos) {
+        record(handleLatency, tableHandleLatency, table, nanos);
     }
 
-    public void addBuildTime(long time) {
-        buildTime.getAndAdd(time);
+    public void addBuildTime(String table, long nanos) {
+        record(buildLatency, tableBuildLatency, table, nanos);
     }
 
-    public void addPutTime(long time) {
-        putTime.getAndAdd(time);
+    public void addPutTime(String topic, String shardId, long nanos) {
+        record(putLatency, shardPutLatency, topic + "/" + shardId, nanos);
     }
 
-    public void addHandleTime(long time) {
-        handleTime.getAndAdd(time);
+    public void addCommitTime(long nanos) {
+        commitLatency.record(TimeUnit.NANOSECONDS.toMicros(nanos));
     }
 
-    public void addCommitTime(long time) {
-        commitTime.getAndAdd(time);
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /**
+     * @return the metrics of the last report interval and the current queue depths, by name
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> metrics = new TreeMap<>(lastReport);
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            metrics.put("ogg_queue_depth{queue=\"" + entry.getKey() + "\"}", entry.getValue().getAsLong());
+        }
+        return metrics;
+    }
+
+    private static void record(LatencyHistogram total, ConcurrentMap<String, LatencyHistogram> histograms,
+                               String key, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        total.record(micros);
+        histograms.computeIfAbsent(key, k -> new LatencyHistogram()).record(micros);
     }
 
     private void report() {
-        StringBuilder builder = new StringBuilder(256);
+        long now = System.currentTimeMillis();
+        Map<String, Long> metrics = new TreeMap<>();
+        long records = recordNum.sumThenReset();
+        long commits = commitNum.sumThenReset();
+        metrics.put("ogg_record_num", records);
+        metrics.put("ogg_commit_num", commits);
+        metrics.put("ogg_interval_ms", now - start);
+
+        LatencyHistogram.Snapshot handle = handleLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot build = buildLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot put = putLatency.snapshotAndReset();
+        LatencyHistogram.Snapshot commit = commitLatency.snapshotAndReset();
+
+        StringBuilder builder = new StringBuilder(1024);
         builder.append("\n\t      ************* metric report *************\n");
-        builder.append("\t          Total   RecordNum\t\t").append(recordNum).append("\n");
-        builder.append("\t          Total   CommitNum\t\t").append(commitNum).append("\n");
-        builder.append("\t          Total   Consume(ms)\t\t").append(System.currentTimeMillis() - start).append("\n");
-        builder.append("\t          Handle  Consume(ms)\t\t").append(handleTime).append("\n");
-        builder.append("\t          Build   Consume(ms)\t\t").append(buildTime).append("\n");
-        builder.append("\t          Send    Consume(ms)\t\t").append(putTime).append("\n");
-        builder.append("\t          Commit  Consume(ms)\t\t").append(commitTime).append("\n");
+        builder.append("\t          Total   RecordNum\t\t").append(records).append("\n");
+        builder.append("\t          Total   CommitNum\t\t").append(commits).append("\n");
+        builder.append("\t          Total   Consume(ms)\t\t").append(now - start).append("\n");
+        builder.append("\t          Handle  Consume(ms)\t\t").append(handle.getSum() / 1000).append("\n");
+        builder.append("\t          Build   Consume(ms)\t\t").append(build.getSum() / 1000).append("\n");
+        builder.append("\t          Send    Consume(ms)\t\t").append(put.getSum() / 1000).append("\n");
+        builder.append("\t          Commit  Consume(ms)\t\t").append(commit.getSum() / 1000).append("\n");
+        builder.append("\t          Latency(us)\t\tp50/p99/p999/max\n");
+        report(metrics, builder, "handle", "", handle);
+        report(metrics, builder, "build", "", build);
+        report(metrics, builder, "put", "", put);
+        report(metrics, builder, "commit", "", commit);
+        report(metrics, builder, "handle", "table", tableHandleLatency);
+        report(metrics, builder, "build", "table", tableBuildLatency);
+        report(metrics, builder, "put", "shard", shardPutLatency);
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            builder.append("\t          QueueDepth ").append(entry.getKey()).append("\t\t")
+                    .append(entry.getValue().getAsLong()).append("\n");
+        }
         builder.append("\t       **************** end *****************\n");
 
+        lastReport = metrics;
+        start = now;
         logger.info(builder.toString());
     }
 
-    private void reset() {
-        buildTime.set(0);
-        putTime.set(0);
-        handleTime.set(0);
-        commitTime.set(0);
-        recordNum.set(0);
-        commitNum.set(0);
-        start = System.currentTimeMillis();
+    private void report(Map<String, Long> metrics, StringBuilder builder, String stage, String label,
+                        ConcurrentMap<String, LatencyHistogram> histograms) {
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue().snapshotAndReset();
+            if (snapshot.getCount() > 0) {
+                report(metrics, builder, stage, label + "=\"" + entry.getKey() + "\"", snapshot);
+            }
+        }
+    }
+
+    private void report(Map<String, Long> metrics, StringBuilder builder, String stage, String labels,
+                        LatencyHistogram.Snapshot snapshot) {
+        String name = "ogg_" + stage + "_latency_us";
+        String prefix = labels.isEmpty() ? "{" : "{" + labels + ",";
+        String suffix = labels.isEmpty() ? "" : "{" + labels + "}";
+        builder.append("\t          ").append(stage);
+        if (!labels.isEmpty()) {
+            builder.append(" ").append(labels);
+        }
+        builder.append("\t\t");
+        for (int i = 0; i < QUANTILES.length; i++) {
+            long value = snapshot.getValueAtQuantile(QUANTILES[i]);
+            metrics.put(name + prefix + "quantile=\"" + QUANTILE_NAMES[i] + "\"}", value);
+            builder.append(value).append("/");
+        }
+        builder.append(snapshot.getMax()).append("\n");
+        metrics.put(name + "_max" + suffix, snapshot.getMax());
+        metrics.put(name + "_sum" + suffix, snapshot.getSum());
+        metrics.put(name + "_count" + suffix, snapshot.getCount());
     }
 }
@@ -19,86 +19,94 @@
 
 package com.aliyun.odps.ogg.handler.datahub.modle;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Created by lyf0429 on 16/5/16.
  */
 public class PluginStatictics {
-    private static long totalInserts = 0L;
-    private static long totalUpdates = 0L;
-    private static long totalDeletes =  0L;
-    private static long totalTxns = 0L;
-    private static long totalOperations = 0L;
-    private static long sendTimesInTx = 0L;
+    private static final LongAdder totalInserts = new LongAdder();
+    private static final LongAdder totalUpdates = new LongAdder();
+    private static final LongAdder totalDeletes = new LongAdder();
+    private static final LongAdder totalTxns = new LongAdder();
+    private static final LongAdder totalOperations = new LongAdder();
+    private static final LongAdder sendTimesInTx = new LongAdder();
 
     public static long getTotalInserts() {
-        return totalInserts;
+        return totalInserts.sum();
     }
 
     public static void setTotalInserts(long totalInserts) {
-        PluginStatictics.totalInserts = totalInserts;
+        set(PluginStatictics.totalInserts, totalInserts);
     }
 
     public static void addTotalInserts() {
-        totalInserts++;
+        totalInserts.increment();
     }
 
     public static long getTotalUpdates() {
-        return totalUpdates;
+        return totalUpdates.sum();
     }
 
     public static void setTotalUpdates(long totalUpdates) {
-        PluginStatictics.totalUpdates = totalUpdates;
+        set(PluginStatictics.totalUpdates, totalUpdates);
     }
 
     public static void addTotalUpdates() {
-        totalUpdates++;
+        totalUpdates.increment();
     }
 
     public static long getTotalDeletes() {
-        return totalDeletes;
+        return totalDeletes.sum();
     }
 
     public static void setTotalDeletes(long totalDeletes) {
-        PluginStatictics.totalDeletes = totalDeletes;
+        set(PluginStatictics.totalDeletes, totalDeletes);
     }
 
     public static void addTotalDeletes() {
-        totalDeletes++;
+        totalDeletes.increment();
     }
 
     public static long getTotalTxns() {
-        return totalTxns;
+        return totalTxns.sum();
     }
 
     public static void setTotalTxns(long totalTxns) {
-        PluginStatictics.totalTxns = totalTxns;
+        set(PluginStatictics.totalTxns, totalTxns);
     }
 
     public static void addTotalTxns() {
-        totalTxns++;
+        totalTxns.increment();
     }
 
     public static long getTotalOperations() {
-        return totalOperations;
+        return totalOperations.sum();
     }
 
     public static void setTotalOperations(long totalOperations) {
-        PluginStatictics.totalOperations = totalOperations;
+        set(PluginStatictics.totalOperations, totalOperations);
     }
 
     public static void addTotalOperations() {
-        totalOperations++;
+        totalOperations.increment();
     }
 
     public static long getSendTimesInTx() {
-        return sendTimesInTx;
+        return sendTimesInTx.sum();
     }
 
     public static void setSendTimesInTx(long sendTimesInTx) {
-        PluginStatictics.sendTimesInTx = sendTimesInTx;
+        set(PluginStatictics.sendTimesInTx, sendTimesInTx);
     }
 
     public static void addSendTimesInTx() {
-        sendTimesInTx++;
+        sendTimesInTx.increment();
+    }
+
+    // only meant for resets, an add racing with it may be lost
+    private static void set(LongAdder adder, long value) {
+        adder.reset();
+        adder.add(value);
     }
 }
@@ -20,6 +20,7 @@
 package com.aliyun.odps.ogg.handler.datahub.modle;
 
 import com.aliyun.datahub.client.model.RecordSchema;
+import com.aliyun.odps.ogg.handler.datahub.BuildDispatcher;
 import com.aliyun.odps.ogg.handler.datahub.TableRecordBuilder;
 import com.aliyun.odps.ogg.handler.datahub.TopicWriter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -70,6 +71,13 @@ public class TableMapping {
 
     private int buildSpeed = 1;
 
+    private String buildDispatch = "rowid";
+
+    private boolean buildResequence = true;
+
+    @JsonIgnore
+    private BuildDispatcher buildDispatcher;
+
     @JsonIgnore
     private List<TableRecordBuilder> tableRecordBuilders;
 
@@ -238,6 +246,30 @@ public class TableMapping {
         }
     }
 
+    public String getBuildDispatch() {
+        return buildDispatch;
+    }
+
+    public void setBuildDispatch(String buildDispatch) {
+        this.buildDispatch = buildDispatch;
+    }
+
+    public boolean isBuildResequence() {
+        return buildResequence;
+    }
+
+    public void setBuildResequence(boolean buildResequence) {
+        this.buildResequence = buildResequence;
+    }
+
+    public BuildDispatcher getBuildDispatcher() {
+        return buildDispatcher;
+    }
+
+    public void setBuildDispatcher(BuildDispatcher buildDispatcher) {
+        this.buildDispatcher = buildDispatcher;
+    }
+
     public List<TableRecordBuilder> getTableRecordBuilders() {
         return tableRecordBuilders;
     }
@@ -39,7 +39,8 @@ public abstract class OperationHandler {
     protected void processOperation(Op op, Configure configure) {
 
         while (!RecordBuilder.instance().buildRecord(op, getOperateType(),
-                Long.toString(HandlerInfoManager.instance().getRecordId()))) {
+                Long.toString(HandlerInfoManager.instance().getRecordId()),
+                HandlerInfoManager.instance().getCurrentPosition())) {
             logger.warn("add record to record build failed, will retry after [{}] ms, table: {}.",
                     ADD_RECORD_RETRY_INTERVAL_MS, op.getTableName().getFullName().toLowerCase());
 
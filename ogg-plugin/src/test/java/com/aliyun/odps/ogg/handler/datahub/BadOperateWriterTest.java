@@ -41,6 +41,7 @@ import org.testng.annotations.Test;
 import java.io.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by lyf0429 on 16/5/25.
@@ -195,4 +196,28 @@ public class BadOperateWriterTest {
         Assert.assertTrue(record.getBooleanValue("boolean_field"));
         Assert.assertEquals(record.getBigDecimal("decimal_field"), new BigDecimal("3.1415926"));
     }
+
+    @Test
+    public void testAckOnceWritten() throws Exception {
+        RecordEntry recordEntry = new RecordEntry();
+        AtomicInteger acked = new AtomicInteger();
+        BadOperateWriter.write(recordEntry, "ogg_test.t_person", "t_person", fileName, 10000, "sync",
+                acked::incrementAndGet);
+        Assert.assertEquals(acked.get(), 1);
+
+        // not started, so the record waits in the queue and is not acked yet
+        DirtyRecordSink sink = new DirtyRecordSink(fileName, 1, 1, 0, 0, 1, false);
+        BadOperateWriter.init(sink);
+        try {
+            BadOperateWriter.write(recordEntry, "ogg_test.t_person", "t_person", fileName, 10000, "queued",
+                    acked::incrementAndGet);
+            Assert.assertEquals(acked.get(), 1);
+            sink.start();
+            Assert.assertTrue(sink.flush(5000));
+            Assert.assertEquals(acked.get(), 2);
+        } finally {
+            BadOperateWriter.destroy();
+        }
+        Assert.assertEquals(FileUtils.readLines(new File(fileName), "UTF-8").size(), 2);
+    }
 }
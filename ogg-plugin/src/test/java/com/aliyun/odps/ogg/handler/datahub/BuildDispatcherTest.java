@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.RecordEntry;
+import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
+import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class BuildDispatcherTest {
+
+    private TableMapping tableMapping;
+    private List<Long> written;
+    private TopicWriter topicWriter;
+
+    @BeforeMethod
+    public void setUp() {
+        tableMapping = new TableMapping();
+        tableMapping.setOracleFullTableName("ogg_test.t_person");
+        tableMapping.setTopicName("t_person");
+        written = new ArrayList<>();
+        topicWriter = new TopicWriter(new Configure(), tableMapping, null) {
+            @Override
+            public synchronized void writeRecord(RecordEntry recordEntry, HandlerInfoManager.Position position) {
+                written.add(recordEntry.getSequence());
+            }
+        };
+    }
+
+    @Test
+    public void testResequence() {
+        BuildDispatcher dispatcher = new BuildDispatcher(BuildDispatcher.Mode.ROUND_ROBIN, true, tableMapping, topicWriter);
+        long[] sequences = new long[6];
+        for (int i = 0; i < sequences.length; i++) {
+            Assert.assertEquals(dispatcher.select(null, 3), i % 3);
+            sequences[i] = dispatcher.nextSequence();
+        }
+
+        dispatcher.write(sequences[2], record(2), null);
+        dispatcher.write(sequences[1], record(1), null);
+        Assert.assertTrue(written.isEmpty());
+        Assert.assertEquals(dispatcher.getWaiting(), 2);
+
+        dispatcher.write(sequences[0], record(0), null);
+        Assert.assertEquals(written, Arrays.asList(0L, 1L, 2L));
+
+        // a dirty operation leaves a gap that is skipped
+        dispatcher.write(sequences[5], record(5), null);
+        dispatcher.skip(sequences[3]);
+        Assert.assertEquals(written, Arrays.asList(0L, 1L, 2L));
+        dispatcher.write(sequences[4], record(4), null);
+        Assert.assertEquals(written, Arrays.asList(0L, 1L, 2L, 4L, 5L));
+        Assert.assertEquals(dispatcher.getWaiting(), 0);
+    }
+
+    @Test
+    public void testWithoutResequence() {
+        BuildDispatcher dispatcher = new BuildDispatcher(BuildDispatcher.Mode.ROUND_ROBIN, false, tableMapping, topicWriter);
+        Assert.assertEquals(dispatcher.nextSequence(), -1);
+        dispatcher.write(-1, record(7), null);
+        dispatcher.skip(-1);
+        Assert.assertEquals(written, Arrays.asList(7L));
+    }
+
+    @Test
+    public void testParseMode() {
+        Assert.assertEquals(BuildDispatcher.Mode.parse("primaryKey"), BuildDispatcher.Mode.PRIMARY_KEY);
+        Assert.assertEquals(BuildDispatcher.Mode.parse("ROWID"), BuildDispatcher.Mode.ROWID);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testParseInvalidMode() {
+        BuildDispatcher.Mode.parse("random");
+    }
+
+    private static RecordEntry record(long sequence) {
+        RecordEntry recordEntry = new RecordEntry();
+        recordEntry.setSequence(sequence);
+        return recordEntry;
+    }
+}
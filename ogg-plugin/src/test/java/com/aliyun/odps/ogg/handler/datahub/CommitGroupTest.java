@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CommitGroupTest {
+
+    @Test
+    public void testFlushWhenFull() {
+        CommitGroup group = new CommitGroup(5, 60 * 1000);
+        long now = System.currentTimeMillis();
+        for (int tx = 0; tx < 2; tx++) {
+            group.addOperation();
+            group.addOperation();
+            Assert.assertFalse(group.commit(now));
+        }
+        group.addOperation();
+        Assert.assertTrue(group.commit(now));
+        Assert.assertEquals(group.getOperations(), 0);
+
+        group.addOperation();
+        Assert.assertFalse(group.commit(now));
+    }
+
+    @Test
+    public void testFlushWhenTimeout() {
+        CommitGroup group = new CommitGroup(1000, 100);
+        group.addOperation();
+        long now = System.currentTimeMillis();
+        Assert.assertFalse(group.commit(now));
+        Assert.assertFalse(group.commit(now + 50));
+        Assert.assertTrue(group.commit(now + 200));
+    }
+
+    @Test
+    public void testEmptyTransactionsTimeout() {
+        CommitGroup group = new CommitGroup(10, 100);
+        Assert.assertFalse(group.commit(1000));
+        Assert.assertTrue(group.commit(1100));
+        Assert.assertFalse(group.commit(1150));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class DirtyRecordSinkTest {
+
+    private File dir = new File("target/dirty_record_sink_test");
+
+    private File file = new File(dir, "dirty.txt");
+
+    @BeforeMethod
+    public void setUpBeforeMethod() throws IOException {
+        tearDownAfterMethod();
+        FileUtils.forceMkdir(dir);
+    }
+
+    @AfterMethod
+    public void tearDownAfterMethod() throws IOException {
+        if (dir.exists()) {
+            FileUtils.forceDelete(dir);
+        }
+    }
+
+    @Test
+    public void testAppendInBatches() throws Exception {
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 100, 10, 0, 0, 1, false);
+        AtomicInteger acked = new AtomicInteger();
+        sink.start();
+        for (int i = 0; i < 50; i++) {
+            String line = "record" + i;
+            sink.append(() -> line, acked::incrementAndGet);
+        }
+        Assert.assertTrue(sink.flush(5000));
+        sink.stop(5000);
+
+        List<String> lines = FileUtils.readLines(file, "UTF-8");
+        Assert.assertEquals(lines.size(), 50);
+        Assert.assertEquals(lines.get(49), "record49");
+        Assert.assertEquals(sink.getWritten(), 50);
+        Assert.assertEquals(acked.get(), 50);
+        Assert.assertEquals(sink.getLost(), 0);
+    }
+
+    @Test
+    public void testBlockWhenQueueFull() throws Exception {
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 2, 10, 0, 0, 1, false);
+        AtomicInteger acked = new AtomicInteger();
+        // not started, nothing is taken from the queue
+        sink.append(() -> "a", acked::incrementAndGet);
+        sink.append(() -> "b", acked::incrementAndGet);
+        Thread appender = new Thread(() -> sink.append(() -> "c", acked::incrementAndGet));
+        appender.start();
+        appender.join(200);
+        Assert.assertTrue(appender.isAlive());
+        Assert.assertEquals(acked.get(), 0);
+
+        sink.start();
+        appender.join(5000);
+        Assert.assertFalse(appender.isAlive());
+        Assert.assertTrue(sink.flush(5000));
+        sink.stop(5000);
+        Assert.assertEquals(FileUtils.readLines(file, "UTF-8"), Arrays.asList("a", "b", "c"));
+        Assert.assertEquals(acked.get(), 3);
+        try {
+            sink.append("d");
+            Assert.fail("stopped sink accepted a record");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRetryFailedWrite() throws Exception {
+        // the file can't be opened while a directory is in its place
+        FileUtils.forceMkdir(file);
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 10, 10, 0, 0, 1, false);
+        AtomicInteger acked = new AtomicInteger();
+        sink.start();
+        sink.append(() -> "a", acked::incrementAndGet);
+        Assert.assertFalse(sink.flush(300));
+        Assert.assertEquals(acked.get(), 0);
+
+        FileUtils.forceDelete(file);
+        Assert.assertTrue(sink.flush(5000));
+        sink.stop(5000);
+        Assert.assertEquals(FileUtils.readLines(file, "UTF-8"), Arrays.asList("a"));
+        Assert.assertEquals(acked.get(), 1);
+    }
+
+    @Test
+    public void testFormatOnWriterThread() throws Exception {
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 10, 10, 0, 0, 1, false);
+        List<String> acked = new CopyOnWriteArrayList<>();
+        Thread caller = Thread.currentThread();
+        sink.append(() -> Thread.currentThread() == caller ? "caller" : "writer", () -> acked.add("writer"));
+        sink.append(() -> {
+            throw new IllegalStateException("bad record");
+        }, () -> acked.add("bad"));
+        sink.append(() -> "last", () -> acked.add("last"));
+
+        sink.start();
+        Assert.assertTrue(sink.flush(5000));
+        Assert.assertEquals(FileUtils.readLines(file, "UTF-8"), Arrays.asList("writer", "last"));
+        Assert.assertEquals(acked, Arrays.asList("writer", "last"));
+        Assert.assertEquals(sink.getWritten(), 2);
+        Assert.assertEquals(sink.getLost(), 1);
+        // a record that can't be formatted is never acked, so the sink fails the caller
+        try {
+            sink.append("next");
+            Assert.fail("failed sink accepted a record");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        sink.stop(5000);
+    }
+
+    @Test
+    public void testRollOnSizeWithRetention() throws Exception {
+        // every batch of one 10 char line exceeds the limit and rolls before the next one
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 100, 1, 5, 0, 2, false);
+        sink.start();
+        for (int i = 0; i < 5; i++) {
+            sink.append("record-00" + i);
+            Assert.assertTrue(sink.flush(5000));
+        }
+        sink.stop(5000);
+
+        File[] rolled = sink.listRolled();
+        Assert.assertEquals(rolled.length, 2);
+        Assert.assertEquals(FileUtils.readFileToString(rolled[0], "UTF-8"), "record-002\n");
+        Assert.assertEquals(FileUtils.readFileToString(rolled[1], "UTF-8"), "record-003\n");
+        Assert.assertEquals(FileUtils.readFileToString(file, "UTF-8"), "record-004\n");
+    }
+
+    @Test
+    public void testRollOnTimeCompressed() throws Exception {
+        DirtyRecordSink sink = new DirtyRecordSink(file.getPath(), 100, 10, 0, 200, 5, true);
+        sink.start();
+        sink.append("old");
+        Assert.assertTrue(sink.flush(5000));
+        // an idle file rolls too
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sink.listRolled().length == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        sink.append("new");
+        Assert.assertTrue(sink.flush(5000));
+        sink.stop(5000);
+
+        File[] rolled = sink.listRolled();
+        Assert.assertEquals(rolled.length, 1);
+        Assert.assertTrue(rolled[0].getName().endsWith(".gz"));
+        try (InputStream in = new GZIPInputStream(new FileInputStream(rolled[0]))) {
+            byte[] bytes = new byte[16];
+            int n = in.read(bytes);
+            Assert.assertEquals(new String(bytes, 0, n, StandardCharsets.UTF_8), "old\n");
+        }
+        Assert.assertEquals(FileUtils.readFileToString(file, "UTF-8"), "new\n");
+    }
+}
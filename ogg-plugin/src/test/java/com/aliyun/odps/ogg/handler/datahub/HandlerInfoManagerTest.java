@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class HandlerInfoManagerTest {
+
+    private String fileName = "handler_info_test.chk";
+
+    private Configure configure;
+
+    @BeforeMethod
+    public void setUpBeforeMethod() throws IOException {
+        tearDownAfterMethod();
+        configure = new Configure();
+        configure.setCheckPointFileName(fileName);
+    }
+
+    @AfterMethod
+    public void tearDownAfterMethod() throws IOException {
+        for (File file : new File[]{new File(fileName), new File(fileName + ".tmp")}) {
+            if (file.exists()) {
+                FileUtils.forceDelete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testSaveLowWatermark() {
+        HandlerInfoManager manager = new HandlerInfoManager(configure);
+        HandlerInfoManager.Position p1 = manager.updateHandlerInfos(1, "0001");
+        HandlerInfoManager.Position p2 = manager.updateHandlerInfos(1, "0002");
+        HandlerInfoManager.Position p3 = manager.updateHandlerInfos(1, "0003");
+        Assert.assertEquals(manager.getSendPosition(), "0003");
+
+        // nothing acked yet, no checkpoint written
+        manager.saveHandlerInfos();
+        Assert.assertFalse(new File(fileName).exists());
+
+        p1.ack();
+        p3.ack();
+        manager.saveHandlerInfos();
+        Assert.assertEquals(manager.getAckedPosition(), "0001");
+        Assert.assertEquals(new HandlerInfoManager(configure).getSendPosition(), "0001");
+
+        p2.ack();
+        manager.saveHandlerInfos();
+        Assert.assertEquals(manager.getAckedPosition(), "0003");
+
+        HandlerInfoManager restored = new HandlerInfoManager(configure);
+        Assert.assertEquals(restored.getSendPosition(), "0003");
+        Assert.assertEquals(restored.getRecordId(), 10002);
+        Assert.assertFalse(new File(fileName + ".tmp").exists());
+    }
+
+    @Test
+    public void testStopSavesCheckpoint() {
+        configure.setCheckPointIntervalMs(60 * 1000);
+        HandlerInfoManager manager = new HandlerInfoManager(configure);
+        manager.start();
+        manager.updateHandlerInfos(2, "0010").ack();
+        manager.stop();
+
+        Assert.assertEquals(new HandlerInfoManager(configure).getSendPosition(), "0010");
+    }
+
+    @Test
+    public void testCheckPointFileDisable() {
+        configure.setCheckPointFileDisable(true);
+        HandlerInfoManager manager = new HandlerInfoManager(configure);
+        manager.start();
+        manager.updateHandlerInfos(3, "0100").ack();
+        manager.stop();
+
+        Assert.assertFalse(new File(fileName).exists());
+    }
+}
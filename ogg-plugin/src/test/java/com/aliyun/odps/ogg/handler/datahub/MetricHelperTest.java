@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
+import com.aliyun.odps.ogg.handler.datahub.modle.LatencyHistogram;
+import com.aliyun.odps.ogg.handler.datahub.modle.MetricExporter;
+import com.aliyun.odps.ogg.handler.datahub.modle.MetricHelper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class MetricHelperTest {
+
+    @Test
+    public void testHistogramQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        Assert.assertEquals(snapshot.getCount(), 1000);
+        Assert.assertEquals(snapshot.getSum(), 500500);
+        Assert.assertEquals(snapshot.getMax(), 1000);
+        assertWithin(snapshot.getValueAtQuantile(0.5), 500);
+        assertWithin(snapshot.getValueAtQuantile(0.99), 990);
+        Assert.assertEquals(snapshot.getValueAtQuantile(1.0), 1000);
+
+        // reset by the snapshot
+        Assert.assertEquals(histogram.snapshotAndReset().getCount(), 0);
+        Assert.assertEquals(histogram.snapshotAndReset().getValueAtQuantile(0.99), 0);
+    }
+
+    @Test
+    public void testHistogramLargeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        Assert.assertEquals(snapshot.getValueAtQuantile(0.5), 3);
+        Assert.assertEquals(snapshot.getValueAtQuantile(0.999), Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testGaugeExportedOverJmx() throws Exception {
+        Configure configure = new Configure();
+        configure.setReportMetric(true);
+        MetricHelper.init(configure);
+        try {
+            MetricHelper.instance().registerGauge("t.RecordBuilder-0", () -> 42);
+            Object value = ManagementFactory.getPlatformMBeanServer().getAttribute(
+                    new ObjectName(MetricExporter.OBJECT_NAME), "ogg_queue_depth{queue=\"t.RecordBuilder-0\"}");
+            Assert.assertEquals(value, 42L);
+
+            MetricHelper.instance().unregisterGauge("t.RecordBuilder-0");
+            Assert.assertTrue(MetricHelper.instance().snapshot().isEmpty());
+        } finally {
+            MetricHelper.destroy();
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName(MetricExporter.OBJECT_NAME)));
+    }
+
+    @Test
+    public void testPrometheusNames() throws Exception {
+        Configure configure = new Configure();
+        configure.setReportMetric(true);
+        configure.setReportMetricIntervalMs(50);
+        MetricHelper.init(configure);
+        try {
+            for (int i = 1; i <= 100; i++) {
+                MetricHelper.instance().addPutTime("topic", "0", i * 1000L);
+            }
+            Map<String, Long> metrics = MetricHelper.instance().snapshot();
+            for (int i = 0; i < 100 && metrics.isEmpty(); i++) {
+                Thread.sleep(50);
+                metrics = MetricHelper.instance().snapshot();
+            }
+
+            Assert.assertEquals(metrics.get("ogg_put_latency_us_count"), Long.valueOf(100));
+            Assert.assertEquals(metrics.get("ogg_put_latency_us_sum"), Long.valueOf(5050));
+            Assert.assertEquals(metrics.get("ogg_put_latency_us_max"), Long.valueOf(100));
+            Assert.assertEquals(metrics.get("ogg_put_latency_us_count{shard=\"topic/0\"}"), Long.valueOf(100));
+            Assert.assertTrue(metrics.containsKey("ogg_put_latency_us{quantile=\"0.5\"}"));
+            Assert.assertTrue(metrics.containsKey("ogg_put_latency_us{shard=\"topic/0\",quantile=\"0.99\"}"));
+
+            // every quantile label is a number, as the prometheus text format requires
+            Pattern quantile = Pattern.compile("quantile=\"([^\"]*)\"");
+            for (String name : metrics.keySet()) {
+                Matcher matcher = quantile.matcher(name);
+                if (matcher.find()) {
+                    double value = Double.parseDouble(matcher.group(1));
+                    Assert.assertTrue(value > 0 && value < 1, name);
+                }
+            }
+        } finally {
+            MetricHelper.destroy();
+        }
+    }
+
+    // a bucket covers 1/16 of its power of two
+    private static void assertWithin(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 16, "value " + actual);
+    }
+}
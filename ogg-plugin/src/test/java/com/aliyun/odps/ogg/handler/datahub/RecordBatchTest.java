@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.RecordEntry;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RecordBatchTest {
+
+    @Test
+    public void testAckWaitsForDirtyRecords() {
+        RecordBatch recordBatch = new RecordBatch();
+        HandlerInfoManager.Position first = new HandlerInfoManager.Position(1, "1");
+        HandlerInfoManager.Position second = new HandlerInfoManager.Position(2, "2");
+        recordBatch.add(new RecordEntry(), first);
+        recordBatch.add(new RecordEntry(), second);
+
+        Runnable dirty1 = recordBatch.holdAck();
+        Runnable dirty2 = recordBatch.holdAck();
+        recordBatch.ack();
+        dirty2.run();
+        Assert.assertFalse(first.isAcked());
+        Assert.assertFalse(second.isAcked());
+
+        dirty1.run();
+        Assert.assertTrue(first.isAcked());
+        Assert.assertTrue(second.isAcked());
+    }
+
+    @Test
+    public void testAckWithoutDirtyRecords() {
+        RecordBatch recordBatch = new RecordBatch();
+        HandlerInfoManager.Position position = new HandlerInfoManager.Position(1, "1");
+        recordBatch.add(new RecordEntry(), position);
+        recordBatch.ack();
+        Assert.assertTrue(position.isAcked());
+    }
+}
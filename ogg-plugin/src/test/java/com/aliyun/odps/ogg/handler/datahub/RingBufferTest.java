@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RingBufferTest {
+
+    private static class Slot {
+        long value;
+    }
+
+    @Test
+    public void testCapacityRoundedUp() {
+        Assert.assertEquals(new RingBuffer<>(1000, RingBuffer.WaitStrategy.PARK, Slot::new).getCapacity(), 1024);
+        Assert.assertEquals(new RingBuffer<>(8, RingBuffer.WaitStrategy.PARK, Slot::new).getCapacity(), 8);
+    }
+
+    @Test
+    public void testProducerConsumerInOrder() throws Exception {
+        for (RingBuffer.WaitStrategy waitStrategy : RingBuffer.WaitStrategy.values()) {
+            final RingBuffer<Slot> ringBuffer = new RingBuffer<>(16, waitStrategy, Slot::new);
+            // busy spinning threads sharing a core only progress once per time slice
+            final int total = waitStrategy == RingBuffer.WaitStrategy.BUSY_SPIN ? 1000 : 100000;
+            final AtomicReference<String> error = new AtomicReference<>();
+
+            Thread consumer = new Thread(() -> {
+                long next = 0;
+                while (next < total) {
+                    long available = ringBuffer.waitFor(next, 1, TimeUnit.SECONDS);
+                    for (; next <= available; next++) {
+                        if (ringBuffer.get(next).value != next) {
+                            error.set("expect " + next + " but " + ringBuffer.get(next).value);
+                            return;
+                        }
+                    }
+                    ringBuffer.release(next - 1);
+                }
+            });
+            consumer.start();
+
+            for (long i = 0; i < total; i++) {
+                long sequence = ringBuffer.next(1);
+                ringBuffer.get(sequence).value = i;
+                ringBuffer.publish(sequence);
+            }
+            ringBuffer.drain();
+            consumer.join();
+
+            Assert.assertNull(error.get(), waitStrategy.name());
+            Assert.assertTrue(ringBuffer.isEmpty());
+        }
+    }
+
+    @Test
+    public void testBatchedClaim() {
+        RingBuffer<Slot> ringBuffer = new RingBuffer<>(8, RingBuffer.WaitStrategy.PARK, Slot::new);
+        long hi = ringBuffer.next(8);
+        Assert.assertEquals(hi, 7);
+        for (long s = hi - 7; s <= hi; s++) {
+            ringBuffer.get(s).value = s;
+        }
+        ringBuffer.publish(hi);
+        Assert.assertEquals(ringBuffer.waitFor(0, 0, TimeUnit.MILLISECONDS), 7);
+        ringBuffer.release(3);
+        Assert.assertEquals(ringBuffer.next(4), 11);
+        Assert.assertEquals(ringBuffer.get(11), ringBuffer.get(3));
+    }
+
+    @Test
+    public void testWaitForTimeout() {
+        RingBuffer<Slot> ringBuffer = new RingBuffer<>(4, RingBuffer.WaitStrategy.PARK, Slot::new);
+        Assert.assertEquals(ringBuffer.waitFor(0, 10, TimeUnit.MILLISECONDS), -1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testHaltFailsWaitingProducer() throws Exception {
+        final RingBuffer<Slot> ringBuffer = new RingBuffer<>(2, RingBuffer.WaitStrategy.PARK, Slot::new);
+        ringBuffer.publish(ringBuffer.next(2));
+
+        Thread halter = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            ringBuffer.halt();
+        });
+        halter.start();
+        // full, blocks until halted
+        ringBuffer.next(1);
+    }
+}
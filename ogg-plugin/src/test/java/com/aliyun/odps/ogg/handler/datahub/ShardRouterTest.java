@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.ShardEntry;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShardRouterTest {
+
+    @Test
+    public void testCreate() {
+        Assert.assertTrue(ShardRouter.create(null) instanceof ModuloShardRouter);
+        Assert.assertTrue(ShardRouter.create("consistentHash") instanceof ConsistentHashShardRouter);
+        Assert.assertTrue(ShardRouter.create("hashKeyRange") instanceof HashKeyRangeShardRouter);
+        Assert.assertTrue(ShardRouter.create(ModuloShardRouter.class.getName()) instanceof ModuloShardRouter);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testCreateInvalid() {
+        ShardRouter.create("java.lang.String");
+    }
+
+    @Test
+    public void testModulo() {
+        ShardRouter router = new ModuloShardRouter();
+        router.update(shards("0", "1", "2"));
+        Assert.assertEquals(router.route("abc"), ("abc".hashCode() % 3 + 3) % 3);
+        Assert.assertFalse(router.isStable());
+    }
+
+    @Test
+    public void testConsistentHashMovesOnlyRemovedShard() {
+        ShardRouter router = new ConsistentHashShardRouter();
+        List<ShardEntry> before = shards("0", "1", "2", "3");
+        router.update(before);
+        String[] routed = new String[10000];
+        int[] perShard = new int[4];
+        for (int i = 0; i < routed.length; i++) {
+            int idx = router.route("key" + i);
+            routed[i] = before.get(idx).getShardId();
+            perShard[idx]++;
+        }
+        for (int count : perShard) {
+            Assert.assertTrue(count > 1000, "unbalanced: " + Arrays.toString(perShard));
+        }
+
+        // shard 1 is merged away, shard 4 shows up
+        List<ShardEntry> after = shards("0", "2", "3", "4");
+        router.update(after);
+        for (int i = 0; i < routed.length; i++) {
+            String shardId = after.get(router.route("key" + i)).getShardId();
+            if (!"1".equals(routed[i]) && !"4".equals(shardId)) {
+                Assert.assertEquals(shardId, routed[i], "key" + i);
+            }
+        }
+    }
+
+    @Test
+    public void testHashKeyRangeSplit() {
+        ShardRouter router = new HashKeyRangeShardRouter();
+        List<ShardEntry> before = new ArrayList<>();
+        before.add(shard("0", "00000000000000000000000000000000", "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        before.add(shard("1", "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        router.update(before);
+        for (int i = 0; i < 1000; i++) {
+            String hashKey = HashKeyRangeShardRouter.hashKey("key" + i);
+            int expected = hashKey.compareTo("7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF") < 0 ? 0 : 1;
+            Assert.assertEquals(router.route("key" + i), expected, hashKey);
+        }
+
+        // shard 0 split into 2 and 3, listed by shard id
+        List<ShardEntry> after = new ArrayList<>();
+        after.add(before.get(1));
+        after.add(shard("2", "00000000000000000000000000000000", "3FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        after.add(shard("3", "3FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF"));
+        router.update(after);
+        for (int i = 0; i < 1000; i++) {
+            String hashKey = HashKeyRangeShardRouter.hashKey("key" + i);
+            String shardId = after.get(router.route("key" + i)).getShardId();
+            if (hashKey.compareTo("3FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF") < 0) {
+                Assert.assertEquals(shardId, "2");
+            } else if (hashKey.compareTo("7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF") < 0) {
+                Assert.assertEquals(shardId, "3");
+            } else {
+                Assert.assertEquals(shardId, "1");
+            }
+        }
+    }
+
+    @Test
+    public void testHashKeyFormat() {
+        // md5("abc")
+        Assert.assertEquals(HashKeyRangeShardRouter.hashKey("abc"), "900150983CD24FB0D6963F7D28E17F72");
+    }
+
+    private static List<ShardEntry> shards(String... shardIds) {
+        List<ShardEntry> shards = new ArrayList<>();
+        for (String shardId : shardIds) {
+            shards.add(shard(shardId, null, null));
+        }
+        return shards;
+    }
+
+    private static ShardEntry shard(String shardId, String beginHashKey, String endHashKey) {
+        ShardEntry shard = new ShardEntry();
+        shard.setShardId(shardId);
+        shard.setBeginHashKey(beginHashKey);
+        shard.setEndHashKey(endHashKey);
+        return shard;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.DatahubClient;
+import com.aliyun.datahub.client.exception.DatahubClientException;
+import com.aliyun.datahub.client.model.ListShardResult;
+import com.aliyun.datahub.client.model.PutErrorEntry;
+import com.aliyun.datahub.client.model.PutRecordsResult;
+import com.aliyun.datahub.client.model.RecordEntry;
+import com.aliyun.datahub.client.model.ShardEntry;
+import com.aliyun.datahub.client.model.ShardState;
+import com.aliyun.odps.ogg.handler.datahub.modle.Configure;
+import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TopicWriterTest {
+
+    private String fileName = "topic_writer_test.chk";
+
+    private Configure configure;
+    private TableMapping tableMapping;
+    private HandlerInfoManager handlerInfoManager;
+
+    private static final String MIN_HASH_KEY = "00000000000000000000000000000000";
+    private static final String MID_HASH_KEY = "7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+    private static final String MAX_HASH_KEY = "FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+
+    // first sequence of every put that reached the fake DataHub, in the order they landed
+    private List<Long> landed;
+    // records in the order they were written and the shard each of them landed on
+    private List<RecordEntry> written;
+    private Map<RecordEntry, String> landedShards;
+    private AtomicInteger running;
+    private AtomicInteger maxRunning;
+    // shards listed by the fake DataHub, puts to sealedShard fail with InvalidShardOperation
+    private volatile List<ShardEntry> shards;
+    private volatile String sealedShard;
+    private AtomicInteger sealedPuts;
+
+    private interface Put {
+        void put(long sequence) throws Exception;
+    }
+
+    @BeforeMethod
+    public void setUpBeforeMethod() throws IOException {
+        tearDownAfterMethod();
+        configure = new Configure();
+        configure.setCheckPointFileName(fileName);
+        configure.setBatchSize(1);
+        configure.setRetryIntervalMs(10);
+
+        tableMapping = new TableMapping();
+        tableMapping.setOracleFullTableName("ogg_test.t_person");
+        tableMapping.setProjectName("test_project");
+        tableMapping.setTopicName("test_topic");
+
+        handlerInfoManager = new HandlerInfoManager(configure);
+        landed = Collections.synchronizedList(new ArrayList<>());
+        written = new ArrayList<>();
+        landedShards = Collections.synchronizedMap(new IdentityHashMap<>());
+        running = new AtomicInteger();
+        maxRunning = new AtomicInteger();
+        shards = Collections.singletonList(shard("0", ShardState.ACTIVE, MIN_HASH_KEY, MAX_HASH_KEY));
+        sealedShard = null;
+        sealedPuts = new AtomicInteger();
+    }
+
+    @AfterMethod
+    public void tearDownAfterMethod() throws IOException {
+        for (File file : new File[]{new File(fileName), new File(fileName + ".tmp")}) {
+            if (file.exists()) {
+                FileUtils.forceDelete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testMaxInFlight() throws Exception {
+        configure.setPutRecordMaxInFlight(3);
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        TopicWriter writer = start(sequence -> (sequence == 0 ? first : gate).await(10, TimeUnit.SECONDS));
+        try {
+            // batch 0 holds the writer until all other batches are queued
+            write(writer, 6);
+            first.countDown();
+            waitFor(() -> running.get() == 3);
+            Thread.sleep(200);
+            Assert.assertEquals(maxRunning.get(), 3);
+            Assert.assertEquals(ackedPosition(), "0000");
+
+            gate.countDown();
+            writer.sync();
+            Assert.assertEquals(ackedPosition(), "0005");
+            Assert.assertEquals(new HashSet<>(landed), new HashSet<>(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L)));
+            Assert.assertEquals(maxRunning.get(), 3);
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testSyncWaitsForInFlight() throws Exception {
+        configure.setPutRecordMaxInFlight(2);
+        TopicWriter writer = start(sequence -> Thread.sleep(300));
+        try {
+            write(writer, 2);
+            // both batches are sent, nothing is left in the queue
+            waitFor(() -> running.get() + landed.size() == 2);
+            writer.sync();
+            Assert.assertEquals(landed.size(), 2);
+            Assert.assertEquals(ackedPosition(), "0001");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testRetryInOrder() throws Exception {
+        testRetryInOrder(false);
+    }
+
+    @Test
+    public void testRetryInOrderPipeline() throws Exception {
+        testRetryInOrder(true);
+    }
+
+    // batch 1 fails only after batch 2 has landed, both have to be written again in order
+    private void testRetryInOrder(boolean pipelineMode) throws Exception {
+        configure.setPutRecordMaxInFlight(3);
+        configure.setPipelineMode(pipelineMode);
+        CountDownLatch gate = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        TopicWriter writer = start(sequence -> {
+            if (sequence == 0) {
+                gate.await(10, TimeUnit.SECONDS);
+            } else if (sequence == 1 && failures.getAndIncrement() == 0) {
+                waitFor(() -> landed.contains(2L));
+                throw new DatahubClientException("put failed");
+            }
+        });
+        try {
+            // batch 0 holds the writer until batch 1 and 2 are queued
+            write(writer, 3);
+            gate.countDown();
+            waitFor(() -> landed.size() == 4);
+            writer.sync();
+            // 0 and the first copy of 2 are put concurrently, the retry writes 1 and 2 in order
+            Assert.assertEquals(new HashSet<>(landed.subList(0, 2)), new HashSet<>(Arrays.asList(0L, 2L)));
+            Assert.assertEquals(landed.subList(2, landed.size()), Arrays.asList(1L, 2L));
+            Assert.assertEquals(ackedPosition(), "0002");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testSealedShardRoutedAgain() throws Exception {
+        testSealedShardRoutedAgain(false);
+    }
+
+    @Test
+    public void testSealedShardRoutedAgainPipeline() throws Exception {
+        testSealedShardRoutedAgain(true);
+    }
+
+    // records of a sealed shard go to the shards it was split into, by their partition key
+    private void testSealedShardRoutedAgain(boolean pipelineMode) throws Exception {
+        configure.setShardRouter("hashKeyRange");
+        configure.setPipelineMode(pipelineMode);
+        ShardEntry shard0 = shard("0", ShardState.ACTIVE, MIN_HASH_KEY, MID_HASH_KEY);
+        shards = Arrays.asList(shard0, shard("1", ShardState.ACTIVE, MID_HASH_KEY, MAX_HASH_KEY));
+        sealedShard = "1";
+        TopicWriter writer = start(sequence -> {
+        });
+        try {
+            write(writer, 0, 10);
+            waitFor(() -> sealedPuts.get() > 0);
+            Thread.sleep(100);
+
+            // shard 1 was split into 2 and 3, the next record finds its writer closed
+            String quarterHashKey = "BFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF";
+            shards = Arrays.asList(shard0, shard("1", ShardState.CLOSED, MID_HASH_KEY, MAX_HASH_KEY),
+                    shard("2", ShardState.ACTIVE, MID_HASH_KEY, quarterHashKey),
+                    shard("3", ShardState.ACTIVE, quarterHashKey, MAX_HASH_KEY));
+            write(writer, 10, 20);
+            writer.sync();
+
+            Assert.assertEquals(landed.size(), 20);
+            for (int i = 0; i < 20; i++) {
+                String hashKey = HashKeyRangeShardRouter.hashKey("key" + i);
+                String expected = hashKey.compareTo(MID_HASH_KEY) < 0 ? "0"
+                        : hashKey.compareTo(quarterHashKey) < 0 ? "2" : "3";
+                Assert.assertEquals(landedShards.get(written.get(i)), expected, "key" + i);
+            }
+            Assert.assertEquals(ackedPosition(), "0019");
+        } finally {
+            writer.stop();
+        }
+    }
+
+    private TopicWriter start(Put put) {
+        DatahubClient client = (DatahubClient) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[]{DatahubClient.class}, (proxy, method, args) -> {
+                    if ("listShard".equals(method.getName())) {
+                        ListShardResult result = new ListShardResult();
+                        result.setShards(new ArrayList<>(shards));
+                        return result;
+                    }
+                    if ("putRecords".equals(method.getName())) {
+                        @SuppressWarnings("unchecked")
+                        List<RecordEntry> records = (List<RecordEntry>) args[2];
+                        long sequence = records.get(0).getSequence();
+                        String shardId = records.get(0).getShardId();
+                        if (shardId.equals(sealedShard)) {
+                            sealedPuts.incrementAndGet();
+                            return sealedResult(records);
+                        }
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            put.put(sequence);
+                        } finally {
+                            running.decrementAndGet();
+                        }
+                        landedShards.put(records.get(0), shardId);
+                        landed.add(sequence);
+                        return new PutRecordsResult();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        TopicWriter writer = new TopicWriter(configure, tableMapping, client);
+        writer.start();
+        return writer;
+    }
+
+    private void write(TopicWriter writer, int count) {
+        write(writer, 0, count);
+    }
+
+    private void write(TopicWriter writer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            RecordEntry recordEntry = new RecordEntry();
+            recordEntry.setPartitionKey("key" + i);
+            written.add(recordEntry);
+            writer.writeRecord(recordEntry, handlerInfoManager.updateHandlerInfos(1, String.format("%04d", i)));
+        }
+    }
+
+    private static PutRecordsResult sealedResult(List<RecordEntry> records) {
+        List<PutErrorEntry> errorEntries = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            PutErrorEntry errorEntry = new PutErrorEntry();
+            errorEntry.setIndex(i);
+            errorEntry.setErrorcode("InvalidShardOperation");
+            errorEntry.setMessage("shard is closed");
+            errorEntries.add(errorEntry);
+        }
+        PutRecordsResult result = new PutRecordsResult();
+        result.setFailedRecordCount(records.size());
+        result.setFailedRecords(new ArrayList<>(records));
+        result.setPutErrorEntries(errorEntries);
+        return result;
+    }
+
+    private static ShardEntry shard(String shardId, ShardState state, String beginHashKey, String endHashKey) {
+        ShardEntry shard = new ShardEntry();
+        shard.setShardId(shardId);
+        shard.setState(state);
+        shard.setBeginHashKey(beginHashKey);
+        shard.setEndHashKey(endHashKey);
+        return shard;
+    }
+
+    private String ackedPosition() {
+        handlerInfoManager.saveHandlerInfos();
+        return handlerInfoManager.getAckedPosition();
+    }
+
+    private interface Condition {
+        boolean test();
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.test()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.aliyun.odps.ogg.handler.datahub;
+
+import com.aliyun.datahub.client.model.Field;
+import com.aliyun.datahub.client.model.FieldType;
+import com.aliyun.datahub.client.model.RecordSchema;
+import com.aliyun.odps.ogg.handler.datahub.modle.ColumnMapping;
+import com.aliyun.odps.ogg.handler.datahub.modle.TableMapping;
+import oracle.goldengate.datasource.meta.ColumnMetaData;
+import oracle.goldengate.datasource.meta.TableMetaData;
+import oracle.goldengate.datasource.meta.TableName;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TupleProjectionTest {
+
+    private TableMapping tableMapping;
+
+    @BeforeMethod
+    public void setUp() {
+        RecordSchema recordSchema = new RecordSchema();
+        recordSchema.addField(new Field("f_id", FieldType.BIGINT));
+        recordSchema.addField(new Field("f_name", FieldType.STRING));
+        recordSchema.addField(new Field("f_name_old", FieldType.STRING));
+        recordSchema.addField(new Field("ctime", FieldType.TIMESTAMP));
+        recordSchema.addField(new Field("const_dt", FieldType.STRING));
+
+        Map<String, ColumnMapping> columnMappings = new HashMap<>();
+        columnMappings.put("id", columnMapping("id", "f_id", null));
+        columnMappings.put("name", columnMapping("name", "f_name", "f_name_old"));
+
+        tableMapping = new TableMapping();
+        tableMapping.setRecordSchema(recordSchema);
+        tableMapping.setColumnMappings(columnMappings);
+        tableMapping.setcTimeColumn("ctime");
+        tableMapping.setConstColumnMappings(new LinkedHashMap<>());
+    }
+
+    @Test
+    public void testCompileColumns() {
+        TableMetaData tableMeta = tableMeta("ID", "SKIPPED", "NAME");
+        TupleProjection projection = new TupleProjection(tableMeta, tableMapping);
+
+        Assert.assertEquals(projection.srcIndexes, new int[]{0, 2});
+        Assert.assertEquals(projection.destIndexes, new int[]{0, 1});
+        Assert.assertEquals(projection.destOldIndexes, new int[]{-1, 2});
+        Assert.assertEquals(projection.destFields[1].getName(), "f_name");
+        Assert.assertEquals(projection.rowIdIndex, -1);
+        Assert.assertEquals(projection.cTimeIndex, 3);
+        Assert.assertEquals(projection.cTimeField.getType(), FieldType.TIMESTAMP);
+
+        Assert.assertTrue(projection.isCompiledFor(tableMeta));
+        Assert.assertFalse(projection.isCompiledFor(tableMeta("ID", "SKIPPED", "NAME")));
+    }
+
+    @Test
+    public void testConstColumns() {
+        tableMapping.getConstColumnMappings().put("const_dt", "%Y%m%d");
+        TupleProjection projection = new TupleProjection(tableMeta("ID"), tableMapping);
+        Assert.assertTrue(projection.isConstTimeTagged());
+        Assert.assertEquals(projection.constIndexes, new int[]{4});
+
+        long timestamp = Timestamp.valueOf("2020-01-02 10:00:00").getTime();
+        String[] values = projection.getConstValues(timestamp);
+        Assert.assertEquals(values[0], "20200102");
+        // same bucket, rendered once
+        Assert.assertSame(projection.getConstValues(timestamp + 999), values);
+        Assert.assertEquals(projection.getConstValues(timestamp + 24 * 3600 * 1000L)[0], "20200103");
+
+        tableMapping.getConstColumnMappings().put("const_dt", "static");
+        projection = new TupleProjection(tableMeta("ID"), tableMapping);
+        Assert.assertFalse(projection.isConstTimeTagged());
+        Assert.assertEquals(projection.getConstValues(0)[0], "static");
+    }
+
+    private static ColumnMapping columnMapping(String src, String dest, String destOld) {
+        ColumnMapping columnMapping = new ColumnMapping();
+        columnMapping.setSrc(src);
+        columnMapping.setDest(dest);
+        columnMapping.setDestOld(destOld);
+        return columnMapping;
+    }
+
+    private static TableMetaData tableMeta(String... columns) {
+        ArrayList<ColumnMetaData> columnMetaDatas = new ArrayList<>();
+        for (int i = 0; i < columns.length; i++) {
+            columnMetaDatas.add(new ColumnMetaData(columns[i], i));
+        }
+        return new TableMetaData(new TableName("ogg_test.t_person"), columnMetaDatas);
+    }
+}